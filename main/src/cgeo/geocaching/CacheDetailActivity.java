@@ -2182,10 +2182,10 @@ public class CacheDetailActivity extends AbstractViewPagerActivity<CacheDetailAc
         final int detailsIndex = pages.size() - 1;
         pages.add(Page.DESCRIPTION);
         // enforce showing the empty log book if new entries can be added
-        if (cache.supportsLogging() || !cache.getLogs().isEmpty()) {
+        if (cache.supportsLogging() || !cache.getPagedLogs(false).isEmpty()) {
             pages.add(Page.LOGS);
         }
-        if (CollectionUtils.isNotEmpty(cache.getFriendsLogs())) {
+        if (!cache.getPagedLogs(true).isEmpty()) {
             pages.add(Page.LOGSFRIENDS);
         }
         if (CollectionUtils.isNotEmpty(cache.getInventory()) || CollectionUtils.isNotEmpty(genericTrackables)) {
@@ -48,6 +48,7 @@ import cgeo.geocaching.log.LoggingUI;
 import cgeo.geocaching.maps.DefaultMap;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.PocketQuery;
+import cgeo.geocaching.network.BulkRefresh;
 import cgeo.geocaching.network.Cookies;
 import cgeo.geocaching.network.DownloadProgress;
 import cgeo.geocaching.network.Network;
@@ -62,8 +63,8 @@ import cgeo.geocaching.sorting.SortActionProvider;
 import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.ui.CacheListAdapter;
 import cgeo.geocaching.ui.WeakReferenceHandler;
+import cgeo.geocaching.ui.WindowedCacheList;
 import cgeo.geocaching.ui.dialog.Dialogs;
-import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.AngleUtils;
 import cgeo.geocaching.utils.CalendarUtils;
 import cgeo.geocaching.utils.DisposableHandler;
@@ -107,27 +108,17 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import butterknife.ButterKnife;
 import com.github.amlcurran.showcaseview.targets.ActionViewTarget;
 import com.github.amlcurran.showcaseview.targets.ActionViewTarget.Type;
-import io.reactivex.Observable;
-import io.reactivex.ObservableEmitter;
-import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.disposables.CompositeDisposable;
-import io.reactivex.disposables.Disposable;
-import io.reactivex.disposables.Disposables;
-import io.reactivex.functions.Action;
-import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.IOUtils;
@@ -137,6 +128,11 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
 
     private static final int MAX_LIST_ITEMS = 1000;
     private static final int REFRESH_WARNING_THRESHOLD = 100;
+    /**
+     * Stored lists with at least this many caches only load the shown caches, see {@link WindowedCacheList}. Smaller
+     * lists are kept in memory, so that they can be sorted again while moving.
+     */
+    private static final int MIN_WINDOWED_CACHES = 500;
 
     private static final int REQUEST_CODE_IMPORT_GPX = 1;
     private static final int REQUEST_CODE_RESTART = 2;
@@ -152,15 +148,14 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     private Geopoint coords = null;
     private SearchResult search = null;
     /** The list of shown caches shared with Adapter. Don't manipulate outside of main thread only with Handler */
-    private final List<Geocache> cacheList = new ArrayList<>();
+    private final WindowedCacheList cacheList = new WindowedCacheList();
     private CacheListAdapter adapter = null;
     private View listFooter = null;
     private TextView listFooterText = null;
     private final Progress progress = new Progress();
     private String title = "";
     private int detailTotal = 0;
-    private final AtomicInteger detailProgress = new AtomicInteger(0);
-    private long detailProgressTime = 0L;
+    private BulkRefresh bulkRefresh = null;
     private int listId = StoredList.TEMPORARY_LIST.id; // Only meaningful for the OFFLINE type
     private final GeoDirHandler geoDirHandler = new GeoDirHandler() {
 
@@ -280,13 +275,9 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
-                    cacheList.clear();
-
                     // The database search was moved into the UI call intentionally. If this is done before the runOnUIThread,
                     // then we have 2 sets of caches in memory. This can lead to OOM for huge cache lists.
-                    final Set<Geocache> cachesFromSearchResult = search.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
-
-                    cacheList.addAll(cachesFromSearchResult);
+                    setCacheListFromSearch(search);
                     adapter.reFilter();
                     updateTitle();
                     showFooterMoreCaches();
@@ -295,6 +286,19 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
         }
     }
 
+    /**
+     * Fill the {@link #cacheList} with the caches of a search. Huge stored lists are only loaded while they are shown,
+     * in the order of the search.
+     */
+    private void setCacheListFromSearch(@NonNull final SearchResult searchResult) {
+        if (type == CacheListType.OFFLINE && searchResult.getCount() >= MIN_WINDOWED_CACHES) {
+            cacheList.setWindow(searchResult.getGeocodes());
+            return;
+        }
+        cacheList.clear();
+        cacheList.addAll(searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB));
+    }
+
     private static String getCacheNumberString(final Resources res, final int count) {
         return res.getQuantityString(R.plurals.cache_counts, count, count);
     }
@@ -310,6 +314,10 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
         @Override
         protected void handleDispose() {
             super.handleDispose();
+            // canceled by the user, so do not offer to continue
+            if (type == CacheListType.OFFLINE) {
+                DataStore.clearRefreshQueue(listId);
+            }
             replaceCacheListFromSearch();
         }
 
@@ -322,16 +330,16 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
 
                 adapter.notifyDataSetChanged();
 
-                final int dp = detailProgress.get();
-                final int secondsElapsed = (int) ((System.currentTimeMillis() - detailProgressTime) / 1000);
-                final int minutesRemaining = (detailTotal - dp) * secondsElapsed / (dp > 0 ? dp : 1) / 60;
+                progress.setProgress(detailTotal - bulkRefresh.getRemaining());
+                progress.setMessage(getRefreshMessage(bulkRefresh.getRemainingMilliseconds()));
+            } else if (cacheList.isWindowed()) {
+                // the refreshed caches are loaded again when shown
+                cacheList.invalidate();
+                adapter.notifyDataSetChanged();
+                setAdapterCurrentCoordinates(false);
 
-                progress.setProgress(dp);
-                if (minutesRemaining < 1) {
-                    progress.setMessage(res.getString(R.string.caches_downloading) + " " + res.getString(R.string.caches_eta_ltm));
-                } else {
-                    progress.setMessage(res.getString(R.string.caches_downloading) + " " + res.getQuantityString(R.plurals.caches_eta_mins, minutesRemaining, minutesRemaining));
-                }
+                showProgress(false);
+                progress.dismiss();
             } else {
                 new AsyncTask<Void, Void, Set<Geocache>>() {
                     @Override
@@ -725,6 +733,9 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     }
 
     private boolean containsPastEvents() {
+        if (isWindowedWithoutSelection()) {
+            return true;
+        }
         for (final Geocache cache : adapter.getCheckedOrAllCaches()) {
             if (CalendarUtils.isPastEvent(cache)) {
                 return true;
@@ -734,6 +745,9 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     }
 
     private boolean containsOfflineLogs() {
+        if (isWindowedWithoutSelection()) {
+            return true;
+        }
         for (final Geocache cache : adapter.getCheckedOrAllCaches()) {
             if (cache.isLogOffline()) {
                 return true;
@@ -742,6 +756,14 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
         return false;
     }
 
+    /**
+     * @return {@code true} if the menu would have to load all caches of a windowed list to check them, so the menu
+     *         items are shown without checking
+     */
+    private boolean isWindowedWithoutSelection() {
+        return cacheList.isWindowed() && adapter.getCheckedCount() == 0;
+    }
+
     private void setMenuItemLabel(final Menu menu, final int menuId, @StringRes final int resIdSelection, @StringRes final int resId) {
         final MenuItem menuItem = menu.findItem(menuId);
         if (menuItem == null) {
@@ -881,7 +903,7 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     }
 
     private SearchResult getFilteredSearch() {
-        return new SearchResult(Geocache.getGeocodes(adapter.getFilteredList()));
+        return new SearchResult(adapter.getFilteredGeocodes());
     }
 
     private void deletePastEvents() {
@@ -1228,25 +1250,66 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     }
 
     private void refreshStoredInternal(final List<Geocache> caches, final Set<Integer> additionalListIds) {
-        detailProgress.set(0);
-
-        showProgress(false);
+        // only the refresh of a stored list can be continued, as other lists are not kept
+        bulkRefresh = new BulkRefresh(type == CacheListType.OFFLINE ? listId : BulkRefresh.NO_LIST, additionalListIds);
+        final LoadDetailsHandler loadDetailsHandler = new LoadDetailsHandler();
+        bulkRefresh.start(caches, loadDetailsHandler);
+        showRefreshProgress(loadDetailsHandler);
+    }
 
-        final int etaTime = detailTotal * 25 / 60;
-        final String message;
-        if (etaTime < 1) {
-            message = res.getString(R.string.caches_downloading) + " " + res.getString(R.string.caches_eta_ltm);
-        } else {
-            message = res.getString(R.string.caches_downloading) + " " + res.getQuantityString(R.plurals.caches_eta_mins, etaTime, etaTime);
+    /**
+     * Offer to continue the refresh of the current stored list if it has been interrupted, e.g. because c:geo has been
+     * stopped by the system.
+     */
+    private void checkForInterruptedRefresh() {
+        if (type != CacheListType.OFFLINE || BulkRefresh.isRunning(listId)) {
+            return;
         }
+        final Map<String, Integer> stages = DataStore.loadRefreshQueue(listId);
+        if (stages.isEmpty()) {
+            return;
+        }
+        final int refreshListId = listId;
+        Dialogs.confirmYesNo(this, res.getString(R.string.caches_refresh_resume_title),
+                res.getQuantityString(R.plurals.caches_refresh_resume_message, stages.size(), stages.size()), new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(final DialogInterface dialog, final int which) {
+                        dialog.dismiss();
+                        if (refreshListId != listId || !Network.isConnected()) {
+                            return;
+                        }
+                        bulkRefresh = new BulkRefresh(listId, DataStore.loadRefreshQueueLists(listId));
+                        final LoadDetailsHandler loadDetailsHandler = new LoadDetailsHandler();
+                        final Set<String> geocodes = cacheList.getGeocodes();
+                        geocodes.retainAll(stages.keySet());
+                        bulkRefresh.resume(new ArrayList<>(DataStore.loadCaches(geocodes, LoadFlags.LOAD_CACHE_OR_DB)), stages, loadDetailsHandler);
+                        // caches removed from the list in between are not refreshed
+                        detailTotal = bulkRefresh.getRemaining();
+                        showRefreshProgress(loadDetailsHandler);
+                    }
+                }, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(final DialogInterface dialog, final int which) {
+                        dialog.dismiss();
+                        DataStore.clearRefreshQueue(refreshListId);
+                    }
+                });
+    }
 
-        final LoadDetailsHandler loadDetailsHandler = new LoadDetailsHandler();
-        progress.show(this, null, message, ProgressDialog.STYLE_HORIZONTAL, loadDetailsHandler.disposeMessage());
-        progress.setMaxProgressAndReset(detailTotal);
+    private void showRefreshProgress(final LoadDetailsHandler loadDetailsHandler) {
+        showProgress(false);
 
-        detailProgressTime = System.currentTimeMillis();
+        progress.show(this, null, getRefreshMessage(bulkRefresh.getRemainingMilliseconds()), ProgressDialog.STYLE_HORIZONTAL, loadDetailsHandler.disposeMessage());
+        progress.setMaxProgressAndReset(detailTotal);
+    }
 
-        loadDetails(loadDetailsHandler, caches, additionalListIds);
+    @NonNull
+    private String getRefreshMessage(final long remainingMilliseconds) {
+        final int minutesRemaining = (int) (remainingMilliseconds / 60000);
+        if (minutesRemaining < 1) {
+            return res.getString(R.string.caches_downloading) + " " + res.getString(R.string.caches_eta_ltm);
+        }
+        return res.getString(R.string.caches_downloading) + " " + res.getQuantityString(R.plurals.caches_eta_mins, minutesRemaining, minutesRemaining);
     }
 
     public void removeFromHistoryCheck() {
@@ -1284,7 +1347,6 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
             return;
         }
 
-        detailProgress.set(0);
         showProgress(false);
         final DownloadFromWebHandler downloadFromWebHandler = new DownloadFromWebHandler();
         progress.show(this, null, res.getString(R.string.web_import_waiting), true, downloadFromWebHandler.disposeMessage());
@@ -1295,63 +1357,6 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
         new DeleteCachesFromListCommand(this, caches, listId).execute();
     }
 
-    /**
-     * Method to asynchronously refresh the caches details.
-     */
-    private void loadDetails(final DisposableHandler handler, final List<Geocache> caches, final Set<Integer> additionalListIds) {
-        final Observable<Geocache> allCaches;
-        if (Settings.isStoreOfflineMaps()) {
-            allCaches = Observable.create(new ObservableOnSubscribe<Geocache>() {
-                private final Disposable disposable = Disposables.empty();
-
-                @Override
-                public void subscribe(final ObservableEmitter<Geocache> emitter) throws Exception {
-                    emitter.setDisposable(disposable);
-                    final Deque<Geocache> withStaticMaps = new LinkedList<>();
-                    for (final Geocache cache : caches) {
-                        if (disposable.isDisposed()) {
-                            return;
-                        }
-                        if (cache.hasStaticMap()) {
-                            withStaticMaps.push(cache);
-                        } else {
-                            emitter.onNext(cache);
-                        }
-                    }
-                    for (final Geocache cache : withStaticMaps) {
-                        if (disposable.isDisposed()) {
-                            return;
-                        }
-                        emitter.onNext(cache);
-                    }
-                    emitter.onComplete();
-                }
-            }).subscribeOn(Schedulers.io());
-        } else {
-            allCaches = Observable.fromIterable(caches);
-        }
-        final Observable<Geocache> loaded = allCaches.flatMap(new Function<Geocache, Observable<Geocache>>() {
-            @Override
-            public Observable<Geocache> apply(final Geocache cache) {
-                return Observable.create(new ObservableOnSubscribe<Geocache>() {
-                    @Override
-                    public void subscribe(final ObservableEmitter<Geocache> emitter) throws Exception {
-                        cache.refreshSynchronous(null, additionalListIds);
-                        detailProgress.incrementAndGet();
-                        handler.obtainMessage(DownloadProgress.MSG_LOADED, cache).sendToTarget();
-                        emitter.onComplete();
-                    }
-                }).subscribeOn(AndroidRxUtils.refreshScheduler);
-            }
-        }).doOnComplete(new Action() {
-            @Override
-            public void run() {
-                handler.sendEmptyMessage(DownloadProgress.MSG_DONE);
-            }
-        });
-        handler.add(loaded.subscribe());
-    }
-
     private static final class LastPositionHelper {
         private final WeakReference<CacheListActivity> activityRef;
         private final int lastListPosition;
@@ -1850,9 +1855,7 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
         // The database search was moved into the UI call intentionally. If this is done before the runOnUIThread,
         // then we have 2 sets of caches in memory. This can lead to OOM for huge cache lists.
         if (searchIn != null) {
-            cacheList.clear();
-            final Set<Geocache> cachesFromSearchResult = searchIn.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
-            cacheList.addAll(cachesFromSearchResult);
+            setCacheListFromSearch(searchIn);
             search = searchIn;
             updateAdapter();
             updateTitle();
@@ -1870,6 +1873,7 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
                     break;
             }
         }
+        checkForInterruptedRefresh();
     }
 
     @Override
@@ -5,6 +5,7 @@ import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.AndroidRxUtils;
+import cgeo.geocaching.utils.BitmapMemoryCache;
 import cgeo.geocaching.utils.Log;
 import cgeo.geocaching.utils.OOMDumpingUncaughtExceptionHandler;
 
@@ -114,6 +115,7 @@ public class CgeoApplication extends Application {
             Log.i("Cleaning applications cache to trim memory");
             DataStore.removeAllFromCache();
         }
+        BitmapMemoryCache.trimMemory(level);
     }
 
     /**
@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -80,7 +81,7 @@ public class SearchResult implements Parcelable {
      * @param searchResult the original search result, which cannot be null
      */
     public SearchResult(final SearchResult searchResult) {
-        geocodes = new HashSet<>(searchResult.geocodes);
+        geocodes = new LinkedHashSet<>(searchResult.geocodes);
         filteredGeocodes = new HashSet<>(searchResult.filteredGeocodes);
         error = searchResult.error;
         url = searchResult.url;
@@ -89,7 +90,7 @@ public class SearchResult implements Parcelable {
     }
 
     /**
-     * Build a search result from an existing collection of geocodes.
+     * Build a search result from an existing collection of geocodes. The order of the geocodes is kept.
      *
      * @param geocodes
      *            a non-null collection of geocodes
@@ -98,8 +99,7 @@ public class SearchResult implements Parcelable {
      *            from a web page)
      */
     public SearchResult(final Collection<String> geocodes, final int totalCountGC) {
-        this.geocodes = new HashSet<>(geocodes.size());
-        this.geocodes.addAll(geocodes);
+        this.geocodes = new LinkedHashSet<>(geocodes);
         this.filteredGeocodes = new HashSet<>();
         this.setTotalCountGC(totalCountGC);
     }
@@ -116,7 +116,7 @@ public class SearchResult implements Parcelable {
     public SearchResult(final Parcel in) {
         final ArrayList<String> list = new ArrayList<>();
         in.readStringList(list);
-        geocodes = new HashSet<>(list);
+        geocodes = new LinkedHashSet<>(list);
         final ArrayList<String> filteredList = new ArrayList<>();
         in.readStringList(filteredList);
         filteredGeocodes = new HashSet<>(filteredList);
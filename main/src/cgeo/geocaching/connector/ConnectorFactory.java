@@ -9,6 +9,7 @@ import cgeo.geocaching.connector.capability.ISearchByKeyword;
 import cgeo.geocaching.connector.capability.ISearchByNextPage;
 import cgeo.geocaching.connector.capability.ISearchByOwner;
 import cgeo.geocaching.connector.capability.ISearchByViewPort;
+import cgeo.geocaching.connector.capability.ISearchByViewPortIncrementally;
 import cgeo.geocaching.connector.ec.ECConnector;
 import cgeo.geocaching.connector.ga.GeocachingAustraliaConnector;
 import cgeo.geocaching.connector.gc.GCConnector;
@@ -33,6 +34,7 @@ import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Trackable;
 import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.AndroidRxUtils;
+import cgeo.geocaching.utils.Log;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -316,6 +318,44 @@ public final class ConnectorFactory {
         });
     }
 
+    /**
+     * Search the viewport on all active connectors. Connectors supporting incremental searches emit their partial
+     * results as soon as they are available, the other connectors emit their complete result at once.
+     *
+     * @see ISearchByViewPortIncrementally#searchByViewportIncrementally
+     */
+    @NonNull
+    public static Observable<SearchResult> searchByViewportIncrementally(@NonNull final Viewport viewport, @Nullable final MapTokens tokens) {
+        return Observable.fromIterable(searchByViewPortConns).filter(new Predicate<ISearchByViewPort>() {
+            @Override
+            public boolean test(final ISearchByViewPort connector) {
+                return connector.isActive();
+            }
+        }).flatMap(new Function<ISearchByViewPort, Observable<SearchResult>>() {
+            @Override
+            public Observable<SearchResult> apply(final ISearchByViewPort connector) {
+                final Observable<SearchResult> search;
+                if (connector instanceof ISearchByViewPortIncrementally) {
+                    search = ((ISearchByViewPortIncrementally) connector).searchByViewportIncrementally(viewport, tokens);
+                } else {
+                    search = Observable.fromCallable(new Callable<SearchResult>() {
+                        @Override
+                        public SearchResult call() {
+                            return connector.searchByViewport(viewport, tokens);
+                        }
+                    }).subscribeOn(AndroidRxUtils.networkScheduler);
+                }
+                return search.onErrorResumeNext(new Function<Throwable, Observable<SearchResult>>() {
+                    @Override
+                    public Observable<SearchResult> apply(final Throwable throwable) {
+                        Log.w("searchByViewportIncrementally: swallowing error from connector " + connector, throwable);
+                        return Observable.empty();
+                    }
+                });
+            }
+        });
+    }
+
     @Nullable
     public static String getGeocodeFromURL(@Nullable final String url) {
         if (url == null) {
@@ -0,0 +1,27 @@
+package cgeo.geocaching.connector.capability;
+
+import cgeo.geocaching.SearchResult;
+import cgeo.geocaching.connector.IConnector;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collection;
+
+/**
+ * Connector capability of downloading the details of many caches with few requests. Implement this in a
+ * {@link IConnector} additionally to {@link ISearchByGeocode}, so that storing or refreshing many caches does not need
+ * a request per cache.
+ *
+ */
+public interface ISearchByGeocodes extends ISearchByGeocode {
+    /**
+     * Download and store the details of the given caches, like {@link ISearchByGeocode#searchByGeocode} does for a
+     * single cache.
+     *
+     * @param geocodes
+     *            the geocodes of caches of this connector
+     * @return the geocodes of the caches which have been downloaded
+     */
+    @NonNull
+    SearchResult searchByGeocodes(@NonNull final Collection<String> geocodes);
+}
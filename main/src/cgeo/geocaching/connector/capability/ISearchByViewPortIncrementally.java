@@ -0,0 +1,20 @@
+package cgeo.geocaching.connector.capability;
+
+import cgeo.geocaching.SearchResult;
+import cgeo.geocaching.connector.gc.MapTokens;
+import cgeo.geocaching.location.Viewport;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import io.reactivex.Observable;
+
+/**
+ * connector capability for searching a viewport in several parts, delivering the caches of each part as soon as they
+ * are available
+ *
+ */
+public interface ISearchByViewPortIncrementally extends ISearchByViewPort {
+    @NonNull
+    Observable<SearchResult> searchByViewportIncrementally(@NonNull final Viewport viewport, @Nullable final MapTokens tokens);
+}
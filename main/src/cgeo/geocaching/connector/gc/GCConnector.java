@@ -16,7 +16,7 @@ import cgeo.geocaching.connector.capability.ISearchByGeocode;
 import cgeo.geocaching.connector.capability.ISearchByKeyword;
 import cgeo.geocaching.connector.capability.ISearchByNextPage;
 import cgeo.geocaching.connector.capability.ISearchByOwner;
-import cgeo.geocaching.connector.capability.ISearchByViewPort;
+import cgeo.geocaching.connector.capability.ISearchByViewPortIncrementally;
 import cgeo.geocaching.connector.capability.IgnoreCapability;
 import cgeo.geocaching.connector.capability.PersonalNoteCapability;
 import cgeo.geocaching.connector.capability.Smiley;
@@ -50,10 +50,11 @@ import java.io.File;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import io.reactivex.Observable;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
-public class GCConnector extends AbstractConnector implements ISearchByGeocode, ISearchByCenter, ISearchByNextPage, ISearchByViewPort, ISearchByKeyword, ILogin, ICredentials, ISearchByOwner, ISearchByFinder, FieldNotesCapability, IgnoreCapability, WatchListCapability, PersonalNoteCapability, SmileyCapability {
+public class GCConnector extends AbstractConnector implements ISearchByGeocode, ISearchByCenter, ISearchByNextPage, ISearchByViewPortIncrementally, ISearchByKeyword, ILogin, ICredentials, ISearchByOwner, ISearchByFinder, FieldNotesCapability, IgnoreCapability, WatchListCapability, PersonalNoteCapability, SmileyCapability {
 
     @NonNull
     private static final String CACHE_URL_SHORT = "https://coord.info/";
@@ -208,6 +209,12 @@ public class GCConnector extends AbstractConnector implements ISearchByGeocode,
         return GCMap.searchByViewport(viewport, tokens);
     }
 
+    @Override
+    @NonNull
+    public Observable<SearchResult> searchByViewportIncrementally(@NonNull final Viewport viewport, @Nullable final MapTokens tokens) {
+        return GCMap.searchByViewportIncrementally(viewport, tokens);
+    }
+
     @Override
     public boolean isZippedGPXFile(@NonNull final String fileName) {
         return GPX_ZIP_FILE_PATTERN.matcher(fileName).matches();
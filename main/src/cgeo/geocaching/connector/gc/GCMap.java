@@ -16,9 +16,9 @@ import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.Formatter;
 import cgeo.geocaching.utils.JsonUtils;
-import cgeo.geocaching.utils.LeastRecentlyUsedMap;
 import cgeo.geocaching.utils.Log;
 
 import android.graphics.Bitmap;
@@ -30,25 +30,31 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import okhttp3.Response;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 
 public class GCMap {
     private static Viewport lastSearchViewport = null;
     private static final Bitmap ONE_ONE_BITMAP = Bitmap.createBitmap(1, 1, Config.ARGB_8888);
+    /** tile request parameters which change the caches returned for a tile */
+    private static final Set<String> FILTER_PARAMETERS = new HashSet<>(Arrays.asList("hf", "hh", "ect"));
 
     private GCMap() {
         // utility class
@@ -121,110 +127,82 @@ public class GCMap {
      * @return SearchResult. Never null.
      */
     public static SearchResult parseMapJSON(final String data, final Tile tile, final Bitmap bitmap, final LivemapStrategy strategy) {
-        final SearchResult searchResult = new SearchResult();
+        final List<Geocache> caches = parseMapCaches(data, tile, bitmap, strategy);
+        return caches != null ? filterMapCaches(caches, tile) : new SearchResult();
+    }
 
+    /**
+     * Parse all caches of a tile, without applying the cache filter settings.
+     *
+     * @param data
+     *            Retrieved data.
+     * @return the caches of the tile, or {@code null} if the data could not be parsed
+     */
+    @Nullable
+    private static List<Geocache> parseMapCaches(final String data, final Tile tile, final Bitmap bitmap, final LivemapStrategy strategy) {
         try {
 
             if (StringUtils.isEmpty(data)) {
                 throw new ParserException("No page given");
             }
 
-            // Example JSON information
-            // {"grid":[....],
-            //  "keys":["","55_55","55_54","17_25","55_53","17_27","17_26","57_53","57_55","3_62","3_61","57_54","3_60","15_27","15_26","15_25","4_60","4_61","4_62","16_25","16_26","16_27","2_62","2_60","2_61","56_53","56_54","56_55"],
-            //  "data":{"55_55":[{"i":"gEaR","n":"Spiel & Sport"}],"55_54":[{"i":"gEaR","n":"Spiel & Sport"}],"17_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"55_53":[{"i":"gEaR","n":"Spiel & Sport"}],"17_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"17_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"57_53":[{"i":"gEaR","n":"Spiel & Sport"}],"57_55":[{"i":"gEaR","n":"Spiel & Sport"}],"3_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"3_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"57_54":[{"i":"gEaR","n":"Spiel & Sport"}],"3_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"15_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"4_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"16_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"2_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"56_53":[{"i":"gEaR","n":"Spiel & Sport"}],"56_54":[{"i":"gEaR","n":"Spiel & Sport"}],"56_55":[{"i":"gEaR","n":"Spiel & Sport"}]}
-            //  }
-
-            final ObjectNode json = (ObjectNode) JsonUtils.reader.readTree(data);
-
-            final ArrayNode grid = (ArrayNode) json.get("grid");
-            if (grid == null || grid.size() != (UTFGrid.GRID_MAXY + 1)) {
-                throw new ParserException("No grid inside JSON");
-            }
-            final ArrayNode keys = (ArrayNode) json.get("keys");
-            if (keys == null) {
-                throw new ParserException("No keys inside JSON");
-            }
-            final ObjectNode dataObject = (ObjectNode) json.get("data");
-            if (dataObject == null) {
-                throw new ParserException("No data inside JSON");
-            }
-
-            // iterate over the data and construct all caches in this tile
-            final Map<String, List<UTFGridPosition>> positions = new HashMap<>(); // JSON id as key
-            final Map<String, List<UTFGridPosition>> singlePositions = new HashMap<>(); // JSON id as key
-            final LeastRecentlyUsedMap<String, String> nameCache = new LeastRecentlyUsedMap.LruCache<>(2000); // JSON id, cache name
-
-            for (final JsonNode rawKey: keys) {
-                final String key = rawKey.asText();
-                if (StringUtils.isNotBlank(key)) { // index 0 is empty
-                    final UTFGridPosition pos = UTFGridPosition.fromString(key);
-                    final ArrayNode dataForKey = (ArrayNode) dataObject.get(key);
-                    for (final JsonNode cacheInfo: dataForKey) {
-                        final String id = cacheInfo.get("i").asText();
-                        nameCache.put(id, cacheInfo.get("n").asText());
-
-                        List<UTFGridPosition> listOfPositions = positions.get(id);
-                        List<UTFGridPosition> singleListOfPositions = singlePositions.get(id);
-
-                        if (listOfPositions == null) {
-                            listOfPositions = new ArrayList<>();
-                            positions.put(id, listOfPositions);
-                            singleListOfPositions = new ArrayList<>();
-                            singlePositions.put(id, singleListOfPositions);
-                        }
-
-                        listOfPositions.add(pos);
-                        if (dataForKey.size() == 1) {
-                            singleListOfPositions.add(pos);
-                        }
-
-                    }
-                }
-            }
+            final UTFGridData grid = UTFGridData.parse(data);
 
+            final IconDecoder iconDecoder = strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES) && bitmap != null ? new IconDecoder(bitmap, tile.getZoomLevel()) : null;
             final List<Geocache> caches = new ArrayList<>();
-            for (final Entry<String, List<UTFGridPosition>> entry : positions.entrySet()) {
-                final String id = entry.getKey();
-                final List<UTFGridPosition> pos = entry.getValue();
-                final UTFGridPosition xy = UTFGrid.getPositionInGrid(pos);
+            for (int i = 0; i < grid.size(); i++) {
                 final Geocache cache = new Geocache();
                 cache.setDetailed(false);
                 cache.setReliableLatLon(false);
-                cache.setGeocode(id);
-                cache.setName(nameCache.get(id));
-                cache.setCoords(tile.getCoord(xy), tile.getZoomLevel());
-                if (strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES) && bitmap != null) {
-                    for (final UTFGridPosition singlePos : singlePositions.get(id)) {
-                        if (IconDecoder.parseMapPNG(cache, bitmap, singlePos, tile.getZoomLevel())) {
+                cache.setGeocode(grid.getId(i));
+                cache.setName(grid.getName(i));
+                cache.setCoords(tile.getCoord(grid.getPositionInGrid(i)), tile.getZoomLevel());
+                if (iconDecoder != null) {
+                    for (int p = 0; p < grid.getPositionCount(i); p++) {
+                        if (grid.isSinglePosition(i, p) && iconDecoder.parse(cache, grid.getPosition(i, p))) {
                             break; // cache parsed
                         }
                     }
                 } else {
                     cache.setType(CacheType.UNKNOWN, tile.getZoomLevel());
                 }
-
-                boolean exclude = false;
-                if (Settings.isExcludeMyCaches() && (cache.isFound() || cache.isOwner())) { // workaround for BM
-                    exclude = true;
-                }
-                if (Settings.isExcludeDisabledCaches() && cache.isDisabled()) {
-                    exclude = true;
-                }
-                if (!Settings.getCacheType().contains(cache) && cache.getType() != CacheType.UNKNOWN) { // workaround for BM
-                    exclude = true;
-                }
-                if (!exclude) {
-                    caches.add(cache);
-                }
+                caches.add(cache);
             }
-            searchResult.addAndPutInCache(caches);
-            Log.d("Retrieved " + searchResult.getCount() + " caches for tile " + tile.toString());
+            return caches;
 
         } catch (RuntimeException | ParserException | IOException e) {
             Log.e("GCMap.parseMapJSON", e);
         }
 
+        return null;
+    }
+
+    /**
+     * Apply the cache filter settings to the caches of a tile.
+     *
+     * @return SearchResult. Never null.
+     */
+    @NonNull
+    private static SearchResult filterMapCaches(@NonNull final List<Geocache> tileCaches, @NonNull final Tile tile) {
+        final List<Geocache> caches = new ArrayList<>(tileCaches.size());
+        for (final Geocache cache : tileCaches) {
+            boolean exclude = false;
+            if (Settings.isExcludeMyCaches() && (cache.isFound() || cache.isOwner())) { // workaround for BM
+                exclude = true;
+            }
+            if (Settings.isExcludeDisabledCaches() && cache.isDisabled()) {
+                exclude = true;
+            }
+            if (!Settings.getCacheType().contains(cache) && cache.getType() != CacheType.UNKNOWN) { // workaround for BM
+                exclude = true;
+            }
+            if (!exclude) {
+                caches.add(cache);
+            }
+        }
+        final SearchResult searchResult = new SearchResult();
+        searchResult.addAndPutInCache(caches);
+        Log.d("Retrieved " + searchResult.getCount() + " caches for tile " + tile.toString());
         return searchResult;
     }
 
@@ -238,13 +216,13 @@ public class GCMap {
      */
     @NonNull
     public static SearchResult searchByViewport(@NonNull final Viewport viewport, @Nullable final MapTokens tokens) {
-        final int speed = (int) Sensors.getInstance().currentGeo().getSpeed() * 60 * 60 / 1000; // in km/h
-        LivemapStrategy strategy = Settings.getLiveMapStrategy();
-        if (strategy == LivemapStrategy.AUTO) {
-            strategy = speed >= 30 ? LivemapStrategy.FAST : LivemapStrategy.DETAILED;
-        }
+        final int speed = getSpeed();
+        final LivemapStrategy strategy = getStrategy(speed);
 
-        final SearchResult result = searchByViewport(viewport, tokens, strategy);
+        final SearchResult result = new SearchResult();
+        for (final SearchResult partialResult : searchByViewport(viewport, tokens, strategy).blockingIterable()) {
+            result.addSearchResult(partialResult);
+        }
 
         if (Settings.isDebug()) {
             final StringBuilder text = new StringBuilder(Formatter.SEPARATOR).append(strategy.getL10n()).append(Formatter.SEPARATOR).append(Units.getSpeed(speed));
@@ -256,11 +234,41 @@ public class GCMap {
         return result;
     }
 
+    /**
+     * Searches the view port on the live map with Strategy.AUTO, emitting the caches of every tile as soon as it has
+     * been parsed.
+     *
+     * @param viewport
+     *            Area to search
+     * @param tokens
+     *            Live map tokens
+     */
+    @NonNull
+    public static Observable<SearchResult> searchByViewportIncrementally(@NonNull final Viewport viewport, @Nullable final MapTokens tokens) {
+        return searchByViewport(viewport, tokens, getStrategy(getSpeed()));
+    }
+
+    private static int getSpeed() {
+        return (int) Sensors.getInstance().currentGeo().getSpeed() * 60 * 60 / 1000; // in km/h
+    }
+
+    @NonNull
+    private static LivemapStrategy getStrategy(final int speed) {
+        final LivemapStrategy strategy = Settings.getLiveMapStrategy();
+        if (strategy == LivemapStrategy.AUTO) {
+            return speed >= 30 ? LivemapStrategy.FAST : LivemapStrategy.DETAILED;
+        }
+        return strategy;
+    }
+
     /**
      * Searches the view port on the live map for caches.
      * The strategy dictates if only live map information is used or if an additional
      * searchByCoordinates query is issued.
      *
+     * All tiles are requested concurrently, and a partial search result is emitted for each tile once it has been
+     * parsed. The last search result emitted contains the vanished caches as filtered geocodes.
+     *
      * @param viewport
      *            Area to search
      * @param tokens
@@ -269,102 +277,195 @@ public class GCMap {
      *            Strategy for data retrieval and parsing, @see Strategy
      */
     @NonNull
-    private static SearchResult searchByViewport(@NonNull final Viewport viewport, @Nullable final MapTokens tokens, @NonNull final LivemapStrategy strategy) {
+    private static Observable<SearchResult> searchByViewport(@NonNull final Viewport viewport, @Nullable final MapTokens tokens, @NonNull final LivemapStrategy strategy) {
         Log.d("GCMap.searchByViewport" + viewport.toString());
 
-        final SearchResult searchResult = new SearchResult();
-
-        if (Settings.isDebug()) {
-            searchResult.setUrl(viewport.getCenter().format(Format.LAT_LON_DECMINUTE));
-        }
+        final List<Observable<SearchResult>> searches = new ArrayList<>();
 
         if (strategy.flags.contains(LivemapStrategy.Flag.LOAD_TILES)) {
             final Set<Tile> tiles = Tile.getTilesForViewport(viewport);
 
             if (Settings.isDebug()) {
-                searchResult.setUrl(new StringBuilder().append(tiles.iterator().next().getZoomLevel()).append(Formatter.SEPARATOR).append(searchResult.getUrl()).toString());
+                final SearchResult debugResult = new SearchResult();
+                debugResult.setUrl(new StringBuilder().append(tiles.iterator().next().getZoomLevel()).append(Formatter.SEPARATOR)
+                        .append(viewport.getCenter().format(Format.LAT_LON_DECMINUTE)).toString());
+                searches.add(Observable.just(debugResult));
             }
 
-            for (final Tile tile : tiles) {
-                if (!Tile.cache.contains(tile)) {
-                    final Parameters params = new Parameters(
-                            "x", String.valueOf(tile.getX()),
-                            "y", String.valueOf(tile.getY()),
-                            "z", String.valueOf(tile.getZoomLevel()),
-                            "ep", "1",
-                            "app", "cgeo");
-                    if (tokens != null) {
-                        params.put("k", tokens.getUserSession(), "st", tokens.getSessionToken());
-                    }
-                    if (Settings.isExcludeMyCaches()) { // works only for PM
-                        params.put("hf", "1", "hh", "1"); // hide found, hide hidden
-                    }
-                    // ect: exclude cache type (probably), comma separated list
-                    if (Settings.getCacheType() != CacheType.ALL) {
-                        params.put("ect", getCacheTypeFilter(Settings.getCacheType()));
-                    }
-                    if (tile.getZoomLevel() != 14) {
-                        params.put("_", String.valueOf(System.currentTimeMillis()));
+            final SearchResult tilesResult = new SearchResult();
+            final Observable<SearchResult> tileSearches = Observable.fromIterable(tiles).flatMapSingle(new Function<Tile, Single<SearchResult>>() {
+                @Override
+                public Single<SearchResult> apply(final Tile tile) {
+                    return searchTile(tile, tokens, strategy).subscribeOn(AndroidRxUtils.networkScheduler);
+                }
+            }).doOnNext(new Consumer<SearchResult>() {
+                @Override
+                public void accept(final SearchResult search) {
+                    tilesResult.addSearchResult(search);
+                }
+            });
+
+            // Check for vanished found caches once all tiles have been parsed
+            final Observable<SearchResult> vanished = Observable.fromCallable(new Callable<SearchResult>() {
+                @Override
+                public SearchResult call() {
+                    final SearchResult vanishedResult = new SearchResult();
+                    if (tiles.iterator().next().getZoomLevel() >= Tile.ZOOMLEVEL_MIN_PERSONALIZED) {
+                        vanishedResult.addFilteredGeocodes(DataStore.getCachedMissingFromSearch(tilesResult, tiles, GCConnector.getInstance(), Tile.ZOOMLEVEL_MIN_PERSONALIZED - 1));
                     }
+                    return vanishedResult;
+                }
+            });
+            searches.add(tileSearches.concatWith(vanished));
+        } else if (Settings.isDebug()) {
+            final SearchResult debugResult = new SearchResult();
+            debugResult.setUrl(viewport.getCenter().format(Format.LAT_LON_DECMINUTE));
+            searches.add(Observable.just(debugResult));
+        }
 
-                    // The PNG must be requested first, otherwise the following request would always return with 204 - No Content
-                    final Single<Bitmap> bitmapObs = Tile.requestMapTile(params).onErrorResumeNext(Single.just(ONE_ONE_BITMAP));
-                    final Single<String> dataObs = Tile.requestMapInfo(GCConstants.URL_MAP_INFO, params, GCConstants.URL_LIVE_MAP).onErrorResumeNext(Single.just(""));
-                    try {
-                        Single.zip(bitmapObs, dataObs, new BiFunction<Bitmap, String, String>() {
-                            @Override
-                            public String apply(final Bitmap bitmap, final String data) {
-                                final boolean validBitmap = bitmap.getWidth() == Tile.TILE_SIZE && bitmap.getHeight() == Tile.TILE_SIZE;
-
-                                if (StringUtils.isEmpty(data)) {
-                                    Log.w("GCMap.searchByViewport: No data from server for tile (" + tile.getX() + "/" + tile.getY() + ")");
-                                } else {
-                                    final SearchResult search = parseMapJSON(data, tile, validBitmap ? bitmap : null, strategy);
-                                    if (CollectionUtils.isEmpty(search.getGeocodes())) {
-                                        Log.w("GCMap.searchByViewport: No cache parsed for viewport " + viewport);
-                                    } else {
-                                        synchronized (searchResult) {
-                                            searchResult.addSearchResult(search);
-                                        }
-                                    }
-                                    synchronized (Tile.cache) {
-                                        Tile.cache.add(tile);
-                                    }
-                                }
-
-                                // release native bitmap memory if we didn't get the placeholder
-                                if (bitmap != ONE_ONE_BITMAP) {
-                                    bitmap.recycle();
-                                }
-
-                                return data;
-                            }
-                        }).toCompletable().blockingAwait();
-                    } catch (final Exception e) {
-                        Log.e("GCMap.searchByViewPort: connection error", e);
+        if (strategy.flags.contains(Flag.SEARCH_NEARBY) && Settings.isGCPremiumMember()) {
+            searches.add(Maybe.fromCallable(new Callable<SearchResult>() {
+                @Override
+                public SearchResult call() {
+                    final Geopoint center = viewport.getCenter();
+                    if (lastSearchViewport == null || !lastSearchViewport.contains(center)) {
+                        final SearchResult search = GCParser.searchByCoords(center, Settings.getCacheType());
+                        if (search != null && !search.isEmpty()) {
+                            final Set<String> geocodes = search.getGeocodes();
+                            lastSearchViewport = DataStore.getBounds(geocodes);
+                            return new SearchResult(geocodes);
+                        }
                     }
+                    return null;
                 }
+            }).subscribeOn(AndroidRxUtils.networkScheduler).toObservable());
+        }
+
+        return Observable.merge(searches);
+    }
+
+    /**
+     * Search a single tile, using the tile cache if the tile has been downloaded recently with the same filter
+     * parameters.
+     *
+     * @return a single with the caches found in this tile, which is empty if the tile could not be retrieved
+     */
+    @NonNull
+    private static Single<SearchResult> searchTile(@NonNull final Tile tile, @Nullable final MapTokens tokens, @NonNull final LivemapStrategy strategy) {
+        return Single.defer(new Callable<Single<SearchResult>>() {
+            @Override
+            public Single<SearchResult> call() {
+                final Parameters params = getTileParameters(tile, tokens);
+                final String filter = getTileFilter(params);
+                final boolean parseTiles = strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES);
+                final List<Geocache> cachedCaches = Tile.cache.get(tile, filter, parseTiles);
+                if (cachedCaches != null) {
+                    return Single.just(filterMapCaches(cachedCaches, tile));
+                }
+                return downloadTile(tile, params, filter, strategy);
             }
+        });
+    }
 
-            // Check for vanished found caches
-            if (tiles.iterator().next().getZoomLevel() >= Tile.ZOOMLEVEL_MIN_PERSONALIZED) {
-                searchResult.addFilteredGeocodes(DataStore.getCachedMissingFromSearch(searchResult, tiles, GCConnector.getInstance(), Tile.ZOOMLEVEL_MIN_PERSONALIZED - 1));
+    /**
+     * Request and parse a single tile. The PNG must be requested first, otherwise the following request would always
+     * return with 204 - No Content. The JSON is therefore requested as soon as the PNG response has arrived, while
+     * the PNG is decoded.
+     */
+    @NonNull
+    private static Single<SearchResult> downloadTile(@NonNull final Tile tile, @NonNull final Parameters params, @NonNull final String filter, @NonNull final LivemapStrategy strategy) {
+        return Tile.requestMapTile(params).map(new Function<Response, Single<Bitmap>>() {
+            @Override
+            public Single<Bitmap> apply(final Response response) {
+                return Tile.decodeMapTile(response).onErrorResumeNext(Single.just(ONE_ONE_BITMAP));
             }
-        }
+        }).onErrorResumeNext(Single.just(Single.just(ONE_ONE_BITMAP))).flatMap(new Function<Single<Bitmap>, Single<ImmutablePair<Bitmap, String>>>() {
+            @Override
+            public Single<ImmutablePair<Bitmap, String>> apply(final Single<Bitmap> bitmapObs) {
+                final Single<String> dataObs = Tile.requestMapInfo(GCConstants.URL_MAP_INFO, params, GCConstants.URL_LIVE_MAP).onErrorResumeNext(Single.just(""));
+                return Single.zip(bitmapObs, dataObs, new BiFunction<Bitmap, String, ImmutablePair<Bitmap, String>>() {
+                    @Override
+                    public ImmutablePair<Bitmap, String> apply(final Bitmap bitmap, final String data) {
+                        return ImmutablePair.of(bitmap, data);
+                    }
+                });
+            }
+        }).observeOn(AndroidRxUtils.computationScheduler).map(new Function<ImmutablePair<Bitmap, String>, SearchResult>() {
+            @Override
+            public SearchResult apply(final ImmutablePair<Bitmap, String> tileData) {
+                final Bitmap bitmap = tileData.left;
+                final String data = tileData.right;
+                final boolean validBitmap = bitmap.getWidth() == Tile.TILE_SIZE && bitmap.getHeight() == Tile.TILE_SIZE;
+
+                SearchResult search = new SearchResult();
+                if (StringUtils.isEmpty(data)) {
+                    Log.w("GCMap.searchByViewport: No data from server for tile (" + tile.getX() + "/" + tile.getY() + ")");
+                } else {
+                    final List<Geocache> caches = parseMapCaches(data, tile, validBitmap ? bitmap : null, strategy);
+                    if (caches != null) {
+                        Tile.cache.put(tile, filter, validBitmap && strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES), caches);
+                        search = filterMapCaches(caches, tile);
+                    }
+                    if (CollectionUtils.isEmpty(search.getGeocodes())) {
+                        Log.w("GCMap.searchByViewport: No cache parsed for tile " + tile);
+                    }
+                }
 
-        if (strategy.flags.contains(Flag.SEARCH_NEARBY) && Settings.isGCPremiumMember()) {
-            final Geopoint center = viewport.getCenter();
-            if (lastSearchViewport == null || !lastSearchViewport.contains(center)) {
-                final SearchResult search = GCParser.searchByCoords(center, Settings.getCacheType());
-                if (search != null && !search.isEmpty()) {
-                    final Set<String> geocodes = search.getGeocodes();
-                    lastSearchViewport = DataStore.getBounds(geocodes);
-                    searchResult.addGeocodes(geocodes);
+                // release native bitmap memory if we didn't get the placeholder
+                if (bitmap != ONE_ONE_BITMAP) {
+                    bitmap.recycle();
                 }
+
+                return search;
             }
+        }).onErrorResumeNext(new Function<Throwable, Single<SearchResult>>() {
+            @Override
+            public Single<SearchResult> apply(final Throwable throwable) {
+                Log.e("GCMap.searchByViewPort: connection error", throwable);
+                return Single.just(new SearchResult());
+            }
+        });
+    }
+
+    @NonNull
+    private static Parameters getTileParameters(@NonNull final Tile tile, @Nullable final MapTokens tokens) {
+        final Parameters params = new Parameters(
+                "x", String.valueOf(tile.getX()),
+                "y", String.valueOf(tile.getY()),
+                "z", String.valueOf(tile.getZoomLevel()),
+                "ep", "1",
+                "app", "cgeo");
+        if (tokens != null) {
+            params.put("k", tokens.getUserSession(), "st", tokens.getSessionToken());
+        }
+        if (Settings.isExcludeMyCaches()) { // works only for PM
+            params.put("hf", "1", "hh", "1"); // hide found, hide hidden
+        }
+        // ect: exclude cache type (probably), comma separated list
+        if (Settings.getCacheType() != CacheType.ALL) {
+            params.put("ect", getCacheTypeFilter(Settings.getCacheType()));
+        }
+        if (tile.getZoomLevel() != 14) {
+            params.put("_", String.valueOf(System.currentTimeMillis()));
         }
+        return params;
+    }
 
-        return searchResult;
+    /**
+     * Key for the tile cache describing how the server filtered the tile. The user and the presence of a session are
+     * part of the key, as found and own caches are only marked in personalized tiles.
+     */
+    @NonNull
+    private static String getTileFilter(@NonNull final Parameters params) {
+        final StringBuilder filter = new StringBuilder(StringUtils.defaultString(Settings.getUserName()));
+        for (final ImmutablePair<String, String> param : params) {
+            if (FILTER_PARAMETERS.contains(param.left)) {
+                filter.append('&').append(param.left).append('=').append(param.right);
+            } else if ("k".equals(param.left)) {
+                filter.append("&k");
+            }
+        }
+        return filter.toString();
     }
 
     /**
@@ -2,24 +2,30 @@ package cgeo.geocaching.connector.gc;
 
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.ICoordinates;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
+import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.AndroidRxUtils;
-import cgeo.geocaching.utils.LeastRecentlyUsedSet;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Single;
-import io.reactivex.functions.Function;
 import okhttp3.Response;
 
 /**
@@ -226,49 +232,46 @@ public class Tile {
         return toString().hashCode();
     }
 
-    /** Request JSON informations for a tile. Return as soon as the request has been made, before the answer has been
-     * read.
+    /** Request JSON informations for a tile. The request is made when subscribing to the returned single.
      *
      * @return A single with one element, or an IOException
      */
 
     static Single<String> requestMapInfo(final String url, final Parameters params, final String referer) {
-        try {
-            final Response response = Network.getRequest(url, params, new Parameters("Referer", referer)).blockingGet();
-            return Single.just(response).flatMap(Network.getResponseData);
-        } catch (final Exception e) {
-            return Single.error(e);
-        }
+        return Network.getRequest(url, params, new Parameters("Referer", referer)).flatMap(Network.getResponseData);
     }
 
-    /** Request .png image for a tile. Return as soon as the request has been made, before the answer has been
-     * read and processed.
+    /** Request .png image for a tile. The request is made when subscribing to the returned single, which succeeds as
+     * soon as the response headers have been received, before the image has been read. Use {@link #decodeMapTile(Response)}
+     * to read and decode the image.
      *
      * @return A single with one element, or an IOException
      */
-    static Single<Bitmap> requestMapTile(final Parameters params) {
-        try {
-            final Response response = Network.getRequest(GCConstants.URL_MAP_TILE, params, new Parameters("Referer", GCConstants.URL_LIVE_MAP)).blockingGet();
-            return Single.just(response)
-                    .flatMap(new Function<Response, Single<Bitmap>>() {
-                        @Override
-                        public Single<Bitmap> apply(final Response response) {
-                            try {
-                                if (response.isSuccessful()) {
-                                    final Bitmap bitmap = BitmapFactory.decodeStream(response.body().byteStream());
-                                    if (bitmap != null) {
-                                        return Single.just(bitmap);
-                                    }
-                                }
-                                return Single.error(new IOException("could not decode bitmap"));
-                            } finally {
-                                response.close();
-                            }
+    static Single<Response> requestMapTile(final Parameters params) {
+        return Network.getRequest(GCConstants.URL_MAP_TILE, params, new Parameters("Referer", GCConstants.URL_LIVE_MAP));
+    }
+
+    /** Read and decode the .png image of a tile on the computation scheduler. The response is closed afterwards.
+     *
+     * @return A single with one element, or an IOException
+     */
+    static Single<Bitmap> decodeMapTile(final Response response) {
+        return Single.fromCallable(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws IOException {
+                try {
+                    if (response.isSuccessful()) {
+                        final Bitmap bitmap = BitmapFactory.decodeStream(response.body().byteStream());
+                        if (bitmap != null) {
+                            return bitmap;
                         }
-                    }).subscribeOn(AndroidRxUtils.computationScheduler);
-        } catch (final Exception e) {
-            return Single.error(e);
-        }
+                    }
+                    throw new IOException("could not decode bitmap");
+                } finally {
+                    response.close();
+                }
+            }
+        }).subscribeOn(AndroidRxUtils.computationScheduler);
     }
 
     public boolean containsPoint(@NonNull final ICoordinates point) {
@@ -319,18 +322,49 @@ public class Tile {
         return tiles;
     }
 
-    public static class TileCache extends LeastRecentlyUsedSet<Tile> {
+    /**
+     * Persistent cache of the caches found in live map tiles. Tiles are stored together with the filter parameters
+     * they have been requested with, so a change of the filter settings does not return tiles filtered differently.
+     */
+    public static class TileCache {
+
+        /**
+         * @param filter
+         *            the filter parameters used for requesting the tile
+         * @param parsed
+         *            {@code true} if the cache types must have been decoded from the tile image
+         * @return the caches of the tile, or {@code null} if the tile is not cached or has expired
+         */
+        @Nullable
+        public List<Geocache> get(@NonNull final Tile tile, @NonNull final String filter, final boolean parsed) {
+            return DataStore.loadLiveMapTile(tile, filter, parsed, getMinUpdated());
+        }
 
-        public TileCache() {
-            super(64);
+        public void put(@NonNull final Tile tile, @NonNull final String filter, final boolean parsed, @NonNull final Collection<Geocache> caches) {
+            DataStore.saveLiveMapTile(tile, filter, parsed, caches, Settings.getLiveMapTileCacheSize());
         }
 
+        /**
+         * Remove the tiles of all zoom levels containing the given point, so that they will be requested again.
+         */
         public void removeFromTileCache(@NonNull final ICoordinates point) {
-            for (final Tile tile : new ArrayList<>(this)) {
-                if (tile.containsPoint(point)) {
-                    remove(tile);
-                }
+            final Geopoint coords = point.getCoords();
+            if (coords == null) {
+                return;
+            }
+            final List<Tile> tiles = new ArrayList<>(ZOOMLEVEL_MAX - ZOOMLEVEL_MIN + 1);
+            for (int zoomlevel = ZOOMLEVEL_MIN; zoomlevel <= ZOOMLEVEL_MAX; zoomlevel++) {
+                tiles.add(new Tile(coords, zoomlevel));
             }
+            DataStore.removeLiveMapTiles(tiles);
+        }
+
+        public void removeExpired() {
+            DataStore.removeExpiredLiveMapTiles(getMinUpdated());
+        }
+
+        private static long getMinUpdated() {
+            return System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(Settings.getLiveMapTileCacheMaxAge());
         }
     }
 }
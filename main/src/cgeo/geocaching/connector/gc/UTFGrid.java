@@ -1,7 +1,5 @@
 package cgeo.geocaching.connector.gc;
 
-import java.util.List;
-
 /**
  *
  * @see <a href="https://github.com/mapbox/mbtiles-spec/blob/master/1.1/utfgrid.md">Mapbox</a>
@@ -16,17 +14,91 @@ final class UTFGrid {
         // utility class
     }
 
-    /** Calculate from a list of positions (x/y) the coords */
-    static UTFGridPosition getPositionInGrid(final List<UTFGridPosition> positions) {
+    /**
+     * Pack a grid position into a short, using 8 bits for each coordinate. The bits not used by the coordinates are
+     * ignored when unpacking and may be used for flags.
+     */
+    static short pack(final int x, final int y) {
+        return (short) ((x << 8) | y);
+    }
+
+    static int getX(final short packed) {
+        return (packed >> 8) & GRID_MAXX;
+    }
+
+    static int getY(final short packed) {
+        return packed & GRID_MAXY;
+    }
+
+    /**
+     * Parse a key in the format (xx, xx) into a packed position. Like {@link UTFGridPosition#fromString(String)},
+     * keys which cannot be parsed result in the position (0, 0).
+     *
+     * @throws IllegalArgumentException
+     *             if the position is outside the grid
+     */
+    static short parsePackedPosition(final String key) {
+        final int length = key.length();
+        int i = 0;
+        while (i < length && !isDigit(key.charAt(i))) {
+            i++;
+        }
+        final int startX = i;
+        while (i < length && isDigit(key.charAt(i))) {
+            i++;
+        }
+        final int endX = i;
+        if (endX == startX || i == length || key.charAt(i) != ',') {
+            return 0;
+        }
+        i++;
+        while (i < length && Character.isWhitespace(key.charAt(i))) {
+            i++;
+        }
+        final int startY = i;
+        while (i < length && isDigit(key.charAt(i))) {
+            i++;
+        }
+        final int endY = i;
+        if (endY == startY) {
+            return 0;
+        }
+        for (; i < length; i++) {
+            if (isDigit(key.charAt(i))) {
+                return 0;
+            }
+        }
+        return pack(parseCoordinate(key, startX, endX, GRID_MAXX, "x"), parseCoordinate(key, startY, endY, GRID_MAXY, "y"));
+    }
+
+    private static int parseCoordinate(final String key, final int start, final int end, final int max, final String name) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + key.charAt(i) - '0';
+            if (value > max) {
+                throw new IllegalArgumentException(name + " outside bounds");
+            }
+        }
+        return value;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Calculate from a list of packed positions (x/y) the coords */
+    static UTFGridPosition getPositionInGrid(final short[] positions, final int count) {
         int minX = GRID_MAXX;
         int maxX = 0;
         int minY = GRID_MAXY;
         int maxY = 0;
-        for (final UTFGridPosition pos : positions) {
-            minX = Math.min(minX, pos.x);
-            maxX = Math.max(maxX, pos.x);
-            minY = Math.min(minY, pos.y);
-            maxY = Math.max(maxY, pos.y);
+        for (int i = 0; i < count; i++) {
+            final int x = getX(positions[i]);
+            final int y = getY(positions[i]);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
         }
         return new UTFGridPosition((minX + maxX) / 2, (minY + maxY) / 2);
     }
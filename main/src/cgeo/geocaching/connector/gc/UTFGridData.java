@@ -0,0 +1,201 @@
+package cgeo.geocaching.connector.gc;
+
+import cgeo.geocaching.files.ParserException;
+import cgeo.geocaching.utils.JsonUtils;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Caches of a live map UTFGrid, parsed with a streaming parser. The grid positions of every cache are stored as
+ * packed shorts (see {@link UTFGrid#pack(int, int)}) instead of {@link UTFGridPosition} objects.
+ *
+ * @see <a href="https://github.com/mapbox/mbtiles-spec/blob/master/1.1/utfgrid.md">Mapbox</a>
+ */
+final class UTFGridData {
+
+    /** flag of a packed position which is occupied by a single cache only */
+    private static final short SINGLE = 0x4000;
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private String[] ids = new String[16];
+    private String[] names = new String[16];
+    private short[][] positions = new short[16][];
+    private int[] positionCounts = new int[16];
+    private int size = 0;
+
+    private UTFGridData() {
+        // use parse()
+    }
+
+    /**
+     * Parse the JSON of a live map UTFGrid.
+     *
+     * Example JSON information
+     * {"grid":[....],
+     * "keys":["","(55, 55)","(55, 54)",...],
+     * "data":{"(55, 55)":[{"i":"gEaR","n":"Spiel & Sport"}],"(55, 54)":[{"i":"gEaR","n":"Spiel & Sport"}],...}
+     * }
+     */
+    @NonNull
+    static UTFGridData parse(@NonNull final String json) throws IOException, ParserException {
+        final JsonParser parser = JsonUtils.reader.getFactory().createParser(json);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ParserException("No JSON object");
+            }
+            int gridRows = 0;
+            boolean hasKeys = false;
+            UTFGridData data = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("grid".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        gridRows++;
+                        parser.skipChildren();
+                    }
+                } else if ("keys".equals(field) && value == JsonToken.START_ARRAY) {
+                    // all keys except the empty one are also contained in the data section
+                    hasKeys = true;
+                    parser.skipChildren();
+                } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    data = new UTFGridData();
+                    data.parseData(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (gridRows != UTFGrid.GRID_MAXY + 1) {
+                throw new ParserException("No grid inside JSON");
+            }
+            if (!hasKeys) {
+                throw new ParserException("No keys inside JSON");
+            }
+            if (data == null) {
+                throw new ParserException("No data inside JSON");
+            }
+            return data;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void parseData(final JsonParser parser) throws IOException {
+        int[] keyCaches = new int[4];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || StringUtils.isBlank(key)) {
+                parser.skipChildren();
+                continue;
+            }
+            final short position = UTFGrid.parsePackedPosition(key);
+            int count = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String id = null;
+                String name = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("i".equals(field)) {
+                        id = parser.getText();
+                    } else if ("n".equals(field)) {
+                        name = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (id != null) {
+                    if (count == keyCaches.length) {
+                        keyCaches = Arrays.copyOf(keyCaches, count * 2);
+                    }
+                    keyCaches[count++] = getIndex(id, name);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                addPosition(keyCaches[i], count == 1 ? (short) (position | SINGLE) : position);
+            }
+        }
+    }
+
+    private int getIndex(@NonNull final String id, final String name) {
+        final Integer existing = indexes.get(id);
+        if (existing != null) {
+            if (name != null) {
+                names[existing] = name;
+            }
+            return existing;
+        }
+        if (size == ids.length) {
+            final int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            positionCounts = Arrays.copyOf(positionCounts, capacity);
+        }
+        ids[size] = id;
+        names[size] = name;
+        positions[size] = new short[8];
+        indexes.put(id, size);
+        return size++;
+    }
+
+    private void addPosition(final int index, final short position) {
+        final int count = positionCounts[index];
+        if (count == positions[index].length) {
+            positions[index] = Arrays.copyOf(positions[index], count * 2);
+        }
+        positions[index][count] = position;
+        positionCounts[index] = count + 1;
+    }
+
+    /**
+     * @return the number of caches in this grid
+     */
+    int size() {
+        return size;
+    }
+
+    String getId(final int index) {
+        return ids[index];
+    }
+
+    String getName(final int index) {
+        return names[index];
+    }
+
+    /**
+     * @return the center of all positions of a cache
+     */
+    @NonNull
+    UTFGridPosition getPositionInGrid(final int index) {
+        return UTFGrid.getPositionInGrid(positions[index], positionCounts[index]);
+    }
+
+    int getPositionCount(final int index) {
+        return positionCounts[index];
+    }
+
+    /**
+     * @return the packed position, see {@link UTFGrid#getX(short)} and {@link UTFGrid#getY(short)}
+     */
+    short getPosition(final int index, final int position) {
+        return positions[index][position];
+    }
+
+    /**
+     * @return {@code true} if no other cache shares this position
+     */
+    boolean isSinglePosition(final int index, final int position) {
+        return (positions[index][position] & SINGLE) != 0;
+    }
+
+}
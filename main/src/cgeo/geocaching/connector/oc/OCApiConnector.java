@@ -1,7 +1,7 @@
 package cgeo.geocaching.connector.oc;
 
 import cgeo.geocaching.SearchResult;
-import cgeo.geocaching.connector.capability.ISearchByGeocode;
+import cgeo.geocaching.connector.capability.ISearchByGeocodes;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.utils.AndroidRxUtils;
@@ -11,12 +11,13 @@ import cgeo.geocaching.utils.DisposableHandler;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.Collection;
 import java.util.concurrent.Callable;
 
 import io.reactivex.Maybe;
 import org.apache.commons.lang3.StringUtils;
 
-public class OCApiConnector extends OCConnector implements ISearchByGeocode {
+public class OCApiConnector extends OCConnector implements ISearchByGeocodes {
 
     // Levels of Okapi we support
     // oldapi is around rev 500
@@ -72,6 +73,12 @@ public class OCApiConnector extends OCConnector implements ISearchByGeocode {
         return new SearchResult(cache);
     }
 
+    @Override
+    @NonNull
+    public SearchResult searchByGeocodes(@NonNull final Collection<String> geocodes) {
+        return new SearchResult(OkapiClient.getCaches(geocodes, this));
+    }
+
     @Override
     public boolean isActive() {
         // currently always active, but only for details download
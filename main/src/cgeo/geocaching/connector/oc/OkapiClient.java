@@ -42,6 +42,7 @@ import android.support.annotation.Nullable;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
@@ -58,6 +59,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import okhttp3.Response;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -74,6 +76,12 @@ final class OkapiClient {
     private static final String PARAMETER_LOG_FIELDS_KEY = "log_fields";
     private static final String PARAMETER_LOG_FIELDS_VALUE = "uuid|date|user|type|comment|images";
 
+    /**
+     * Number of caches whose details are requested at once. OKAPI accepts up to 500 codes, but the response contains
+     * all logs of every cache.
+     */
+    private static final int MAX_CACHES_PER_REQUEST = 50;
+
     private static final char SEPARATOR = '|';
     private static final String SEPARATOR_STRING = Character.toString(SEPARATOR);
     private static final SynchronizedDateFormat LOG_DATE_FORMAT = new SynchronizedDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ", TimeZone.getTimeZone("UTC"), Locale.US);
@@ -177,6 +185,39 @@ final class OkapiClient {
         return result.isSuccess ? parseCache(result.data) : null;
     }
 
+    /**
+     * Download and store the details of many caches, with one request per {@link #MAX_CACHES_PER_REQUEST} caches
+     * instead of one request per cache.
+     *
+     * @return the caches which could be downloaded
+     */
+    @NonNull
+    public static List<Geocache> getCaches(@NonNull final Collection<String> geoCodes, @NonNull final OCApiConnector connector) {
+        final List<Geocache> caches = new ArrayList<>(geoCodes.size());
+        for (final List<String> chunk : ListUtils.partition(new ArrayList<>(geoCodes), MAX_CACHES_PER_REQUEST)) {
+            final Parameters params = new Parameters("cache_codes", StringUtils.join(chunk, SEPARATOR));
+            params.add("fields", getFullFields(connector));
+            params.add("attribution_append", "none");
+            params.add(PARAMETER_LOGCOUNT_KEY, PARAMETER_LOGCOUNT_VALUE);
+            params.add(PARAMETER_LOG_FIELDS_KEY, PARAMETER_LOG_FIELDS_VALUE);
+
+            final JSONResult result = request(connector, OkapiService.SERVICE_CACHES, params);
+            if (!result.isSuccess) {
+                continue;
+            }
+            // the result maps every requested code to its cache, or to null if the cache does not exist
+            for (final JsonNode response : result.data) {
+                if (response.isObject()) {
+                    final Geocache cache = parseCache((ObjectNode) response);
+                    if (StringUtils.isNotBlank(cache.getGeocode())) {
+                        caches.add(cache);
+                    }
+                }
+            }
+        }
+        return caches;
+    }
+
     @NonNull
     public static List<Geocache> getCachesAround(@NonNull final Geopoint center, @NonNull final OCApiConnector connector) {
         final String centerString = GeopointFormatter.format(GeopointFormatter.Format.LAT_DECDEGREE_RAW, center) + SEPARATOR + GeopointFormatter.format(GeopointFormatter.Format.LON_DECDEGREE_RAW, center);
@@ -7,6 +7,7 @@ import android.support.annotation.NonNull;
 
 enum OkapiService {
     SERVICE_CACHE("/okapi/services/caches/geocache", OAuthLevel.Level1),
+    SERVICE_CACHES("/okapi/services/caches/geocaches", OAuthLevel.Level1),
     SERVICE_SEARCH_AND_RETRIEVE("/okapi/services/caches/shortcuts/search_and_retrieve", OAuthLevel.Level1),
     SERVICE_MARK_CACHE("/okapi/services/caches/mark", OAuthLevel.Level3),
     SERVICE_SUBMIT_LOG("/okapi/services/logs/submit", OAuthLevel.Level3),
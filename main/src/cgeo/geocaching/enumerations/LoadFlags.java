@@ -18,7 +18,8 @@ public interface LoadFlags {
         SPOILERS,
         LOGS,
         INVENTORY,
-        OFFLINE_LOG
+        OFFLINE_LOG,
+        BATCHED // load the requested child tables once for all caches instead of once per cache
     }
 
     /** Retrieve cache from CacheCache only. Do not load from DB */
@@ -29,6 +30,10 @@ public interface LoadFlags {
     EnumSet<LoadFlag> LOAD_WAYPOINTS = EnumSet.of(LoadFlag.CACHE_AFTER, LoadFlag.DB_MINIMAL, LoadFlag.WAYPOINTS, LoadFlag.OFFLINE_LOG);
     /** Retrieve cache (all stored informations) from DB only. Do not load from CacheCache */
     EnumSet<LoadFlag> LOAD_ALL_DB_ONLY = EnumSet.range(LoadFlag.DB_MINIMAL, LoadFlag.OFFLINE_LOG);
+    /** Same as {@link #LOAD_WAYPOINTS}, but loading the waypoints of all caches with a single query */
+    EnumSet<LoadFlag> LOAD_WAYPOINTS_BATCHED = EnumSet.of(LoadFlag.CACHE_AFTER, LoadFlag.DB_MINIMAL, LoadFlag.WAYPOINTS, LoadFlag.OFFLINE_LOG, LoadFlag.BATCHED);
+    /** Same as {@link #LOAD_ALL_DB_ONLY}, but loading each child table of all caches with a single query */
+    EnumSet<LoadFlag> LOAD_ALL_DB_ONLY_BATCHED = EnumSet.range(LoadFlag.DB_MINIMAL, LoadFlag.BATCHED);
 
     enum SaveFlag {
         CACHE, // save only to CacheCache
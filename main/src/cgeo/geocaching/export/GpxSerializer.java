@@ -103,7 +103,7 @@ public final class GpxSerializer {
     }
 
     private void exportBatch(final XmlSerializer gpx, @NonNull final Collection<String> geocodesOfBatch) throws IOException {
-        final Set<Geocache> caches = DataStore.loadCaches(geocodesOfBatch, LoadFlags.LOAD_ALL_DB_ONLY);
+        final Set<Geocache> caches = DataStore.loadCaches(geocodesOfBatch, LoadFlags.LOAD_ALL_DB_ONLY_BATCHED);
         for (final Geocache cache : caches) {
             if (cache == null) {
                 continue;
@@ -10,15 +10,35 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 
 import cgeo.geocaching.R;
+import cgeo.geocaching.enumerations.LoadFlags.LoadFlag;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.DisposableHandler;
+import cgeo.geocaching.utils.Log;
 
-abstract class AbstractImportGpxZipThread extends AbstractImportGpxThread {
+/**
+ * Import of the GPX files contained in a ZIP file. The GPX files are parsed concurrently, each one reading its own
+ * stream of the ZIP file, while the parsed caches are stored by a single {@link GPXImportWriter}.
+ */
+abstract class AbstractImportGpxZipThread extends AbstractImportThread {
 
     public static final String ENCODING = "cp437"; // Geocaching.com used windows cp 437 encoding
     private String gpxFileName = null;
@@ -28,49 +48,146 @@ abstract class AbstractImportGpxZipThread extends AbstractImportGpxThread {
     }
 
     @Override
-    protected Collection<Geocache> doImport(final GPXParser parser) throws IOException, ParserException {
-        Collection<Geocache> caches = Collections.emptySet();
-        // can't assume that GPX file comes before waypoint file in zip -> so we need two passes
-        // 1. parse GPX files
-        final ZipArchiveInputStream zisPass1 = new ZipArchiveInputStream(new BufferedInputStream(getInputStream()), ENCODING);
+    protected Collection<Geocache> doImport() throws IOException, ParserException {
+        // can't assume that GPX file comes before waypoint file in zip -> so we need to find all GPX files first
+        final List<Integer> entries = new ArrayList<>();
+        final List<Integer> waypointEntries = new ArrayList<>();
+        String waypointFileName = null;
+        long totalSize = 0;
+        final ZipArchiveInputStream zis = new ZipArchiveInputStream(new BufferedInputStream(getInputStream()), ENCODING);
         try {
-            int acceptedFiles = 0;
             int ignoredFiles = 0;
-            for (ZipEntry zipEntry = zisPass1.getNextZipEntry(); zipEntry != null; zipEntry = zisPass1.getNextZipEntry()) {
-                gpxFileName = zipEntry.getName();
-                if (StringUtils.endsWithIgnoreCase(gpxFileName, GPXImporter.GPX_FILE_EXTENSION)) {
-                    if (!StringUtils.endsWithIgnoreCase(gpxFileName, GPXImporter.WAYPOINTS_FILE_SUFFIX_AND_EXTENSION)) {
-                        importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_FILE, R.string.gpx_import_loading_caches_with_filename, (int) zipEntry.getSize(), getSourceDisplayName()));
-                        caches = parser.parse(new NoCloseInputStream(zisPass1), progressHandler);
-                        acceptedFiles++;
+            int index = 0;
+            for (ZipEntry zipEntry = zis.getNextZipEntry(); zipEntry != null; zipEntry = zis.getNextZipEntry(), index++) {
+                final String name = zipEntry.getName();
+                if (StringUtils.endsWithIgnoreCase(name, GPXImporter.GPX_FILE_EXTENSION)) {
+                    if (StringUtils.endsWithIgnoreCase(name, GPXImporter.WAYPOINTS_FILE_SUFFIX_AND_EXTENSION)) {
+                        waypointEntries.add(index);
+                        if (waypointFileName == null) {
+                            waypointFileName = name;
+                        }
+                    } else {
+                        entries.add(index);
+                        if (gpxFileName == null) {
+                            gpxFileName = name;
+                        }
                     }
+                    totalSize += Math.max(zipEntry.getSize(), 0);
                 } else {
                     ignoredFiles++;
                 }
             }
-            if (ignoredFiles > 0 && acceptedFiles == 0) {
+            if (ignoredFiles > 0 && entries.isEmpty()) {
                 throw new ParserException("Imported ZIP does not contain a GPX file.");
             }
         } finally {
-            IOUtils.closeQuietly(zisPass1);
+            IOUtils.closeQuietly(zis);
+        }
+        // parse the waypoint files last, so that they don't delay the caches if there are less cores than files
+        entries.addAll(waypointEntries);
+        if (entries.isEmpty()) {
+            return Collections.emptySet();
         }
 
-        // 2. parse waypoint files
-        final InputStream inputStream = getInputStream();
-        final ZipArchiveInputStream zisPass2 = new ZipArchiveInputStream(new BufferedInputStream(inputStream), ENCODING);
+        importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_FILE, R.string.gpx_import_loading_caches_with_filename, (int) totalSize, getSourceDisplayName()));
+        final AtomicInteger progress = new AtomicInteger();
+        final GPXImportWriter writer = new GPXImportWriter();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(entries.size(), Runtime.getRuntime().availableProcessors()));
         try {
-            for (ZipEntry zipEntry = zisPass2.getNextZipEntry(); zipEntry != null; zipEntry = zisPass2.getNextZipEntry()) {
-                if (StringUtils.endsWithIgnoreCase(zipEntry.getName(), GPXImporter.WAYPOINTS_FILE_SUFFIX_AND_EXTENSION)) {
-                    importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_WPT_FILE, R.string.gpx_import_loading_waypoints_with_filename, (int) zipEntry.getSize(), zipEntry.getName()));
-                    caches = parser.parse(new NoCloseInputStream(zisPass2), progressHandler);
+            final List<Future<GPXParser>> futures = new ArrayList<>(entries.size());
+            for (final int entry : entries) {
+                futures.add(executor.submit(new Callable<GPXParser>() {
+                    @Override
+                    public GPXParser call() throws IOException, ParserException {
+                        return parseEntry(entry, writer, progress);
+                    }
+                }));
+            }
+            final List<GPXParser> parsers = getParsers(futures);
+            writer.flush();
+
+            // waypoints of caches from other GPX files can only be added now that all caches are stored
+            if (waypointFileName != null) {
+                int waypoints = 0;
+                for (final GPXParser parser : parsers) {
+                    waypoints += parser.getDeferredWaypointCount();
                 }
+                importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_WPT_FILE, R.string.gpx_import_loading_waypoints_with_filename, waypoints, waypointFileName));
+            }
+            final AtomicInteger storedWaypoints = new AtomicInteger();
+            final Set<String> geocodes = new HashSet<>();
+            for (final GPXParser parser : parsers) {
+                parser.storeDeferredWaypoints(progressHandler, storedWaypoints);
+                geocodes.addAll(parser.getParsedGeocodes());
+            }
+            return DataStore.loadCaches(geocodes, EnumSet.of(LoadFlag.DB_MINIMAL));
+        } finally {
+            // after a failure, the remaining parsers must finish before the writer is closed
+            executor.shutdownNow();
+            awaitTermination(executor);
+            writer.close();
+        }
+    }
+
+    private GPXParser parseEntry(final int index, final GPXImportWriter writer, final AtomicInteger progress) throws IOException, ParserException {
+        try {
+            // try to parse the entry as GPX 10
+            return parseEntry(index, new GPX10Parser(listId), writer, progress);
+        } catch (final ParserException ignored) {
+            // didn't work -> lets try GPX11
+            return parseEntry(index, new GPX11Parser(listId), writer, progress);
+        }
+    }
+
+    private GPXParser parseEntry(final int index, final GPXParser parser, final GPXImportWriter writer, final AtomicInteger progress) throws IOException, ParserException {
+        final ZipArchiveInputStream zis = new ZipArchiveInputStream(new BufferedInputStream(getInputStream()), ENCODING);
+        try {
+            ZipEntry zipEntry = zis.getNextZipEntry();
+            for (int i = 0; i < index && zipEntry != null; i++) {
+                zipEntry = zis.getNextZipEntry();
+            }
+            if (zipEntry == null) {
+                throw new IOException("ZIP file changed during import");
             }
+            parser.parse(zis, progressHandler, writer, progress);
+            return parser;
         } finally {
-            IOUtils.closeQuietly(zisPass2);
-            IOUtils.closeQuietly(inputStream);
+            IOUtils.closeQuietly(zis);
+        }
+    }
+
+    private static List<GPXParser> getParsers(final List<Future<GPXParser>> futures) throws IOException, ParserException {
+        final List<GPXParser> parsers = new ArrayList<>(futures.size());
+        try {
+            for (final Future<GPXParser> future : futures) {
+                parsers.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            throw new CancellationException("interrupted while parsing the GPX files");
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ParserException) {
+                throw (ParserException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
         }
+        return parsers;
+    }
 
-        return caches;
+    private static void awaitTermination(final ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                Log.d("AbstractImportGpxZipThread: waiting for the remaining GPX parsers");
+            }
+        } catch (final InterruptedException e) {
+            Log.w("AbstractImportGpxZipThread: interrupted while waiting for the GPX parsers");
+        }
     }
 
     @Override
@@ -0,0 +1,151 @@
+package cgeo.geocaching.files;
+
+import cgeo.geocaching.log.LogEntry;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Writer stage of a GPX import. Parsers hand over batches of parsed caches, which are stored in the database by a
+ * single thread. The queue between the parsers and the writer is bounded, so that fast parsers cannot pile up an
+ * unlimited number of caches in memory while the database is busy.
+ */
+final class GPXImportWriter {
+
+    /**
+     * Number of batches which may wait for the writer.
+     */
+    private static final int QUEUE_CAPACITY = 4;
+
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    @Nullable private volatile RuntimeException failure = null;
+
+    private static final class Batch {
+        @NonNull final Collection<Geocache> caches;
+        @NonNull final Map<String, List<LogEntry>> logs;
+        /** signaled after storing, if the batch is only used to wait for the writer */
+        @Nullable final CountDownLatch stored;
+        final boolean last;
+
+        Batch(@NonNull final Collection<Geocache> caches, @NonNull final Map<String, List<LogEntry>> logs, @Nullable final CountDownLatch stored, final boolean last) {
+            this.caches = caches;
+            this.logs = logs;
+            this.stored = stored;
+            this.last = last;
+        }
+    }
+
+    GPXImportWriter() {
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, "gpx-import-writer");
+        writerThread.start();
+    }
+
+    private void writeBatches() {
+        while (true) {
+            final Batch batch;
+            try {
+                batch = queue.take();
+            } catch (final InterruptedException e) {
+                Log.w("GPXImportWriter: interrupted");
+                return;
+            }
+            try {
+                DataStore.saveImportedCaches(batch.caches, batch.logs);
+            } catch (final RuntimeException e) {
+                // keep draining the queue, otherwise the parsers would block forever
+                Log.e("GPXImportWriter: storing caches failed", e);
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            if (batch.stored != null) {
+                batch.stored.countDown();
+            }
+            if (batch.last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand over caches to be stored in the database. Blocks while the queue is full. The given collections are copied,
+     * so the caller may reuse them.
+     *
+     * @param caches
+     *            the caches to store
+     * @param logs
+     *            the logs to store, by geocode
+     */
+    void store(@NonNull final Collection<Geocache> caches, @NonNull final Map<String, List<LogEntry>> logs) {
+        if (caches.isEmpty()) {
+            return;
+        }
+        put(new Batch(new ArrayList<>(caches), new HashMap<>(logs), null, false));
+    }
+
+    /**
+     * Wait until all caches handed over so far are stored in the database.
+     */
+    void flush() {
+        final CountDownLatch stored = new CountDownLatch(1);
+        put(new Batch(Collections.<Geocache> emptyList(), Collections.<String, List<LogEntry>> emptyMap(), stored, false));
+        await(stored);
+        throwFailure();
+    }
+
+    /**
+     * Store all remaining caches and stop the writer thread. Failures are only reported by {@link #flush()}, so this
+     * can be called in a finally block.
+     */
+    void close() {
+        put(new Batch(Collections.<Geocache> emptyList(), Collections.<String, List<LogEntry>> emptyMap(), null, true));
+        try {
+            writerThread.join();
+        } catch (final InterruptedException e) {
+            throw new CancellationException("interrupted while waiting for the GPX import writer");
+        }
+    }
+
+    private void put(@NonNull final Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (final InterruptedException e) {
+            throw new CancellationException("interrupted while waiting for the GPX import writer");
+        }
+    }
+
+    private static void await(@NonNull final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            throw new CancellationException("interrupted while waiting for the GPX import writer");
+        }
+    }
+
+    private void throwFailure() {
+        final RuntimeException e = failure;
+        if (e != null) {
+            throw e;
+        }
+    }
+}
@@ -12,8 +12,6 @@ import cgeo.geocaching.enumerations.CacheSize;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.LoadFlag;
-import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
-import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
 import cgeo.geocaching.enumerations.WaypointType;
 import cgeo.geocaching.list.StoredList;
 import cgeo.geocaching.location.Geopoint;
@@ -48,10 +46,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.CharEncoding;
@@ -98,6 +100,11 @@ abstract class GPXParser extends FileParser {
 
     private static final Pattern PATTERN_MILLISECONDS = Pattern.compile("\\.\\d{3,7}");
 
+    /**
+     * Number of parsed caches which are stored in the database together in one transaction.
+     */
+    private static final int IMPORT_BATCH_SIZE = 200;
+
     private int listId = StoredList.STANDARD_LIST_ID;
     protected final String namespace;
     private final String version;
@@ -121,6 +128,23 @@ abstract class GPXParser extends FileParser {
      * Parser result. Maps geocode to cache.
      */
     private final Set<String> result = new HashSet<>(100);
+    /**
+     * Parsed caches (and parent caches of parsed waypoints) not yet stored in the database. Maps geocode to cache.
+     */
+    private final Map<String, Geocache> pendingCaches = new LinkedHashMap<>();
+    /**
+     * Logs of the pending caches. Maps geocode to logs.
+     */
+    private final Map<String, List<LogEntry>> pendingLogs = new HashMap<>();
+    /**
+     * Writer stage storing the pending caches, if parsing runs concurrently with storing.
+     */
+    @Nullable private GPXImportWriter writer = null;
+    /**
+     * Waypoints whose parent cache may not be stored yet when parsing concurrently with storing.
+     */
+    private final List<DeferredWaypoint> deferredWaypoints = new ArrayList<>();
+    @Nullable private AtomicInteger sharedProgress = null;
     private ProgressInputStream progressStream;
     /**
      * URL contained in the header of the GPX file. Used to guess where the file is coming from.
@@ -139,6 +163,18 @@ abstract class GPXParser extends FileParser {
      */
     private boolean terraChildWaypoint = false;
 
+    private static final class DeferredWaypoint {
+        @NonNull final String parentCacheCode;
+        @NonNull final String name;
+        @NonNull final Waypoint waypoint;
+
+        DeferredWaypoint(@NonNull final String parentCacheCode, @NonNull final String name, @NonNull final Waypoint waypoint) {
+            this.parentCacheCode = parentCacheCode;
+            this.name = name;
+            this.waypoint = waypoint;
+        }
+    }
+
     private final class UserDataListener implements EndTextElementListener {
         private final int index;
 
@@ -175,6 +211,69 @@ abstract class GPXParser extends FileParser {
     @Override
     @NonNull
     public Collection<Geocache> parse(@NonNull final InputStream stream, @Nullable final DisposableHandler progressHandler) throws IOException, ParserException {
+        parseCaches(stream, progressHandler);
+        return DataStore.loadCaches(result, EnumSet.of(LoadFlag.DB_MINIMAL));
+    }
+
+    /**
+     * Parse caches and hand them over to a writer stage, which may be shared with other parsers running concurrently.
+     * Waypoints of caches not parsed from the same stream are kept until
+     * {@link #storeDeferredWaypoints(DisposableHandler, AtomicInteger)} is called after all caches have been stored.
+     *
+     * @param sharedProgress
+     *            progress in bytes, shared with the other parsers
+     */
+    void parse(@NonNull final InputStream stream, @Nullable final DisposableHandler progressHandler, @NonNull final GPXImportWriter writer, @Nullable final AtomicInteger sharedProgress) throws IOException, ParserException {
+        this.writer = writer;
+        this.sharedProgress = sharedProgress;
+        try {
+            parseCaches(stream, progressHandler);
+        } finally {
+            this.writer = null;
+            this.sharedProgress = null;
+        }
+    }
+
+    /**
+     * @return the geocodes of all caches parsed so far
+     */
+    @NonNull
+    Set<String> getParsedGeocodes() {
+        return Collections.unmodifiableSet(result);
+    }
+
+    int getDeferredWaypointCount() {
+        return deferredWaypoints.size();
+    }
+
+    /**
+     * Add the waypoints kept by {@link #parse(InputStream, DisposableHandler, GPXImportWriter, AtomicInteger)} to their
+     * parent caches. Must only be called when all caches have been stored.
+     *
+     * @param storedWaypoints
+     *            progress in number of waypoints, shared with the other parsers
+     */
+    void storeDeferredWaypoints(@Nullable final DisposableHandler progressHandler, @NonNull final AtomicInteger storedWaypoints) {
+        try {
+            for (final DeferredWaypoint deferred : deferredWaypoints) {
+                parentCacheCode = deferred.parentCacheCode;
+                final Geocache cacheForWaypoint = findParentCache();
+                if (cacheForWaypoint != null) {
+                    mergeWaypoint(cacheForWaypoint, deferred.name, deferred.waypoint);
+                    if (pendingCaches.size() >= IMPORT_BATCH_SIZE) {
+                        storePendingCaches();
+                    }
+                }
+                showProgressMessage(progressHandler, storedWaypoints.incrementAndGet());
+            }
+        } finally {
+            deferredWaypoints.clear();
+            parentCacheCode = null;
+            storeRemainingCaches();
+        }
+    }
+
+    private void parseCaches(@NonNull final InputStream stream, @Nullable final DisposableHandler progressHandler) throws IOException, ParserException {
         // when importing a ZIP, reset the child waypoint state
         terraChildWaypoint = false;
 
@@ -251,13 +350,16 @@ abstract class GPXParser extends FileParser {
                     // modify cache depending on the use case/connector
                     afterParsing(cache);
 
-                    // finally store the cache in the database
+                    // finally store the cache in the database, together with the next caches
+                    if (pendingCaches.containsKey(geocode)) {
+                        storePendingCaches();
+                    }
                     result.add(geocode);
-                    DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
-                    DataStore.saveLogs(cache.getGeocode(), logs);
-
-                    // avoid the cachecache using lots of memory for caches which the user did not actually look at
-                    DataStore.removeCache(geocode, EnumSet.of(RemoveFlag.CACHE));
+                    pendingCaches.put(geocode, cache);
+                    pendingLogs.put(geocode, logs);
+                    if (pendingCaches.size() >= IMPORT_BATCH_SIZE) {
+                        storePendingCaches();
+                    }
                     showProgressMessage(progressHandler, progressStream.getProgress());
                 } else if (StringUtils.isNotBlank(cache.getName())
  && (StringUtils.containsIgnoreCase(type, "waypoint") || terraChildWaypoint)) {
@@ -285,27 +387,27 @@ abstract class GPXParser extends FileParser {
                         cache.setShortDescription("");
                     }
 
+                    final Waypoint waypoint = new Waypoint(cache.getShortDescription(), WaypointType.fromGPXString(sym), false);
+                    if (wptUserDefined) {
+                        waypoint.setUserDefined();
+                    }
+                    waypoint.setId(-1);
+                    waypoint.setGeocode(parentCacheCode);
+                    waypoint.setLookup("---");
+                    // there is no lookup code in gpx file
+                    waypoint.setCoords(cache.getCoords());
+                    waypoint.setNote(cache.getDescription());
+                    waypoint.setVisited(wptVisited);
+
+                    if (writer != null && !pendingCaches.containsKey(parentCacheCode)) {
+                        // the parent cache may still be waiting for the writer, or be parsed by another parser
+                        deferredWaypoints.add(new DeferredWaypoint(parentCacheCode, cache.getName(), waypoint));
+                        showProgressMessage(progressHandler, progressStream.getProgress());
+                        return;
+                    }
                     final Geocache cacheForWaypoint = findParentCache();
                     if (cacheForWaypoint != null) {
-                        final Waypoint waypoint = new Waypoint(cache.getShortDescription(), WaypointType.fromGPXString(sym), false);
-                        if (wptUserDefined) {
-                            waypoint.setUserDefined();
-                        }
-                        waypoint.setId(-1);
-                        waypoint.setGeocode(parentCacheCode);
-                        waypoint.setPrefix(cacheForWaypoint.getWaypointPrefix(cache.getName()));
-                        waypoint.setLookup("---");
-                        // there is no lookup code in gpx file
-                        waypoint.setCoords(cache.getCoords());
-                        waypoint.setNote(cache.getDescription());
-                        waypoint.setVisited(wptVisited);
-                        final List<Waypoint> mergedWayPoints = new ArrayList<>(cacheForWaypoint.getWaypoints());
-
-                        final List<Waypoint> newPoints = new ArrayList<>();
-                        newPoints.add(waypoint);
-                        Waypoint.mergeWayPoints(newPoints, mergedWayPoints, true);
-                        cacheForWaypoint.setWaypoints(newPoints, false);
-                        DataStore.saveCache(cacheForWaypoint, EnumSet.of(SaveFlag.DB));
+                        mergeWaypoint(cacheForWaypoint, cache.getName(), waypoint);
                         showProgressMessage(progressHandler, progressStream.getProgress());
                     }
                 }
@@ -742,12 +844,49 @@ abstract class GPXParser extends FileParser {
         }
 
         try {
-            progressStream = new ProgressInputStream(stream);
+            progressStream = new ProgressInputStream(stream, sharedProgress);
             final BufferedReader reader = new BufferedReader(new InputStreamReader(progressStream, CharEncoding.UTF_8));
             Xml.parse(new InvalidXMLCharacterFilterReader(reader), root.getContentHandler());
-            return DataStore.loadCaches(result, EnumSet.of(LoadFlag.DB_MINIMAL));
         } catch (final SAXException e) {
             throw new ParserException("Cannot parse .gpx file as GPX " + version + ": could not parse XML", e);
+        } finally {
+            // also store the caches parsed before an error or a cancellation
+            storeRemainingCaches();
+        }
+    }
+
+    private void storePendingCaches() {
+        if (writer != null) {
+            writer.store(pendingCaches.values(), pendingLogs);
+        } else {
+            DataStore.saveImportedCaches(pendingCaches.values(), pendingLogs);
+        }
+        pendingCaches.clear();
+        pendingLogs.clear();
+    }
+
+    /**
+     * Store the pending caches when leaving a parsing step. Errors are only logged, so that they do not hide the error
+     * which ended the parsing.
+     */
+    private void storeRemainingCaches() {
+        try {
+            storePendingCaches();
+        } catch (final RuntimeException e) {
+            Log.e("GPXParser: cannot store the remaining caches", e);
+        }
+    }
+
+    private void mergeWaypoint(@NonNull final Geocache cacheForWaypoint, @NonNull final String waypointName, @NonNull final Waypoint waypoint) {
+        waypoint.setPrefix(cacheForWaypoint.getWaypointPrefix(waypointName));
+        final List<Waypoint> mergedWayPoints = new ArrayList<>(cacheForWaypoint.getWaypoints());
+
+        final List<Waypoint> newPoints = new ArrayList<>();
+        newPoints.add(waypoint);
+        Waypoint.mergeWayPoints(newPoints, mergedWayPoints, true);
+        cacheForWaypoint.setWaypoints(newPoints, false);
+        if (!pendingCaches.containsKey(cacheForWaypoint.getGeocode())) {
+            pendingCaches.put(cacheForWaypoint.getGeocode(), cacheForWaypoint);
         }
     }
 
@@ -1167,10 +1306,18 @@ abstract class GPXParser extends FileParser {
         if (StringUtils.isBlank(parentCacheCode)) {
             return null;
         }
-        // first match by geocode only
-        Geocache cacheForWaypoint = DataStore.loadCache(parentCacheCode, LoadFlags.LOAD_CACHE_OR_DB);
+        // first match by geocode only, preferring the caches not yet stored
+        Geocache cacheForWaypoint = pendingCaches.get(parentCacheCode);
+        if (cacheForWaypoint == null) {
+            cacheForWaypoint = DataStore.loadCache(parentCacheCode, LoadFlags.LOAD_CACHE_OR_DB);
+        }
         if (cacheForWaypoint == null) {
             // then match by title
+            for (final Geocache pendingCache : pendingCaches.values()) {
+                if (parentCacheCode.equals(pendingCache.getName())) {
+                    return pendingCache;
+                }
+            }
             final String geocode = DataStore.getGeocodeForTitle(parentCacheCode);
             if (StringUtils.isNotBlank(geocode)) {
                 cacheForWaypoint = DataStore.loadCache(geocode, LoadFlags.LOAD_CACHE_OR_DB);
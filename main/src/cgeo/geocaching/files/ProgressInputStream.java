@@ -3,6 +3,7 @@ package cgeo.geocaching.files;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Stream to measure progress of reading automatically.
@@ -15,9 +16,18 @@ import java.io.InputStream;
 public class ProgressInputStream extends FilterInputStream {
 
     private int progress = 0;
+    /**
+     * progress of several streams read concurrently, e.g. the entries of a ZIP file
+     */
+    private final AtomicInteger sharedProgress;
 
     protected ProgressInputStream(final InputStream in) {
+        this(in, null);
+    }
+
+    protected ProgressInputStream(final InputStream in, final AtomicInteger sharedProgress) {
         super(in);
+        this.sharedProgress = sharedProgress;
     }
 
     @Override
@@ -25,6 +35,9 @@ public class ProgressInputStream extends FilterInputStream {
         final int read = super.read();
         if (read >= 0) {
             progress++;
+            if (sharedProgress != null) {
+                sharedProgress.incrementAndGet();
+            }
         }
         return read;
     }
@@ -33,11 +46,17 @@ public class ProgressInputStream extends FilterInputStream {
     public int read(final byte[] buffer, final int offset, final int count) throws IOException {
         final int read = super.read(buffer, offset, count);
         progress += read;
+        if (sharedProgress != null && read > 0) {
+            sharedProgress.addAndGet(read);
+        }
         return read;
     }
 
+    /**
+     * @return the number of bytes read from this stream, or from all streams sharing the progress
+     */
     int getProgress() {
-        return progress;
+        return sharedProgress != null ? sharedProgress.get() : progress;
     }
 
 }
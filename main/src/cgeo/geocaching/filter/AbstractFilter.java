@@ -2,14 +2,17 @@ package cgeo.geocaching.filter;
 
 import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore;
 
 import android.support.annotation.NonNull;
 
 import android.os.Parcel;
+import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 abstract class AbstractFilter implements IFilter {
     @NonNull
@@ -27,15 +30,46 @@ abstract class AbstractFilter implements IFilter {
         name = in.readString();
     }
 
+    /**
+     * Filter the stored caches with a single database query if the filter has a condition for it, and all other caches
+     * in memory.
+     */
     @Override
     public void filter(@NonNull final List<Geocache> list) {
-        final List<Geocache> itemsToRemove = new ArrayList<>();
+        final Set<String> acceptedStored = filterStored(list);
+        final List<Geocache> accepted = new ArrayList<>(list.size());
         for (final Geocache item : list) {
-            if (!accepts(item)) {
-                itemsToRemove.add(item);
+            if ((acceptedStored != null && item.isOffline()) ? acceptedStored.contains(item.getGeocode()) : accepts(item)) {
+                accepted.add(item);
             }
         }
-        list.removeAll(itemsToRemove);
+        list.clear();
+        list.addAll(accepted);
+    }
+
+    /**
+     * @return the geocodes of the stored caches of the list accepted by the filter, or {@code null} if the filter has
+     *         no condition for the database
+     */
+    @Nullable
+    private Set<String> filterStored(@NonNull final List<Geocache> list) {
+        final String sqlWhere = getSqlWhere();
+        if (sqlWhere == null) {
+            return null;
+        }
+        final List<String> geocodes = new ArrayList<>();
+        for (final Geocache item : list) {
+            if (item.isOffline()) {
+                geocodes.add(item.getGeocode());
+            }
+        }
+        return DataStore.filterGeocodes(geocodes, sqlWhere);
+    }
+
+    @Override
+    @Nullable
+    public String getSqlWhere() {
+        return null;
     }
 
     @Override
@@ -3,6 +3,7 @@ package cgeo.geocaching.filter;
 import cgeo.geocaching.CgeoApplication;
 
 import android.os.Parcel;
+import android.support.annotation.NonNull;
 import android.support.annotation.StringRes;
 
 import java.util.Locale;
@@ -25,6 +26,14 @@ abstract class AbstractRangeFilter extends AbstractFilter {
         rangeMax = in.readFloat();
     }
 
+    /**
+     * @return the condition for the range on the given column of the caches table
+     */
+    @NonNull
+    protected String getSqlWhere(@NonNull final String column) {
+        return column + " >= " + rangeMin + " AND " + column + " < " + rangeMax;
+    }
+
     @Override
     public void writeToParcel(final Parcel dest, final int flags) {
         super.writeToParcel(dest, flags);
@@ -3,6 +3,7 @@ package cgeo.geocaching.filter;
 import cgeo.geocaching.enumerations.CacheAttribute;
 import cgeo.geocaching.models.Geocache;
 
+import android.database.DatabaseUtils;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
@@ -42,6 +43,12 @@ class AttributeFilter extends AbstractFilter {
         return cache.getAttributes().contains(attribute);
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return "geocode IN (SELECT geocode FROM cg_attributes WHERE attribute = " + DatabaseUtils.sqlEscapeString(attribute) + ")";
+    }
+
     public static class Factory implements IFilterFactory {
 
         @Override
@@ -42,6 +42,12 @@ class DifficultyFilter extends AbstractRangeFilter {
         return rangeMin <= difficulty && difficulty < rangeMax;
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return getSqlWhere("difficulty");
+    }
+
     public static class Factory implements IFilterFactory {
 
         private static final int DIFFICULTY_MIN = 1;
@@ -3,6 +3,7 @@ package cgeo.geocaching.filter;
 import cgeo.geocaching.models.Geocache;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import android.os.Parcelable;
 
@@ -18,6 +19,13 @@ public interface IFilter extends Parcelable {
      */
     boolean accepts(@NonNull final Geocache cache);
 
+    /**
+     * @return a condition on the columns of the caches table of the database which is {@code true} exactly for the
+     *         stored caches accepted by this filter, or {@code null} if the filter can only be applied in memory
+     */
+    @Nullable
+    String getSqlWhere();
+
     void filter(@NonNull final List<Geocache> list);
 
 }
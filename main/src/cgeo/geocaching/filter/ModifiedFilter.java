@@ -40,6 +40,12 @@ class ModifiedFilter extends AbstractFilter implements IFilterFactory {
         return cache.hasUserModifiedCoords() || cache.hasFinalDefined();
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return "coordsChanged = 1 OR finalDefined = 1";
+    }
+
     @Override
     @NonNull
     public List<IFilter> getFilters() {
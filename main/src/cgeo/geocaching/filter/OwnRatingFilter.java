@@ -44,6 +44,12 @@ public class OwnRatingFilter extends AbstractFilter implements IFilterFactory {
         return cache.getMyVote() > 0;
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return "myvote > 0";
+    }
+
     @Override
     @NonNull
     public List<IFilter> getFilters() {
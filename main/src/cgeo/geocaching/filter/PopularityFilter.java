@@ -43,6 +43,12 @@ class PopularityFilter extends AbstractFilter {
         return cache.getFavoritePoints() > minFavorites;
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return "favourite_cnt > " + minFavorites;
+    }
+
     public static class Factory implements IFilterFactory {
 
         private static final int[] FAVORITES = { 10, 20, 50, 100, 200, 500 };
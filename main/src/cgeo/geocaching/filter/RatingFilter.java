@@ -41,4 +41,10 @@ public class RatingFilter extends AbstractFilter {
     public boolean accepts(@NonNull final Geocache cache) {
         return cache.getRating() > 0;
     }
+
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return "rating > 0";
+    }
 }
@@ -3,6 +3,7 @@ package cgeo.geocaching.filter;
 import cgeo.geocaching.enumerations.CacheSize;
 import cgeo.geocaching.models.Geocache;
 
+import android.database.DatabaseUtils;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
@@ -41,6 +42,12 @@ class SizeFilter extends AbstractFilter {
         return cacheSize == cache.getSize();
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return "size = " + DatabaseUtils.sqlEscapeString(cacheSize.id);
+    }
+
     @Override
     @NonNull
     public String getName() {
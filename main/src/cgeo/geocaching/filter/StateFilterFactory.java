@@ -46,6 +46,12 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isArchived();
         }
+
+        @Override
+        @NonNull
+        public String getSqlWhere() {
+            return "archived = 1";
+        }
     }
 
     static class StateDisabledFilter extends AbstractFilter {
@@ -76,6 +82,12 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isDisabled() && !cache.isArchived();
         }
+
+        @Override
+        @NonNull
+        public String getSqlWhere() {
+            return "disabled = 1 AND archived = 0";
+        }
     }
 
     static class StateFoundFilter extends AbstractFilter {
@@ -105,6 +117,12 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isFound();
         }
+
+        @Override
+        @NonNull
+        public String getSqlWhere() {
+            return "found = 1";
+        }
     }
 
     static class StateFoundLastMonthFilter extends AbstractFilter {
@@ -221,6 +239,12 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return !cache.isPremiumMembersOnly();
         }
+
+        @Override
+        @NonNull
+        public String getSqlWhere() {
+            return "members = 0";
+        }
     }
 
     static class StateNotFoundFilter extends AbstractFilter {
@@ -250,6 +274,12 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return !cache.isFound();
         }
+
+        @Override
+        @NonNull
+        public String getSqlWhere() {
+            return "found = 0";
+        }
     }
 
     static class StateNotStoredFilter extends AbstractFilter {
@@ -310,6 +340,12 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isPremiumMembersOnly();
         }
+
+        @Override
+        @NonNull
+        public String getSqlWhere() {
+            return "members = 1";
+        }
     }
 
     static class StateStoredFilter extends AbstractFilter {
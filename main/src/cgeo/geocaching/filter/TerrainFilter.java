@@ -30,6 +30,12 @@ class TerrainFilter extends AbstractRangeFilter {
         return rangeMin <= terrain && terrain < rangeMax;
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return getSqlWhere("terrain");
+    }
+
     public static class Factory implements IFilterFactory {
         private static final int TERRAIN_MIN = 1;
         private static final int TERRAIN_MAX = 7;
@@ -5,6 +5,7 @@ import cgeo.geocaching.models.Geocache;
 
 import android.support.annotation.NonNull;
 
+import android.database.DatabaseUtils;
 import android.os.Parcel;
 import android.os.Parcelable;
 
@@ -29,6 +30,12 @@ class TypeFilter extends AbstractFilter {
         return cacheType == cache.getType();
     }
 
+    @Override
+    @NonNull
+    public String getSqlWhere() {
+        return "type = " + DatabaseUtils.sqlEscapeString(cacheType.id);
+    }
+
     @Override
     @NonNull
     public String getName() {
@@ -145,6 +145,22 @@ public final class Viewport {
                 .append(prefix).append("longitude <= ").append(getLongitudeMax());
     }
 
+    /**
+     * Return an SQL selection for an R*-tree table storing entries as (minLat, maxLat, minLon, maxLon) boxes.
+     *
+     * @param dbTable
+     *            the R*-tree table name, or null to omit the table prefix
+     * @return a selection matching all the entries inside this viewport
+     */
+    @NonNull
+    public StringBuilder sqlRTreeWhere(@Nullable final String dbTable) {
+        final String prefix = dbTable == null ? "" : (dbTable + ".");
+        return new StringBuilder(prefix).append("minLat >= ").append(getLatitudeMin()).append(" and ")
+                .append(prefix).append("maxLat <= ").append(getLatitudeMax()).append(" and ")
+                .append(prefix).append("minLon >= ").append(getLongitudeMin()).append(" and ")
+                .append(prefix).append("maxLon <= ").append(getLongitudeMax());
+    }
+
     /**
      * Return a widened or shrunk viewport.
      *
@@ -13,6 +13,7 @@ import android.content.res.Resources;
 import android.view.View;
 import android.widget.TextView;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -24,6 +25,8 @@ public class CacheLogsViewCreator extends LogsViewCreator {
     private final boolean allLogs;
     private final Resources res = CgeoApplication.getInstance().getResources();
     private final CacheDetailActivity cacheDetailActivity;
+    /** the logs of the current view */
+    private List<LogEntry> logs = Collections.emptyList();
 
     public CacheLogsViewCreator(final CacheDetailActivity cacheDetailActivity, final boolean allLogs) {
         super(cacheDetailActivity);
@@ -38,17 +41,31 @@ public class CacheLogsViewCreator extends LogsViewCreator {
     @Override
     protected List<LogEntry> getLogs() {
         final Geocache cache = getCache();
-        final List<LogEntry> logs = allLogs ? cache.getLogs() : cache.getFriendsLogs();
-        return addOwnOfflineLog(cache, logs);
+        logs = addOwnOfflineLog(cache, cache.getPagedLogs(!allLogs));
+        return logs;
     }
 
+    /**
+     * @param logsIn
+     *            the logs of the cache, which are only loaded when accessed
+     */
     private List<LogEntry> addOwnOfflineLog(final Geocache cache, final List<LogEntry> logsIn) {
         final LogEntry log = DataStore.loadLogOffline(cache.getGeocode());
-        final List<LogEntry> logs = new ArrayList<>(logsIn);
-        if (log != null) {
-            logs.add(0, log.buildUpon().setAuthor(res.getString(R.string.log_your_saved_log)).build());
+        if (log == null) {
+            return logsIn;
         }
-        return logs;
+        final LogEntry offlineLog = log.buildUpon().setAuthor(res.getString(R.string.log_your_saved_log)).build();
+        return new AbstractList<LogEntry>() {
+            @Override
+            public LogEntry get(final int location) {
+                return location == 0 ? offlineLog : logsIn.get(location - 1);
+            }
+
+            @Override
+            public int size() {
+                return logsIn.size() + 1;
+            }
+        };
     }
 
     @Override
@@ -91,7 +108,7 @@ public class CacheLogsViewCreator extends LogsViewCreator {
     }
 
     private void addEmptyLogsHeader() {
-        if (getLogs().isEmpty()) {
+        if (logs.isEmpty()) {
             final TextView countView = new TextView(activity);
             countView.setText(res.getString(R.string.log_empty_logbook));
             view.addHeaderView(countView, null, false);
@@ -0,0 +1,121 @@
+package cgeo.geocaching.log;
+
+import cgeo.geocaching.storage.DataStore;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * All stored logs of a cache, loaded from the database page by page when they are accessed, e.g. while scrolling
+ * through the logs of the cache details. Only the most recently used pages are kept in memory. When a log in the second
+ * half of a page is accessed, the following page is loaded in the background.
+ * <p>
+ * The size of the list is determined on creation. The list has to be recreated after the logs of the cache have been
+ * saved again.
+ * </p>
+ */
+public class PagedLogList extends AbstractList<LogEntry> {
+
+    static final int PAGE_SIZE = 25;
+    private static final int MAX_PAGES = 4;
+
+    /**
+     * Shown if the logs have been changed in the database since the creation of the list.
+     */
+    private static final LogEntry MISSING_LOG = new LogEntry.Builder().setAuthor("?").build();
+
+    @NonNull private final String geocode;
+    private final boolean friendsOnly;
+    private final int size;
+
+    /** the most recently used pages by page number, guarded by itself */
+    private final Map<Integer, List<LogEntry>> pages = new LinkedHashMap<Integer, List<LogEntry>>(MAX_PAGES + 1, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, List<LogEntry>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    /** pages being loaded in the background, guarded by {@link #pages} */
+    private final Set<Integer> prefetching = new HashSet<>();
+
+    /**
+     * @param friendsOnly
+     *            contain only the logs of friends
+     */
+    public PagedLogList(@NonNull final String geocode, final boolean friendsOnly) {
+        this.geocode = geocode;
+        this.friendsOnly = friendsOnly;
+        size = DataStore.getLogCount(geocode, friendsOnly);
+    }
+
+    @Override
+    public LogEntry get(final int location) {
+        if (location < 0 || location >= size) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + size);
+        }
+        final int pageNumber = location / PAGE_SIZE;
+        final int index = location % PAGE_SIZE;
+        final List<LogEntry> page = getPage(pageNumber);
+        if (index >= PAGE_SIZE / 2) {
+            prefetch(pageNumber + 1);
+        }
+        return index < page.size() ? page.get(index) : MISSING_LOG;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @NonNull
+    private List<LogEntry> getPage(final int pageNumber) {
+        final LogEntry previous;
+        synchronized (pages) {
+            final List<LogEntry> page = pages.get(pageNumber);
+            if (page != null) {
+                return page;
+            }
+            final List<LogEntry> previousPage = pages.get(pageNumber - 1);
+            previous = previousPage != null && previousPage.size() == PAGE_SIZE ? previousPage.get(PAGE_SIZE - 1) : null;
+        }
+        final List<LogEntry> page = DataStore.loadLogPage(geocode, friendsOnly, previous, pageNumber * PAGE_SIZE, PAGE_SIZE);
+        synchronized (pages) {
+            pages.put(pageNumber, page);
+        }
+        return page;
+    }
+
+    private void prefetch(final int pageNumber) {
+        if (pageNumber * PAGE_SIZE >= size) {
+            return;
+        }
+        synchronized (pages) {
+            if (pages.containsKey(pageNumber) || !prefetching.add(pageNumber)) {
+                return;
+            }
+        }
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getPage(pageNumber);
+                } finally {
+                    synchronized (pages) {
+                        prefetching.remove(pageNumber);
+                    }
+                }
+            }
+        });
+    }
+
+}
@@ -9,7 +9,6 @@ import cgeo.geocaching.compatibility.Compatibility;
 import cgeo.geocaching.connector.ConnectorFactory;
 import cgeo.geocaching.connector.gc.GCLogin;
 import cgeo.geocaching.connector.gc.MapTokens;
-import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
@@ -84,14 +83,24 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import butterknife.ButterKnife;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -117,7 +126,6 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     private static final String BUNDLE_MAP_SOURCE = "mapSource";
     private static final String BUNDLE_MAP_STATE = "mapState";
     private static final String BUNDLE_LIVE_ENABLED = "liveEnabled";
-    private static final String BUNDLE_TRAIL_HISTORY = "trailHistory";
 
     // Those are initialized in onCreate() and will never be null afterwards
     private Resources res;
@@ -143,6 +151,11 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     private volatile long loadThreadRun = 0L;
     //Interthread communication flag
     private volatile boolean downloaded = false;
+    /**
+     * Viewports to download the caches for. A download is superseded by the download of the next viewport.
+     */
+    private final Subject<Viewport> downloadRequests = PublishSubject.<Viewport> create().toSerialized();
+    private volatile boolean downloading = false;
 
     /** Count of caches currently visible */
     private int cachesCnt = 0;
@@ -168,11 +181,13 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
      * if live map is enabled, this is the minimum zoom level, independent of the stored setting
      */
     private static final int MIN_LIVEMAP_ZOOM = 12;
+    /**
+     * time the map must rest before the caches of a new viewport are downloaded
+     */
+    private static final long DOWNLOAD_DELAY_MS = 500;
     // Thread pooling
     private static final BlockingQueue<Runnable> displayQueue = new ArrayBlockingQueue<>(1);
     private static final ThreadPoolExecutor displayExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, displayQueue, new ThreadPoolExecutor.DiscardOldestPolicy());
-    private static final BlockingQueue<Runnable> downloadQueue = new ArrayBlockingQueue<>(1);
-    private static final ThreadPoolExecutor downloadExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, downloadQueue, new ThreadPoolExecutor.DiscardOldestPolicy());
     private static final BlockingQueue<Runnable> loadQueue = new ArrayBlockingQueue<>(1);
     private static final ThreadPoolExecutor loadExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, loadQueue, new ThreadPoolExecutor.DiscardOldestPolicy());
     private MapOptions mapOptions;
@@ -399,7 +414,6 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         outState.putInt(BUNDLE_MAP_SOURCE, currentSourceId);
         outState.putParcelable(BUNDLE_MAP_STATE, currentMapState());
         outState.putBoolean(BUNDLE_LIVE_ENABLED, mapOptions.isLiveEnabled);
-        outState.putParcelableArrayList(BUNDLE_TRAIL_HISTORY, overlayPositionAndScale.getHistory());
     }
 
     @Override
@@ -417,14 +431,11 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         final Bundle extras = activity.getIntent().getExtras();
         mapOptions = new MapOptions(activity, extras);
 
-        ArrayList<Location> trailHistory = null;
-
         // Get fresh map information from the bundle if any
         if (savedInstanceState != null) {
             currentSourceId = savedInstanceState.getInt(BUNDLE_MAP_SOURCE, Settings.getMapSource().getNumericalId());
             mapOptions.mapState = savedInstanceState.getParcelable(BUNDLE_MAP_STATE);
             mapOptions.isLiveEnabled = savedInstanceState.getBoolean(BUNDLE_LIVE_ENABLED, false);
-            trailHistory = savedInstanceState.getParcelableArrayList(BUNDLE_TRAIL_HISTORY);
         } else {
             currentSourceId = Settings.getMapSource().getNumericalId();
         }
@@ -461,9 +472,6 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
 
 
         overlayPositionAndScale = mapView.createAddPositionAndScaleOverlay(mapOptions.coords, mapOptions.geocode);
-        if (trailHistory != null) {
-            overlayPositionAndScale.setHistory(trailHistory);
-        }
 
 
         mapView.repaintRequired(null);
@@ -727,6 +735,10 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 mapView.repaintRequired(overlayPositionAndScale);
                 ActivityMixin.invalidateOptionsMenu(activity);
                 return true;
+            case R.id.menu_trail_clear:
+                overlayPositionAndScale.clearHistory();
+                mapView.repaintRequired(overlayPositionAndScale);
+                return true;
             case R.id.menu_direction_line:
                 Settings.setMapDirection(!Settings.isMapDirection());
                 mapView.repaintRequired(overlayPositionAndScale);
@@ -788,17 +800,11 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 Settings.setExcludeMine(!Settings.isExcludeMyCaches());
                 markersInvalidated = true;
                 ActivityMixin.invalidateOptionsMenu(activity);
-                if (!Settings.isExcludeMyCaches()) {
-                    Tile.cache.clear();
-                }
                 return true;
             case R.id.menu_disabled_mode:
                 Settings.setExcludeDisabled(!Settings.isExcludeDisabledCaches());
                 markersInvalidated = true;
                 ActivityMixin.invalidateOptionsMenu(activity);
-                if (!Settings.isExcludeDisabledCaches()) {
-                    Tile.cache.clear();
-                }
                 return true;
             case R.id.menu_theme_mode:
                 selectMapTheme();
@@ -1115,7 +1121,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             displayPoint(mapOptions.coords);
             loadTimer = new CompositeDisposable();
         } else {
-            loadTimer = Schedulers.newThread().schedulePeriodicallyDirect(new LoadTimerAction(this), 0, 250, TimeUnit.MILLISECONDS);
+            loadTimer = new CompositeDisposable(Schedulers.newThread().schedulePeriodicallyDirect(new LoadTimerAction(this), 0, 250, TimeUnit.MILLISECONDS), startDownloads());
         }
         return loadTimer;
     }
@@ -1178,12 +1184,12 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     private boolean isLoading() {
         return !loadTimer.isDisposed() &&
                 (loadExecutor.getActiveCount() > 0 ||
-                        downloadExecutor.getActiveCount() > 0 ||
+                        downloading ||
                         displayExecutor.getActiveCount() > 0);
     }
 
     /**
-     * Worker thread that loads caches and waypoints from the database and then spawns the {@link DownloadRunnable}.
+     * Worker thread that loads caches and waypoints from the database and then requests the download of the viewport.
      * started by the load timer.
      */
 
@@ -1221,7 +1227,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             }
 
             downloaded = true;
-            final Set<Geocache> cachesFromSearchResult = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS);
+            final Set<Geocache> cachesFromSearchResult = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS_BATCHED);
             // update the caches
             // new collection type needs to remove first
             caches.removeAll(cachesFromSearchResult);
@@ -1255,7 +1261,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             displayExecutor.execute(new DisplayRunnable(this));
 
             if (mapOptions.isLiveEnabled) {
-                downloadExecutor.execute(new DownloadRunnable(this));
+                downloadRequests.onNext(mapView.getViewport().resize(0.8));
             }
             lastSearchResult = searchResult;
         } finally {
@@ -1265,61 +1271,95 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     }
 
     /**
-     * Worker thread downloading caches from the Internet.
-     * Started by {@link LoadRunnable}.
+     * Download the caches of the requested viewports, once the map rests. The download of a viewport is cancelled
+     * when the next viewport is requested.
      */
-
-    private static class DownloadRunnable extends DoRunnable {
-
-        DownloadRunnable(final CGeoMap map) {
-            super(map);
-        }
-
-        @Override
-        public void runWithMap(final CGeoMap map) {
-            map.doDownloadRun();
-        }
+    private Disposable startDownloads() {
+        return downloadRequests.debounce(DOWNLOAD_DELAY_MS, TimeUnit.MILLISECONDS).switchMap(new Function<Viewport, Observable<SearchResult>>() {
+            @Override
+            public Observable<SearchResult> apply(final Viewport viewport) {
+                return download(viewport);
+            }
+        }).subscribe();
     }
 
-    private void doDownloadRun() {
-        try {
-            showProgressHandler.sendEmptyMessage(SHOW_PROGRESS); // show progress
-            if (Settings.isGCConnectorActive() && tokens == null) {
-                tokens = GCLogin.getInstance().getMapTokens();
-                if (StringUtils.isEmpty(tokens.getUserSession()) || StringUtils.isEmpty(tokens.getSessionToken())) {
-                    tokens = null;
-                    if (!noMapTokenShowed) {
-                        ActivityMixin.showToast(activity, res.getString(R.string.map_token_err));
-                        noMapTokenShowed = true;
+    /**
+     * Download the caches of a viewport. Disposing the returned observable cancels the requests of the connectors
+     * still running, and none of their results are displayed afterwards.
+     */
+    private Observable<SearchResult> download(final Viewport viewport) {
+        // display the caches of each part of the search as soon as they arrive
+        final SearchResult searchResult = new SearchResult();
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        final Action finish = new Action() {
+            @Override
+            public void run() {
+                // called when the download completes, fails or is superseded by the download of a new viewport
+                if (finished.compareAndSet(false, true)) {
+                    downloading = false;
+                    showProgressHandler.sendEmptyMessage(HIDE_PROGRESS); // hide progress
+                }
+            }
+        };
+        return Observable.defer(new Callable<ObservableSource<SearchResult>>() {
+            @Override
+            public ObservableSource<SearchResult> call() {
+                if (Settings.isGCConnectorActive() && tokens == null) {
+                    tokens = GCLogin.getInstance().getMapTokens();
+                    if (StringUtils.isEmpty(tokens.getUserSession()) || StringUtils.isEmpty(tokens.getSessionToken())) {
+                        tokens = null;
+                        if (!noMapTokenShowed) {
+                            ActivityMixin.showToast(activity, res.getString(R.string.map_token_err));
+                            noMapTokenShowed = true;
+                        }
                     }
                 }
+                return ConnectorFactory.searchByViewportIncrementally(viewport, tokens);
             }
-            final SearchResult searchResult = ConnectorFactory.searchByViewport(mapView.getViewport().resize(0.8), tokens);
-            downloaded = true;
-
-            final Set<Geocache> result = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
-            filter(result);
-            // update the caches
-            // first remove filtered out
-            final Set<String> filteredCodes = searchResult.getFilteredGeocodes();
-            Log.d("Filtering out " + filteredCodes.size() + " caches: " + filteredCodes.toString());
-            caches.removeAll(DataStore.loadCaches(filteredCodes, LoadFlags.LOAD_CACHE_ONLY));
-            DataStore.removeCaches(filteredCodes, EnumSet.of(RemoveFlag.CACHE));
-            // new collection type needs to remove first to refresh
-            caches.removeAll(result);
-            caches.addAll(result);
-            lastSearchResult = searchResult;
-
-            //render
-            displayExecutor.execute(new DisplayRunnable(this));
-
-        } finally {
-            showProgressHandler.sendEmptyMessage(HIDE_PROGRESS); // hide progress
-        }
+        }).subscribeOn(AndroidRxUtils.networkScheduler).doOnSubscribe(new Consumer<Disposable>() {
+            @Override
+            public void accept(final Disposable disposable) {
+                downloading = true;
+                showProgressHandler.sendEmptyMessage(SHOW_PROGRESS); // show progress
+            }
+        }).doOnNext(new Consumer<SearchResult>() {
+            @Override
+            public void accept(final SearchResult partialResult) {
+                searchResult.addSearchResult(partialResult);
+                downloaded = true;
+
+                final Set<Geocache> result = partialResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
+                filter(result);
+                // update the caches
+                // first remove filtered out
+                final Set<String> filteredCodes = partialResult.getFilteredGeocodes();
+                Log.d("Filtering out " + filteredCodes.size() + " caches: " + filteredCodes.toString());
+                caches.removeAll(DataStore.loadCaches(filteredCodes, LoadFlags.LOAD_CACHE_ONLY));
+                DataStore.removeCaches(filteredCodes, EnumSet.of(RemoveFlag.CACHE));
+                // new collection type needs to remove first to refresh
+                caches.removeAll(result);
+                caches.addAll(result);
+
+                //render
+                displayExecutor.execute(new DisplayRunnable(CGeoMap.this));
+            }
+        }).doOnComplete(new Action() {
+            @Override
+            public void run() {
+                downloaded = true;
+                lastSearchResult = searchResult;
+            }
+        }).onErrorResumeNext(new Function<Throwable, Observable<SearchResult>>() {
+            @Override
+            public Observable<SearchResult> apply(final Throwable throwable) {
+                Log.w("CGeoMap.download", throwable);
+                return Observable.empty();
+            }
+        }).doOnTerminate(finish).doOnDispose(finish);
     }
 
     /**
-     * Thread to Display (down)loaded caches. Started by {@link LoadRunnable} and {@link DownloadRunnable}
+     * Thread to Display (down)loaded caches. Started by {@link LoadRunnable} and the downloads
      */
     private static class DisplayRunnable extends DoRunnable {
 
@@ -1474,21 +1514,29 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 return;
             }
 
-            for (final String geocode : geocodes) {
-                try {
-                    if (handler.isDisposed()) {
-                        break;
-                    }
+            for (final List<String> batch : ListUtils.partition(new ArrayList<>(geocodes), Geocache.DETAILS_BATCH_SIZE)) {
+                if (handler.isDisposed()) {
+                    break;
+                }
+                // download the details of many caches at once where the connector supports it
+                Geocache.searchByGeocodes(batch);
+
+                for (final String geocode : batch) {
+                    try {
+                        if (handler.isDisposed()) {
+                            break;
+                        }
 
-                    if (!DataStore.isOffline(geocode, null)) {
-                        Geocache.storeCache(null, geocode, listIds, false, handler);
+                        if (!DataStore.isOffline(geocode, null)) {
+                            Geocache.storeCache(null, geocode, listIds, false, handler);
+                        }
+                    } catch (final Exception e) {
+                        Log.e("CGeoMap.LoadDetails.run", e);
+                    } finally {
+                        // one more cache over
+                        detailProgress++;
+                        handler.sendEmptyMessage(UPDATE_PROGRESS);
                     }
-                } catch (final Exception e) {
-                    Log.e("CGeoMap.LoadDetails.run", e);
-                } finally {
-                    // one more cache over
-                    detailProgress++;
-                    handler.sendEmptyMessage(UPDATE_PROGRESS);
                 }
             }
 
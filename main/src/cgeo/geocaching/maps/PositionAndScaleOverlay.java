@@ -12,8 +12,6 @@ import android.graphics.Canvas;
 import android.graphics.Point;
 import android.location.Location;
 
-import java.util.ArrayList;
-
 public class PositionAndScaleOverlay implements GeneralOverlay {
     private OverlayImpl ovlImpl = null;
 
@@ -89,11 +87,7 @@ public class PositionAndScaleOverlay implements GeneralOverlay {
         return this.ovlImpl;
     }
 
-    public ArrayList<Location> getHistory() {
-        return positionDrawer.getHistory();
-    }
-
-    public void setHistory(final ArrayList<Location> history) {
-        positionDrawer.setHistory(history);
+    public void clearHistory() {
+        positionDrawer.clearHistory();
     }
 }
@@ -19,9 +19,15 @@ import android.graphics.Point;
 import android.location.Location;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class PositionDrawer {
 
+    /**
+     * maximum number of positions of the trail to draw, as they are projected again for every frame
+     */
+    private static final int MAX_DRAWN_POSITIONS = 700;
+
     private Location coordinates = null;
     private GeoPointImpl location = null;
     private float heading = 0f;
@@ -35,7 +41,7 @@ public class PositionDrawer {
     private int heightArrowHalf = 0;
     private PaintFlagsDrawFilter setfil = null;
     private PaintFlagsDrawFilter remfil = null;
-    private final PositionHistory positionHistory = new PositionHistory();
+    private final PositionHistory positionHistory = PositionHistory.getInstance();
     private final MapItemFactory mapItemFactory;
 
     public PositionDrawer() {
@@ -103,8 +109,12 @@ public class PositionDrawer {
 
         if (Settings.isMapTrail()) {
             // always add current position to drawn history to have a closed connection
-            final ArrayList<Location> paintHistory = new ArrayList<>(positionHistory.getHistory());
-            paintHistory.add(coordinates);
+            final PositionHistory.Positions positions = positionHistory.getLastPositions(MAX_DRAWN_POSITIONS);
+            final List<Geopoint> paintHistory = new ArrayList<>(positions.size() + 1);
+            for (int index = 0; index < positions.size(); index++) {
+                paintHistory.add(new Geopoint(positions.getLatitude(index), positions.getLongitude(index)));
+            }
+            paintHistory.add(new Geopoint(coordinates));
 
             final int size = paintHistory.size();
             if (size > 1) {
@@ -115,12 +125,10 @@ public class PositionDrawer {
 
                 final Point pointNow = new Point();
                 final Point pointPrevious = new Point();
-                final Location prev = paintHistory.get(0);
-                projection.toPixels(mapItemFactory.getGeoPointBase(new Geopoint(prev)), pointPrevious);
+                projection.toPixels(mapItemFactory.getGeoPointBase(paintHistory.get(0)), pointPrevious);
 
                 for (int cnt = 1; cnt < size; cnt++) {
-                    final Location now = paintHistory.get(cnt);
-                    projection.toPixels(mapItemFactory.getGeoPointBase(new Geopoint(now)), pointNow);
+                    projection.toPixels(mapItemFactory.getGeoPointBase(paintHistory.get(cnt)), pointNow);
 
                     final int alpha;
                     if ((alphaCnt - cnt) > 0) {
@@ -158,12 +166,8 @@ public class PositionDrawer {
         canvas.setDrawFilter(remfil);
     }
 
-    public ArrayList<Location> getHistory() {
-        return positionHistory.getHistory();
-    }
-
-    public void setHistory(final ArrayList<Location> history) {
-        positionHistory.setHistory(history);
+    public void clearHistory() {
+        positionHistory.clear();
     }
 
     public void setHeading(final float bearingNow) {
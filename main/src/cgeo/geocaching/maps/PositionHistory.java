@@ -1,13 +1,26 @@
 package cgeo.geocaching.maps;
 
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.storage.DataStore;
+
 import android.location.Location;
+import android.support.annotation.NonNull;
 
-import java.util.ArrayList;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * Map trail history
+ * <p>
+ * The trail is kept in a ring buffer and in the database, so that it is shown again after the map or c:geo has been
+ * restarted. Positions are identified by their index in the whole trail, so that users can tell the positions appended
+ * or removed since they last looked at the trail.
+ * </p>
+ * <p>
+ * The trail is shared by the maps, which append to and draw it on their drawing threads, while it is cleared from the UI
+ * thread. All accesses are therefore synchronized, and the positions are read through consistent snapshots.
+ * </p>
  */
-public class PositionHistory {
+public final class PositionHistory {
 
     /**
      * minimum distance between two recorded points of the trail
@@ -17,47 +30,205 @@ public class PositionHistory {
     /**
      * maximum number of positions to remember
      */
-    private static final int MAX_POSITIONS = 700;
+    private static final int MAX_POSITIONS = 10000;
+
+    /**
+     * number of positions removed at once when the maximum is reached, so that the start of the trail does not change
+     * with every new position
+     */
+    private static final int REMOVED_POSITIONS = 1000;
+
+    private static PositionHistory instance = null;
+
+    private final double[] latitudes = new double[MAX_POSITIONS];
+    private final double[] longitudes = new double[MAX_POSITIONS];
+    /** index of the oldest position in the arrays */
+    private int start = 0;
+    private int size = 0;
+    /** index of the oldest position in the whole trail */
+    private long firstIndex = 0;
+
+    /**
+     * Snapshot of consecutive positions at the end of the trail.
+     */
+    public static final class Positions {
+        private final long firstIndex;
+        private final long endIndex;
+        private final double[] latitudes;
+        private final double[] longitudes;
+
+        private Positions(final long firstIndex, final long endIndex, final double[] latitudes, final double[] longitudes) {
+            this.firstIndex = firstIndex;
+            this.endIndex = endIndex;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+        }
+
+        /**
+         * @return the index of the oldest position of the whole trail when the snapshot was taken
+         */
+        public long getFirstIndex() {
+            return firstIndex;
+        }
+
+        /**
+         * @return the index after the most recent position of the whole trail when the snapshot was taken
+         */
+        public long getEndIndex() {
+            return endIndex;
+        }
 
-    private ArrayList<Location> history = new ArrayList<>();
+        /**
+         * @return the number of positions in the snapshot, which are the most recent ones of the trail
+         */
+        public int size() {
+            return latitudes.length;
+        }
+
+        public double getLatitude(final int index) {
+            return latitudes[index];
+        }
+
+        public double getLongitude(final int index) {
+            return longitudes[index];
+        }
+    }
+
+    private PositionHistory() {
+        for (final Geopoint position : DataStore.loadTrail(MAX_POSITIONS)) {
+            append(position.getLatitude(), position.getLongitude());
+        }
+    }
+
+    /**
+     * @return the trail of the user, loaded from the database when first used
+     */
+    @NonNull
+    public static synchronized PositionHistory getInstance() {
+        if (instance == null) {
+            instance = new PositionHistory();
+        }
+        return instance;
+    }
 
     /**
      * Adds the current position to the trail history to be able to show the trail on the map.
      */
-    public void rememberTrailPosition(final Location coordinates) {
+    public synchronized void rememberTrailPosition(final Location coordinates) {
         if (coordinates.getAccuracy() >= 50f) {
             return;
         }
         if (coordinates.getLatitude() == 0.0 && coordinates.getLongitude() == 0.0) {
             return;
         }
-        if (history.isEmpty()) {
-            history.add(coordinates);
-            return;
+        final Geopoint position = new Geopoint(coordinates);
+        if (size > 0) {
+            final long last = getEndIndex() - 1;
+            if (position.distanceTo(new Geopoint(getLatitude(last), getLongitude(last))) * 1000 <= MINIMUM_DISTANCE_METERS) {
+                return;
+            }
         }
 
-        final Location historyRecent = history.get(history.size() - 1);
-        if (historyRecent.distanceTo(coordinates) <= MINIMUM_DISTANCE_METERS) {
-            return;
+        // avoid running out of memory
+        final boolean trim = size == MAX_POSITIONS;
+        if (trim) {
+            start = (start + REMOVED_POSITIONS) % MAX_POSITIONS;
+            size -= REMOVED_POSITIONS;
+            firstIndex += REMOVED_POSITIONS;
         }
+        append(position.getLatitude(), position.getLongitude());
 
-        history.add(coordinates);
+        // the database is written on a single thread, to keep the order of the positions
+        Schedulers.single().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                DataStore.saveTrailPosition(position);
+                if (trim) {
+                    DataStore.trimTrail(MAX_POSITIONS - REMOVED_POSITIONS + 1);
+                }
+            }
+        });
+    }
 
-        // avoid running out of memory
-        final int itemsToRemove = getHistory().size() - MAX_POSITIONS;
-        if (itemsToRemove > 0) {
-            for (int i = 0; i < itemsToRemove; i++) {
-                getHistory().remove(0);
+    private void append(final double latitude, final double longitude) {
+        final int index = (start + size) % MAX_POSITIONS;
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+        size++;
+    }
+
+    /**
+     * Forget the whole trail.
+     */
+    public synchronized void clear() {
+        firstIndex = getEndIndex();
+        start = 0;
+        size = 0;
+        Schedulers.single().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                DataStore.clearTrail();
             }
+        });
+    }
+
+    /**
+     * Get the positions appended since a previous snapshot, or the whole trail if positions have been removed from its
+     * start since then.
+     *
+     * @param knownFirstIndex
+     *            the {@link Positions#getFirstIndex()} of the previous snapshot
+     * @param knownEndIndex
+     *            the {@link Positions#getEndIndex()} of the previous snapshot
+     */
+    @NonNull
+    public synchronized Positions getPositionsSince(final long knownFirstIndex, final long knownEndIndex) {
+        return copyPositions(knownFirstIndex == firstIndex ? knownEndIndex : firstIndex);
+    }
+
+    /**
+     * @param count
+     *            the maximum number of positions to get
+     * @return the most recent positions of the trail
+     */
+    @NonNull
+    public synchronized Positions getLastPositions(final int count) {
+        return copyPositions(getEndIndex() - count);
+    }
+
+    private Positions copyPositions(final long fromIndex) {
+        final long endIndex = getEndIndex();
+        final long from = Math.min(Math.max(fromIndex, firstIndex), endIndex);
+        final int count = (int) (endIndex - from);
+        final double[] copiedLatitudes = new double[count];
+        final double[] copiedLongitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            copiedLatitudes[i] = getLatitude(from + i);
+            copiedLongitudes[i] = getLongitude(from + i);
         }
+        return new Positions(firstIndex, endIndex, copiedLatitudes, copiedLongitudes);
     }
 
-    public ArrayList<Location> getHistory() {
-        return history;
+    /**
+     * @return the index after the most recent position, which changes when positions are appended
+     */
+    private long getEndIndex() {
+        return firstIndex + size;
+    }
+
+    private double getLatitude(final long index) {
+        return latitudes[getArrayIndex(index)];
     }
 
-    public void setHistory(final ArrayList<Location> history) {
-        this.history = history;
+    private double getLongitude(final long index) {
+        return longitudes[getArrayIndex(index)];
+    }
+
+    private int getArrayIndex(final long index) {
+        if (index < firstIndex || index >= getEndIndex()) {
+            throw new IndexOutOfBoundsException("Invalid index " + index + ", trail is " + firstIndex + " to " + getEndIndex());
+        }
+        return (int) ((start + index - firstIndex) % MAX_POSITIONS);
     }
 
 }
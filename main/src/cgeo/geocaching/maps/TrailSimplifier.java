@@ -0,0 +1,147 @@
+package cgeo.geocaching.maps;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies a trail while its points are appended, using the Douglas-Peucker algorithm.
+ * <p>
+ * The points appended after the last kept point are pending. Whenever a point is appended, the pending points are
+ * simplified together with the last kept point. All points kept by that simplification except the last point are
+ * kept for good, as no point dropped before them is further than the tolerance from the simplified trail. The number of
+ * pending points is limited, so that appending a point takes constant time.
+ * </p>
+ * <p>
+ * The simplified trail consists of the kept points followed by the last appended point.
+ * </p>
+ */
+public final class TrailSimplifier {
+
+    /**
+     * Maximum number of pending points, after which the last one is kept regardless of its distance.
+     */
+    private static final int MAX_PENDING = 200;
+
+    private final double squaredTolerance;
+
+    private double[] keptX = new double[16];
+    private double[] keptY = new double[16];
+    private int keptSize = 0;
+
+    private final double[] pendingX = new double[MAX_PENDING];
+    private final double[] pendingY = new double[MAX_PENDING];
+    private int pendingSize = 0;
+
+    /** work array of the simplification, marking the points to keep */
+    private final boolean[] keep = new boolean[MAX_PENDING + 1];
+
+    /**
+     * @param tolerance
+     *            the maximum distance of a dropped point from the simplified trail
+     */
+    public TrailSimplifier(final double tolerance) {
+        squaredTolerance = tolerance * tolerance;
+    }
+
+    public void add(final double x, final double y) {
+        if (keptSize == 0) {
+            keep(x, y);
+            return;
+        }
+        pendingX[pendingSize] = x;
+        pendingY[pendingSize] = y;
+        pendingSize++;
+
+        // simplify the last kept point and the pending points, the last kept point having the index 0
+        Arrays.fill(keep, 0, pendingSize + 1, false);
+        simplify(0, pendingSize);
+
+        int lastKept = 0;
+        for (int i = 1; i < pendingSize; i++) {
+            if (keep[i]) {
+                keep(pendingX[i - 1], pendingY[i - 1]);
+                lastKept = i;
+            }
+        }
+        if (lastKept == 0 && pendingSize == MAX_PENDING) {
+            keep(x, y);
+            lastKept = pendingSize;
+        }
+        if (lastKept > 0) {
+            final int remaining = pendingSize - lastKept;
+            System.arraycopy(pendingX, lastKept, pendingX, 0, remaining);
+            System.arraycopy(pendingY, lastKept, pendingY, 0, remaining);
+            pendingSize = remaining;
+        }
+    }
+
+    /**
+     * @return the number of points of the simplified trail
+     */
+    public int size() {
+        return keptSize + (pendingSize > 0 ? 1 : 0);
+    }
+
+    public double getX(final int index) {
+        return index < keptSize ? keptX[index] : pendingX[pendingSize - 1];
+    }
+
+    public double getY(final int index) {
+        return index < keptSize ? keptY[index] : pendingY[pendingSize - 1];
+    }
+
+    private void keep(final double x, final double y) {
+        if (keptSize == keptX.length) {
+            keptX = Arrays.copyOf(keptX, keptSize * 2);
+            keptY = Arrays.copyOf(keptY, keptSize * 2);
+        }
+        keptX[keptSize] = x;
+        keptY[keptSize] = y;
+        keptSize++;
+    }
+
+    /**
+     * Mark the points between {@code first} and {@code last} to keep, with index {@code 0} being the last kept point
+     * and index {@code i} being the pending point {@code i - 1}.
+     */
+    private void simplify(final int first, final int last) {
+        double maxDistance = squaredTolerance;
+        int farthest = -1;
+        for (int i = first + 1; i < last; i++) {
+            final double distance = squaredDistanceToSegment(getWorkX(i), getWorkY(i), getWorkX(first), getWorkY(first), getWorkX(last), getWorkY(last));
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                farthest = i;
+            }
+        }
+        if (farthest >= 0) {
+            keep[farthest] = true;
+            simplify(first, farthest);
+            simplify(farthest, last);
+        }
+    }
+
+    private double getWorkX(final int index) {
+        return index == 0 ? keptX[keptSize - 1] : pendingX[index - 1];
+    }
+
+    private double getWorkY(final int index) {
+        return index == 0 ? keptY[keptSize - 1] : pendingY[index - 1];
+    }
+
+    /**
+     * The distance to the segment instead of the line through its ends, so that a trail walked back is kept.
+     */
+    static double squaredDistanceToSegment(final double x, final double y, final double startX, final double startY, final double endX, final double endY) {
+        final double dx = endX - startX;
+        final double dy = endY - startY;
+        final double squaredLength = dx * dx + dy * dy;
+        double t = 0;
+        if (squaredLength > 0) {
+            t = Math.max(0, Math.min(1, ((x - startX) * dx + (y - startY) * dy) / squaredLength));
+        }
+        final double nearestX = startX + t * dx;
+        final double nearestY = startY + t * dy;
+        return (x - nearestX) * (x - nearestX) + (y - nearestY) * (y - nearestY);
+    }
+
+}
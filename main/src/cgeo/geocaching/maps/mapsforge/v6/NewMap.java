@@ -12,8 +12,8 @@ import cgeo.geocaching.SearchResult;
 import cgeo.geocaching.WaypointPopup;
 import cgeo.geocaching.activity.AbstractActionBarActivity;
 import cgeo.geocaching.activity.ActivityMixin;
+import cgeo.geocaching.activity.Progress;
 import cgeo.geocaching.connector.gc.GCMap;
-import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.CoordinatesType;
 import cgeo.geocaching.enumerations.LoadFlags;
@@ -34,10 +34,12 @@ import cgeo.geocaching.maps.mapsforge.v6.caches.GeoitemRef;
 import cgeo.geocaching.maps.mapsforge.v6.layers.DownloadLayer;
 import cgeo.geocaching.maps.mapsforge.v6.layers.HistoryLayer;
 import cgeo.geocaching.maps.mapsforge.v6.layers.ITileLayer;
+import cgeo.geocaching.maps.mapsforge.v6.layers.MultiMapFileDataStore;
 import cgeo.geocaching.maps.mapsforge.v6.layers.NavigationLayer;
 import cgeo.geocaching.maps.mapsforge.v6.layers.PositionLayer;
 import cgeo.geocaching.maps.mapsforge.v6.layers.RendererLayer;
 import cgeo.geocaching.maps.mapsforge.v6.layers.TapHandlerLayer;
+import cgeo.geocaching.maps.mapsforge.v6.layers.TilePrefetcher;
 import cgeo.geocaching.maps.routing.Routing;
 import cgeo.geocaching.maps.routing.RoutingMode;
 import cgeo.geocaching.models.Geocache;
@@ -46,6 +48,7 @@ import cgeo.geocaching.sensors.GeoDirHandler;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.AngleUtils;
 import cgeo.geocaching.utils.DisposableHandler;
 import cgeo.geocaching.utils.Formatter;
@@ -91,6 +94,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import butterknife.ButterKnife;
 import io.reactivex.disposables.CompositeDisposable;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
@@ -102,7 +106,6 @@ import org.mapsforge.map.layer.download.tilesource.OpenCycleMap;
 import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
 import org.mapsforge.map.layer.renderer.TileRendererLayer;
 import org.mapsforge.map.model.DisplayModel;
-import org.mapsforge.map.reader.MapFile;
 import org.mapsforge.map.reader.ReadBuffer;
 import org.mapsforge.map.rendertheme.ExternalRenderTheme;
 import org.mapsforge.map.rendertheme.InternalRenderTheme;
@@ -116,6 +119,7 @@ public class NewMap extends AbstractActionBarActivity {
     private MfMapView mapView;
     private TileCache tileCache;
     private ITileLayer tileLayer;
+    private MultiMapFileDataStore mapDataStore;
     private HistoryLayer historyLayer;
     private PositionLayer positionLayer;
     private NavigationLayer navigationLayer;
@@ -124,14 +128,14 @@ public class NewMap extends AbstractActionBarActivity {
 
     private DistanceView distanceView;
 
-    private ArrayList<Location> trailHistory = null;
-
     private String targetGeocode = null;
     private Geopoint lastNavTarget = null;
     private final Queue<String> popupGeocodes = new ConcurrentLinkedQueue<>();
 
     private ProgressDialog waitDialog;
     private LoadDetails loadDetailsThread;
+    private final Progress prefetchProgress = new Progress();
+    private TilePrefetchHandler prefetchHandler;
 
     private final UpdateLoc geoDirUpdate = new UpdateLoc(this);
     /**
@@ -145,7 +149,6 @@ public class NewMap extends AbstractActionBarActivity {
     private static boolean followMyLocation;
 
     private static final String BUNDLE_MAP_STATE = "mapState";
-    private static final String BUNDLE_TRAIL_HISTORY = "trailHistory";
 
     // Handler messages
     // DisplayHandler
@@ -174,7 +177,6 @@ public class NewMap extends AbstractActionBarActivity {
         // Get fresh map information from the bundle if any
         if (savedInstanceState != null) {
             mapOptions.mapState = savedInstanceState.getParcelable(BUNDLE_MAP_STATE);
-            trailHistory = savedInstanceState.getParcelableArrayList(BUNDLE_TRAIL_HISTORY);
             followMyLocation = mapOptions.mapState.followsMyLocation();
         } else {
             followMyLocation = followMyLocation && mapOptions.mapMode == MapMode.LIVE;
@@ -294,6 +296,7 @@ public class NewMap extends AbstractActionBarActivity {
             menu.findItem(R.id.menu_theme_mode).setVisible(tileLayerHasThemes());
 
             menu.findItem(R.id.menu_as_list).setVisible(!caches.isDownloading() && caches.getVisibleItemsCount() > 0);
+            menu.findItem(R.id.menu_prefetch_tiles).setVisible(tileLayer instanceof DownloadLayer && !prefetchProgress.isShowing());
 
             menu.findItem(R.id.submenu_strategy).setVisible(mapOptions.isLiveEnabled);
 
@@ -349,6 +352,9 @@ public class NewMap extends AbstractActionBarActivity {
                 historyLayer.requestRedraw();
                 ActivityMixin.invalidateOptionsMenu(this);
                 return true;
+            case R.id.menu_trail_clear:
+                historyLayer.clearHistory();
+                return true;
             case R.id.menu_direction_line:
                 Settings.setMapDirection(!Settings.isMapDirection());
                 navigationLayer.requestRedraw();
@@ -400,17 +406,11 @@ public class NewMap extends AbstractActionBarActivity {
                 Settings.setExcludeMine(!Settings.isExcludeMyCaches());
                 caches.invalidate();
                 ActivityMixin.invalidateOptionsMenu(this);
-                if (!Settings.isExcludeMyCaches()) {
-                    Tile.cache.clear();
-                }
                 return true;
             case R.id.menu_disabled_mode:
                 Settings.setExcludeDisabled(!Settings.isExcludeDisabledCaches());
                 caches.invalidate();
                 ActivityMixin.invalidateOptionsMenu(this);
-                if (!Settings.isExcludeDisabledCaches()) {
-                    Tile.cache.clear();
-                }
                 return true;
             case R.id.menu_theme_mode:
                 selectMapTheme();
@@ -419,6 +419,9 @@ public class NewMap extends AbstractActionBarActivity {
                 CacheListActivity.startActivityMap(this, new SearchResult(caches.getVisibleGeocodes()));
                 return true;
             }
+            case R.id.menu_prefetch_tiles:
+                prefetchTiles();
+                return true;
             case R.id.menu_strategy_fastest: {
                 item.setChecked(true);
                 Settings.setLiveMapStrategy(LivemapStrategy.FASTEST);
@@ -609,19 +612,22 @@ public class NewMap extends AbstractActionBarActivity {
         // Create new render layer, if mapfile exists
         final ITileLayer oldLayer = this.tileLayer;
         ITileLayer newLayer = null;
+        MultiMapFileDataStore newMapDataStore = null;
         if (mapSource instanceof MapsforgeMapProvider.OfflineMapSource) {
             this.mapView.getModel().displayModel.setFixedTileSize(0);
             final File mapFile = NewMap.getMapFile();
             if (mapFile != null && mapFile.exists()) {
-                newLayer = new RendererLayer(tileCache, new MapFile(mapFile), this.mapView.getModel().mapViewPosition, false, true, false, AndroidGraphicFactory.INSTANCE);
-
+                newMapDataStore = new MultiMapFileDataStore(getMapFiles(mapFile));
+                if (!newMapDataStore.isEmpty()) {
+                    newLayer = new RendererLayer(tileCache, newMapDataStore, this.mapView.getModel().mapViewPosition, false, true, false, AndroidGraphicFactory.INSTANCE);
+                }
             }
         } else {
             this.mapView.getModel().displayModel.setFixedTileSize(256);
             if (mapSource.getNumericalId() == MapsforgeMapProvider.MAPSFORGE_MAPNIK_ID.hashCode()) {
-                newLayer = new DownloadLayer(tileCache, this.mapView.getModel().mapViewPosition, OpenStreetMapMapnik.INSTANCE, AndroidGraphicFactory.INSTANCE);
+                newLayer = new DownloadLayer(tileCache, this.mapView.getModel().mapViewPosition, OpenStreetMapMapnik.INSTANCE, MapsforgeMapProvider.MAPSFORGE_MAPNIK_ID, AndroidGraphicFactory.INSTANCE);
             } else if (mapSource.getNumericalId() == MapsforgeMapProvider.MAPSFORGE_CYCLEMAP_ID.hashCode()) {
-                newLayer = new DownloadLayer(tileCache, this.mapView.getModel().mapViewPosition, OpenCycleMap.INSTANCE, AndroidGraphicFactory.INSTANCE);
+                newLayer = new DownloadLayer(tileCache, this.mapView.getModel().mapViewPosition, OpenCycleMap.INSTANCE, MapsforgeMapProvider.MAPSFORGE_CYCLEMAP_ID, AndroidGraphicFactory.INSTANCE);
             }
         }
         // Exchange layer
@@ -633,10 +639,12 @@ public class NewMap extends AbstractActionBarActivity {
             }
             layers.add(index, newLayer.getTileLayer());
             this.tileLayer = newLayer;
+            this.mapDataStore = newMapDataStore;
             this.setMapTheme();
             newLayer.onResume();
         } else {
             this.tileLayer = null;
+            this.mapDataStore = null;
         }
 
         // Cleanup
@@ -686,7 +694,7 @@ public class NewMap extends AbstractActionBarActivity {
         switchTileLayer(Settings.getMapSource());
 
         // History Layer
-        this.historyLayer = new HistoryLayer(trailHistory);
+        this.historyLayer = new HistoryLayer();
         this.mapView.getLayerManager().getLayers().add(this.historyLayer);
 
         // NavigationLayer
@@ -748,6 +756,26 @@ public class NewMap extends AbstractActionBarActivity {
         super.onPause();
     }
 
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        closeIdleMapFiles();
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        closeIdleMapFiles();
+    }
+
+    private void closeIdleMapFiles() {
+        if (mapDataStore != null) {
+            // the map files are opened again when needed
+            mapDataStore.closeIdleFiles();
+        }
+    }
+
     @Override
     protected void onStop() {
 
@@ -774,6 +802,7 @@ public class NewMap extends AbstractActionBarActivity {
             this.mapView.getLayerManager().getLayers().remove(this.tileLayer.getTileLayer());
             this.tileLayer.getTileLayer().onDestroy();
             this.tileLayer = null;
+            this.mapDataStore = null;
         }
     }
 
@@ -822,8 +851,51 @@ public class NewMap extends AbstractActionBarActivity {
         loadDetailsThread.start();
     }
 
+    /**
+     * Download the tiles of the online map for the current viewport, the caches of a displayed list and the route to the
+     * navigation target, so that they can be displayed without network connection. Invoked by the "download map" menu
+     * item.
+     */
+    private void prefetchTiles() {
+        if (!(tileLayer instanceof DownloadLayer)) {
+            return;
+        }
+        final TilePrefetcher prefetcher = ((DownloadLayer) tileLayer).createPrefetcher();
+        final Viewport viewport = mapView.getViewport();
+        final SearchResult searchResult = mapOptions.searchResult;
+        final Geopoint[] track = navigationLayer != null ? navigationLayer.getTrack() : new Geopoint[0];
+        final int minZoom = Math.min(Settings.getTilePrefetchMinZoom(), Settings.getTilePrefetchMaxZoom());
+        final int maxZoom = Math.max(Settings.getTilePrefetchMinZoom(), Settings.getTilePrefetchMaxZoom());
+
+        final TilePrefetchHandler handler = new TilePrefetchHandler(this);
+        prefetchHandler = handler;
+        prefetchProgress.show(this, res.getString(R.string.map_prefetch_tiles), res.getString(R.string.map_prefetch_tiles_progress), ProgressDialog.STYLE_HORIZONTAL, handler.disposeMessage());
+        AndroidRxUtils.networkScheduler.scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                final List<Viewport> areas = new ArrayList<>();
+                areas.add(viewport);
+                if (searchResult != null) {
+                    final List<Geopoint> coords = new ArrayList<>();
+                    for (final Geocache cache : DataStore.loadCaches(searchResult.getGeocodes(), LoadFlags.LOAD_CACHE_OR_DB)) {
+                        if (cache.getCoords() != null) {
+                            coords.add(cache.getCoords());
+                        }
+                    }
+                    areas.addAll(TilePrefetcher.getSurroundings(coords, TilePrefetcher.POINT_RADIUS_KILOMETERS));
+                }
+                areas.addAll(TilePrefetcher.getCorridor(track, TilePrefetcher.TRACK_RADIUS_KILOMETERS));
+                prefetcher.prefetch(areas, minZoom, maxZoom, Settings.getTilePrefetchBandwidth(), handler);
+            }
+        });
+    }
+
     @Override
     protected void onDestroy() {
+        if (prefetchHandler != null) {
+            prefetchHandler.dispose();
+        }
+        prefetchProgress.dismiss();
         this.tileCache.destroy();
         this.mapView.getModel().mapViewPosition.destroy();
         this.mapView.destroy();
@@ -838,9 +910,6 @@ public class NewMap extends AbstractActionBarActivity {
         super.onSaveInstanceState(outState);
         final MapState state = prepareMapState();
         outState.putParcelable(BUNDLE_MAP_STATE, state);
-        if (historyLayer != null) {
-            outState.putParcelableArrayList(BUNDLE_TRAIL_HISTORY, historyLayer.getHistory());
-        }
     }
 
     private MapState prepareMapState() {
@@ -917,6 +986,23 @@ public class NewMap extends AbstractActionBarActivity {
         }
     }
 
+    /**
+     * @return the selected map file and all other offline map files, so that the maps of neighbouring regions are
+     *         displayed together
+     */
+    @NonNull
+    private static List<File> getMapFiles(@NonNull final File mapFile) {
+        final List<File> mapFiles = new ArrayList<>();
+        mapFiles.add(mapFile);
+        for (final String offlineMap : MapsforgeMapProvider.getOfflineMaps()) {
+            final File file = new File(offlineMap);
+            if (!file.equals(mapFile)) {
+                mapFiles.add(file);
+            }
+        }
+        return mapFiles;
+    }
+
     @Nullable
     private static File getMapFile() {
         final String mapFileName = Settings.getMapFile();
@@ -1067,6 +1153,41 @@ public class NewMap extends AbstractActionBarActivity {
 
     }
 
+    private static final class TilePrefetchHandler extends DisposableHandler {
+
+        private final WeakReference<NewMap> mapRef;
+
+        TilePrefetchHandler(final NewMap map) {
+            this.mapRef = new WeakReference<>(map);
+        }
+
+        @Override
+        protected void handleRegularMessage(final Message msg) {
+            final NewMap map = mapRef.get();
+            if (map == null) {
+                return;
+            }
+            switch (msg.what) {
+                case TilePrefetcher.STARTED:
+                    map.prefetchProgress.setMaxProgressAndReset(msg.arg1);
+                    break;
+                case TilePrefetcher.UPDATE_PROGRESS:
+                    map.prefetchProgress.setProgress(msg.arg1);
+                    break;
+                case TilePrefetcher.TOO_MANY_TILES:
+                    map.prefetchProgress.dismiss();
+                    ActivityMixin.showToast(map, map.res.getString(R.string.map_prefetch_tiles_too_many));
+                    break;
+                case TilePrefetcher.FINISHED:
+                    map.prefetchProgress.dismiss();
+                    ActivityMixin.showToast(map, map.res.getString(R.string.map_prefetch_tiles_finished, msg.arg1, msg.arg2));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     private static final class LoadDetailsHandler extends DisposableHandler {
 
         private final int detailTotal;
@@ -1431,19 +1552,27 @@ public class NewMap extends AbstractActionBarActivity {
                 return;
             }
 
-            for (final String geocode : geocodes) {
-                try {
-                    if (handler.isDisposed()) {
-                        break;
-                    }
+            for (final List<String> batch : ListUtils.partition(new ArrayList<>(geocodes), Geocache.DETAILS_BATCH_SIZE)) {
+                if (handler.isDisposed()) {
+                    break;
+                }
+                // download the details of many caches at once where the connector supports it
+                Geocache.searchByGeocodes(batch);
 
-                    if (!DataStore.isOffline(geocode, null)) {
-                        Geocache.storeCache(null, geocode, listIds, false, handler);
+                for (final String geocode : batch) {
+                    try {
+                        if (handler.isDisposed()) {
+                            break;
+                        }
+
+                        if (!DataStore.isOffline(geocode, null)) {
+                            Geocache.storeCache(null, geocode, listIds, false, handler);
+                        }
+                    } catch (final Exception e) {
+                        Log.e("CGeoMap.LoadDetails.run", e);
+                    } finally {
+                        handler.sendEmptyMessage(UPDATE_PROGRESS);
                     }
-                } catch (final Exception e) {
-                    Log.e("CGeoMap.LoadDetails.run", e);
-                } finally {
-                    handler.sendEmptyMessage(UPDATE_PROGRESS);
                 }
             }
 
@@ -1,6 +1,5 @@
 package cgeo.geocaching.maps.mapsforge.v6.caches;
 
-import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
@@ -13,11 +12,11 @@ import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.Log;
-import cgeo.geocaching.utils.MapUtils;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -25,7 +24,6 @@ import java.util.Set;
 
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.model.LatLong;
-import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.android.view.MapView;
 import org.mapsforge.map.layer.Layer;
 import org.mapsforge.map.layer.Layers;
@@ -35,8 +33,8 @@ public abstract class AbstractCachesOverlay {
     private final int overlayId;
     private final Set<GeoEntry> geoEntries;
     private final WeakReference<MfMapView> mapViewRef;
-    private final Layer anchorLayer;
     private final GeoitemLayers layerList = new GeoitemLayers();
+    private final GeoitemClusterLayer clusterLayer;
     private final MapHandlers mapHandlers;
     private boolean invalidated = true;
 
@@ -44,12 +42,20 @@ public abstract class AbstractCachesOverlay {
         this.overlayId = overlayId;
         this.geoEntries = geoEntries;
         this.mapViewRef = new WeakReference<>(mapView);
-        this.anchorLayer = anchorLayer;
         this.mapHandlers = mapHandlers;
+
+        // the items are inserted after the cluster layer, so that it can hide the clustered items before they are drawn
+        this.clusterLayer = new GeoitemClusterLayer(layerList, mapView);
+        final Layers layers = mapView.getLayerManager().getLayers();
+        layers.add(layers.indexOf(anchorLayer) + 1, clusterLayer);
     }
 
     public void onDestroy() {
         clearLayers();
+        final MfMapView mapView = mapViewRef.get();
+        if (mapView != null) {
+            mapView.getLayerManager().getLayers().remove(clusterLayer);
+        }
     }
 
     public Set<String> getVisibleGeocodes() {
@@ -95,6 +101,19 @@ public abstract class AbstractCachesOverlay {
     }
 
     protected void fill(final Set<Geocache> caches) {
+        fill(caches, true);
+    }
+
+    /**
+     * Display the given caches.
+     *
+     * @param caches
+     *            the caches to display
+     * @param removeOthers
+     *            {@code true} to remove all displayed items not belonging to the given caches, {@code false} to only
+     *            add the given caches, for example when displaying partial results
+     */
+    protected void fill(final Set<Geocache> caches, final boolean removeOthers) {
 
         final Collection<String> removeCodes = getGeocodes();
         final Collection<String> newCodes = new HashSet<>();
@@ -142,7 +161,7 @@ public abstract class AbstractCachesOverlay {
             }
         }
 
-        syncLayers(removeCodes, newCodes);
+        syncLayers(removeOthers ? removeCodes : Collections.<String> emptyList(), newCodes);
 
         repaint();
     }
@@ -172,6 +191,9 @@ public abstract class AbstractCachesOverlay {
 
             return true;
         }
+        if (waypointItem != null) {
+            waypointItem.onDestroy();
+        }
 
         Log.d(String.format(Locale.ENGLISH, "Waypoint %s for id %d not added, geoEntries: %d", entry.geocode, overlayId, geoEntries.size()));
 
@@ -183,8 +205,9 @@ public abstract class AbstractCachesOverlay {
         if (mapView == null) {
             return;
         }
+        clusterLayer.setClusters(layerList.getClusters());
         final Layers layers = mapView.getLayerManager().getLayers();
-        final int index = layers.indexOf(anchorLayer) + 1;
+        final int index = layers.indexOf(clusterLayer) + 1;
         layers.addAll(index, layerList.getAsLayers());
     }
 
@@ -231,9 +254,11 @@ public abstract class AbstractCachesOverlay {
         for (final GeoitemLayer layer : layerList) {
             geoEntries.remove(new GeoEntry(layer.getItemCode(), overlayId));
             layers.remove(layer);
+            layer.onDestroy();
         }
 
         layerList.clear();
+        clusterLayer.setClusters(null);
 
         Log.d(String.format(Locale.ENGLISH, "Layers for id %d cleared, remaining geoEntries: %d", overlayId, geoEntries.size()));
     }
@@ -244,8 +269,9 @@ public abstract class AbstractCachesOverlay {
             return;
         }
         removeItems(removeCodes);
+        clusterLayer.setClusters(layerList.getClusters());
         final Layers layers = mapView.getLayerManager().getLayers();
-        final int index = layers.indexOf(anchorLayer) + 1;
+        final int index = layers.indexOf(clusterLayer) + 1;
         layers.addAll(index, layerList.getMatchingLayers(newCodes));
 
         Log.d(String.format(Locale.ENGLISH, "Layers for id %d synced. Codes removed: %d, new codes: %d, geoEntries: %d", overlayId, removeCodes.size(), newCodes.size(), geoEntries.size()));
@@ -263,6 +289,7 @@ public abstract class AbstractCachesOverlay {
                 geoEntries.remove(new GeoEntry(code, overlayId));
                 layers.remove(item);
                 layerList.remove(item);
+                item.onDestroy();
             }
         }
     }
@@ -289,7 +316,7 @@ public abstract class AbstractCachesOverlay {
 
     private static GeoitemLayer getCacheItem(final Geocache cache, final TapHandler tapHandler) {
         final Geopoint target = cache.getCoords();
-        final Bitmap marker = AndroidGraphicFactory.convertToBitmap(MapUtils.getCacheMarker(CgeoApplication.getInstance().getResources(), cache));
+        final Bitmap marker = MarkerBitmapCache.acquire(cache);
         return new GeoitemLayer(cache.getGeoitemRef(), tapHandler, new LatLong(target.getLatitude(), target.getLongitude()), marker, 0, -marker.getHeight() / 2);
     }
 
@@ -297,7 +324,7 @@ public abstract class AbstractCachesOverlay {
         final Geopoint target = waypoint.getCoords();
 
         if (target != null) {
-            final Bitmap marker = AndroidGraphicFactory.convertToBitmap(MapUtils.getWaypointMarker(CgeoApplication.getInstance().getResources(), waypoint));
+            final Bitmap marker = MarkerBitmapCache.acquire(waypoint);
             return new GeoitemLayer(waypoint.getGeoitemRef(), tapHandler, new LatLong(target.getLatitude(), target.getLongitude()), marker, 0, -marker.getHeight() / 2);
         }
 
@@ -45,7 +45,7 @@ public class CachesOverlay extends AbstractCachesOverlay {
             clearLayers();
 
             // display caches
-            final Set<Geocache> cachesToDisplay = search.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS);
+            final Set<Geocache> cachesToDisplay = search.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS_BATCHED);
 
             if (!cachesToDisplay.isEmpty()) {
                 // Only show waypoints for single view or setting
@@ -0,0 +1,152 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import cgeo.geocaching.maps.mapsforge.v6.MfMapView;
+import cgeo.geocaching.maps.mapsforge.v6.caches.GeoitemClusters.Cluster;
+
+import java.lang.ref.WeakReference;
+
+import org.mapsforge.core.graphics.Align;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+import org.mapsforge.map.layer.Layer;
+import org.mapsforge.map.model.MapViewPosition;
+
+/**
+ * Displays the clusters of an overlay as bubbles with the number of items, and hides the items belonging to a cluster
+ * at the current zoom level. Must be placed below the items of the overlay, so that their visibility is updated before
+ * they are drawn. Tapping a bubble zooms in on the cluster.
+ */
+public class GeoitemClusterLayer extends Layer {
+
+    /**
+     * Number of zoom levels to zoom in when tapping a cluster.
+     */
+    private static final int TAP_ZOOM_STEPS = 2;
+
+    private final GeoitemLayers items;
+    private final WeakReference<MfMapView> mapViewRef;
+
+    private volatile GeoitemClusters clusters = null;
+
+    /** only used by the drawing thread */
+    private GeoitemClusters appliedClusters = null;
+    private int appliedZoomLevel = -1;
+
+    private Paint bubble = null;
+    private Paint border = null;
+    private Paint text = null;
+
+    public GeoitemClusterLayer(final GeoitemLayers items, final MfMapView mapView) {
+        this.items = items;
+        this.mapViewRef = new WeakReference<>(mapView);
+    }
+
+    /**
+     * Display new clusters, or display all items individually if {@code null}.
+     */
+    public void setClusters(final GeoitemClusters clusters) {
+        this.clusters = clusters;
+        requestRedraw();
+    }
+
+    @Override
+    public void draw(final BoundingBox boundingBox, final byte zoomLevel, final Canvas canvas, final Point topLeftPoint) {
+        final GeoitemClusters currentClusters = clusters;
+        if (currentClusters != appliedClusters || zoomLevel != appliedZoomLevel) {
+            updateVisibility(currentClusters, zoomLevel);
+        }
+        if (currentClusters == null) {
+            return;
+        }
+
+        createPaints();
+        final long mapSize = MercatorProjection.getMapSize(zoomLevel, displayModel.getTileSize());
+        for (final Cluster cluster : currentClusters.getClusters(zoomLevel)) {
+            if (!boundingBox.contains(cluster.latitude, cluster.longitude)) {
+                continue;
+            }
+            final int x = (int) (MercatorProjection.longitudeToPixelX(cluster.longitude, mapSize) - topLeftPoint.x);
+            final int y = (int) (MercatorProjection.latitudeToPixelY(cluster.latitude, mapSize) - topLeftPoint.y);
+            final int radius = getRadius(cluster);
+            canvas.drawCircle(x, y, radius, bubble);
+            canvas.drawCircle(x, y, radius, border);
+            canvas.drawText(String.valueOf(cluster.count), x, y + text.getTextHeight("0") / 2, text);
+        }
+    }
+
+    /**
+     * Hide the items displayed as part of a cluster, and show all others.
+     */
+    private void updateVisibility(final GeoitemClusters currentClusters, final byte zoomLevel) {
+        for (final GeoitemLayer item : items) {
+            final boolean visible = currentClusters == null || !currentClusters.isClustered(item.getItemCode(), zoomLevel);
+            if (item.isVisible() != visible) {
+                // the items are drawn after this layer anyway, no need to redraw
+                item.setVisible(visible, false);
+            }
+        }
+        appliedClusters = currentClusters;
+        appliedZoomLevel = zoomLevel;
+    }
+
+    private void createPaints() {
+        if (bubble != null) {
+            return;
+        }
+        final float scaleFactor = displayModel.getScaleFactor();
+
+        bubble = AndroidGraphicFactory.INSTANCE.createPaint();
+        bubble.setStyle(Style.FILL);
+        bubble.setColor(0xD0EB391E);
+
+        border = AndroidGraphicFactory.INSTANCE.createPaint();
+        border.setStyle(Style.STROKE);
+        border.setStrokeWidth(2 * scaleFactor);
+        border.setColor(0xFFFFFFFF);
+
+        text = AndroidGraphicFactory.INSTANCE.createPaint();
+        text.setStyle(Style.FILL);
+        text.setColor(0xFFFFFFFF);
+        text.setTextAlign(Align.CENTER);
+        text.setTextSize(12 * scaleFactor);
+    }
+
+    private int getRadius(final Cluster cluster) {
+        // grow with the number of digits, so that the count fits
+        return (int) ((12 + 3 * String.valueOf(cluster.count).length()) * displayModel.getScaleFactor());
+    }
+
+    @Override
+    public boolean onTap(final LatLong tapLatLong, final Point layerXY, final Point tapXY) {
+        final GeoitemClusters currentClusters = clusters;
+        final MfMapView mapView = mapViewRef.get();
+        if (currentClusters == null || mapView == null || displayModel == null) {
+            return false;
+        }
+        final MapViewPosition mapViewPosition = mapView.getModel().mapViewPosition;
+        final byte zoomLevel = mapViewPosition.getZoomLevel();
+        final long mapSize = MercatorProjection.getMapSize(zoomLevel, displayModel.getTileSize());
+        final double tapX = MercatorProjection.longitudeToPixelX(tapLatLong.longitude, mapSize);
+        final double tapY = MercatorProjection.latitudeToPixelY(tapLatLong.latitude, mapSize);
+        for (final Cluster cluster : currentClusters.getClusters(zoomLevel)) {
+            final double dx = MercatorProjection.longitudeToPixelX(cluster.longitude, mapSize) - tapX;
+            final double dy = MercatorProjection.latitudeToPixelY(cluster.latitude, mapSize) - tapY;
+            final int radius = getRadius(cluster);
+            if (dx * dx + dy * dy <= radius * radius) {
+                final byte newZoomLevel = (byte) Math.min(zoomLevel + TAP_ZOOM_STEPS, GeoitemClusters.MAX_CLUSTER_ZOOM + 1);
+                mapViewPosition.setMapPosition(new MapPosition(new LatLong(cluster.latitude, cluster.longitude), newZoomLevel));
+                break;
+            }
+        }
+        // let the tap handler layer below finish the tap
+        return false;
+    }
+
+}
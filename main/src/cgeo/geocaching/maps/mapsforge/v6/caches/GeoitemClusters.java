@@ -0,0 +1,194 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clusters of map items for all zoom levels up to {@link #MAX_CLUSTER_ZOOM}, computed once for a set of items.
+ * <p>
+ * Items are clustered by a grid of {@link #CELL_SIZE} pixels (for a tile size of 256 pixels). As every grid cell of a
+ * zoom level consists of exactly four cells of the next zoom level, the clusters of a zoom level are built by merging
+ * the clusters of the next one. Cells with less than {@link #MIN_CLUSTER_SIZE} items are not clustered.
+ * </p>
+ * Instances are immutable and can be used from any thread.
+ */
+final class GeoitemClusters {
+
+    /**
+     * Highest (mapsforge) zoom level with clusters. Items are always displayed individually when zoomed in further.
+     */
+    static final int MAX_CLUSTER_ZOOM = 13;
+    /**
+     * Size of the grid cells in pixels.
+     */
+    static final int CELL_SIZE = 64;
+    /**
+     * Minimum number of items in a grid cell to display them as cluster.
+     */
+    static final int MIN_CLUSTER_SIZE = 4;
+
+    private static final int TILE_SIZE = 256;
+    private static final double MAX_LATITUDE = 85.05112877980659;
+
+    static final class Cluster {
+        final double latitude;
+        final double longitude;
+        final int count;
+
+        Cluster(final double latitude, final double longitude, final int count) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Items of a grid cell, used while building the clusters.
+     */
+    private static final class Cell {
+        double latitudeSum;
+        double longitudeSum;
+        int count;
+    }
+
+    private final Map<String, Integer> indexOfCode;
+    /**
+     * Clusters by zoom level.
+     */
+    private final List<List<Cluster>> clusters = new ArrayList<>(MAX_CLUSTER_ZOOM + 1);
+    /**
+     * Items which are part of a cluster, by zoom level.
+     */
+    private final List<BitSet> clustered = new ArrayList<>(MAX_CLUSTER_ZOOM + 1);
+
+    /**
+     * @param codes
+     *            the codes of the items
+     * @param latitudes
+     *            the latitudes of the items, in the same order
+     * @param longitudes
+     *            the longitudes of the items, in the same order
+     */
+    GeoitemClusters(@NonNull final String[] codes, @NonNull final double[] latitudes, @NonNull final double[] longitudes) {
+        final int itemCount = codes.length;
+        indexOfCode = new HashMap<>(itemCount * 2);
+        for (int i = 0; i < itemCount; i++) {
+            indexOfCode.put(codes[i], i);
+        }
+
+        // grid cells of all items at the highest zoom level
+        final int cellsAtMaxZoom = (TILE_SIZE << MAX_CLUSTER_ZOOM) / CELL_SIZE;
+        final int[] cellX = new int[itemCount];
+        final int[] cellY = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            cellX[i] = toCell(longitudeToWorld(longitudes[i]), cellsAtMaxZoom);
+            cellY[i] = toCell(latitudeToWorld(latitudes[i]), cellsAtMaxZoom);
+        }
+
+        final List<Map<Long, Cell>> cellsByZoom = new ArrayList<>(Collections.<Map<Long, Cell>> nCopies(MAX_CLUSTER_ZOOM + 1, null));
+        Map<Long, Cell> cells = new HashMap<>();
+        for (int i = 0; i < itemCount; i++) {
+            final Cell cell = getCell(cells, cellKey(cellX[i], cellY[i]));
+            cell.latitudeSum += latitudes[i];
+            cell.longitudeSum += longitudes[i];
+            cell.count++;
+        }
+        cellsByZoom.set(MAX_CLUSTER_ZOOM, cells);
+        for (int zoom = MAX_CLUSTER_ZOOM - 1; zoom >= 0; zoom--) {
+            final Map<Long, Cell> parentCells = new HashMap<>();
+            for (final Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                final long key = entry.getKey();
+                final Cell parent = getCell(parentCells, cellKey((int) (key >>> 32) >> 1, (int) key >> 1));
+                final Cell cell = entry.getValue();
+                parent.latitudeSum += cell.latitudeSum;
+                parent.longitudeSum += cell.longitudeSum;
+                parent.count += cell.count;
+            }
+            cellsByZoom.set(zoom, parentCells);
+            cells = parentCells;
+        }
+
+        for (int zoom = 0; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            final Map<Long, Cell> zoomCells = cellsByZoom.get(zoom);
+            final List<Cluster> zoomClusters = new ArrayList<>();
+            for (final Cell cell : zoomCells.values()) {
+                if (cell.count >= MIN_CLUSTER_SIZE) {
+                    zoomClusters.add(new Cluster(cell.latitudeSum / cell.count, cell.longitudeSum / cell.count, cell.count));
+                }
+            }
+            clusters.add(zoomClusters);
+
+            final int shift = MAX_CLUSTER_ZOOM - zoom;
+            final BitSet zoomClustered = new BitSet(itemCount);
+            if (!zoomClusters.isEmpty()) {
+                for (int i = 0; i < itemCount; i++) {
+                    if (zoomCells.get(cellKey(cellX[i] >> shift, cellY[i] >> shift)).count >= MIN_CLUSTER_SIZE) {
+                        zoomClustered.set(i);
+                    }
+                }
+            }
+            clustered.add(zoomClustered);
+        }
+    }
+
+    private static Cell getCell(final Map<Long, Cell> cells, final long key) {
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    private static long cellKey(final int x, final int y) {
+        return ((long) x << 32) | y;
+    }
+
+    private static int toCell(final double world, final int cells) {
+        return Math.max(0, Math.min(cells - 1, (int) (world * cells)));
+    }
+
+    /**
+     * @return the Mercator x coordinate between 0 and 1
+     */
+    private static double longitudeToWorld(final double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * @return the Mercator y coordinate between 0 (north) and 1 (south)
+     */
+    private static double latitudeToWorld(final double latitude) {
+        final double sinLatitude = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        return 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+    }
+
+    /**
+     * @return the clusters to display at the given zoom level, empty if items are not clustered at that zoom level
+     */
+    @NonNull
+    List<Cluster> getClusters(final int zoomLevel) {
+        if (zoomLevel < 0 || zoomLevel > MAX_CLUSTER_ZOOM) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(clusters.get(zoomLevel));
+    }
+
+    /**
+     * @return {@code true} if the item is displayed as part of a cluster at the given zoom level
+     */
+    boolean isClustered(@NonNull final String code, final int zoomLevel) {
+        if (zoomLevel < 0 || zoomLevel > MAX_CLUSTER_ZOOM) {
+            return false;
+        }
+        final Integer index = indexOfCode.get(code);
+        return index != null && clustered.get(zoomLevel).get(index);
+    }
+
+}
@@ -31,6 +31,7 @@ public class GeoitemLayer extends Marker {
     private final TapHandler tapHandler;
     private final double halfXSpan;
     private final double halfYSpan;
+    private boolean destroyed = false;
 
     public GeoitemLayer(final GeoitemRef item, final TapHandler tapHandler, final LatLong latLong, final Bitmap bitmap, final int horizontalOffset, final int verticalOffset) {
         super(latLong, bitmap, horizontalOffset, verticalOffset);
@@ -49,9 +50,22 @@ public class GeoitemLayer extends Marker {
         return item.getItemCode();
     }
 
+    /**
+     * Release the marker bitmap, which is shared with other items by the {@link MarkerBitmapCache}. Called when the item
+     * is removed from the map, and again by the layer manager when the map is destroyed.
+     */
+    @Override
+    public synchronized void onDestroy() {
+        if (!destroyed) {
+            destroyed = true;
+            MarkerBitmapCache.release(getBitmap());
+        }
+    }
+
     @Override
     public boolean onTap(final LatLong tapLatLong, final Point layerXY, final Point tapXY) {
-        if (isHit(layerXY, tapXY)) {
+        // items displayed as part of a cluster are hidden, but still get the taps
+        if (isVisible() && isHit(layerXY, tapXY)) {
             tapHandler.setHit(item);
         }
         return super.onTap(tapLatLong, layerXY, tapXY);
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 
+import org.mapsforge.core.model.LatLong;
 import org.mapsforge.map.layer.Layer;
 
 public class GeoitemLayers implements Collection<GeoitemLayer> {
@@ -39,6 +40,26 @@ public class GeoitemLayers implements Collection<GeoitemLayer> {
         return result;
     }
 
+    /**
+     * @return the clusters of the current items for all zoom levels
+     */
+    @NonNull
+    synchronized GeoitemClusters getClusters() {
+        final int size = geoitems.size();
+        final String[] codes = new String[size];
+        final double[] latitudes = new double[size];
+        final double[] longitudes = new double[size];
+        int index = 0;
+        for (final GeoitemLayer geoitem : geoitems.values()) {
+            final LatLong latLong = geoitem.getLatLong();
+            codes[index] = geoitem.getItemCode();
+            latitudes[index] = latLong.latitude;
+            longitudes[index] = latLong.longitude;
+            index++;
+        }
+        return new GeoitemClusters(codes, latitudes, longitudes);
+    }
+
     private boolean addInternal(final GeoitemLayer geoitem) {
         return geoitems.put(geoitem.getItemCode(), geoitem) != null;
     }
@@ -12,124 +12,196 @@ import cgeo.geocaching.maps.mapsforge.v6.MfMapView;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.Log;
 
-import android.support.annotation.NonNull;
-
-import java.lang.ref.WeakReference;
 import java.util.EnumSet;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
 import org.apache.commons.lang3.StringUtils;
 import org.mapsforge.map.layer.Layer;
-
+import org.mapsforge.map.model.MapViewPosition;
+import org.mapsforge.map.model.common.Observer;
+
+/**
+ * Overlay with the caches downloaded for the current viewport. Every change of the viewport is published to a stream,
+ * which is debounced until the map rests. A download for a new viewport cancels the download still running for the
+ * previous one, so that only the results of the current viewport are displayed.
+ */
 public class LiveCachesOverlay extends AbstractCachesOverlay {
 
-    private final Disposable timer;
-    private boolean downloading = false;
-    public long loadThreadRun = -1;
+    /**
+     * Time the map must rest before the caches of a new viewport are downloaded.
+     */
+    private static final long DOWNLOAD_DELAY_MS = 500;
+
+    private final Subject<Viewport> viewportChanges = PublishSubject.<Viewport> create().toSerialized();
+    private final MapViewPosition mapViewPosition;
+    private final Observer viewportObserver = new Observer() {
+        @Override
+        public void onChange() {
+            requestDownload();
+        }
+    };
+    private final Disposable downloads;
+    private volatile boolean downloading = false;
+    /** only used by the download stream */
+    private Viewport previousViewport;
+    /** only used by the download stream */
+    private int previousZoom = -100;
     private MapTokens tokens;
 
     public LiveCachesOverlay(final int overlayId, final Set<GeoEntry> geoEntries, final MfMapView mapView, final Layer anchorLayer, final MapHandlers mapHandlers) {
         super(overlayId, geoEntries, mapView, anchorLayer, mapHandlers);
 
-        this.timer = startTimer();
+        this.downloads = startDownloads();
+        this.mapViewPosition = mapView.getModel().mapViewPosition;
+        mapViewPosition.addObserver(viewportObserver);
+        requestDownload();
     }
 
-    private Disposable startTimer() {
-        return Schedulers.newThread().schedulePeriodicallyDirect(new LoadTimerAction(this), 0, 250, TimeUnit.MILLISECONDS);
+    private Disposable startDownloads() {
+        return viewportChanges.debounce(DOWNLOAD_DELAY_MS, TimeUnit.MILLISECONDS).filter(new Predicate<Viewport>() {
+            @Override
+            public boolean test(final Viewport viewport) {
+                return needsDownload(viewport);
+            }
+        }).switchMap(new Function<Viewport, Observable<SearchResult>>() {
+            @Override
+            public Observable<SearchResult> apply(final Viewport viewport) {
+                return download(viewport);
+            }
+        }).subscribe();
     }
 
-    private static final class LoadTimerAction implements Runnable {
+    private void requestDownload() {
+        final Viewport viewport = getViewport();
+        if (viewport != null) {
+            viewportChanges.onNext(viewport);
+        }
+    }
 
-        @NonNull private final WeakReference<LiveCachesOverlay> overlayRef;
-        private int previousZoom = -100;
-        private Viewport previousViewport;
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        requestDownload();
+    }
 
-        LoadTimerAction(@NonNull final LiveCachesOverlay overlay) {
-            this.overlayRef = new WeakReference<>(overlay);
+    /**
+     * Check if the map moved or zoomed since the last download. Must only be called by the download stream.
+     */
+    private boolean needsDownload(final Viewport viewport) {
+        //TODO Portree Use Rectangle inside with bigger search window. That will stop reloading on every move
+        // Since zoomNow is used only for local comparison purposes,
+        // it is ok to use the Google Maps compatible zoom level of OSM Maps
+        final int zoomNow = getMapZoomLevel();
+        final boolean moved = isInvalidated() || previousViewport == null || zoomNow != previousZoom ||
+                mapMoved(previousViewport, viewport) || !previousViewport.includes(viewport);
+        if (moved) {
+            previousViewport = viewport;
+            previousZoom = zoomNow;
+            refreshed();
         }
+        return moved;
+    }
 
-        @Override
-        public void run() {
-            final LiveCachesOverlay overlay = overlayRef.get();
-            if (overlay == null || overlay.isDownloading()) {
-                return;
+    /**
+     * Download the caches of a viewport. Disposing the returned observable cancels the requests of the connectors
+     * still running, and none of their results are displayed afterwards.
+     */
+    private Observable<SearchResult> download(final Viewport viewport) {
+        // display the caches of each part of the search as soon as they arrive, and replace the previous
+        // content of the overlay once the search is complete
+        final SearchResult searchResult = new SearchResult();
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        final Action finish = new Action() {
+            @Override
+            public void run() {
+                // called when the download completes, fails or is superseded by the download of a new viewport
+                if (finished.compareAndSet(false, true)) {
+                    downloading = false;
+                    hideProgress();
+                }
+            }
+        };
+        return Observable.defer(new Callable<ObservableSource<SearchResult>>() {
+            @Override
+            public ObservableSource<SearchResult> call() {
+                updateTokens();
+                return ConnectorFactory.searchByViewportIncrementally(viewport.resize(1.2), tokens);
             }
-            try {
-                // get current viewport
-                final Viewport viewportNow = overlay.getViewport();
-                // Since zoomNow is used only for local comparison purposes,
-                // it is ok to use the Google Maps compatible zoom level of OSM Maps
-                final int zoomNow = overlay.getMapZoomLevel();
-
-                // check if map moved or zoomed
-                //TODO Portree Use Rectangle inside with bigger search window. That will stop reloading on every move
-                final boolean moved = overlay.isInvalidated() || previousViewport == null || zoomNow != previousZoom ||
-                        mapMoved(previousViewport, viewportNow) || !previousViewport.includes(viewportNow);
-
-                // save new values
-                if (moved) {
-                    final long currentTime = System.currentTimeMillis();
-
-                    if (1000 < (currentTime - overlay.loadThreadRun)) {
-                        overlay.downloading = true;
-                        previousZoom = zoomNow;
-                        previousViewport = viewportNow;
-                        overlay.download();
-                    }
+        }).subscribeOn(AndroidRxUtils.networkScheduler).doOnSubscribe(new Consumer<Disposable>() {
+            @Override
+            public void accept(final Disposable disposable) {
+                downloading = true;
+                showProgress();
+            }
+        }).doOnNext(new Consumer<SearchResult>() {
+            @Override
+            public void accept(final SearchResult partialResult) {
+                searchResult.addSearchResult(partialResult);
+                final Set<Geocache> partialCaches = partialResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
+                AbstractCachesOverlay.filter(partialCaches);
+                if (!partialCaches.isEmpty()) {
+                    fill(partialCaches, false);
                 }
-            } catch (final Exception e) {
-                Log.w("LiveCachesOverlay.startLoadtimer.start", e);
-            } finally {
-                overlay.refreshed();
-                overlay.downloading = false;
             }
-        }
+        }).doOnComplete(new Action() {
+            @Override
+            public void run() {
+                final Set<Geocache> result = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
+                AbstractCachesOverlay.filter(result);
+                // update the caches
+                // first remove filtered out
+                final Set<String> filteredCodes = searchResult.getFilteredGeocodes();
+                Log.d("Filtering out " + filteredCodes.size() + " caches: " + filteredCodes.toString());
+                DataStore.removeCaches(filteredCodes, EnumSet.of(RemoveFlag.CACHE));
+
+                Log.d(String.format(Locale.ENGLISH, "Live caches found: %d", result.size()));
+
+                //render
+                fill(result);
+            }
+        }).onErrorResumeNext(new Function<Throwable, Observable<SearchResult>>() {
+            @Override
+            public Observable<SearchResult> apply(final Throwable throwable) {
+                Log.w("LiveCachesOverlay.download", throwable);
+                return Observable.empty();
+            }
+        }).doOnTerminate(finish).doOnDispose(finish);
     }
 
-    private void download() {
-        try {
-            showProgress();
-
-            if (Settings.isGCConnectorActive() && tokens == null) {
-                tokens = GCLogin.getInstance().getMapTokens();
-                if (StringUtils.isEmpty(tokens.getUserSession()) || StringUtils.isEmpty(tokens.getSessionToken())) {
-                    tokens = null;
-                    //TODO: show missing map token toast
-                    //                    if (!noMapTokenShowed) {
-                    //                        ActivityMixin.showToast(activity, res.getString(R.string.map_token_err));
-                    //                        noMapTokenShowed = true;
-                    //                    }
-                }
+    private void updateTokens() {
+        if (Settings.isGCConnectorActive() && tokens == null) {
+            tokens = GCLogin.getInstance().getMapTokens();
+            if (StringUtils.isEmpty(tokens.getUserSession()) || StringUtils.isEmpty(tokens.getSessionToken())) {
+                tokens = null;
+                //TODO: show missing map token toast
+                //                    if (!noMapTokenShowed) {
+                //                        ActivityMixin.showToast(activity, res.getString(R.string.map_token_err));
+                //                        noMapTokenShowed = true;
+                //                    }
             }
-            final SearchResult searchResult = ConnectorFactory.searchByViewport(getViewport().resize(1.2), tokens);
-
-            final Set<Geocache> result = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
-            AbstractCachesOverlay.filter(result);
-            // update the caches
-            // first remove filtered out
-            final Set<String> filteredCodes = searchResult.getFilteredGeocodes();
-            Log.d("Filtering out " + filteredCodes.size() + " caches: " + filteredCodes.toString());
-            DataStore.removeCaches(filteredCodes, EnumSet.of(RemoveFlag.CACHE));
-
-            Log.d(String.format(Locale.ENGLISH, "Live caches found: %d", result.size()));
-
-            //render
-            fill(result);
-
-        } finally {
-            hideProgress();
         }
     }
 
     @Override
     public void onDestroy() {
-        timer.dispose();
+        mapViewPosition.removeObserver(viewportObserver);
+        downloads.dispose();
 
         super.onDestroy();
     }
@@ -0,0 +1,105 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import cgeo.geocaching.CgeoApplication;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.Waypoint;
+import cgeo.geocaching.utils.MapUtils;
+
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+
+/**
+ * Rasterized marker bitmaps, shared by all map items with the same marker. The bitmaps are keyed by the same hash
+ * codes as the marker drawables of {@link MapUtils}. Every bitmap is reference counted and destroyed as soon as no
+ * map item uses it anymore.
+ */
+final class MarkerBitmapCache {
+
+    private static final class Entry {
+        final int hashcode;
+        final Bitmap bitmap;
+        int references = 0;
+
+        Entry(final int hashcode, final Bitmap bitmap) {
+            this.hashcode = hashcode;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private static final SparseArray<Entry> entries = new SparseArray<>();
+    private static final Map<Bitmap, Entry> entryOfBitmap = new IdentityHashMap<>();
+
+    private MarkerBitmapCache() {
+        // utility class
+    }
+
+    /**
+     * Get the marker bitmap of a cache. It must be released with {@link #release(Bitmap)} when it is no longer used.
+     */
+    @NonNull
+    static Bitmap acquire(@NonNull final Geocache cache) {
+        final int hashcode = MapUtils.getCacheMarkerHash(cache, null);
+        synchronized (entries) {
+            Entry entry = entries.get(hashcode);
+            if (entry == null) {
+                entry = put(hashcode, AndroidGraphicFactory.convertToBitmap(MapUtils.getCacheMarker(getResources(), cache)));
+            }
+            entry.references++;
+            return entry.bitmap;
+        }
+    }
+
+    /**
+     * Get the marker bitmap of a waypoint. It must be released with {@link #release(Bitmap)} when it is no longer used.
+     */
+    @NonNull
+    static Bitmap acquire(@NonNull final Waypoint waypoint) {
+        final int hashcode = MapUtils.getWaypointMarkerHash(waypoint);
+        synchronized (entries) {
+            Entry entry = entries.get(hashcode);
+            if (entry == null) {
+                entry = put(hashcode, AndroidGraphicFactory.convertToBitmap(MapUtils.getWaypointMarker(getResources(), waypoint)));
+            }
+            entry.references++;
+            return entry.bitmap;
+        }
+    }
+
+    private static Entry put(final int hashcode, final Bitmap bitmap) {
+        final Entry entry = new Entry(hashcode, bitmap);
+        entries.put(hashcode, entry);
+        entryOfBitmap.put(bitmap, entry);
+        return entry;
+    }
+
+    /**
+     * Release a bitmap obtained from this cache. The bitmap is destroyed when it has been released as often as it has
+     * been acquired.
+     */
+    static void release(@NonNull final Bitmap bitmap) {
+        synchronized (entries) {
+            final Entry entry = entryOfBitmap.get(bitmap);
+            if (entry == null) {
+                return;
+            }
+            if (--entry.references <= 0) {
+                entries.remove(entry.hashcode);
+                entryOfBitmap.remove(bitmap);
+                // the bitmap is created without additional references, so that this destroys it
+                bitmap.decrementRefCount();
+            }
+        }
+    }
+
+    private static Resources getResources() {
+        return CgeoApplication.getInstance().getResources();
+    }
+
+}
@@ -1,5 +1,7 @@
 package cgeo.geocaching.maps.mapsforge.v6.layers;
 
+import android.support.annotation.NonNull;
+
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.map.layer.Layer;
 import org.mapsforge.map.layer.cache.TileCache;
@@ -10,9 +12,21 @@ import org.mapsforge.map.model.MapViewPosition;
 public class DownloadLayer implements ITileLayer {
 
     private final TileDownloadLayer tileLayer;
-
-    public DownloadLayer(final TileCache tileCache, final MapViewPosition mapViewPosition, final TileSource tileSource, final GraphicFactory graphicFactory) {
-        tileLayer = new TileDownloadLayer(tileCache, mapViewPosition, tileSource, graphicFactory);
+    private final TileSource tileSource;
+    private final String sourceId;
+
+    /**
+     * @param sourceId
+     *            the id of the tile source, used for the {@link OfflineTileStore} with its prefetched tiles
+     */
+    public DownloadLayer(final TileCache tileCache, final MapViewPosition mapViewPosition, final TileSource tileSource, final String sourceId, final GraphicFactory graphicFactory) {
+        this.tileSource = tileSource;
+        this.sourceId = sourceId;
+        // the prefetched tiles of the visible area are copied into the regular tile cache before they are drawn, and no
+        // download is started for them
+        final OfflineTileStore offlineTileStore = OfflineTileStore.create(sourceId, graphicFactory);
+        final TileCache layerCache = offlineTileStore != null ? new OfflineFallbackTileCache(tileCache, offlineTileStore) : tileCache;
+        tileLayer = new TileDownloadLayer(layerCache, mapViewPosition, tileSource, graphicFactory);
     }
 
     @Override
@@ -35,4 +49,12 @@ public class DownloadLayer implements ITileLayer {
         tileLayer.onPause();
     }
 
+    /**
+     * @return a prefetcher for the tiles of this layer
+     */
+    @NonNull
+    public TilePrefetcher createPrefetcher() {
+        return new TilePrefetcher(tileSource, OfflineTileStore.getDirectory(sourceId));
+    }
+
 }
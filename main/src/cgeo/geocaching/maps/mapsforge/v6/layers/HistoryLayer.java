@@ -1,32 +1,108 @@
 package cgeo.geocaching.maps.mapsforge.v6.layers;
 
 import cgeo.geocaching.maps.PositionHistory;
+import cgeo.geocaching.maps.TrailSimplifier;
 import cgeo.geocaching.settings.Settings;
 
 import org.mapsforge.core.graphics.Canvas;
-import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.BoundingBox;
-import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.layer.Layer;
 
+import android.graphics.Paint;
 import android.location.Location;
-
-import java.util.ArrayList;
-
+import android.support.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Draws the trail of the user.
+ * <p>
+ * The trail is simplified for every zoom level it is shown at, and the line segments of the simplified trail are kept
+ * for the most recently used zoom levels. They are only extended by the positions appended since the last frame, and
+ * drawn with a single call per paint, moved to the current position of the map.
+ * </p>
+ */
 public class HistoryLayer extends Layer {
 
-    private final PositionHistory positionHistory = new PositionHistory();
+    /**
+     * Maximum distance of a dropped position from the simplified trail, in pixels.
+     */
+    private static final double TOLERANCE_PIXELS = 1.0;
+    private static final int MAX_ZOOM_LEVELS = 3;
+
+    private final PositionHistory positionHistory = PositionHistory.getInstance();
     private Location coordinates;
     private Paint historyLine;
     private Paint historyLineShadow;
 
-    public HistoryLayer(final ArrayList<Location> locationHistory) {
-        super();
-        if (locationHistory != null) {
-            positionHistory.setHistory(locationHistory);
+    /** the simplified trails of the most recently used zoom levels */
+    private final Map<Byte, Trail> trails = new LinkedHashMap<Byte, Trail>(MAX_ZOOM_LEVELS + 1, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Byte, Trail> eldest) {
+            return size() > MAX_ZOOM_LEVELS;
+        }
+    };
+
+    /**
+     * The trail simplified for a zoom level, with the line segments to draw relative to its first position.
+     */
+    private static final class Trail {
+        private final long mapSize;
+        private TrailSimplifier simplifier;
+        private long firstIndex = -1;
+        private long endIndex;
+        private double originX;
+        private double originY;
+        private float[] lines = new float[0];
+
+        Trail(final long mapSize) {
+            this.mapSize = mapSize;
+        }
+
+        boolean isEmpty() {
+            return simplifier == null || simplifier.size() == 0;
+        }
+
+        void update(@NonNull final PositionHistory history) {
+            // the trail may be extended or cleared on other threads, therefore only a snapshot is used
+            final PositionHistory.Positions positions = history.getPositionsSince(firstIndex, endIndex);
+            final boolean restarted = positions.getFirstIndex() != firstIndex;
+            if (restarted) {
+                // positions have been removed from the start of the trail
+                simplifier = new TrailSimplifier(TOLERANCE_PIXELS);
+                firstIndex = positions.getFirstIndex();
+            }
+            endIndex = positions.getEndIndex();
+            if (!restarted && positions.size() == 0) {
+                return;
+            }
+            for (int index = 0; index < positions.size(); index++) {
+                simplifier.add(MercatorProjection.longitudeToPixelX(positions.getLongitude(index), mapSize),
+                        MercatorProjection.latitudeToPixelY(positions.getLatitude(index), mapSize));
+            }
+
+            // relative coordinates, as floats are not precise enough for the pixels of high zoom levels
+            final int size = simplifier.size();
+            if (size == 0) {
+                lines = new float[0];
+                return;
+            }
+            originX = simplifier.getX(0);
+            originY = simplifier.getY(0);
+            lines = new float[Math.max(0, size - 1) * 4];
+            for (int i = 1; i < size; i++) {
+                final int index = (i - 1) * 4;
+                lines[index] = (float) (simplifier.getX(i - 1) - originX);
+                lines[index + 1] = (float) (simplifier.getY(i - 1) - originY);
+                lines[index + 2] = (float) (simplifier.getX(i) - originX);
+                lines[index + 3] = (float) (simplifier.getY(i) - originY);
+            }
         }
     }
 
@@ -37,62 +113,64 @@ public class HistoryLayer extends Layer {
         }
 
         if (historyLine == null) {
-            historyLine = AndroidGraphicFactory.INSTANCE.createPaint();
+            historyLine = new Paint();
+            historyLine.setAntiAlias(true);
             historyLine.setStrokeWidth(3.0f);
+            historyLine.setStrokeCap(Paint.Cap.ROUND);
             historyLine.setColor(0xFFFFFFFF);
         }
 
         if (historyLineShadow == null) {
-            historyLineShadow = AndroidGraphicFactory.INSTANCE.createPaint();
+            historyLineShadow = new Paint();
+            historyLineShadow.setAntiAlias(true);
             historyLineShadow.setStrokeWidth(7.0f);
+            historyLineShadow.setStrokeCap(Paint.Cap.ROUND);
             historyLineShadow.setColor(0x66000000);
         }
 
         positionHistory.rememberTrailPosition(coordinates);
 
-        if (Settings.isMapTrail()) {
-            // always add current position to drawn history to have a closed connection
-            final ArrayList<Location> paintHistory = new ArrayList<>(positionHistory.getHistory());
-            paintHistory.add(coordinates);
-
-            final int size = paintHistory.size();
-            if (size > 1) {
-//                int alphaCnt = size - 201;
-//                if (alphaCnt < 1) {
-//                    alphaCnt = 1;
-//                }
-
-                final long mapSize = MercatorProjection.getMapSize(zoomLevel, this.displayModel.getTileSize());
-
-                final Location prev = paintHistory.get(0);
-                Point pointPrevious = MercatorProjection.getPixelRelative(new LatLong(prev.getLatitude(), prev.getLongitude()), mapSize, topLeftPoint);
-
-                for (int cnt = 1; cnt < size; cnt++) {
-                    final Location now = paintHistory.get(cnt);
-                    final Point pointNow = MercatorProjection.getPixelRelative(new LatLong(now.getLatitude(), now.getLongitude()), mapSize, topLeftPoint);
-
-//                    final int alpha;
-//                    if ((alphaCnt - cnt) > 0) {
-//                        alpha = 255 / (alphaCnt - cnt);
-//                    }
-//                    else {
-//                        alpha = 255;
-//                    }
-
-//                    historyLineShadow.setAlpha(alpha);
-//                    historyLine.setAlpha(alpha);
+        if (!Settings.isMapTrail()) {
+            return;
+        }
 
-                    canvas.drawLine((int) pointPrevious.x, (int) pointPrevious.y, (int) pointNow.x, (int) pointNow.y, historyLineShadow);
-                    canvas.drawLine((int) pointPrevious.x, (int) pointPrevious.y, (int) pointNow.x, (int) pointNow.y, historyLine);
+        final long mapSize = MercatorProjection.getMapSize(zoomLevel, this.displayModel.getTileSize());
+        Trail trail = trails.get(zoomLevel);
+        if (trail == null || trail.mapSize != mapSize) {
+            trail = new Trail(mapSize);
+            trails.put(zoomLevel, trail);
+        }
+        trail.update(positionHistory);
+        if (trail.isEmpty()) {
+            return;
+        }
 
-                    pointPrevious = pointNow;
-                }
-            }
+        final android.graphics.Canvas androidCanvas = AndroidGraphicFactory.getCanvas(canvas);
+        final float offsetX = (float) (trail.originX - topLeftPoint.x);
+        final float offsetY = (float) (trail.originY - topLeftPoint.y);
+        if (trail.lines.length > 0) {
+            androidCanvas.save();
+            androidCanvas.translate(offsetX, offsetY);
+            androidCanvas.drawLines(trail.lines, historyLineShadow);
+            androidCanvas.drawLines(trail.lines, historyLine);
+            androidCanvas.restore();
         }
+
+        // always connect the trail to the current position
+        final float lastX = trail.lines.length > 0 ? offsetX + trail.lines[trail.lines.length - 2] : offsetX;
+        final float lastY = trail.lines.length > 0 ? offsetY + trail.lines[trail.lines.length - 1] : offsetY;
+        final float currentX = (float) (MercatorProjection.longitudeToPixelX(coordinates.getLongitude(), mapSize) - topLeftPoint.x);
+        final float currentY = (float) (MercatorProjection.latitudeToPixelY(coordinates.getLatitude(), mapSize) - topLeftPoint.y);
+        androidCanvas.drawLine(lastX, lastY, currentX, currentY, historyLineShadow);
+        androidCanvas.drawLine(lastX, lastY, currentX, currentY, historyLine);
     }
 
-    public ArrayList<Location> getHistory() {
-        return positionHistory.getHistory();
+    /**
+     * Forget the whole trail.
+     */
+    public void clearHistory() {
+        positionHistory.clear();
+        requestRedraw();
     }
 
     public void setCoordinates(final Location coordinatesIn) {
@@ -0,0 +1,169 @@
+package cgeo.geocaching.maps.mapsforge.v6.layers;
+
+import cgeo.geocaching.utils.Log;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.datastore.MapDataStore;
+import org.mapsforge.map.datastore.MapReadResult;
+import org.mapsforge.map.reader.MapFile;
+
+/**
+ * A map file which is only opened when data of a tile within its bounding box is read, and which can be closed again
+ * to release its file handle and caches. The bounding box is known without opening the file, see
+ * {@link MapFileHeaders}.
+ */
+final class LazyMapFile extends MapDataStore {
+
+    private final File file;
+    private final BoundingBox boundingBox;
+    private final MultiMapFileDataStore owner;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** modified only with the lock held */
+    private volatile MapFile mapFile = null;
+    /** guarded by the lock */
+    private boolean failed = false;
+    private volatile long lastUse = 0;
+
+    LazyMapFile(@NonNull final File file, @NonNull final BoundingBox boundingBox, @NonNull final MultiMapFileDataStore owner) {
+        this.file = file;
+        this.boundingBox = boundingBox;
+        this.owner = owner;
+    }
+
+    /**
+     * Must be called with the lock held.
+     *
+     * @return the opened map file, or {@code null} if it cannot be opened
+     */
+    @Nullable
+    private MapFile open() {
+        lastUse = SystemClock.elapsedRealtime();
+        if (mapFile == null && !failed) {
+            try {
+                mapFile = new MapFile(file);
+                Log.d("LazyMapFile: opened " + file.getName());
+                owner.onOpened(this);
+            } catch (final RuntimeException e) {
+                Log.w("LazyMapFile: cannot open " + file, e);
+                // do not try again for every tile
+                failed = true;
+            }
+        }
+        return mapFile;
+    }
+
+    boolean isOpen() {
+        // not locking, as this is called while another map file is locked
+        return mapFile != null;
+    }
+
+    long getLastUse() {
+        return lastUse;
+    }
+
+    /**
+     * Close the map file, unless it is being read right now.
+     */
+    void closeIfUnused() {
+        if (lock.tryLock()) {
+            try {
+                closeFile();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void closeFile() {
+        if (mapFile != null) {
+            mapFile.close();
+            mapFile = null;
+            Log.d("LazyMapFile: closed " + file.getName());
+        }
+    }
+
+    @Override
+    public BoundingBox boundingBox() {
+        return boundingBox;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closeFile();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getDataTimestamp(final Tile tile) {
+        // same as the map file, but without opening it
+        return file.lastModified();
+    }
+
+    @Override
+    public MapReadResult readLabels(final Tile tile) {
+        lock.lock();
+        try {
+            final MapFile opened = open();
+            return opened != null ? opened.readLabels(tile) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public MapReadResult readMapData(final Tile tile) {
+        lock.lock();
+        try {
+            final MapFile opened = open();
+            return opened != null ? opened.readMapData(tile) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public MapReadResult readPoiData(final Tile tile) {
+        lock.lock();
+        try {
+            final MapFile opened = open();
+            return opened != null ? opened.readPoiData(tile) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LatLong startPosition() {
+        return boundingBox.getCenterPoint();
+    }
+
+    @Override
+    public Byte startZoomLevel() {
+        // only known after opening the map file
+        return null;
+    }
+
+    @Override
+    public boolean supportsTile(final Tile tile) {
+        // same as the map file, but without opening it
+        return tile.getBoundingBox().intersects(boundingBox);
+    }
+
+}
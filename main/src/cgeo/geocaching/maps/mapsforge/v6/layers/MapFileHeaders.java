@@ -0,0 +1,134 @@
+package cgeo.geocaching.maps.mapsforge.v6.layers;
+
+import cgeo.geocaching.storage.LocalStorage;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.map.reader.MapFile;
+
+/**
+ * Bounding boxes of offline map files, remembered across app starts, so that a map file does not need to be opened to
+ * find out which area it covers. A remembered bounding box is only used as long as the size and the modification time
+ * of the map file are unchanged.
+ */
+final class MapFileHeaders {
+
+    private static final String FILE_NAME = "mapfiles.properties";
+    private static final String SEPARATOR = ";";
+
+    private static Properties properties = null;
+
+    private MapFileHeaders() {
+        // utility class
+    }
+
+    /**
+     * @return the bounding boxes of the map files, without the invalid map files
+     */
+    @NonNull
+    static synchronized Map<File, BoundingBox> getBoundingBoxes(@NonNull final List<File> mapFiles) {
+        if (properties == null) {
+            properties = load();
+        }
+        final Map<File, BoundingBox> boundingBoxes = new HashMap<>();
+        boolean changed = false;
+        for (final File mapFile : mapFiles) {
+            final String key = mapFile.getAbsolutePath();
+            final String stamp = mapFile.length() + SEPARATOR + mapFile.lastModified() + SEPARATOR;
+            BoundingBox boundingBox = parse(properties.getProperty(key), stamp);
+            if (boundingBox == null) {
+                boundingBox = readBoundingBox(mapFile);
+                if (boundingBox == null) {
+                    continue;
+                }
+                properties.setProperty(key, stamp + boundingBox.minLatitude + "," + boundingBox.minLongitude + "," + boundingBox.maxLatitude + "," + boundingBox.maxLongitude);
+                changed = true;
+            }
+            boundingBoxes.put(mapFile, boundingBox);
+        }
+        if (changed) {
+            save(properties);
+        }
+        return boundingBoxes;
+    }
+
+    @Nullable
+    private static BoundingBox parse(@Nullable final String value, @NonNull final String stamp) {
+        if (value == null || !value.startsWith(stamp)) {
+            return null;
+        }
+        try {
+            return BoundingBox.fromString(value.substring(stamp.length()));
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static BoundingBox readBoundingBox(@NonNull final File mapFile) {
+        try {
+            final MapFile opened = new MapFile(mapFile);
+            try {
+                return opened.boundingBox();
+            } finally {
+                opened.close();
+            }
+        } catch (final RuntimeException e) {
+            Log.w("MapFileHeaders: invalid map file " + mapFile, e);
+            return null;
+        }
+    }
+
+    @NonNull
+    private static File getFile() {
+        return new File(LocalStorage.getStorage(), FILE_NAME);
+    }
+
+    @NonNull
+    private static Properties load() {
+        final Properties loaded = new Properties();
+        final File file = getFile();
+        if (!file.isFile()) {
+            return loaded;
+        }
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            loaded.load(input);
+        } catch (final IOException e) {
+            Log.w("MapFileHeaders: cannot read " + file, e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        return loaded;
+    }
+
+    private static void save(@NonNull final Properties toSave) {
+        final File file = getFile();
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(file);
+            toSave.store(output, null);
+        } catch (final IOException e) {
+            Log.w("MapFileHeaders: cannot write " + file, e);
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package cgeo.geocaching.maps.mapsforge.v6.layers;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.map.datastore.MultiMapDataStore;
+
+/**
+ * Renders several offline map files together, e.g. the maps of neighbouring countries.
+ * <p>
+ * A map file is only opened when a tile within its bounding box is rendered, so that having many map files does not
+ * slow down opening the map. At most {@link #MAX_OPEN_FILES} map files are kept open, the least recently used ones
+ * are closed when more are needed. {@link #closeIdleFiles()} closes the files which have not been used recently, e.g.
+ * when memory gets low.
+ * </p>
+ */
+public class MultiMapFileDataStore extends MultiMapDataStore {
+
+    /**
+     * Maximum number of map files kept open at the same time.
+     */
+    private static final int MAX_OPEN_FILES = 4;
+    /**
+     * Map files not used for this time are closed by {@link #closeIdleFiles()}.
+     */
+    private static final long IDLE_MILLISECONDS = 30000;
+
+    private final List<LazyMapFile> mapFiles = new ArrayList<>();
+
+    /**
+     * @param files
+     *            the map files, invalid ones are ignored
+     */
+    public MultiMapFileDataStore(@NonNull final List<File> files) {
+        super(DataPolicy.DEDUPLICATE);
+        final Map<File, BoundingBox> boundingBoxes = MapFileHeaders.getBoundingBoxes(files);
+        for (final File file : files) {
+            final BoundingBox boundingBox = boundingBoxes.get(file);
+            if (boundingBox != null) {
+                final LazyMapFile mapFile = new LazyMapFile(file, boundingBox, this);
+                mapFiles.add(mapFile);
+                addMapDataStore(mapFile, false, false);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if none of the map files is valid
+     */
+    public boolean isEmpty() {
+        return mapFiles.isEmpty();
+    }
+
+    /**
+     * Close the map files which have not been used recently. They are opened again when needed.
+     */
+    public void closeIdleFiles() {
+        final long idleSince = SystemClock.elapsedRealtime() - IDLE_MILLISECONDS;
+        for (final LazyMapFile mapFile : mapFiles) {
+            if (mapFile.getLastUse() < idleSince) {
+                mapFile.closeIfUnused();
+            }
+        }
+    }
+
+    /**
+     * Close the least recently used map files if too many are open.
+     *
+     * @param opened
+     *            the map file just opened, which is kept open
+     */
+    void onOpened(@NonNull final LazyMapFile opened) {
+        final List<LazyMapFile> openFiles = new ArrayList<>();
+        for (final LazyMapFile mapFile : mapFiles) {
+            if (mapFile != opened && mapFile.isOpen()) {
+                openFiles.add(mapFile);
+            }
+        }
+        if (openFiles.size() < MAX_OPEN_FILES) {
+            return;
+        }
+        Collections.sort(openFiles, new Comparator<LazyMapFile>() {
+            @Override
+            public int compare(final LazyMapFile lhs, final LazyMapFile rhs) {
+                final long lhsUse = lhs.getLastUse();
+                final long rhsUse = rhs.getLastUse();
+                return lhsUse < rhsUse ? -1 : (lhsUse == rhsUse ? 0 : 1);
+            }
+        });
+        for (int i = 0; i <= openFiles.size() - MAX_OPEN_FILES; i++) {
+            openFiles.get(i).closeIfUnused();
+        }
+    }
+
+}
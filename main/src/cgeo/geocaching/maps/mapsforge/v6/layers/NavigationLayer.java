@@ -6,6 +6,7 @@ import cgeo.geocaching.maps.routing.Routing;
 
 import android.content.Context;
 import android.location.Location;
+import android.support.annotation.NonNull;
 import android.support.v4.util.Pair;
 import android.util.DisplayMetrics;
 import android.view.WindowManager;
@@ -38,6 +39,14 @@ public class NavigationLayer extends Layer {
         windowManager.getDefaultDisplay().getMetrics(metrics);
 
         width = 8f * metrics.density;
+
+        // routes are calculated asynchronously, draw them as soon as they are available
+        Routing.setRouteListener(new Runnable() {
+            @Override
+            public void run() {
+                requestRedraw();
+            }
+        });
     }
 
     public void setDestination(final Geopoint coords) {
@@ -48,6 +57,19 @@ public class NavigationLayer extends Layer {
         currentCoords = new Geopoint(coordinatesIn);
     }
 
+    /**
+     * @return the route from the current position to the destination, empty if one of them is not known
+     */
+    @NonNull
+    public Geopoint[] getTrack() {
+        final Geopoint current = currentCoords;
+        final Geopoint destination = destinationCoords;
+        if (current == null || destination == null) {
+            return new Geopoint[0];
+        }
+        return Routing.getTrack(current, destination);
+    }
+
     @Override
     public void draw(final BoundingBox boundingBox, final byte zoomLevel, final Canvas canvas, final Point topLeftPoint) {
         if (destinationCoords == null || currentCoords == null) {
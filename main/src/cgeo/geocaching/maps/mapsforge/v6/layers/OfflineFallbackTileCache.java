@@ -0,0 +1,107 @@
+package cgeo.geocaching.maps.mapsforge.v6.layers;
+
+import java.util.Set;
+
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.queue.Job;
+import org.mapsforge.map.model.common.Observer;
+
+/**
+ * Tile cache of a {@link DownloadLayer}, which falls back to the tiles prefetched into an {@link OfflineTileStore}.
+ * <p>
+ * Unlike {@link org.mapsforge.map.layer.cache.TwoLevelTileCache}, downloaded tiles are always put into the regular tile
+ * cache, as the prefetched tiles are only written by the {@link TilePrefetcher} and the store ignores new tiles.
+ * </p>
+ * <p>
+ * The tile layers only draw the tiles of the regular tile cache, and do not download tiles contained in the store.
+ * The prefetched tiles of the working set are therefore copied into the regular tile cache when the working set is
+ * set.
+ * </p>
+ */
+final class OfflineFallbackTileCache implements TileCache {
+
+    private final TileCache tileCache;
+    private final OfflineTileStore offlineTileStore;
+
+    OfflineFallbackTileCache(final TileCache tileCache, final OfflineTileStore offlineTileStore) {
+        this.tileCache = tileCache;
+        this.offlineTileStore = offlineTileStore;
+    }
+
+    @Override
+    public boolean containsKey(final Job key) {
+        return tileCache.containsKey(key) || offlineTileStore.containsKey(key);
+    }
+
+    @Override
+    public void destroy() {
+        tileCache.destroy();
+        offlineTileStore.destroy();
+    }
+
+    @Override
+    public TileBitmap get(final Job key) {
+        final TileBitmap bitmap = tileCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        // copy prefetched tiles into the regular tile cache, so that they are not read from the file again
+        final TileBitmap prefetched = offlineTileStore.get(key);
+        if (prefetched != null) {
+            tileCache.put(key, prefetched);
+        }
+        return prefetched;
+    }
+
+    @Override
+    public int getCapacity() {
+        return Math.max(tileCache.getCapacity(), offlineTileStore.getCapacity());
+    }
+
+    @Override
+    public int getCapacityFirstLevel() {
+        return tileCache.getCapacity();
+    }
+
+    @Override
+    public TileBitmap getImmediately(final Job key) {
+        return tileCache.get(key);
+    }
+
+    @Override
+    public void purge() {
+        tileCache.purge();
+    }
+
+    @Override
+    public void put(final Job key, final TileBitmap bitmap) {
+        tileCache.put(key, bitmap);
+    }
+
+    @Override
+    public void setWorkingSet(final Set<Job> workingSet) {
+        tileCache.setWorkingSet(workingSet);
+        for (final Job job : workingSet) {
+            if (!tileCache.containsKey(job)) {
+                final TileBitmap prefetched = offlineTileStore.get(job);
+                if (prefetched != null) {
+                    tileCache.put(job, prefetched);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addObserver(final Observer observer) {
+        tileCache.addObserver(observer);
+        offlineTileStore.addObserver(observer);
+    }
+
+    @Override
+    public void removeObserver(final Observer observer) {
+        offlineTileStore.removeObserver(observer);
+        tileCache.removeObserver(observer);
+    }
+
+}
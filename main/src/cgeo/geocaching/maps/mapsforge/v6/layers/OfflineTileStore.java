@@ -0,0 +1,68 @@
+package cgeo.geocaching.maps.mapsforge.v6.layers;
+
+import cgeo.geocaching.storage.LocalStorage;
+import cgeo.geocaching.utils.FileUtils;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.layer.cache.TileStore;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * Persistent store of the tiles prefetched from an online tile source by the {@link TilePrefetcher}. The tiles are
+ * never evicted, so that they can be displayed without network connection.
+ */
+public final class OfflineTileStore extends TileStore {
+
+    private static final String TILES_DIRECTORY = "tiles";
+    private static final String SUFFIX = ".png";
+
+    private final File directory;
+
+    private OfflineTileStore(final File directory, final GraphicFactory graphicFactory) {
+        super(directory, SUFFIX, graphicFactory);
+        this.directory = directory;
+    }
+
+    /**
+     * @param sourceId
+     *            the id of the online tile source
+     * @return the store of the tile source, or {@code null} if its directory cannot be created
+     */
+    @Nullable
+    public static OfflineTileStore create(@NonNull final String sourceId, @NonNull final GraphicFactory graphicFactory) {
+        final File directory = getDirectory(sourceId);
+        if (!FileUtils.mkdirs(directory)) {
+            Log.w("OfflineTileStore: cannot create " + directory);
+            return null;
+        }
+        return new OfflineTileStore(directory, graphicFactory);
+    }
+
+    @NonNull
+    public static File getDirectory(@NonNull final String sourceId) {
+        return new File(new File(LocalStorage.getStorage(), TILES_DIRECTORY), sourceId);
+    }
+
+    /**
+     * @return the file of a tile in the directory of a store, using the same layout as {@link TileStore}
+     */
+    @NonNull
+    public static File getTileFile(@NonNull final File directory, @NonNull final Tile tile) {
+        return new File(new File(new File(directory, Byte.toString(tile.zoomLevel)), Integer.toString(tile.tileX)), Integer.toString(tile.tileY) + SUFFIX);
+    }
+
+    @Override
+    protected File findFile(final Job key) {
+        // not using the implementation of the super class, as it logs every missing tile
+        final File file = getTileFile(directory, key.tile);
+        return file.isFile() ? file : null;
+    }
+
+}
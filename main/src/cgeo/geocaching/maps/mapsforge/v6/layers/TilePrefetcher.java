@@ -0,0 +1,260 @@
+package cgeo.geocaching.maps.mapsforge.v6.layers;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.network.Network;
+import cgeo.geocaching.utils.DisposableHandler;
+import cgeo.geocaching.utils.FileUtils;
+import cgeo.geocaching.utils.Log;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.Response;
+import org.apache.commons.io.IOUtils;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.layer.download.tilesource.TileSource;
+
+/**
+ * Downloads the tiles of an online tile source for some areas ahead of time into the {@link OfflineTileStore} of the
+ * source, so that the map can display them without network connection.
+ * <p>
+ * Tiles which are already stored are skipped, so that an interrupted prefetch continues where it stopped when it is
+ * started again. The tiles are downloaded one after the other, optionally limited to a maximum bandwidth.
+ * </p>
+ */
+public class TilePrefetcher {
+
+    /**
+     * Maximum number of tiles of a single prefetch. The tile servers are run by volunteers and must not be used for
+     * bulk downloads.
+     */
+    public static final int MAX_TILES = 10000;
+    /**
+     * Distance around caches and waypoints to prefetch.
+     */
+    public static final double POINT_RADIUS_KILOMETERS = 0.5;
+    /**
+     * Distance on both sides of a route to prefetch.
+     */
+    public static final double TRACK_RADIUS_KILOMETERS = 0.3;
+
+    /**
+     * Sent when the download starts, with the number of tiles in {@code arg1}.
+     */
+    public static final int STARTED = 0;
+    /**
+     * Sent instead of {@link #STARTED} if the areas contain more than {@link #MAX_TILES} tiles.
+     */
+    public static final int TOO_MANY_TILES = 1;
+    /**
+     * Sent after every tile, with the number of processed tiles in {@code arg1}.
+     */
+    public static final int UPDATE_PROGRESS = 2;
+    /**
+     * Sent when the prefetch has finished, with the number of stored tiles in {@code arg1} and the number of tiles in
+     * {@code arg2}. Not sent if the prefetch has been cancelled.
+     */
+    public static final int FINISHED = 3;
+
+    /**
+     * The prefetch is aborted after this number of failed tiles in a row, e.g. after losing the network connection.
+     */
+    private static final int MAX_CONSECUTIVE_FAILURES = 10;
+    private static final int TILE_SIZE = 256;
+
+    private final TileSource tileSource;
+    private final File directory;
+
+    /**
+     * @param directory
+     *            the directory of the {@link OfflineTileStore} of the tile source
+     */
+    public TilePrefetcher(@NonNull final TileSource tileSource, @NonNull final File directory) {
+        this.tileSource = tileSource;
+        this.directory = directory;
+    }
+
+    /**
+     * Get the tiles covering some areas, without duplicates and ordered by zoom level, so that an overview is available
+     * first.
+     *
+     * @return the tiles, but at most {@link #MAX_TILES} + 1 to detect a too large prefetch without enumerating all
+     *         tiles
+     */
+    @NonNull
+    public static List<Tile> getTiles(@NonNull final Collection<Viewport> areas, final int minZoom, final int maxZoom) {
+        final Set<Tile> tiles = new LinkedHashSet<>();
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            for (final Viewport area : areas) {
+                if (!addTiles(tiles, area, (byte) zoom)) {
+                    return new ArrayList<>(tiles);
+                }
+            }
+        }
+        return new ArrayList<>(tiles);
+    }
+
+    /**
+     * @return {@code false} if the maximum number of tiles has been exceeded
+     */
+    private static boolean addTiles(final Set<Tile> tiles, final Viewport area, final byte zoom) {
+        final int left = MercatorProjection.longitudeToTileX(area.getLongitudeMin(), zoom);
+        final int right = MercatorProjection.longitudeToTileX(area.getLongitudeMax(), zoom);
+        // tile numbers increase from north to south
+        final int top = MercatorProjection.latitudeToTileY(area.getLatitudeMax(), zoom);
+        final int bottom = MercatorProjection.latitudeToTileY(area.getLatitudeMin(), zoom);
+        for (int y = top; y <= bottom; y++) {
+            for (int x = left; x <= right; x++) {
+                tiles.add(new Tile(x, y, zoom, TILE_SIZE));
+                if (tiles.size() > MAX_TILES) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the areas around some points, e.g. the caches of a list
+     */
+    @NonNull
+    public static List<Viewport> getSurroundings(@NonNull final Collection<Geopoint> points, final double radiusKilometers) {
+        final double diagonal = radiusKilometers * Math.sqrt(2);
+        final List<Viewport> areas = new ArrayList<>(points.size());
+        for (final Geopoint point : points) {
+            areas.add(new Viewport(point.project(225, diagonal), point.project(45, diagonal)));
+        }
+        return areas;
+    }
+
+    /**
+     * @return the areas along a track, also covering the straight segments between distant track points
+     */
+    @NonNull
+    public static List<Viewport> getCorridor(@NonNull final Geopoint[] track, final double radiusKilometers) {
+        final List<Geopoint> points = new ArrayList<>();
+        for (int i = 0; i < track.length; i++) {
+            final Geopoint point = track[i];
+            points.add(point);
+            if (i + 1 < track.length) {
+                final Geopoint next = track[i + 1];
+                final int steps = (int) Math.ceil(point.distanceTo(next) / radiusKilometers);
+                for (int step = 1; step < steps; step++) {
+                    final double fraction = (double) step / steps;
+                    points.add(new Geopoint(point.getLatitude() + (next.getLatitude() - point.getLatitude()) * fraction,
+                            point.getLongitude() + (next.getLongitude() - point.getLongitude()) * fraction));
+                }
+            }
+        }
+        return getSurroundings(points, radiusKilometers);
+    }
+
+    /**
+     * Download the tiles of some areas which are not stored yet. Must not be called on the UI thread.
+     *
+     * @param maxKilobytesPerSecond
+     *            the bandwidth limit, or 0 for no limit
+     * @param handler
+     *            the handler receiving the progress, which cancels the prefetch when disposed
+     */
+    public void prefetch(@NonNull final Collection<Viewport> areas, final int minZoom, final int maxZoom, final int maxKilobytesPerSecond, @NonNull final DisposableHandler handler) {
+        final List<Tile> tiles = getTiles(areas, Math.max(minZoom, tileSource.getZoomLevelMin()), Math.min(maxZoom, tileSource.getZoomLevelMax()));
+        if (tiles.size() > MAX_TILES) {
+            handler.sendEmptyMessage(TOO_MANY_TILES);
+            return;
+        }
+        handler.obtainMessage(STARTED, tiles.size(), 0).sendToTarget();
+        download(tiles, maxKilobytesPerSecond, handler);
+    }
+
+    private void download(final List<Tile> tiles, final int maxKilobytesPerSecond, final DisposableHandler handler) {
+        final long start = SystemClock.elapsedRealtime();
+        long bytes = 0;
+        int processed = 0;
+        int failed = 0;
+        int consecutiveFailures = 0;
+        for (final Tile tile : tiles) {
+            if (handler.isDisposed()) {
+                return;
+            }
+            final File file = OfflineTileStore.getTileFile(directory, tile);
+            if (!file.isFile()) {
+                final long size = downloadTile(tile, file);
+                if (size < 0) {
+                    failed++;
+                    if (++consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                        Log.w("TilePrefetcher: too many failures, aborting");
+                        break;
+                    }
+                } else {
+                    consecutiveFailures = 0;
+                    bytes += size;
+                    if (maxKilobytesPerSecond > 0) {
+                        final long minimumElapsed = bytes * 1000 / (maxKilobytesPerSecond * 1024L);
+                        final long elapsed = SystemClock.elapsedRealtime() - start;
+                        if (elapsed < minimumElapsed) {
+                            SystemClock.sleep(minimumElapsed - elapsed);
+                        }
+                    }
+                }
+            }
+            processed++;
+            handler.obtainMessage(UPDATE_PROGRESS, processed, 0).sendToTarget();
+        }
+        handler.obtainMessage(FINISHED, processed - failed, tiles.size()).sendToTarget();
+    }
+
+    /**
+     * Download a tile into a temporary file, which is only renamed when complete, so that a cancelled download does
+     * not leave a broken tile.
+     *
+     * @return the size of the tile, or -1 if the download failed
+     */
+    private long downloadTile(final Tile tile, final File file) {
+        final File temporaryFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        Response response = null;
+        OutputStream output = null;
+        try {
+            response = Network.getRequest(tileSource.getTileUrl(tile).toString()).blockingGet();
+            if (!response.isSuccessful()) {
+                Log.w("TilePrefetcher: cannot download " + tile + ": " + response.code());
+                return -1;
+            }
+            if (!FileUtils.mkdirs(file.getParentFile())) {
+                return -1;
+            }
+            final InputStream input = response.body().byteStream();
+            output = new FileOutputStream(temporaryFile);
+            final long size = IOUtils.copyLarge(input, output);
+            output.close();
+            output = null;
+            if (!temporaryFile.renameTo(file)) {
+                FileUtils.delete(temporaryFile);
+                return -1;
+            }
+            return size;
+        } catch (final Exception e) {
+            Log.w("TilePrefetcher: cannot download " + tile, e);
+            FileUtils.delete(temporaryFile);
+            return -1;
+        } finally {
+            IOUtils.closeQuietly(output);
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+}
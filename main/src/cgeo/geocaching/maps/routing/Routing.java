@@ -13,23 +13,66 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Xml;
 
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+/**
+ * Routing with the BRouter app. Routes are calculated asynchronously on a routing thread, so that drawing a map never
+ * waits for BRouter: {@link #getTrack(Geopoint, Geopoint)} only returns the latest route calculated, and requests a new
+ * one if necessary.
+ */
 public final class Routing {
     private static final double UPDATE_MIN_DISTANCE_KILOMETERS = 0.005;
     private static final double MAX_ROUTING_DISTANCE_KILOMETERS = 10.0;
     private static final double MIN_ROUTING_DISTANCE_KILOMETERS = 0.04;
     private static final int UPDATE_MIN_DELAY_SECONDS = 3;
+    /**
+     * Number of recently calculated routes to keep, e.g. for switching between navigation targets.
+     */
+    private static final int MAX_CACHED_ROUTES = 10;
+    private static final Scheduler routingScheduler = Schedulers.from(Executors.newSingleThreadExecutor());
     private static BRouterServiceConnection brouter;
-    private static Geopoint lastDirectionUpdatePoint;
-    private static Geopoint[] lastRoutingPoints;
-    private static Geopoint lastDestination;
+    /**
+     * recently calculated routes, the most recently used one first
+     */
+    private static final LinkedList<Route> cachedRoutes = new LinkedList<>();
+    @Nullable private static Route lastRoute;
+    @Nullable private static Route requestedRoute;
+    @NonNull private static Disposable routeRequest = Disposables.disposed();
+    @Nullable private static Runnable routeListener;
     private static long timeLastUpdate;
 
+    private static final class Route {
+        @NonNull final Geopoint start;
+        @NonNull final Geopoint destination;
+        @NonNull final RoutingMode mode;
+        @Nullable Geopoint[] track;
+
+        Route(@NonNull final Geopoint start, @NonNull final Geopoint destination, @NonNull final RoutingMode mode) {
+            this.start = start;
+            this.destination = destination;
+            this.mode = mode;
+        }
+
+        boolean matches(@NonNull final Geopoint otherStart, @NonNull final Geopoint otherDestination, @NonNull final RoutingMode otherMode) {
+            // Use cached route if current position has not changed more than 5m
+            // TODO: Maybe adjust this to current zoomlevel
+            return mode == otherMode && destination.equals(otherDestination) && start.distanceTo(otherStart) < UPDATE_MIN_DISTANCE_KILOMETERS;
+        }
+    }
+
     private Routing() {
         // utility class
     }
@@ -54,24 +97,35 @@ public final class Routing {
     }
 
     public static void disconnect() {
+        synchronized (Routing.class) {
+            routeRequest.dispose();
+            requestedRoute = null;
+            routeListener = null;
+        }
         if (brouter != null && brouter.isConnected()) {
             getContext().unbindService(brouter);
             brouter = null;
         }
     }
 
+    /**
+     * Set the listener to be notified when a new route has been calculated. It is called on the routing thread.
+     */
+    public static synchronized void setRouteListener(@Nullable final Runnable listener) {
+        routeListener = listener;
+    }
+
+    /**
+     * Get the route to draw, without waiting for BRouter. If there is no route calculated yet for the given start and
+     * destination, a calculation is started, and the route for the previous start or a straight line is returned
+     * meanwhile.
+     */
     @NonNull
     public static Geopoint[] getTrack(final Geopoint start, final Geopoint destination) {
         if (brouter == null || Settings.getRoutingMode() == RoutingMode.STRAIGHT) {
             return defaultTrack(start, destination);
         }
 
-        // avoid updating to frequently
-        final long timeNow = System.currentTimeMillis();
-        if ((timeNow - timeLastUpdate) < 1000 * UPDATE_MIN_DELAY_SECONDS) {
-            return lastRoutingPoints;
-        }
-
         // Disable routing for huge distances
         final float targetDistance = start.distanceTo(destination);
         if (targetDistance > MAX_ROUTING_DISTANCE_KILOMETERS) {
@@ -83,32 +137,110 @@ public final class Routing {
             return defaultTrack(start, destination);
         }
 
-        // Use cached route if current position has not changed more than 5m
-        // TODO: Maybe adjust this to current zoomlevel
-        if (lastDirectionUpdatePoint != null && destination == lastDestination && start.distanceTo(lastDirectionUpdatePoint) < UPDATE_MIN_DISTANCE_KILOMETERS) {
-            return lastRoutingPoints;
+        final RoutingMode mode = Settings.getRoutingMode();
+        synchronized (Routing.class) {
+            final Route cached = findCachedRoute(start, destination, mode);
+            if (cached != null) {
+                lastRoute = cached;
+                return cached.track;
+            }
+
+            final boolean sameDestination = lastRoute != null && lastRoute.mode == mode && lastRoute.destination.equals(destination);
+            // avoid updating to frequently, unless the destination changed
+            final long timeNow = System.currentTimeMillis();
+            if (!sameDestination || (timeNow - timeLastUpdate) >= 1000 * UPDATE_MIN_DELAY_SECONDS) {
+                requestRoute(new Route(start, destination, mode));
+                timeLastUpdate = timeNow;
+            }
+            if (sameDestination) {
+                return lastRoute.track;
+            }
         }
+        return defaultTrack(start, destination);
+    }
 
-        // now really calculate a new route
-        lastDestination = destination;
-        lastRoutingPoints = calculateRouting(start, destination);
-        lastDirectionUpdatePoint = start;
-        timeLastUpdate = timeNow;
-        return lastRoutingPoints;
+    @Nullable
+    private static Route findCachedRoute(@NonNull final Geopoint start, @NonNull final Geopoint destination, @NonNull final RoutingMode mode) {
+        for (final Iterator<Route> iterator = cachedRoutes.iterator(); iterator.hasNext();) {
+            final Route route = iterator.next();
+            if (route.matches(start, destination, mode)) {
+                iterator.remove();
+                cachedRoutes.addFirst(route);
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculate a route on the routing thread, replacing a request still running.
+     */
+    private static void requestRoute(@NonNull final Route route) {
+        if (requestedRoute != null && !routeRequest.isDisposed() && requestedRoute.matches(route.start, route.destination, route.mode)) {
+            // already calculating this route
+            return;
+        }
+        routeRequest.dispose();
+        requestedRoute = route;
+        routeRequest = Maybe.fromCallable(new Callable<Geopoint[]>() {
+            @Override
+            public Geopoint[] call() {
+                return calculateRouting(route.start, route.destination, route.mode);
+            }
+        }).subscribeOn(routingScheduler).subscribe(new Consumer<Geopoint[]>() {
+            @Override
+            public void accept(final Geopoint[] track) {
+                publishRoute(route, track);
+            }
+        }, new Consumer<Throwable>() {
+            @Override
+            public void accept(final Throwable throwable) {
+                Log.e("Routing: cannot calculate route", throwable);
+            }
+        });
+    }
+
+    private static void publishRoute(@NonNull final Route route, @NonNull final Geopoint[] track) {
+        final Runnable listener;
+        synchronized (Routing.class) {
+            if (requestedRoute != route) {
+                // superseded by a newer request
+                return;
+            }
+            requestedRoute = null;
+            route.track = track;
+            lastRoute = route;
+            cachedRoutes.addFirst(route);
+            while (cachedRoutes.size() > MAX_CACHED_ROUTES) {
+                cachedRoutes.removeLast();
+            }
+            listener = routeListener;
+        }
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     private static Geopoint[] defaultTrack(final Geopoint start, final Geopoint destination) {
         return new Geopoint[] { start, destination };
     }
 
-    private static Geopoint[] calculateRouting(final Geopoint start, final Geopoint dest) {
+    @Nullable
+    private static Geopoint[] calculateRouting(final Geopoint start, final Geopoint dest, final RoutingMode mode) {
+        final BRouterServiceConnection connection = brouter;
+        if (connection == null) {
+            return null;
+        }
         final Bundle params = new Bundle();
         params.putString("trackFormat", "gpx");
         params.putDoubleArray("lats", new double[]{start.getLatitude(), dest.getLatitude()});
         params.putDoubleArray("lons", new double[]{start.getLongitude(), dest.getLongitude()});
-        params.putString("v", Settings.getRoutingMode().parameterValue);
+        params.putString("v", mode.parameterValue);
 
-        final String gpx = brouter.getTrackFromParams(params);
+        final String gpx = connection.getTrackFromParams(params);
+        if (gpx == null) {
+            return null;
+        }
 
         return parseGpxTrack(gpx, dest);
     }
@@ -143,8 +275,11 @@ public final class Routing {
         return null;
     }
 
-    public static void invalidateRouting() {
-        lastDirectionUpdatePoint = null;
+    public static synchronized void invalidateRouting() {
+        routeRequest.dispose();
+        requestedRoute = null;
+        lastRoute = null;
+        cachedRoutes.clear();
         timeLastUpdate = 0;
     }
 
@@ -10,6 +10,7 @@ import cgeo.geocaching.connector.IConnector;
 import cgeo.geocaching.connector.ILoggingManager;
 import cgeo.geocaching.connector.capability.ISearchByCenter;
 import cgeo.geocaching.connector.capability.ISearchByGeocode;
+import cgeo.geocaching.connector.capability.ISearchByGeocodes;
 import cgeo.geocaching.connector.capability.WatchListCapability;
 import cgeo.geocaching.connector.gc.GCConnector;
 import cgeo.geocaching.connector.gc.GCConstants;
@@ -30,6 +31,7 @@ import cgeo.geocaching.log.LogEntry;
 import cgeo.geocaching.log.LogTemplateProvider;
 import cgeo.geocaching.log.LogTemplateProvider.LogContext;
 import cgeo.geocaching.log.LogType;
+import cgeo.geocaching.log.PagedLogList;
 import cgeo.geocaching.maps.mapsforge.v6.caches.GeoitemRef;
 import cgeo.geocaching.network.HtmlImage;
 import cgeo.geocaching.settings.Settings;
@@ -63,6 +65,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -86,6 +89,11 @@ import org.apache.commons.lang3.StringUtils;
  */
 public class Geocache implements IWaypoint {
 
+    /**
+     * Number of caches whose details are downloaded together by {@link #searchByGeocodes(Collection)}.
+     */
+    public static final int DETAILS_BATCH_SIZE = 50;
+
     private static final int OWN_WP_PREFIX_OFFSET = 17;
     private long updated = 0;
     private long detailedUpdate = 0;
@@ -1144,6 +1152,17 @@ public class Geocache implements IWaypoint {
         return inDatabase() ? DataStore.loadLogs(geocode) : Collections.<LogEntry>emptyList();
     }
 
+    /**
+     * Get all stored logs, or only the logs of friends, without the limit of {@link #getLogs()}. The logs are loaded
+     * from the database page by page when accessed, see {@link PagedLogList}.
+     *
+     * @return immutable list of logs
+     */
+    @NonNull
+    public List<LogEntry> getPagedLogs(final boolean friendsOnly) {
+        return inDatabase() ? new PagedLogList(geocode, friendsOnly) : Collections.<LogEntry>emptyList();
+    }
+
     /**
      * @return only the logs of friends
      */
@@ -1316,6 +1335,33 @@ public class Geocache implements IWaypoint {
         return storageLocation.contains(StorageLocation.DATABASE);
     }
 
+    /**
+     * Estimate the memory used by this cache instance. Lazy initialized data is only counted if it has been loaded
+     * already, so this never triggers a database access.
+     *
+     * @return estimated size in bytes
+     */
+    public int getEstimatedSize() {
+        // Java strings use 2 bytes per character
+        int size = 1024 + 2 * (geocode.length() + StringUtils.length(name) + StringUtils.length(ownerDisplayName) + StringUtils.length(ownerUserId)
+                + StringUtils.length(hint) + StringUtils.length(location) + StringUtils.length(personalNote)
+                + StringUtils.length(shortdesc) + StringUtils.length(description));
+        if (attributes.isInitialized()) {
+            size += 64 * attributes.size();
+        }
+        if (waypoints.isInitialized()) {
+            // don't iterate, the waypoints may be modified concurrently
+            size += 512 * waypoints.size();
+        }
+        if (spoilers != null) {
+            size += 256 * spoilers.size();
+        }
+        if (inventory != null) {
+            size += 512 * inventory.size();
+        }
+        return size;
+    }
+
     /**
      * @param waypoint
      *            Waypoint to add to the cache
@@ -1673,37 +1719,7 @@ public class Geocache implements IWaypoint {
             }
 
             final HtmlImage imgGetter = new HtmlImage(cache.getGeocode(), false, true, forceRedownload);
-
-            // store images from description
-            if (StringUtils.isNotBlank(cache.getDescription())) {
-                Html.fromHtml(cache.getDescription(), imgGetter, null);
-            }
-
-            if (DisposableHandler.isDisposed(handler)) {
-                return;
-            }
-
-            // store spoilers
-            if (CollectionUtils.isNotEmpty(cache.getSpoilers())) {
-                for (final Image oneSpoiler : cache.getSpoilers()) {
-                    imgGetter.getDrawable(oneSpoiler.getUrl());
-                }
-            }
-
-            if (DisposableHandler.isDisposed(handler)) {
-                return;
-            }
-
-            // store images from logs
-            if (Settings.isStoreLogImages()) {
-                for (final LogEntry log : cache.getLogs()) {
-                    if (log.hasLogImages()) {
-                        for (final Image oneLogImg : log.getLogImages()) {
-                            imgGetter.getDrawable(oneLogImg.getUrl());
-                        }
-                    }
-                }
-            }
+            cache.queueImages(imgGetter, handler);
 
             if (DisposableHandler.isDisposed(handler)) {
                 return;
@@ -1726,6 +1742,46 @@ public class Geocache implements IWaypoint {
         }
     }
 
+    /**
+     * Queue the images of the description, the spoilers and, if enabled, the images of the logs for being stored by an
+     * image getter created with {@code onlySave}.
+     *
+     * @param handler
+     *            stops queueing when disposed, may be {@code null}
+     */
+    public void queueImages(@NonNull final HtmlImage imgGetter, @Nullable final DisposableHandler handler) {
+        // store images from description
+        if (StringUtils.isNotBlank(getDescription())) {
+            Html.fromHtml(getDescription(), imgGetter, null);
+        }
+
+        if (DisposableHandler.isDisposed(handler)) {
+            return;
+        }
+
+        // store spoilers
+        if (CollectionUtils.isNotEmpty(getSpoilers())) {
+            for (final Image oneSpoiler : getSpoilers()) {
+                imgGetter.getDrawable(oneSpoiler.getUrl());
+            }
+        }
+
+        if (DisposableHandler.isDisposed(handler)) {
+            return;
+        }
+
+        // store images from logs
+        if (Settings.isStoreLogImages()) {
+            for (final LogEntry log : getLogs()) {
+                if (log.hasLogImages()) {
+                    for (final Image oneLogImg : log.getLogImages()) {
+                        imgGetter.getDrawable(oneLogImg.getUrl());
+                    }
+                }
+            }
+        }
+    }
+
     public static SearchResult searchByGeocode(final String geocode, final String guid, final boolean forceReload, final DisposableHandler handler) {
         if (StringUtils.isBlank(geocode) && StringUtils.isBlank(guid)) {
             Log.e("Geocache.searchByGeocode: No geocode nor guid given");
@@ -1751,6 +1807,36 @@ public class Geocache implements IWaypoint {
         return null;
     }
 
+    /**
+     * Download the details of those caches not yet in the database whose connector can download many caches at once,
+     * so that storing them afterwards with {@link #storeCache} does not need a request per cache. The details of the
+     * other caches are left to {@link #storeCache}.
+     *
+     * @param geocodes
+     *            at most {@link #DETAILS_BATCH_SIZE} geocodes, so that the progress of the caller can be updated regularly
+     */
+    public static void searchByGeocodes(@NonNull final Collection<String> geocodes) {
+        final Map<ISearchByGeocodes, List<String>> geocodesByConnector = new HashMap<>();
+        for (final String geocode : geocodes) {
+            final IConnector connector = ConnectorFactory.getConnector(geocode);
+            if (connector instanceof ISearchByGeocodes && !DataStore.isOffline(geocode, null) && !DataStore.isThere(geocode, null, true)) {
+                List<String> connectorGeocodes = geocodesByConnector.get(connector);
+                if (connectorGeocodes == null) {
+                    connectorGeocodes = new ArrayList<>();
+                    geocodesByConnector.put((ISearchByGeocodes) connector, connectorGeocodes);
+                }
+                connectorGeocodes.add(geocode);
+            }
+        }
+        for (final Map.Entry<ISearchByGeocodes, List<String>> entry : geocodesByConnector.entrySet()) {
+            try {
+                entry.getKey().searchByGeocodes(entry.getValue());
+            } catch (final Exception e) {
+                Log.e("Geocache.searchByGeocodes", e);
+            }
+        }
+    }
+
     public boolean isOffline() {
         return !lists.isEmpty() && (lists.size() > 1 || lists.iterator().next() != StoredList.TEMPORARY_LIST.id);
     }
@@ -0,0 +1,414 @@
+package cgeo.geocaching.network;
+
+import cgeo.geocaching.SearchResult;
+import cgeo.geocaching.connector.ConnectorFactory;
+import cgeo.geocaching.connector.IConnector;
+import cgeo.geocaching.connector.capability.ISearchByGeocodes;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.staticmaps.StaticMapsProvider;
+import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.DisposableHandler;
+import cgeo.geocaching.utils.Log;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Refreshes many caches at once, e.g. all caches of a stored list.
+ * <p>
+ * The refresh of a cache is split into three stages: downloading the details, storing the images and storing the
+ * static maps. Each stage works on a limited number of caches in parallel, so that the stages of different caches
+ * overlap and slow image or map downloads do not hold back the details of the following caches. Detail requests to the
+ * same host are spaced by {@link #DETAILS_INTERVAL_MILLISECONDS}, regardless of the number of parallel caches. The
+ * details of caches whose connector implements {@link ISearchByGeocodes} are downloaded in batches of
+ * {@link Geocache#DETAILS_BATCH_SIZE} caches instead.
+ * </p>
+ * <p>
+ * When refreshing a list, the next stage of every cache is saved in the database, so that a refresh interrupted by the
+ * end of the process can be continued with {@link #resume(List, Map, DisposableHandler)}.
+ * </p>
+ */
+public class BulkRefresh {
+
+    /**
+     * {@code listId} of a refresh which cannot be continued after an interruption.
+     */
+    public static final int NO_LIST = Integer.MIN_VALUE;
+
+    private static final int STAGE_DETAILS = 0;
+    private static final int STAGE_IMAGES = 1;
+    private static final int STAGE_MAPS = 2;
+
+    private static final int DETAILS_CONCURRENCY = 3;
+    private static final int IMAGES_CONCURRENCY = 2;
+    private static final int MAPS_CONCURRENCY = 2;
+
+    /**
+     * Minimum time between two detail requests to the same host.
+     */
+    private static final long DETAILS_INTERVAL_MILLISECONDS = 500;
+    /**
+     * Time per cache assumed until the first cache has been refreshed.
+     */
+    private static final long DEFAULT_MILLISECONDS_PER_CACHE = 25000 / DETAILS_CONCURRENCY;
+
+    /** shared by all refreshes, so that parallel refreshes do not send more requests to a host */
+    private static final HostRateLimiter DETAILS_RATE_LIMITER = new HostRateLimiter(DETAILS_INTERVAL_MILLISECONDS);
+    /** the lists being refreshed, guarded by itself */
+    private static final Set<Integer> RUNNING_LISTS = new HashSet<>();
+
+    private static final class Item {
+        /** the cache as shown to the user, which is sent to the handler when done */
+        final Geocache cache;
+        final int stage;
+        /** the refreshed cache, loaded from the database if the refresh is continued after the first stage */
+        volatile Geocache refreshed;
+
+        Item(final Geocache cache, final int stage) {
+            this.cache = cache;
+            this.stage = stage;
+        }
+    }
+
+    private final int listId;
+    @NonNull private final Set<Integer> additionalListIds;
+    private final AtomicInteger remaining = new AtomicInteger();
+    private ThroughputEstimator estimator = null;
+
+    /**
+     * @param listId
+     *            the list being refreshed, or {@link #NO_LIST} if the refresh cannot be continued after an interruption
+     * @param additionalListIds
+     *            the lists the caches are stored in additionally to their current lists
+     */
+    public BulkRefresh(final int listId, @NonNull final Set<Integer> additionalListIds) {
+        this.listId = listId;
+        this.additionalListIds = additionalListIds;
+    }
+
+    /**
+     * Start refreshing caches in the background. The handler is sent a {@link DownloadProgress#MSG_LOADED} message
+     * with the cache for every cache which has been processed, and a {@link DownloadProgress#MSG_DONE} message when all
+     * caches have been processed. Disposing the handler stops the refresh.
+     */
+    public void start(@NonNull final List<Geocache> caches, @NonNull final DisposableHandler handler) {
+        final List<Item> items = new ArrayList<>(caches.size());
+        final List<String> geocodes = new ArrayList<>(caches.size());
+        for (final Geocache cache : caches) {
+            items.add(new Item(cache, STAGE_DETAILS));
+            geocodes.add(cache.getGeocode());
+        }
+        if (listId != NO_LIST) {
+            DataStore.saveRefreshQueue(listId, geocodes, additionalListIds);
+        }
+        run(items, handler);
+    }
+
+    /**
+     * Continue an interrupted refresh of a list, see {@link #start(List, DisposableHandler)}.
+     *
+     * @param caches
+     *            the caches of the list
+     * @param stages
+     *            the next stage of the caches not yet refreshed by their geocode, see
+     *            {@link DataStore#loadRefreshQueue(int)}
+     */
+    public void resume(@NonNull final List<Geocache> caches, @NonNull final Map<String, Integer> stages, @NonNull final DisposableHandler handler) {
+        final List<Item> items = new ArrayList<>(stages.size());
+        for (final Geocache cache : caches) {
+            final Integer stage = stages.get(cache.getGeocode());
+            if (stage != null) {
+                items.add(new Item(cache, stage));
+            }
+        }
+        run(items, handler);
+    }
+
+    /**
+     * @return {@code true} if a refresh of the list is running in this process
+     */
+    public static boolean isRunning(final int listId) {
+        synchronized (RUNNING_LISTS) {
+            return RUNNING_LISTS.contains(listId);
+        }
+    }
+
+    /**
+     * @return the number of caches not yet processed
+     */
+    public int getRemaining() {
+        return remaining.get();
+    }
+
+    /**
+     * @return the estimated time until all caches are processed, based on the recently processed caches
+     */
+    public long getRemainingMilliseconds() {
+        return estimator.getRemainingMilliseconds(remaining.get(), SystemClock.elapsedRealtime());
+    }
+
+    private void run(@NonNull final List<Item> items, @NonNull final DisposableHandler handler) {
+        remaining.set(items.size());
+        estimator = new ThroughputEstimator(SystemClock.elapsedRealtime(), DEFAULT_MILLISECONDS_PER_CACHE);
+        if (listId != NO_LIST) {
+            synchronized (RUNNING_LISTS) {
+                RUNNING_LISTS.add(listId);
+            }
+        }
+        handler.add(Observable.fromIterable(getBatches(items))
+                .flatMap(details(handler), DETAILS_CONCURRENCY)
+                .flatMap(stage(STAGE_IMAGES, handler), IMAGES_CONCURRENCY)
+                .flatMap(stage(STAGE_MAPS, handler), MAPS_CONCURRENCY)
+                .doFinally(new Action() {
+                    @Override
+                    public void run() {
+                        if (listId != NO_LIST) {
+                            synchronized (RUNNING_LISTS) {
+                                RUNNING_LISTS.remove(listId);
+                            }
+                        }
+                    }
+                })
+                .subscribe(new Consumer<Item>() {
+                    @Override
+                    public void accept(final Item item) {
+                        finish(item, handler);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(final Throwable throwable) {
+                        Log.e("BulkRefresh", throwable);
+                        handler.sendEmptyMessage(DownloadProgress.MSG_DONE);
+                    }
+                }, new Action() {
+                    @Override
+                    public void run() {
+                        if (listId != NO_LIST) {
+                            // also forget the caches which have been removed from the list in between
+                            DataStore.clearRefreshQueue(listId);
+                        }
+                        handler.sendEmptyMessage(DownloadProgress.MSG_DONE);
+                    }
+                }));
+    }
+
+    /**
+     * @return a function downloading the details of a batch of caches in the background, emitting the caches whose
+     *         next stage is to be run
+     */
+    @NonNull
+    private Function<List<Item>, Observable<Item>> details(@NonNull final DisposableHandler handler) {
+        return new Function<List<Item>, Observable<Item>>() {
+            @Override
+            public Observable<Item> apply(final List<Item> batch) {
+                if (batch.get(0).stage > STAGE_DETAILS) {
+                    // done before the interruption
+                    return Observable.fromIterable(batch);
+                }
+                return Observable.create(new ObservableOnSubscribe<Item>() {
+                    @Override
+                    public void subscribe(final ObservableEmitter<Item> emitter) {
+                        try {
+                            refreshDetails(batch, handler);
+                        } catch (final Exception e) {
+                            Log.e("BulkRefresh: details of " + batch.get(0).cache.getGeocode(), e);
+                        }
+                        for (final Item item : batch) {
+                            if (handler.isDisposed()) {
+                                // keep the stage of the caches for continuing the refresh
+                                break;
+                            }
+                            next(item, STAGE_DETAILS, item.refreshed != null, emitter, handler);
+                        }
+                        emitter.onComplete();
+                    }
+                }).subscribeOn(Schedulers.io());
+            }
+        };
+    }
+
+    /**
+     * @return a function running a stage following the details of the refresh of a cache in the background, emitting
+     *         the cache if the next stage is to be run
+     */
+    @NonNull
+    private Function<Item, Observable<Item>> stage(final int stage, @NonNull final DisposableHandler handler) {
+        return new Function<Item, Observable<Item>>() {
+            @Override
+            public Observable<Item> apply(final Item item) {
+                if (item.stage > stage) {
+                    // done before the interruption
+                    return Observable.just(item);
+                }
+                return Observable.create(new ObservableOnSubscribe<Item>() {
+                    @Override
+                    public void subscribe(final ObservableEmitter<Item> emitter) {
+                        final boolean success = runStage(item, stage, handler);
+                        if (handler.isDisposed()) {
+                            // keep the stage of the cache for continuing the refresh
+                            emitter.onComplete();
+                            return;
+                        }
+                        next(item, stage, success, emitter, handler);
+                        emitter.onComplete();
+                    }
+                }).subscribeOn(Schedulers.io());
+            }
+        };
+    }
+
+    private void next(@NonNull final Item item, final int stage, final boolean success, @NonNull final ObservableEmitter<Item> emitter, @NonNull final DisposableHandler handler) {
+        if (success) {
+            if (listId != NO_LIST && stage < STAGE_MAPS) {
+                DataStore.setRefreshStage(listId, item.cache.getGeocode(), stage + 1);
+            }
+            emitter.onNext(item);
+        } else {
+            // the following stages need the details
+            finish(item, handler);
+        }
+    }
+
+    /**
+     * @return {@code false} if the following stages cannot be run
+     */
+    private boolean runStage(@NonNull final Item item, final int stage, @NonNull final DisposableHandler handler) {
+        try {
+            switch (stage) {
+                case STAGE_IMAGES:
+                    final Geocache cache = getRefreshed(item);
+                    if (cache == null) {
+                        return false;
+                    }
+                    final HtmlImage imgGetter = new HtmlImage(cache.getGeocode(), false, true, true);
+                    cache.queueImages(imgGetter, handler);
+                    imgGetter.waitForEndCompletable(handler).blockingAwait();
+                    return true;
+                case STAGE_MAPS:
+                    final Geocache mapsCache = getRefreshed(item);
+                    if (mapsCache == null) {
+                        return false;
+                    }
+                    StaticMapsProvider.downloadMaps(mapsCache).blockingAwait();
+                    return true;
+                default:
+                    throw new IllegalArgumentException("unknown stage " + stage);
+            }
+        } catch (final Exception e) {
+            Log.e("BulkRefresh: stage " + stage + " of " + item.cache.getGeocode(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Group the caches whose details can be downloaded together, keeping the order of the caches otherwise.
+     *
+     * @return batches of caches of the same connector, or single caches
+     */
+    @NonNull
+    private static List<List<Item>> getBatches(@NonNull final List<Item> items) {
+        final List<List<Item>> batches = new ArrayList<>();
+        final Map<IConnector, List<Item>> openBatches = new HashMap<>();
+        for (final Item item : items) {
+            final IConnector connector = ConnectorFactory.getConnector(item.cache.getGeocode());
+            if (item.stage > STAGE_DETAILS || !(connector instanceof ISearchByGeocodes)) {
+                batches.add(Collections.singletonList(item));
+                continue;
+            }
+            List<Item> batch = openBatches.get(connector);
+            if (batch == null || batch.size() >= Geocache.DETAILS_BATCH_SIZE) {
+                batch = new ArrayList<>(Geocache.DETAILS_BATCH_SIZE);
+                openBatches.put(connector, batch);
+                batches.add(batch);
+            }
+            batch.add(item);
+        }
+        return batches;
+    }
+
+    /**
+     * Download and store the details of a batch of caches of the same connector. The refreshed caches are set in
+     * their items.
+     */
+    private void refreshDetails(@NonNull final List<Item> batch, @NonNull final DisposableHandler handler) {
+        final IConnector connector = ConnectorFactory.getConnector(batch.get(0).cache.getGeocode());
+        final long wait = DETAILS_RATE_LIMITER.reserve(StringUtils.defaultString(connector.getHost()), SystemClock.elapsedRealtime());
+        if (wait > 0) {
+            SystemClock.sleep(wait);
+        }
+        if (handler.isDisposed()) {
+            return;
+        }
+
+        final Set<String> geocodes;
+        if (connector instanceof ISearchByGeocodes) {
+            final List<String> batchGeocodes = new ArrayList<>(batch.size());
+            for (final Item item : batch) {
+                batchGeocodes.add(item.cache.getGeocode());
+            }
+            geocodes = ((ISearchByGeocodes) connector).searchByGeocodes(batchGeocodes).getGeocodes();
+        } else {
+            // the handler expects no progress messages of the connectors
+            final SearchResult search = Geocache.searchByGeocode(batch.get(0).cache.getGeocode(), null, true, null);
+            geocodes = search != null ? search.getGeocodes() : Collections.<String> emptySet();
+        }
+
+        for (final Item item : batch) {
+            if (handler.isDisposed()) {
+                return;
+            }
+            if (!geocodes.contains(item.cache.getGeocode())) {
+                continue;
+            }
+            final Geocache refreshed = DataStore.loadCache(item.cache.getGeocode(), LoadFlags.LOAD_CACHE_OR_DB);
+            if (refreshed == null) {
+                continue;
+            }
+            final Set<Integer> lists = new HashSet<>(item.cache.getLists());
+            lists.addAll(additionalListIds);
+            refreshed.setLists(lists);
+            DataStore.saveCache(refreshed, EnumSet.of(SaveFlag.DB));
+            item.refreshed = refreshed;
+        }
+    }
+
+    @Nullable
+    private static Geocache getRefreshed(@NonNull final Item item) {
+        if (item.refreshed == null) {
+            item.refreshed = DataStore.loadCache(item.cache.getGeocode(), LoadFlags.LOAD_CACHE_OR_DB);
+        }
+        return item.refreshed;
+    }
+
+    private void finish(@NonNull final Item item, @NonNull final DisposableHandler handler) {
+        remaining.decrementAndGet();
+        estimator.onCompleted(SystemClock.elapsedRealtime());
+        if (listId != NO_LIST) {
+            DataStore.removeFromRefreshQueue(listId, item.cache.getGeocode());
+        }
+        handler.obtainMessage(DownloadProgress.MSG_LOADED, item.cache).sendToTarget();
+    }
+
+}
@@ -0,0 +1,37 @@
+package cgeo.geocaching.network;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spaces the requests to the same host by a minimum interval, independent of the number of threads sending them.
+ */
+final class HostRateLimiter {
+
+    private final long intervalMilliseconds;
+    /** the earliest time of the next request by host, guarded by itself */
+    private final Map<String, Long> nextRequest = new HashMap<>();
+
+    HostRateLimiter(final long intervalMilliseconds) {
+        this.intervalMilliseconds = intervalMilliseconds;
+    }
+
+    /**
+     * Reserve the next free time slot for a request to a host.
+     *
+     * @param now
+     *            the current time in milliseconds
+     * @return the time to wait before sending the request, in milliseconds
+     */
+    long reserve(@NonNull final String host, final long now) {
+        synchronized (nextRequest) {
+            final Long next = nextRequest.get(host);
+            final long slot = next != null ? Math.max(now, next) : now;
+            nextRequest.put(host, slot + intervalMilliseconds);
+            return slot - now;
+        }
+    }
+
+}
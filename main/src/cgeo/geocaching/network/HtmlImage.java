@@ -6,6 +6,7 @@ import cgeo.geocaching.compatibility.Compatibility;
 import cgeo.geocaching.connector.ConnectorFactory;
 import cgeo.geocaching.storage.LocalStorage;
 import cgeo.geocaching.utils.AndroidRxUtils;
+import cgeo.geocaching.utils.BitmapMemoryCache;
 import cgeo.geocaching.utils.DisposableHandler;
 import cgeo.geocaching.utils.FileUtils;
 import cgeo.geocaching.utils.ImageUtils;
@@ -424,6 +425,10 @@ public class HtmlImage implements Html.ImageGetter {
             if (freshEnough && onlySave) {
                 return ImmutablePair.of((Bitmap) null, true);
             }
+            final Bitmap cached = BitmapMemoryCache.get(file, maxWidth, maxHeight);
+            if (cached != null) {
+                return ImmutablePair.of(cached, freshEnough);
+            }
             final BitmapFactory.Options bfOptions = new BitmapFactory.Options();
             bfOptions.inTempStorage = new byte[16 * 1024];
             bfOptions.inPreferredConfig = Bitmap.Config.RGB_565;
@@ -433,6 +438,7 @@ public class HtmlImage implements Html.ImageGetter {
                 Log.e("Cannot decode bitmap from " + file.getPath());
                 return ImmutablePair.of((Bitmap) null, false);
             }
+            BitmapMemoryCache.put(file, maxWidth, maxHeight, image);
             return ImmutablePair.of(image, freshEnough);
         }
         return ImmutablePair.of((Bitmap) null, false);
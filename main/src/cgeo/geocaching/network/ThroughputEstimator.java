@@ -0,0 +1,59 @@
+package cgeo.geocaching.network;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Estimates the remaining time of an operation on many items from the times the most recent items have been
+ * completed, so that the estimate follows changes of the speed, e.g. when the network gets slower.
+ */
+final class ThroughputEstimator {
+
+    /**
+     * Number of recent completions the speed is measured over.
+     */
+    private static final int WINDOW = 20;
+
+    private final long start;
+    private final long defaultMillisecondsPerItem;
+    /** completion times of the most recent items, guarded by this */
+    private final Deque<Long> completions = new ArrayDeque<>(WINDOW + 1);
+
+    /**
+     * @param start
+     *            the start time of the operation in milliseconds
+     * @param defaultMillisecondsPerItem
+     *            the time per item assumed until the first item has been completed
+     */
+    ThroughputEstimator(final long start, final long defaultMillisecondsPerItem) {
+        this.start = start;
+        this.defaultMillisecondsPerItem = defaultMillisecondsPerItem;
+    }
+
+    synchronized void onCompleted(final long now) {
+        completions.addLast(now);
+        if (completions.size() > WINDOW) {
+            completions.removeFirst();
+        }
+    }
+
+    /**
+     * @param remaining
+     *            the number of items not yet completed
+     * @param now
+     *            the current time in milliseconds
+     * @return the estimated time until all items are completed, in milliseconds
+     */
+    synchronized long getRemainingMilliseconds(final int remaining, final long now) {
+        if (completions.isEmpty()) {
+            return remaining * defaultMillisecondsPerItem;
+        }
+        final long last = completions.getLast();
+        final long millisecondsPerItem = completions.size() < 2
+                ? last - start
+                : (last - completions.getFirst()) / (completions.size() - 1);
+        // the time since the last completion has already been spent on the remaining items
+        return Math.max(0, remaining * millisecondsPerItem - (now - last));
+    }
+
+}
@@ -0,0 +1,79 @@
+package cgeo.geocaching.sensors;
+
+import cgeo.geocaching.utils.AngleUtils;
+
+/**
+ * Low-pass filter for the headings measured by the sensors.
+ * <p>
+ * The headings are averaged as unit vectors, so that the filter does not turn around the whole circle when the
+ * heading goes across north. A filtered heading is only emitted when it differs enough from the last emitted one, so
+ * that the users of the direction are not woken up by the noise of the sensors.
+ * </p>
+ * <p>
+ * The filter is not thread-safe and must be fed from a single thread.
+ * </p>
+ */
+public final class HeadingFilter {
+
+    /**
+     * weight of a new measurement, the lower the smoother
+     */
+    private final double smoothing;
+
+    /**
+     * minimum change of the filtered heading to emit it, in degrees
+     */
+    private final float threshold;
+
+    private double x;
+    private double y;
+    private boolean initialized = false;
+    private float heading;
+    private boolean emitted = false;
+
+    /**
+     * @param smoothing
+     *            the weight of a new measurement, between 0 (exclusive) and 1 (no smoothing)
+     * @param threshold
+     *            the minimum change of the filtered heading to emit it, in degrees
+     */
+    public HeadingFilter(final double smoothing, final float threshold) {
+        this.smoothing = smoothing;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Add a measured heading to the filter.
+     *
+     * @param measured
+     *            the measured heading in degrees
+     * @return {@code true} if the filtered heading changed enough to be emitted, in which case it is available through
+     *         {@link #getHeading()}
+     */
+    public boolean update(final float measured) {
+        final double radians = Math.toRadians(measured);
+        if (initialized) {
+            x += smoothing * (Math.cos(radians) - x);
+            y += smoothing * (Math.sin(radians) - y);
+        } else {
+            x = Math.cos(radians);
+            y = Math.sin(radians);
+            initialized = true;
+        }
+        final float filtered = AngleUtils.normalize((float) Math.toDegrees(Math.atan2(y, x)));
+        if (emitted && Math.abs(AngleUtils.difference(heading, filtered)) < threshold) {
+            return false;
+        }
+        heading = filtered;
+        emitted = true;
+        return true;
+    }
+
+    /**
+     * @return the last emitted heading in degrees, in the [0, 360[ range
+     */
+    public float getHeading() {
+        return heading;
+    }
+
+}
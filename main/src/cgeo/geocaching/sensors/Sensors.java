@@ -12,6 +12,7 @@ import android.app.Application;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.reactivex.Observable;
@@ -21,6 +22,16 @@ import io.reactivex.functions.Predicate;
 
 public class Sensors {
 
+    /**
+     * weight of a new sensor heading in the smoothed direction
+     */
+    private static final double HEADING_SMOOTHING = 0.3;
+
+    /**
+     * minimum change of the smoothed sensor direction to emit it, in degrees
+     */
+    private static final float HEADING_THRESHOLD = 1.0f;
+
     private Observable<GeoData> geoDataObservable;
     private Observable<GeoData> geoDataObservableLowPower;
     private Observable<Float> directionObservable;
@@ -115,7 +126,7 @@ public class Sensors {
             sensorDirectionObservable = MagnetometerAndAccelerometerProvider.create(application);
         }
 
-        final Observable<Float> magneticDirectionObservable = sensorDirectionObservable.onErrorResumeNext(new Function<Throwable, Observable<Float>>() {
+        final Observable<Float> magneticDirectionObservable = filterHeading(sensorDirectionObservable).onErrorResumeNext(new Function<Throwable, Observable<Float>>() {
             @Override
             public Observable<Float> apply(final Throwable throwable) {
                 Log.e("Device orientation is not available due to sensors error, disabling compass", throwable);
@@ -141,6 +152,30 @@ public class Sensors {
         directionObservable = RxUtils.rememberLast(Observable.merge(magneticDirectionObservable, directionFromGpsObservable).doOnNext(onNextrememberDirectionAction), 0f);
     }
 
+    /**
+     * Smooth the raw sensor headings and drop the ones which do not change the direction noticeably. This runs on the
+     * thread delivering the sensor events, so that the UI thread is only woken up for meaningful changes.
+     */
+    private static Observable<Float> filterHeading(final Observable<Float> sensorDirectionObservable) {
+        return Observable.defer(new Callable<Observable<Float>>() {
+            @Override
+            public Observable<Float> call() {
+                final HeadingFilter filter = new HeadingFilter(HEADING_SMOOTHING, HEADING_THRESHOLD);
+                return sensorDirectionObservable.filter(new Predicate<Float>() {
+                    @Override
+                    public boolean test(final Float heading) {
+                        return filter.update(heading);
+                    }
+                }).map(new Function<Float, Float>() {
+                    @Override
+                    public Float apply(final Float heading) {
+                        return filter.getHeading();
+                    }
+                });
+            }
+        });
+    }
+
     public Observable<GeoData> geoDataObservable(final boolean lowPower) {
         return lowPower ? geoDataObservableLowPower : geoDataObservable;
     }
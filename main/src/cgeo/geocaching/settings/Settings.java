@@ -71,6 +71,11 @@ public class Settings {
 
     private static final int SHOW_WP_THRESHOLD_DEFAULT = 10;
     public static final int SHOW_WP_THRESHOLD_MAX = 50;
+    private static final int LIVEMAP_TILE_CACHE_MAX_AGE_DEFAULT = 360;
+    private static final int LIVEMAP_TILE_CACHE_SIZE_DEFAULT = 2000;
+    private static final int TILE_PREFETCH_MIN_ZOOM_DEFAULT = 12;
+    private static final int TILE_PREFETCH_MAX_ZOOM_DEFAULT = 16;
+    private static final int TILE_PREFETCH_BANDWIDTH_DEFAULT = 100;
     private static final int MAP_SOURCE_DEFAULT = GoogleMapProvider.GOOGLE_MAP_ID.hashCode();
 
     public static final boolean HW_ACCEL_DISABLED_BY_DEFAULT =
@@ -1029,6 +1034,41 @@ public class Settings {
         putInt(R.string.pref_livemapstrategy, strategy.id);
     }
 
+    /**
+     * @return the time in minutes a downloaded live map tile is reused before it is requested again
+     */
+    public static int getLiveMapTileCacheMaxAge() {
+        return Integer.parseInt(getString(R.string.pref_livemaptilecachemaxage, String.valueOf(LIVEMAP_TILE_CACHE_MAX_AGE_DEFAULT)));
+    }
+
+    /**
+     * @return the maximum number of live map tiles kept in the tile cache
+     */
+    public static int getLiveMapTileCacheSize() {
+        return Integer.parseInt(getString(R.string.pref_livemaptilecachesize, String.valueOf(LIVEMAP_TILE_CACHE_SIZE_DEFAULT)));
+    }
+
+    /**
+     * @return the lowest zoom level of online map tiles prefetched for offline use
+     */
+    public static int getTilePrefetchMinZoom() {
+        return Integer.parseInt(getString(R.string.pref_tileprefetchminzoom, String.valueOf(TILE_PREFETCH_MIN_ZOOM_DEFAULT)));
+    }
+
+    /**
+     * @return the highest zoom level of online map tiles prefetched for offline use
+     */
+    public static int getTilePrefetchMaxZoom() {
+        return Integer.parseInt(getString(R.string.pref_tileprefetchmaxzoom, String.valueOf(TILE_PREFETCH_MAX_ZOOM_DEFAULT)));
+    }
+
+    /**
+     * @return the bandwidth in kB/s used for prefetching online map tiles, 0 if not limited
+     */
+    public static int getTilePrefetchBandwidth() {
+        return Integer.parseInt(getString(R.string.pref_tileprefetchbandwidth, String.valueOf(TILE_PREFETCH_BANDWIDTH_DEFAULT)));
+    }
+
     public static boolean isDebug() {
         return Log.isDebug();
     }
@@ -1,35 +1,116 @@
 package cgeo.geocaching.storage;
 
+import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.storage.DataStore.StorageLocation;
-import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.models.Geocache;
-import cgeo.geocaching.utils.LeastRecentlyUsedMap;
-import cgeo.geocaching.utils.LeastRecentlyUsedMap.RemoveHandler;
 import cgeo.geocaching.utils.Log;
 
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.Context;
+
 import org.apache.commons.lang3.StringUtils;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Cache for Caches. Every cache is stored in memory while c:geo is active to
  * speed up the app and to minimize network requests - which are slow.
+ *
+ * The caches are limited by their estimated memory size instead of their number, as a detailed cache can be much
+ * larger than a cache from the live map. When the budget is exceeded, the least recently used caches are evicted.
+ * Evicted caches which are not stored in the database (and therefore could only be restored by downloading them
+ * again) are kept in a second tier of soft references, which the garbage collector may clear when memory gets low.
+ *
+ * The geocodes of both tiers are indexed by their coordinates in a {@link GeocodeGrid}, so that looking up the caches
+ * of a viewport does not need to look at all caches.
+ *
+ * Reading does not lock, only storing and evicting caches is serialized.
  */
 public class CacheCache {
 
-    private static final int MAX_CACHED_CACHES = 1000;
-    private final LeastRecentlyUsedMap<String, Geocache> cachesCache;
+    /**
+     * Part of the memory class of the device to be used for caches.
+     */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+    /**
+     * Budget if the memory class of the device is not known.
+     */
+    private static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+    /**
+     * When evicting, the used memory is reduced below the budget, so that not every following store evicts again.
+     */
+    private static final int EVICT_TO_PERCENT = 90;
+
+    private static final class Entry {
+        final Geocache cache;
+        /** guarded by the write lock */
+        int size;
+        volatile long lastAccess;
+
+        Entry(final Geocache cache, final int size, final long lastAccess) {
+            this.cache = cache;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final long maxBytes;
+    private final Map<String, Entry> cachesCache = new ConcurrentHashMap<>();
+    private final Map<String, SoftReference<Geocache>> softCachesCache = new ConcurrentHashMap<>();
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final Object writeLock = new Object();
+    /** guarded by the write lock */
+    private long usedBytes = 0;
+    /** modified only with the write lock held */
+    private final GeocodeGrid grid = new GeocodeGrid();
+    private final ReadWriteLock gridLock = new ReentrantReadWriteLock();
 
     public CacheCache() {
-        cachesCache = new LeastRecentlyUsedMap.LruCache<>(MAX_CACHED_CACHES);
-        cachesCache.setRemoveHandler(new CacheRemoveHandler());
+        this(getMemoryBudget());
+    }
+
+    CacheCache(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    private static long getMemoryBudget() {
+        final Application application = CgeoApplication.getInstance();
+        if (application == null) {
+            return DEFAULT_MAX_BYTES;
+        }
+        final ActivityManager activityManager = (ActivityManager) application.getSystemService(Context.ACTIVITY_SERVICE);
+        final long budget = activityManager.getMemoryClass() * 1024L * 1024L / MEMORY_CLASS_DIVISOR;
+        Log.d("CacheCache: using " + budget / 1024 + " kB for caches");
+        return budget;
     }
 
-    public synchronized void removeAllFromCache() {
-        cachesCache.clear();
+    public void removeAllFromCache() {
+        synchronized (writeLock) {
+            cachesCache.clear();
+            softCachesCache.clear();
+            usedBytes = 0;
+            gridLock.writeLock().lock();
+            try {
+                grid.clear();
+            } finally {
+                gridLock.writeLock().unlock();
+            }
+        }
     }
 
     /**
@@ -40,8 +121,13 @@ public class CacheCache {
         if (StringUtils.isBlank(geocode)) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized (this) {
-            cachesCache.remove(geocode);
+        synchronized (writeLock) {
+            final Entry removed = cachesCache.remove(geocode);
+            if (removed != null) {
+                usedBytes -= removed.size;
+            }
+            softCachesCache.remove(geocode);
+            removeFromGrid(geocode);
         }
     }
 
@@ -59,9 +145,89 @@ public class CacheCache {
         if (StringUtils.isBlank(cache.getGeocode())) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized (this) {
-            cache.addStorageLocation(StorageLocation.CACHE);
-            cachesCache.put(cache.getGeocode(), cache);
+        cache.addStorageLocation(StorageLocation.CACHE);
+        final Entry entry = new Entry(cache, cache.getEstimatedSize(), accessCounter.incrementAndGet());
+        synchronized (writeLock) {
+            softCachesCache.remove(cache.getGeocode());
+            final Entry replaced = cachesCache.put(cache.getGeocode(), entry);
+            usedBytes += entry.size;
+            if (replaced != null) {
+                usedBytes -= replaced.size;
+            }
+            putInGrid(cache);
+            if (usedBytes > maxBytes) {
+                evict(entry);
+            }
+        }
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void putInGrid(final Geocache cache) {
+        final Geopoint coords = cache.getCoords();
+        gridLock.writeLock().lock();
+        try {
+            if (coords != null) {
+                grid.put(cache.getGeocode(), coords.getLatitude(), coords.getLongitude());
+            } else {
+                grid.putWithoutCoordinates(cache.getGeocode());
+            }
+        } finally {
+            gridLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void removeFromGrid(final String geocode) {
+        gridLock.writeLock().lock();
+        try {
+            grid.remove(geocode);
+        } finally {
+            gridLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Evict the least recently used caches. Must be called with the write lock held.
+     *
+     * @param keep
+     *            the entry just stored, which is not evicted
+     */
+    private void evict(final Entry keep) {
+        final List<Entry> entries = new ArrayList<>(cachesCache.values());
+        // caches may have grown since they were stored, e.g. by loading their description
+        usedBytes = 0;
+        for (final Entry entry : entries) {
+            entry.size = entry.cache.getEstimatedSize();
+            usedBytes += entry.size;
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(final Entry lhs, final Entry rhs) {
+                final long lhsAccess = lhs.lastAccess;
+                final long rhsAccess = rhs.lastAccess;
+                return lhsAccess < rhsAccess ? -1 : (lhsAccess == rhsAccess ? 0 : 1);
+            }
+        });
+        final long targetBytes = maxBytes / 100 * EVICT_TO_PERCENT;
+        for (final Entry entry : entries) {
+            if (usedBytes <= targetBytes) {
+                break;
+            }
+            if (entry == keep) {
+                continue;
+            }
+            final String geocode = entry.cache.getGeocode();
+            cachesCache.remove(geocode);
+            usedBytes -= entry.size;
+            if (entry.cache.inDatabase()) {
+                removeFromGrid(geocode);
+            } else {
+                softCachesCache.put(geocode, new SoftReference<>(entry.cache));
+            }
         }
     }
 
@@ -74,42 +240,79 @@ public class CacheCache {
         if (StringUtils.isBlank(geocode)) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized (this) {
-            return cachesCache.get(geocode);
+        final Entry entry = cachesCache.get(geocode);
+        if (entry != null) {
+            entry.lastAccess = accessCounter.incrementAndGet();
+            return entry.cache;
+        }
+        final SoftReference<Geocache> reference = softCachesCache.get(geocode);
+        if (reference == null) {
+            return null;
+        }
+        final Geocache cache = reference.get();
+        if (cache == null) {
+            removeClearedReference(geocode, reference);
+            return null;
+        }
+        // used again, so move it back into the first tier
+        putCacheInCache(cache);
+        return cache;
+    }
+
+    private void removeClearedReference(final String geocode, final SoftReference<Geocache> reference) {
+        synchronized (writeLock) {
+            if (softCachesCache.get(geocode) == reference) {
+                softCachesCache.remove(geocode);
+                if (!cachesCache.containsKey(geocode)) {
+                    removeFromGrid(geocode);
+                }
+            }
         }
     }
 
-    public synchronized Set<String> getInViewport(final Viewport viewport, final CacheType cacheType) {
+    public Set<String> getInViewport(final Viewport viewport, final CacheType cacheType) {
+        final List<String> candidates = new ArrayList<>();
+        gridLock.readLock().lock();
+        try {
+            grid.collect(viewport.getLatitudeMin(), viewport.getLatitudeMax(), viewport.getLongitudeMin(), viewport.getLongitudeMax(), candidates);
+        } finally {
+            gridLock.readLock().unlock();
+        }
         final Set<String> geocodes = new HashSet<>();
-        for (final Geocache cache : cachesCache.values()) {
-            if (cache.getCoords() == null) {
-                // FIXME: this kludge must be removed, it is only present to help us debug the cases where
-                // caches contain null coordinates.
-                Log.w("CacheCache.getInViewport: got cache with null coordinates: " + cache.getGeocode());
+        for (final String geocode : candidates) {
+            final Entry entry = cachesCache.get(geocode);
+            if (entry != null) {
+                addIfInViewport(geocodes, entry.cache, viewport, cacheType);
                 continue;
             }
-            if (cacheType.contains(cache) && viewport.contains(cache)) {
-                geocodes.add(cache.getGeocode());
+            final SoftReference<Geocache> reference = softCachesCache.get(geocode);
+            if (reference != null) {
+                final Geocache cache = reference.get();
+                if (cache != null) {
+                    addIfInViewport(geocodes, cache, viewport, cacheType);
+                } else {
+                    removeClearedReference(geocode, reference);
+                }
             }
         }
         return geocodes;
     }
 
-    @Override
-    public synchronized String toString() {
-        return StringUtils.join(cachesCache.keySet(), ' ');
+    private static void addIfInViewport(final Set<String> geocodes, final Geocache cache, final Viewport viewport, final CacheType cacheType) {
+        if (cache.getCoords() == null) {
+            // FIXME: this kludge must be removed, it is only present to help us debug the cases where
+            // caches contain null coordinates.
+            Log.w("CacheCache.getInViewport: got cache with null coordinates: " + cache.getGeocode());
+            return;
+        }
+        if (cacheType.contains(cache) && viewport.contains(cache)) {
+            geocodes.add(cache.getGeocode());
+        }
     }
 
-    private static class CacheRemoveHandler implements RemoveHandler<Geocache> {
-
-        @Override
-        public void onRemove(final Geocache removed) {
-            // FIXME: as above, we sometimes get caches with null coordinates, that may then provoke
-            // a NullPointerException down the invocation chain.
-            if (removed.getCoords() != null) {
-                Tile.cache.removeFromTileCache(removed);
-            }
-        }
+    @Override
+    public String toString() {
+        return StringUtils.join(cachesCache.keySet(), ' ');
     }
 
 }
@@ -63,6 +63,8 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -83,6 +85,7 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 
 public class DataStore {
 
@@ -168,7 +171,7 @@ public class DataStore {
      */
     private static final CacheCache cacheCache = new CacheCache();
     private static volatile SQLiteDatabase database = null;
-    private static final int dbVersion = 71;
+    private static final int dbVersion = 78;
     public static final int customListIdOffset = 10;
     @NonNull private static final String dbName = "data";
     @NonNull private static final String dbTableCaches = "cg_caches";
@@ -183,6 +186,14 @@ public class DataStore {
     @NonNull private static final String dbTableLogsOffline = "cg_logs_offline";
     @NonNull private static final String dbTableTrackables = "cg_trackables";
     @NonNull private static final String dbTableSearchDestinationHistory = "cg_search_destination_history";
+    @NonNull private static final String dbTableCachesSpatial = "cg_caches_rtree";
+    @NonNull private static final String dbTableWaypointsSpatial = "cg_waypoints_rtree";
+    @NonNull private static final String dbTableLiveMapTiles = "cg_livemap_tiles";
+    @NonNull private static final String dbTableLiveMapTileCaches = "cg_livemap_tile_caches";
+    @NonNull private static final String dbTableRefreshQueue = "cg_refresh_queue";
+    @NonNull private static final String dbTableTrail = "cg_trail";
+    /** savepoint of the part of an import transaction storing a single cache */
+    @NonNull private static final String IMPORT_SAVEPOINT = "import_cache";
     @NonNull private static final String dbCreateCaches = ""
             + "CREATE TABLE " + dbTableCaches + " ("
             + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -284,7 +295,9 @@ public class DataStore {
             + "log TEXT, "
             + "date LONG, "
             + "found INTEGER NOT NULL DEFAULT 0, "
-            + "friend INTEGER "
+            + "friend INTEGER, "
+            + "log_key TEXT, " // identity of the log, see getLogKey()
+            + "log_hash INTEGER " // content of the log, see getLogHash()
             + "); ";
 
     private static final String dbCreateLogCount = ""
@@ -334,6 +347,56 @@ public class DataStore {
             + "longitude DOUBLE "
             + "); ";
 
+    private static final String dbCreateCachesSpatial = ""
+            + "CREATE VIRTUAL TABLE " + dbTableCachesSpatial + " USING rtree("
+            + "id, " // _id of the cache
+            + "minLat, maxLat, "
+            + "minLon, maxLon"
+            + "); ";
+    private static final String dbCreateWaypointsSpatial = ""
+            + "CREATE VIRTUAL TABLE " + dbTableWaypointsSpatial + " USING rtree("
+            + "id, " // _id of the waypoint
+            + "minLat, maxLat, "
+            + "minLon, maxLon"
+            + "); ";
+
+    private static final String dbCreateLiveMapTiles = ""
+            + "CREATE TABLE " + dbTableLiveMapTiles + " ("
+            + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "updated LONG NOT NULL, " // date of download
+            + "x INTEGER NOT NULL, "
+            + "y INTEGER NOT NULL, "
+            + "zoomlevel INTEGER NOT NULL, "
+            + "filter TEXT NOT NULL, " // live map filter parameters the tile has been requested with
+            + "parsed INTEGER NOT NULL DEFAULT 0" // cache types have been decoded from the tile image
+            + "); ";
+    private static final String dbCreateLiveMapTileCaches = ""
+            + "CREATE TABLE " + dbTableLiveMapTileCaches + " ("
+            + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "tile_id INTEGER NOT NULL, "
+            + "geocode TEXT NOT NULL, "
+            + "name TEXT, "
+            + "latitude DOUBLE, "
+            + "longitude DOUBLE, "
+            + "type TEXT, "
+            + "found INTEGER NOT NULL DEFAULT 0, "
+            + "owner TEXT"
+            + "); ";
+    private static final String dbCreateRefreshQueue = ""
+            + "CREATE TABLE IF NOT EXISTS " + dbTableRefreshQueue + " ("
+            + "list_id INTEGER NOT NULL, " // list being refreshed
+            + "geocode TEXT NOT NULL, "
+            + "stage INTEGER NOT NULL DEFAULT 0, " // next stage of the refresh
+            + "lists TEXT, " // additional lists to store the cache in
+            + "PRIMARY KEY (list_id, geocode)"
+            + "); ";
+    private static final String dbCreateTrail = ""
+            + "CREATE TABLE IF NOT EXISTS " + dbTableTrail + " ("
+            + "_id INTEGER PRIMARY KEY AUTOINCREMENT, " // positions are only appended, so the ids are in their order
+            + "latitude DOUBLE NOT NULL, "
+            + "longitude DOUBLE NOT NULL"
+            + "); ";
+
     private static final Single<Integer> allCachesCountObservable = Single.create(new SingleOnSubscribe<Integer>() {
         @Override
         public void subscribe(final SingleEmitter<Integer> emitter) throws Exception {
@@ -345,6 +408,8 @@ public class DataStore {
 
     private static boolean newlyCreatedDatabase = false;
     private static boolean databaseCleaned = false;
+    /** whether the SQLite build supports R*-trees and the spatial index tables exist */
+    private static volatile boolean spatialIndexAvailable = false;
 
     public static void init() {
         if (database != null) {
@@ -541,8 +606,13 @@ public class DataStore {
             db.execSQL(dbCreateLogsOffline);
             db.execSQL(dbCreateTrackables);
             db.execSQL(dbCreateSearchDestinationHistory);
+            db.execSQL(dbCreateLiveMapTiles);
+            db.execSQL(dbCreateLiveMapTileCaches);
+            db.execSQL(dbCreateRefreshQueue);
+            db.execSQL(dbCreateTrail);
 
             createIndices(db);
+            createSpatialIndices(db);
         }
 
         private static void createIndices(final SQLiteDatabase db) {
@@ -555,14 +625,43 @@ public class DataStore {
             db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_type ON " + dbTableCaches + " (type)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_visit_detail ON " + dbTableCaches + " (visiteddate, detailedupdate)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_attr_geo ON " + dbTableAttributes + " (geocode)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_attr_attribute ON " + dbTableAttributes + " (attribute)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_wpts_geo ON " + dbTableWaypoints + " (geocode)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_wpts_geo_type ON " + dbTableWaypoints + " (geocode, type)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_spoil_geo ON " + dbTableSpoilers + " (geocode)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_logs_geo ON " + dbTableLogs + " (geocode)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_logs_geo_date ON " + dbTableLogs + " (geocode, date)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_logimages_log ON " + dbTableLogImages + " (log_id)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_logcount_geo ON " + dbTableLogCount + " (geocode)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_logsoff_geo ON " + dbTableLogsOffline + " (geocode)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_trck_geo ON " + dbTableTrackables + " (geocode)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_lists_geo ON " + dbTableCachesLists + " (geocode)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_livemap_tiles_xyz ON " + dbTableLiveMapTiles + " (zoomlevel, x, y)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_livemap_tiles_updated ON " + dbTableLiveMapTiles + " (updated)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_livemap_tile_caches_tile ON " + dbTableLiveMapTileCaches + " (tile_id)");
+        }
+
+        /**
+         * Create and fill the R*-tree tables used for viewport queries. If the SQLite library has been built without
+         * the R*-tree module, the tables are not created and viewport queries use the coordinate columns instead.
+         */
+        private static void createSpatialIndices(final SQLiteDatabase db) {
+            try {
+                db.execSQL(dbCreateCachesSpatial);
+                db.execSQL(dbCreateWaypointsSpatial);
+                db.execSQL("INSERT INTO " + dbTableCachesSpatial + " SELECT _id, latitude, latitude, longitude, longitude FROM " + dbTableCaches
+                        + " WHERE latitude IS NOT NULL AND longitude IS NOT NULL");
+                db.execSQL("INSERT INTO " + dbTableWaypointsSpatial + " SELECT _id, latitude, latitude, longitude, longitude FROM " + dbTableWaypoints
+                        + " WHERE latitude IS NOT NULL AND longitude IS NOT NULL");
+            } catch (final Exception e) {
+                Log.w("DataStore.createSpatialIndices: R*-tree spatial index not available", e);
+                db.execSQL("DROP TABLE IF EXISTS " + dbTableCachesSpatial);
+                db.execSQL("DROP TABLE IF EXISTS " + dbTableWaypointsSpatial);
+            }
+        }
+
+        private static boolean hasTable(final SQLiteDatabase db, final String table) {
+            return DatabaseUtils.queryNumEntries(db, "sqlite_master", "type = 'table' AND name = ?", new String[] { table }) > 0;
         }
 
         @Override
@@ -858,6 +957,75 @@ public class DataStore {
                             Log.e("Failed to upgrade to ver. 71", e);
                         }
                     }
+                    // Introduces R*-tree spatial index for caches and waypoints
+                    if (oldVersion < 72) {
+                        createSpatialIndices(db);
+                    }
+
+                    // Live map tile cache
+                    if (oldVersion < 73) {
+                        try {
+                            db.execSQL(dbCreateLiveMapTiles);
+                            db.execSQL(dbCreateLiveMapTileCaches);
+                            createIndices(db);
+
+                            Log.i("Added tables " + dbTableLiveMapTiles + " and " + dbTableLiveMapTileCaches + ".");
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 73", e);
+                        }
+                    }
+
+                    // Identity of logs for saving only new and changed logs
+                    if (oldVersion < 74) {
+                        try {
+                            db.execSQL("ALTER TABLE " + dbTableLogs + " ADD COLUMN log_key TEXT");
+                            db.execSQL("ALTER TABLE " + dbTableLogs + " ADD COLUMN log_hash INTEGER");
+                            createIndices(db);
+                            // images of logs which have been replaced by older versions
+                            final int orphanedImages = db.delete(dbTableLogImages, "log_id NOT IN (SELECT _id FROM " + dbTableLogs + ")", null);
+                            Log.i("Removed " + orphanedImages + " orphaned log images.");
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 74", e);
+                        }
+                    }
+
+                    // Index for loading logs page by page
+                    if (oldVersion < 75) {
+                        try {
+                            createIndices(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 75", e);
+                        }
+                    }
+
+                    // Progress of bulk refreshes
+                    if (oldVersion < 76) {
+                        try {
+                            db.execSQL(dbCreateRefreshQueue);
+                            Log.i("Added table " + dbTableRefreshQueue + ".");
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 76", e);
+                        }
+                    }
+
+                    // Index for filtering by attribute
+                    if (oldVersion < 77) {
+                        try {
+                            createIndices(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 77", e);
+                        }
+                    }
+
+                    // Trail shown on the map
+                    if (oldVersion < 78) {
+                        try {
+                            db.execSQL(dbCreateTrail);
+                            Log.i("Added table " + dbTableTrail + ".");
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 78", e);
+                        }
+                    }
                 }
 
                 db.setTransactionSuccessful();
@@ -870,6 +1038,7 @@ public class DataStore {
 
         @Override
         public void onOpen(final SQLiteDatabase db) {
+            spatialIndexAvailable = hasTable(db, dbTableCachesSpatial) && hasTable(db, dbTableWaypointsSpatial);
             if (firstRun) {
                 sanityChecks(db);
                 firstRun = false;
@@ -940,6 +1109,11 @@ public class DataStore {
             db.execSQL("DROP TABLE IF EXISTS " + dbTableLogCount);
             db.execSQL("DROP TABLE IF EXISTS " + dbTableLogsOffline);
             db.execSQL("DROP TABLE IF EXISTS " + dbTableTrackables);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableCachesSpatial);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableWaypointsSpatial);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableLiveMapTiles);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableLiveMapTileCaches);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableRefreshQueue);
         }
 
     }
@@ -1134,6 +1308,18 @@ public class DataStore {
         if (CollectionUtils.isEmpty(caches)) {
             return;
         }
+        for (final Geocache geocache : mergeCaches(caches, saveFlags)) {
+            storeIntoDatabase(geocache);
+        }
+    }
+
+    /**
+     * Merge the caches with the data already stored in the CacheCache or in the database, and update the CacheCache.
+     *
+     * @return the caches which need to be stored in the database
+     */
+    @NonNull
+    private static List<Geocache> mergeCaches(final Collection<Geocache> caches, final Set<LoadFlags.SaveFlag> saveFlags) {
         final List<String> cachesFromDatabase = new ArrayList<>();
         final Map<String, Geocache> existingCaches = new HashMap<>();
 
@@ -1149,7 +1335,7 @@ public class DataStore {
         }
 
         // then load all remaining caches from the database in one step
-        for (final Geocache cacheFromDatabase : loadCaches(cachesFromDatabase, LoadFlags.LOAD_ALL_DB_ONLY)) {
+        for (final Geocache cacheFromDatabase : loadCaches(cachesFromDatabase, LoadFlags.LOAD_ALL_DB_ONLY_BATCHED)) {
             existingCaches.put(cacheFromDatabase.getGeocode(), cacheFromDatabase);
         }
 
@@ -1175,13 +1361,103 @@ public class DataStore {
                 toBeStored.add(cache);
             }
         }
+        return toBeStored;
+    }
+
+    /**
+     * Store a batch of imported caches and their logs in the database using a single transaction. The caches are
+     * merged with already stored data like in {@link #saveCaches(Collection, Set)}, and are removed from the
+     * CacheCache afterwards, to avoid using lots of memory for caches which the user did not actually look at.
+     * A cache which cannot be stored is logged and skipped, without affecting the other caches of the batch.
+     *
+     * @param caches
+     *            the caches to store
+     * @param logs
+     *            the logs to store, by geocode. Logs of caches without an entry are not modified.
+     */
+    public static void saveImportedCaches(final Collection<Geocache> caches, final Map<String, List<LogEntry>> logs) {
+        if (CollectionUtils.isEmpty(caches)) {
+            return;
+        }
+        init();
+
+        final List<Geocache> toBeStored = mergeCaches(caches, EnumSet.of(SaveFlag.DB));
+        database.beginTransaction();
+        try {
+            // every cache is stored in a savepoint, so that a failing cache does not leave any of its rows behind
+            for (final Geocache cache : toBeStored) {
+                beginSavepoint();
+                boolean stored = false;
+                try {
+                    storeIntoDatabaseWithoutTransaction(cache);
+                    stored = true;
+                } catch (final Exception e) {
+                    Log.e("DataStore.saveImportedCaches: cannot store " + cache.getGeocode(), e);
+                }
+                endSavepoint(stored);
+                if (!stored) {
+                    cacheCache.removeCacheFromCache(cache.getGeocode());
+                }
+            }
+            for (final Entry<String, List<LogEntry>> cacheLogs : logs.entrySet()) {
+                beginSavepoint();
+                boolean stored = false;
+                try {
+                    saveLogsWithoutTransaction(cacheLogs.getKey(), cacheLogs.getValue());
+                    stored = true;
+                } catch (final Exception e) {
+                    Log.e("DataStore.saveImportedCaches: cannot store logs of " + cacheLogs.getKey(), e);
+                }
+                endSavepoint(stored);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
-        for (final Geocache geocache : toBeStored) {
-            storeIntoDatabase(geocache);
+        final Set<String> geocodes = new HashSet<>(caches.size());
+        for (final Geocache cache : caches) {
+            geocodes.add(cache.getGeocode());
         }
+        removeCaches(geocodes, EnumSet.of(RemoveFlag.CACHE));
+    }
+
+    private static void beginSavepoint() {
+        database.execSQL("SAVEPOINT " + IMPORT_SAVEPOINT);
+    }
+
+    /**
+     * End the savepoint started by {@link #beginSavepoint()}, keeping its changes or rolling them back.
+     */
+    private static void endSavepoint(final boolean keepChanges) {
+        if (!keepChanges) {
+            // SQLiteDatabase takes every statement starting with ROLLBACK for the end of the whole transaction,
+            // the leading comment makes it pass the statement to SQLite instead
+            database.execSQL("/* savepoint */ ROLLBACK TO " + IMPORT_SAVEPOINT);
+        }
+        database.execSQL("RELEASE " + IMPORT_SAVEPOINT);
     }
 
     private static boolean storeIntoDatabase(final Geocache cache) {
+        init();
+
+        // try to update record else insert fresh..
+        database.beginTransaction();
+
+        try {
+            storeIntoDatabaseWithoutTransaction(cache);
+            database.setTransactionSuccessful();
+            return true;
+        } catch (final Exception e) {
+            Log.e("SaveCache", e);
+        } finally {
+            database.endTransaction();
+        }
+
+        return false;
+    }
+
+    private static void storeIntoDatabaseWithoutTransaction(final Geocache cache) {
         cache.addStorageLocation(StorageLocation.DATABASE);
         cacheCache.putCacheInCache(cache);
         Log.d("Saving " + cache.toString() + " (" + cache.getLists() + ") to DB");
@@ -1238,34 +1514,27 @@ public class DataStore {
         values.put("logPasswordRequired", cache.isLogPasswordRequired() ? 1 : 0);
         values.put("watchlistCount", cache.getWatchlistCount());
 
-        init();
-
-        // try to update record else insert fresh..
-        database.beginTransaction();
-
-        try {
-            saveAttributesWithoutTransaction(cache);
-            saveWaypointsWithoutTransaction(cache);
-            saveSpoilersWithoutTransaction(cache);
-            saveLogCountsWithoutTransaction(cache);
-            saveInventoryWithoutTransaction(cache.getGeocode(), cache.getInventory());
-            saveListsWithoutTransaction(cache);
-
-            final int rows = database.update(dbTableCaches, values, "geocode = ?", new String[] { cache.getGeocode() });
-            if (rows == 0) {
-                // cache is not in the DB, insert it
-                /* long id = */
-                database.insert(dbTableCaches, null, values);
-            }
-            database.setTransactionSuccessful();
-            return true;
-        } catch (final Exception e) {
-            Log.e("SaveCache", e);
-        } finally {
-            database.endTransaction();
+        saveAttributesWithoutTransaction(cache);
+        saveWaypointsWithoutTransaction(cache);
+        saveSpoilersWithoutTransaction(cache);
+        saveLogCountsWithoutTransaction(cache);
+        saveInventoryWithoutTransaction(cache.getGeocode(), cache.getInventory());
+        saveListsWithoutTransaction(cache);
+
+        final int rows = database.update(dbTableCaches, values, "geocode = ?", new String[] { cache.getGeocode() });
+        if (rows == 0) {
+            // cache is not in the DB, insert it
+            /* long id = */
+            database.insert(dbTableCaches, null, values);
+        }
+        if (spatialIndexAvailable) {
+            final SQLiteStatement remove = PreparedStatement.REMOVE_CACHE_FROM_SPATIAL_INDEX.getStatement();
+            remove.bindString(1, cache.getGeocode());
+            remove.execute();
+            final SQLiteStatement insert = PreparedStatement.INSERT_CACHE_INTO_SPATIAL_INDEX.getStatement();
+            insert.bindString(1, cache.getGeocode());
+            insert.execute();
         }
-
-        return false;
     }
 
     private static void saveAttributesWithoutTransaction(final Geocache cache) {
@@ -1274,6 +1543,9 @@ public class DataStore {
         // The attributes must be fetched first because lazy loading may load
         // a null set otherwise.
         final List<String> attributes = cache.getAttributes();
+        if (attributes.equals(loadAttributes(geocode))) {
+            return;
+        }
         database.delete(dbTableAttributes, "geocode = ?", new String[]{geocode});
 
         if (attributes.isEmpty()) {
@@ -1353,6 +1625,11 @@ public class DataStore {
 
         final List<Waypoint> waypoints = cache.getWaypoints();
         if (CollectionUtils.isNotEmpty(waypoints)) {
+            if (spatialIndexAvailable) {
+                final SQLiteStatement remove = PreparedStatement.REMOVE_WAYPOINTS_FROM_SPATIAL_INDEX.getStatement();
+                remove.bindString(1, geocode);
+                remove.execute();
+            }
             final List<String> currentWaypointIds = new ArrayList<>();
             final ContentValues values = new ContentValues();
             final long timeStamp = System.currentTimeMillis();
@@ -1379,6 +1656,11 @@ public class DataStore {
             }
 
             removeOutdatedWaypointsOfCache(cache, currentWaypointIds);
+            if (spatialIndexAvailable) {
+                final SQLiteStatement insert = PreparedStatement.INSERT_WAYPOINTS_INTO_SPATIAL_INDEX.getStatement();
+                insert.bindString(1, geocode);
+                insert.execute();
+            }
         }
     }
 
@@ -1455,6 +1737,9 @@ public class DataStore {
                 final int rows = database.update(dbTableWaypoints, values, "_id = " + id, null);
                 ok = rows > 0;
             }
+            if (ok) {
+                updateWaypointSpatialIndex(waypoint.getId());
+            }
             database.setTransactionSuccessful();
         } finally {
             database.endTransaction();
@@ -1470,12 +1755,33 @@ public class DataStore {
 
         init();
 
+        if (spatialIndexAvailable) {
+            database.delete(dbTableWaypointsSpatial, "id = " + id, null);
+        }
         return database.delete(dbTableWaypoints, "_id = " + id, null) > 0;
     }
 
+    /**
+     * Replace the spatial index entry of a single waypoint by its current coordinates.
+     */
+    private static void updateWaypointSpatialIndex(final int id) {
+        if (!spatialIndexAvailable) {
+            return;
+        }
+        final SQLiteStatement remove = PreparedStatement.REMOVE_WAYPOINT_FROM_SPATIAL_INDEX.getStatement();
+        remove.bindLong(1, id);
+        remove.execute();
+        final SQLiteStatement insert = PreparedStatement.INSERT_WAYPOINT_INTO_SPATIAL_INDEX.getStatement();
+        insert.bindLong(1, id);
+        insert.execute();
+    }
+
     private static void saveSpoilersWithoutTransaction(final Geocache cache) {
         if (cache.hasSpoilersSet()) {
             final String geocode = cache.getGeocode();
+            if (isSameSpoilers(cache.getSpoilers(), loadSpoilers(geocode))) {
+                return;
+            }
             final SQLiteStatement remove = PreparedStatement.REMOVE_SPOILERS.getStatement();
             remove.bindString(1, cache.getGeocode());
             remove.execute();
@@ -1498,7 +1804,28 @@ public class DataStore {
         }
     }
 
+    /**
+     * Compare spoilers the way they are stored, i.e. without distinguishing empty and missing titles and descriptions.
+     */
+    private static boolean isSameSpoilers(@NonNull final List<Image> spoilers, @Nullable final List<Image> storedSpoilers) {
+        if (storedSpoilers == null || spoilers.size() != storedSpoilers.size()) {
+            return false;
+        }
+        for (int i = 0; i < spoilers.size(); i++) {
+            final Image spoiler = spoilers.get(i);
+            final Image storedSpoiler = storedSpoilers.get(i);
+            if (!StringUtils.equals(spoiler.getUrl(), storedSpoiler.getUrl())
+                    || !StringUtils.equals(StringUtils.defaultIfBlank(spoiler.title, ""), StringUtils.defaultIfBlank(storedSpoiler.title, ""))
+                    || !StringUtils.equals(StringUtils.defaultIfBlank(spoiler.getDescription(), ""), StringUtils.defaultIfBlank(storedSpoiler.getDescription(), ""))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static void saveLogs(final String geocode, final Iterable<LogEntry> logs) {
+        init();
+
         database.beginTransaction();
         try {
             saveLogsWithoutTransaction(geocode, logs);
@@ -1508,53 +1835,170 @@ public class DataStore {
         }
     }
 
+    /**
+     * Save the logs of a cache or trackable. Only new and changed logs are written, unchanged logs are left alone, so
+     * that refreshing caches with many logs does not rewrite all of them.
+     */
     private static void saveLogsWithoutTransaction(final String geocode, final Iterable<LogEntry> logs) {
-        // TODO delete logimages referring these logs
-        database.delete(dbTableLogs, "geocode = ?", new String[]{geocode});
+        // stored logs by key, with their id and hash
+        final Map<String, long[]> storedLogs = new HashMap<>();
+        // logs saved by older versions have no key, they are replaced
+        final List<Long> removedLogIds = new ArrayList<>();
+        final Cursor cursor = database.query(dbTableLogs, new String[]{"_id", "log_key", "log_hash"}, "geocode = ?", new String[]{geocode}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(1) || storedLogs.containsKey(cursor.getString(1))) {
+                    removedLogIds.add(cursor.getLong(0));
+                } else {
+                    storedLogs.put(cursor.getString(1), new long[]{cursor.getLong(0), cursor.getLong(2)});
+                }
+            }
+        } finally {
+            cursor.close();
+        }
 
-        final SQLiteStatement insertLog = PreparedStatement.INSERT_LOG.getStatement();
         final long timestamp = System.currentTimeMillis();
+        final Map<String, Integer> occurrences = new HashMap<>();
         for (final LogEntry log : logs) {
-            insertLog.bindString(1, geocode);
-            insertLog.bindLong(2, timestamp);
-            insertLog.bindLong(3, log.getType().id);
-            insertLog.bindString(4, log.author);
-            insertLog.bindString(5, log.log);
-            insertLog.bindLong(6, log.date);
-            insertLog.bindLong(7, log.found);
-            insertLog.bindLong(8, log.friend ? 1 : 0);
-            final long logId = insertLog.executeInsert();
-            if (log.hasLogImages()) {
-                final SQLiteStatement insertImage = PreparedStatement.INSERT_LOG_IMAGE.getStatement();
-                for (final Image img : log.getLogImages()) {
-                    insertImage.bindLong(1, logId);
-                    insertImage.bindString(2, StringUtils.defaultIfBlank(img.title, ""));
-                    insertImage.bindString(3, img.getUrl());
-                    insertImage.bindString(4, StringUtils.defaultIfBlank(img.getDescription(), ""));
-                    insertImage.executeInsert();
-                }
+            final String key = getLogKey(log, occurrences);
+            final long hash = getLogHash(log);
+            final long[] storedLog = storedLogs.remove(key);
+            if (storedLog == null) {
+                insertLog(geocode, timestamp, log, key, hash);
+            } else if (storedLog[1] != hash) {
+                updateLog(storedLog[0], timestamp, log, hash);
+            }
+        }
+
+        for (final long[] storedLog : storedLogs.values()) {
+            removedLogIds.add(storedLog[0]);
+        }
+        if (!removedLogIds.isEmpty()) {
+            final String logIds = StringUtils.join(removedLogIds, ',');
+            database.delete(dbTableLogImages, "log_id IN (" + logIds + ")", null);
+            database.delete(dbTableLogs, "_id IN (" + logIds + ")", null);
+        }
+    }
+
+    private static void insertLog(final String geocode, final long timestamp, final LogEntry log, final String key, final long hash) {
+        final SQLiteStatement insertLog = PreparedStatement.INSERT_LOG.getStatement();
+        insertLog.bindString(1, geocode);
+        insertLog.bindLong(2, timestamp);
+        insertLog.bindLong(3, log.getType().id);
+        insertLog.bindString(4, log.author);
+        insertLog.bindString(5, log.log);
+        insertLog.bindLong(6, log.date);
+        insertLog.bindLong(7, log.found);
+        insertLog.bindLong(8, log.friend ? 1 : 0);
+        insertLog.bindString(9, key);
+        insertLog.bindLong(10, hash);
+        insertLogImages(insertLog.executeInsert(), log);
+    }
+
+    /**
+     * Update the content of a stored log. Type, date and author are not updated, as they are part of the key.
+     */
+    private static void updateLog(final long logId, final long timestamp, final LogEntry log, final long hash) {
+        final SQLiteStatement updateLog = PreparedStatement.UPDATE_LOG.getStatement();
+        updateLog.bindLong(1, timestamp);
+        updateLog.bindString(2, log.log);
+        updateLog.bindLong(3, log.found);
+        updateLog.bindLong(4, log.friend ? 1 : 0);
+        updateLog.bindLong(5, hash);
+        updateLog.bindLong(6, logId);
+        updateLog.execute();
+
+        final SQLiteStatement removeImages = PreparedStatement.REMOVE_LOG_IMAGES.getStatement();
+        removeImages.bindLong(1, logId);
+        removeImages.execute();
+        insertLogImages(logId, log);
+    }
+
+    private static void insertLogImages(final long logId, final LogEntry log) {
+        if (log.hasLogImages()) {
+            final SQLiteStatement insertImage = PreparedStatement.INSERT_LOG_IMAGE.getStatement();
+            for (final Image img : log.getLogImages()) {
+                insertImage.bindLong(1, logId);
+                insertImage.bindString(2, StringUtils.defaultIfBlank(img.title, ""));
+                insertImage.bindString(3, img.getUrl());
+                insertImage.bindString(4, StringUtils.defaultIfBlank(img.getDescription(), ""));
+                insertImage.executeInsert();
             }
         }
     }
 
+    /**
+     * Get the identity of a log, which does not change when the log is edited. Several logs of the same type, date and
+     * author are distinguished by their order.
+     *
+     * @param occurrences
+     *            the number of logs with the same identity seen so far, updated by this method
+     */
+    @NonNull
+    private static String getLogKey(@NonNull final LogEntry log, @NonNull final Map<String, Integer> occurrences) {
+        final String key = log.getType().id + "|" + log.date + "|" + log.author;
+        final Integer occurrence = occurrences.get(key);
+        occurrences.put(key, occurrence == null ? 1 : occurrence + 1);
+        return occurrence == null ? key : key + "|" + occurrence;
+    }
+
+    /**
+     * Get a hash of the parts of a log which may change when the log is edited, in the form they are stored.
+     */
+    private static long getLogHash(@NonNull final LogEntry log) {
+        final StringBuilder content = new StringBuilder(log.log).append('\n').append(log.found).append('\n').append(log.friend);
+        for (final Image img : log.getLogImages()) {
+            content.append('\n').append(StringUtils.defaultIfBlank(img.title, ""))
+                    .append('\n').append(img.getUrl())
+                    .append('\n').append(StringUtils.defaultIfBlank(img.getDescription(), ""));
+        }
+        // 64 bit variant of String.hashCode(), to make collisions between versions of a log unlikely
+        long hash = 1125899906842597L;
+        for (int i = 0; i < content.length(); i++) {
+            hash = 31 * hash + content.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Save the log counts of a cache. Only the counts which have changed are written.
+     */
     private static void saveLogCountsWithoutTransaction(final Geocache cache) {
         final String geocode = cache.getGeocode();
-        database.delete(dbTableLogCount, "geocode = ?", new String[]{geocode});
+        final Map<LogType, Integer> storedLogCounts = MapUtils.emptyIfNull(loadLogCounts(geocode));
 
         final Map<LogType, Integer> logCounts = cache.getLogCounts();
         if (MapUtils.isNotEmpty(logCounts)) {
             final Set<Entry<LogType, Integer>> logCountsItems = logCounts.entrySet();
-            final SQLiteStatement insertLogCounts = PreparedStatement.INSERT_LOG_COUNTS.getStatement();
             final long timestamp = System.currentTimeMillis();
             for (final Entry<LogType, Integer> pair : logCountsItems) {
-                insertLogCounts.bindString(1, geocode);
-                insertLogCounts.bindLong(2, timestamp);
-                insertLogCounts.bindLong(3, pair.getKey().id);
-                insertLogCounts.bindLong(4, pair.getValue());
-
-                insertLogCounts.executeInsert();
+                final Integer storedCount = storedLogCounts.remove(pair.getKey());
+                if (storedCount == null) {
+                    final SQLiteStatement insertLogCounts = PreparedStatement.INSERT_LOG_COUNTS.getStatement();
+                    insertLogCounts.bindString(1, geocode);
+                    insertLogCounts.bindLong(2, timestamp);
+                    insertLogCounts.bindLong(3, pair.getKey().id);
+                    insertLogCounts.bindLong(4, pair.getValue());
+
+                    insertLogCounts.executeInsert();
+                } else if (!storedCount.equals(pair.getValue())) {
+                    final SQLiteStatement updateLogCounts = PreparedStatement.UPDATE_LOG_COUNTS.getStatement();
+                    updateLogCounts.bindLong(1, timestamp);
+                    updateLogCounts.bindLong(2, pair.getValue());
+                    updateLogCounts.bindString(3, geocode);
+                    updateLogCounts.bindLong(4, pair.getKey().id);
+
+                    updateLogCounts.execute();
+                }
             }
         }
+
+        for (final LogType removedType : storedLogCounts.keySet()) {
+            final SQLiteStatement removeLogCounts = PreparedStatement.REMOVE_LOG_COUNTS.getStatement();
+            removeLogCounts.bindString(1, geocode);
+            removeLogCounts.bindLong(2, removedType.id);
+            removeLogCounts.execute();
+        }
     }
 
     public static void saveTrackable(final Trackable trackable) {
@@ -1716,79 +2160,195 @@ public class DataStore {
         query.append(" WHERE ").append(dbTableCaches).append('.');
         query.append(whereGeocodeIn(geocodes));
 
+        final boolean batched = loadFlags.contains(LoadFlag.BATCHED);
+        final Set<Geocache> caches = new HashSet<>();
         final Cursor cursor = database.rawQuery(query.toString(), null);
         try {
-            final Set<Geocache> caches = new HashSet<>();
             int logIndex = -1;
 
             while (cursor.moveToNext()) {
                 final Geocache cache = createCacheFromDatabaseContent(cursor);
 
-                if (loadFlags.contains(LoadFlag.ATTRIBUTES)) {
-                    cache.setAttributes(loadAttributes(cache.getGeocode()));
+                if (!batched) {
+                    loadCacheDetails(cache, loadFlags);
                 }
 
-                if (loadFlags.contains(LoadFlag.WAYPOINTS)) {
-                    final List<Waypoint> waypoints = loadWaypoints(cache.getGeocode());
-                    if (CollectionUtils.isNotEmpty(waypoints)) {
-                        cache.setWaypoints(waypoints, false);
+                if (loadFlags.contains(LoadFlag.OFFLINE_LOG)) {
+                    if (logIndex < 0) {
+                        logIndex = cursor.getColumnIndex("log");
                     }
+                    cache.setLogOffline(!cursor.isNull(logIndex));
                 }
 
-                if (loadFlags.contains(LoadFlag.SPOILERS)) {
-                    final List<Image> spoilers = loadSpoilers(cache.getGeocode());
-                    cache.setSpoilers(spoilers);
-                }
+                caches.add(cache);
+            }
+        } finally {
+            cursor.close();
+        }
 
-                if (loadFlags.contains(LoadFlag.LOGS)) {
-                    final Map<LogType, Integer> logCounts = loadLogCounts(cache.getGeocode());
-                    if (MapUtils.isNotEmpty(logCounts)) {
-                        cache.getLogCounts().clear();
-                        cache.getLogCounts().putAll(logCounts);
-                    }
-                }
+        if (batched) {
+            loadCacheDetailsBatched(caches, loadFlags);
+        }
+
+        final Map<String, Set<Integer>> cacheLists = loadLists(geocodes);
+        for (final Geocache geocache : caches) {
+            final Set<Integer> listIds = cacheLists.get(geocache.getGeocode());
+            if (listIds != null) {
+                geocache.setLists(listIds);
+            }
+            geocache.addStorageLocation(StorageLocation.DATABASE);
+            cacheCache.putCacheInCache(geocache);
+        }
+        return caches;
+    }
+
+    /**
+     * Loads the child tables requested by the flags for a single cache, using one query per table.
+     */
+    private static void loadCacheDetails(@NonNull final Geocache cache, final EnumSet<LoadFlag> loadFlags) {
+        if (loadFlags.contains(LoadFlag.ATTRIBUTES)) {
+            cache.setAttributes(loadAttributes(cache.getGeocode()));
+        }
+
+        if (loadFlags.contains(LoadFlag.WAYPOINTS)) {
+            final List<Waypoint> waypoints = loadWaypoints(cache.getGeocode());
+            if (CollectionUtils.isNotEmpty(waypoints)) {
+                cache.setWaypoints(waypoints, false);
+            }
+        }
+
+        if (loadFlags.contains(LoadFlag.SPOILERS)) {
+            final List<Image> spoilers = loadSpoilers(cache.getGeocode());
+            cache.setSpoilers(spoilers);
+        }
+
+        if (loadFlags.contains(LoadFlag.LOGS)) {
+            final Map<LogType, Integer> logCounts = loadLogCounts(cache.getGeocode());
+            if (MapUtils.isNotEmpty(logCounts)) {
+                cache.getLogCounts().clear();
+                cache.getLogCounts().putAll(logCounts);
+            }
+        }
+
+        if (loadFlags.contains(LoadFlag.INVENTORY)) {
+            final List<Trackable> inventory = loadInventory(cache.getGeocode());
+            if (CollectionUtils.isNotEmpty(inventory)) {
+                cache.setInventory(inventory);
+            }
+        }
+    }
+
+    /**
+     * Loads the child tables requested by the flags for all given caches, using one query per table for the whole
+     * batch and joining the rows to the caches in memory.
+     */
+    private static void loadCacheDetailsBatched(@NonNull final Collection<Geocache> caches, final EnumSet<LoadFlag> loadFlags) {
+        if (caches.isEmpty()) {
+            return;
+        }
+        final Set<String> geocodes = new HashSet<>(caches.size());
+        for (final Geocache cache : caches) {
+            geocodes.add(cache.getGeocode());
+        }
 
-                if (loadFlags.contains(LoadFlag.INVENTORY)) {
-                    final List<Trackable> inventory = loadInventory(cache.getGeocode());
-                    if (CollectionUtils.isNotEmpty(inventory)) {
-                        cache.setInventory(inventory);
+        final Map<String, List<String>> attributes = loadFlags.contains(LoadFlag.ATTRIBUTES) ? queryGroupedByGeocode(dbTableAttributes,
+                new String[]{"attribute"},
+                geocodes,
+                null,
+                GET_STRING_0) : null;
+        final Map<String, List<Waypoint>> waypoints = loadFlags.contains(LoadFlag.WAYPOINTS) ? queryGroupedByGeocode(dbTableWaypoints,
+                WAYPOINT_COLUMNS,
+                geocodes,
+                "_id",
+                new Func1<Cursor, Waypoint>() {
+                    @Override
+                    public Waypoint call(final Cursor cursor) {
+                        return createWaypointFromDatabaseContent(cursor);
                     }
-                }
+                }) : null;
+        final Map<String, List<Image>> spoilers = loadFlags.contains(LoadFlag.SPOILERS) ? queryGroupedByGeocode(dbTableSpoilers,
+                new String[]{"url", "title", "description"},
+                geocodes,
+                null,
+                new Func1<Cursor, Image>() {
+                    @Override
+                    public Image call(final Cursor cursor) {
+                        return new Image.Builder()
+                                .setUrl(cursor.getString(0))
+                                .setTitle(cursor.getString(1))
+                                .setDescription(cursor.getString(2))
+                                .build();
+                    }
+                }) : null;
+        final Map<String, List<ImmutablePair<LogType, Integer>>> logCounts = loadFlags.contains(LoadFlag.LOGS) ? queryGroupedByGeocode(dbTableLogCount,
+                new String[]{"type", "count"},
+                geocodes,
+                null,
+                new Func1<Cursor, ImmutablePair<LogType, Integer>>() {
+                    @Override
+                    public ImmutablePair<LogType, Integer> call(final Cursor cursor) {
+                        return ImmutablePair.of(LogType.getById(cursor.getInt(0)), cursor.getInt(1));
+                    }
+                }) : null;
+        final Map<String, List<Trackable>> inventory = loadFlags.contains(LoadFlag.INVENTORY) ? queryGroupedByGeocode(dbTableTrackables,
+                new String[]{"_id", "updated", "tbcode", "guid", "title", "owner", "released", "goal", "description"},
+                geocodes,
+                "title COLLATE NOCASE ASC",
+                new Func1<Cursor, Trackable>() {
+                    @Override
+                    public Trackable call(final Cursor cursor) {
+                        return createTrackableFromDatabaseContent(cursor);
+                    }
+                }) : null;
 
-                if (loadFlags.contains(LoadFlag.OFFLINE_LOG)) {
-                    if (logIndex < 0) {
-                        logIndex = cursor.getColumnIndex("log");
+        for (final Geocache cache : caches) {
+            final String geocode = cache.getGeocode();
+            if (attributes != null) {
+                final List<String> cacheAttributes = attributes.get(geocode);
+                cache.setAttributes(cacheAttributes != null ? cacheAttributes : new LinkedList<String>());
+            }
+            if (waypoints != null) {
+                final List<Waypoint> cacheWaypoints = waypoints.get(geocode);
+                if (CollectionUtils.isNotEmpty(cacheWaypoints)) {
+                    cache.setWaypoints(cacheWaypoints, false);
+                }
+            }
+            if (spoilers != null) {
+                final List<Image> cacheSpoilers = spoilers.get(geocode);
+                cache.setSpoilers(cacheSpoilers != null ? cacheSpoilers : new LinkedList<Image>());
+            }
+            if (logCounts != null) {
+                final List<ImmutablePair<LogType, Integer>> cacheLogCounts = logCounts.get(geocode);
+                if (CollectionUtils.isNotEmpty(cacheLogCounts)) {
+                    cache.getLogCounts().clear();
+                    for (final ImmutablePair<LogType, Integer> logCount : cacheLogCounts) {
+                        cache.getLogCounts().put(logCount.left, logCount.right);
                     }
-                    cache.setLogOffline(!cursor.isNull(logIndex));
                 }
-                cache.addStorageLocation(StorageLocation.DATABASE);
-                cacheCache.putCacheInCache(cache);
-
-                caches.add(cache);
             }
-
-            final Map<String, Set<Integer>> cacheLists = loadLists(geocodes);
-            for (final Geocache geocache : caches) {
-                final Set<Integer> listIds = cacheLists.get(geocache.getGeocode());
-                if (listIds != null) {
-                    geocache.setLists(listIds);
+            if (inventory != null) {
+                final List<Trackable> cacheInventory = inventory.get(geocode);
+                if (CollectionUtils.isNotEmpty(cacheInventory)) {
+                    cache.setInventory(cacheInventory);
                 }
             }
-            return caches;
-        } finally {
-            cursor.close();
         }
     }
 
-
     /**
-     * Builds a where for a viewport with the size enhanced by 50%.
+     * Builds a where for a viewport with the size enhanced by 50%. The R*-tree spatial index is used if available,
+     * as SQLite can only use a single B-tree index range on the coordinate columns.
      *
      */
 
     @NonNull
-    private static StringBuilder buildCoordinateWhere(final String dbTable, final Viewport viewport) {
-        return viewport.resize(1.5).sqlWhere(dbTable);
+    private static StringBuilder buildCoordinateWhere(final String dbTable, final String dbSpatialTable, final Viewport viewport) {
+        final Viewport resized = viewport.resize(1.5);
+        if (!spatialIndexAvailable) {
+            return resized.sqlWhere(dbTable);
+        }
+        return new StringBuilder(dbTable).append("._id IN (SELECT id FROM ").append(dbSpatialTable).append(" WHERE ")
+                .append(resized.sqlRTreeWhere(null)).append(')');
     }
 
     /**
@@ -2103,6 +2663,101 @@ public class DataStore {
         return Collections.unmodifiableList(logs);
     }
 
+    /**
+     * @param friendsOnly
+     *            count only the logs of friends
+     * @return the number of stored logs of a cache, not limited like {@link #loadLogs(String)}
+     */
+    public static int getLogCount(@NonNull final String geocode, final boolean friendsOnly) {
+        init();
+
+        final SQLiteStatement logCount = friendsOnly ? PreparedStatement.FRIENDS_LOG_COUNT.getStatement() : PreparedStatement.LOG_COUNT.getStatement();
+        synchronized (logCount) {
+            logCount.bindString(1, geocode);
+            return (int) logCount.simpleQueryForLong();
+        }
+    }
+
+    /**
+     * Load a page of the stored logs of a cache, in the same order as {@link #loadLogs(String)}.
+     *
+     * @param friendsOnly
+     *            load only the logs of friends
+     * @param previous
+     *            the last log of the previous page, or {@code null} if not known. The page starts after this log, which
+     *            uses the {@code (geocode, date)} index instead of skipping {@code offset} logs one by one.
+     * @param offset
+     *            the number of logs before the page, only used if {@code previous} is {@code null}
+     * @param limit
+     *            the maximum number of logs of the page
+     * @return an immutable, non null list of logs
+     */
+    @NonNull
+    public static List<LogEntry> loadLogPage(@NonNull final String geocode, final boolean friendsOnly, @Nullable final LogEntry previous, final int offset, final int limit) {
+        init();
+
+        final StringBuilder where = new StringBuilder("geocode = ?");
+        final List<String> whereArgs = new ArrayList<>();
+        whereArgs.add(geocode);
+        if (friendsOnly) {
+            where.append(" AND friend = 1");
+        }
+        if (previous != null) {
+            where.append(" AND (date < ? OR (date = ? AND _id > ?))");
+            whereArgs.add(String.valueOf(previous.date));
+            whereArgs.add(String.valueOf(previous.date));
+            whereArgs.add(String.valueOf(previous.id));
+        }
+        final Cursor cursor = database.query(dbTableLogs,
+                new String[]{"_id", "type", "author", "log", "date", "found", "friend"},
+                where.toString(),
+                whereArgs.toArray(new String[whereArgs.size()]),
+                null,
+                null,
+                "date DESC, _id ASC",
+                previous != null ? String.valueOf(limit) : offset + "," + limit);
+
+        final Map<Integer, LogEntry.Builder> logs = new LinkedHashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                logs.put(cursor.getInt(0), new LogEntry.Builder()
+                        .setId(cursor.getInt(0))
+                        .setLogType(LogType.getById(cursor.getInt(1)))
+                        .setAuthor(cursor.getString(2))
+                        .setLog(cursor.getString(3))
+                        .setDate(cursor.getLong(4))
+                        .setFound(cursor.getInt(5))
+                        .setFriend(cursor.getInt(6) == 1));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (logs.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Cursor imageCursor = database.query(dbTableLogImages,
+                new String[]{"log_id", "title", "url", "description"},
+                "log_id IN (" + StringUtils.join(logs.keySet(), ',') + ")",
+                null,
+                null,
+                null,
+                "_id ASC");
+        try {
+            while (imageCursor.moveToNext()) {
+                logs.get(imageCursor.getInt(0)).addLogImage(new Image.Builder().setUrl(imageCursor.getString(2)).setTitle(imageCursor.getString(1)).setDescription(imageCursor.getString(3)).build());
+            }
+        } finally {
+            imageCursor.close();
+        }
+
+        final List<LogEntry> page = new ArrayList<>(logs.size());
+        for (final LogEntry.Builder log : logs.values()) {
+            page.add(log.build());
+        }
+        return Collections.unmodifiableList(page);
+    }
+
     @Nullable
     public static Map<LogType, Integer> loadLogCounts(final String geocode) {
         if (StringUtils.isBlank(geocode)) {
@@ -2262,6 +2917,31 @@ public class DataStore {
         return 0;
     }
 
+    /**
+     * Select the stored caches matching a condition, e.g. the condition of a filter.
+     *
+     * @param geocodes
+     *            the caches to select from
+     * @param sqlWhere
+     *            condition on the columns of the caches table
+     * @return the geocodes of the caches matching the condition, in upper case
+     */
+    @NonNull
+    public static Set<String> filterGeocodes(@NonNull final Collection<String> geocodes, @NonNull final String sqlWhere) {
+        if (geocodes.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final String selection = whereGeocodeIn(geocodes).append(" AND (").append(sqlWhere).append(')').toString();
+        return queryToColl(dbTableCaches,
+                new String[] { "geocode" },
+                selection,
+                null,
+                null,
+                null,
+                new HashSet<String>(geocodes.size()),
+                GET_STRING_0);
+    }
+
     @NonNull
     private static<T, U extends Collection<? super T>> U queryToColl(@NonNull final String table,
                                                                      final String[] columns,
@@ -2287,6 +2967,47 @@ public class DataStore {
         }
     }
 
+    /**
+     * Query the rows of a child table for several geocodes at once and group them by their geocode.
+     *
+     * @return a map from geocode to the (ordered) rows found for it, never null
+     */
+    @NonNull
+    private static <T> Map<String, List<T>> queryGroupedByGeocode(@NonNull final String table,
+                                                                   final String[] columns,
+                                                                   @NonNull final Collection<String> geocodes,
+                                                                   final String orderBy,
+                                                                   final Func1<? super Cursor, ? extends T> func) {
+        final Map<String, List<T>> result = new HashMap<>();
+        if (geocodes.isEmpty()) {
+            return result;
+        }
+        init();
+        int geocodeIndex = ArrayUtils.indexOf(columns, "geocode");
+        final String[] queryColumns;
+        if (geocodeIndex < 0) {
+            geocodeIndex = columns.length;
+            queryColumns = ArrayUtils.add(columns, "geocode");
+        } else {
+            queryColumns = columns;
+        }
+        final Cursor cursor = database.query(table, queryColumns, whereGeocodeIn(geocodes).toString(), null, null, null, orderBy);
+        try {
+            while (cursor.moveToNext()) {
+                final String geocode = cursor.getString(geocodeIndex);
+                List<T> rows = result.get(geocode);
+                if (rows == null) {
+                    rows = new LinkedList<>();
+                    result.put(geocode, rows);
+                }
+                rows.add(func.call(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
     /**
      * Return a batch of stored geocodes.
      *
@@ -2314,16 +3035,22 @@ public class DataStore {
         selection.append(')');
 
 
+        // keep the order, so that huge lists can be shown without sorting them in memory
         try {
             if (coords != null) {
+                // squared distance on an equirectangular projection, which orders nearby caches like their real distance
+                final String latitude = String.format((Locale) null, "%.6f", coords.getLatitude());
+                final String longitude = String.format((Locale) null, "%.6f", coords.getLongitude());
+                final double cosLatitude = Math.cos(Math.toRadians(coords.getLatitude()));
+                final String longitudeScale = String.format((Locale) null, "%.6f", cosLatitude * cosLatitude);
                 return queryToColl(dbTableCaches,
-                        new String[]{"geocode", "(ABS(latitude-" + String.format((Locale) null, "%.6f", coords.getLatitude()) +
-                                ") + ABS(longitude-" + String.format((Locale) null, "%.6f", coords.getLongitude()) + ")) AS dif"},
+                        new String[]{"geocode", "((latitude-" + latitude + ")*(latitude-" + latitude + ") + (longitude-" + longitude +
+                                ")*(longitude-" + longitude + ")*" + longitudeScale + ") AS dif"},
                         selection.toString(),
                         selectionArgs,
-                        "dif",
+                        "dif IS NULL, dif",
                         null,
-                        new HashSet<String>(),
+                        new LinkedHashSet<String>(),
                         GET_STRING_0);
             }
             return queryToColl(dbTableCaches,
@@ -2332,7 +3059,7 @@ public class DataStore {
                     selectionArgs,
                     "geocode",
                     null,
-                    new HashSet<String>(),
+                    new LinkedHashSet<String>(),
                     GET_STRING_0);
         } catch (final Exception e) {
             Log.e("DataStore.loadBatchOfStoredGeocodes", e);
@@ -2407,7 +3134,7 @@ public class DataStore {
         }
 
         // viewport limitation
-        final StringBuilder selection = buildCoordinateWhere(dbTableCaches, viewport);
+        final StringBuilder selection = buildCoordinateWhere(dbTableCaches, dbTableCachesSpatial, viewport);
 
         // cacheType limitation
         String[] selectionArgs = null;
@@ -2484,6 +3211,9 @@ public class DataStore {
                     Log.d("Database clean: removing non-existing caches from lists");
                     database.delete(dbTableCachesLists, "geocode NOT IN (SELECT geocode FROM " + dbTableCaches + ")", null);
 
+                    Log.d("Database clean: removing expired live map tiles");
+                    Tile.cache.removeExpired();
+
                     // Remove the obsolete "_others" directory where the user avatar used to be stored.
                     FileUtils.deleteDirectory(LocalStorage.getStorageDir("_others"));
 
@@ -2557,8 +3287,16 @@ public class DataStore {
             }
             final String geocodeList = StringUtils.join(quotedGeocodes.toArray(), ',');
             final String baseWhereClause = "geocode IN (" + geocodeList + ")";
+            String wayPointClause = baseWhereClause;
+            if (!removeFlags.contains(RemoveFlag.OWN_WAYPOINTS_ONLY_FOR_TESTING)) {
+                wayPointClause += " AND type <> 'own'";
+            }
             database.beginTransaction();
             try {
+                if (spatialIndexAvailable) {
+                    database.delete(dbTableCachesSpatial, "id IN (SELECT _id FROM " + dbTableCaches + " WHERE " + baseWhereClause + ")", null);
+                    database.delete(dbTableWaypointsSpatial, "id IN (SELECT _id FROM " + dbTableWaypoints + " WHERE " + wayPointClause + ")", null);
+                }
                 database.delete(dbTableCaches, baseWhereClause, null);
                 database.delete(dbTableAttributes, baseWhereClause, null);
                 database.delete(dbTableSpoilers, baseWhereClause, null);
@@ -2566,10 +3304,6 @@ public class DataStore {
                 database.delete(dbTableLogs, baseWhereClause, null);
                 database.delete(dbTableLogCount, baseWhereClause, null);
                 database.delete(dbTableLogsOffline, baseWhereClause, null);
-                String wayPointClause = baseWhereClause;
-                if (!removeFlags.contains(RemoveFlag.OWN_WAYPOINTS_ONLY_FOR_TESTING)) {
-                    wayPointClause += " AND type <> 'own'";
-                }
                 database.delete(dbTableWaypoints, wayPointClause, null);
                 database.delete(dbTableTrackables, baseWhereClause, null);
                 database.setTransactionSuccessful();
@@ -3151,7 +3885,7 @@ public class DataStore {
 
     @NonNull
     public static Set<Waypoint> loadWaypoints(final Viewport viewport, final boolean excludeMine, final boolean excludeDisabled, final CacheType type) {
-        final StringBuilder where = buildCoordinateWhere(dbTableWaypoints, viewport);
+        final StringBuilder where = buildCoordinateWhere(dbTableWaypoints, dbTableWaypointsSpatial, viewport);
         if (excludeMine) {
             where.append(" AND ").append(dbTableCaches).append(".found == 0");
         }
@@ -3181,6 +3915,8 @@ public class DataStore {
 
     public static void saveChangedCache(final Geocache cache) {
         saveCache(cache, cache.inDatabase() ? LoadFlags.SAVE_ALL : EnumSet.of(SaveFlag.CACHE));
+        // the stored live map tiles contain the found state of the cache, which may have been changed by the user
+        Tile.cache.removeFromTileCache(cache);
     }
 
     private enum PreparedStatement {
@@ -3193,12 +3929,23 @@ public class DataStore {
         UPDATE_VISIT_DATE("UPDATE " + dbTableCaches + " SET visiteddate = ? WHERE geocode = ?"),
         INSERT_LOG_IMAGE("INSERT INTO " + dbTableLogImages + " (log_id, title, url, description) VALUES (?, ?, ?, ?)"),
         INSERT_LOG_COUNTS("INSERT INTO " + dbTableLogCount + " (geocode, updated, type, count) VALUES (?, ?, ?, ?)"),
+        UPDATE_LOG_COUNTS("UPDATE " + dbTableLogCount + " SET updated = ?, count = ? WHERE geocode = ? AND type = ?"),
+        REMOVE_LOG_COUNTS("DELETE FROM " + dbTableLogCount + " WHERE geocode = ? AND type = ?"),
         INSERT_SPOILER("INSERT INTO " + dbTableSpoilers + " (geocode, updated, url, title, description) VALUES (?, ?, ?, ?, ?)"),
         REMOVE_SPOILERS("DELETE FROM " + dbTableSpoilers + " WHERE geocode = ?"),
         LOG_COUNT_OF_GEOCODE("SELECT COUNT(_id) FROM " + dbTableLogsOffline + " WHERE geocode = ?"),
+        LOG_COUNT("SELECT COUNT(_id) FROM " + dbTableLogs + " WHERE geocode = ?"),
+        FRIENDS_LOG_COUNT("SELECT COUNT(_id) FROM " + dbTableLogs + " WHERE geocode = ? AND friend = 1"),
         COUNT_CACHES_ON_STANDARD_LIST("SELECT COUNT(geocode) FROM " + dbTableCachesLists + " WHERE list_id = " + StoredList.STANDARD_LIST_ID),
         COUNT_ALL_CACHES("SELECT COUNT(DISTINCT(geocode)) FROM " + dbTableCachesLists + " WHERE list_id >= " + StoredList.STANDARD_LIST_ID),
-        INSERT_LOG("INSERT INTO " + dbTableLogs + " (geocode, updated, type, author, log, date, found, friend) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
+        INSERT_LOG("INSERT INTO " + dbTableLogs + " (geocode, updated, type, author, log, date, found, friend, log_key, log_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"),
+        UPDATE_LOG("UPDATE " + dbTableLogs + " SET updated = ?, log = ?, found = ?, friend = ?, log_hash = ? WHERE _id = ?"),
+        REMOVE_LOG_IMAGES("DELETE FROM " + dbTableLogImages + " WHERE log_id = ?"),
+        INSERT_REFRESH_QUEUE("INSERT OR REPLACE INTO " + dbTableRefreshQueue + " (list_id, geocode, lists) VALUES (?, ?, ?)"),
+        UPDATE_REFRESH_STAGE("UPDATE " + dbTableRefreshQueue + " SET stage = ? WHERE list_id = ? AND geocode = ?"),
+        REMOVE_FROM_REFRESH_QUEUE("DELETE FROM " + dbTableRefreshQueue + " WHERE list_id = ? AND geocode = ?"),
+        INSERT_TRAIL_POSITION("INSERT INTO " + dbTableTrail + " (latitude, longitude) VALUES (?, ?)"),
+        TRIM_TRAIL("DELETE FROM " + dbTableTrail + " WHERE _id <= (SELECT MAX(_id) FROM " + dbTableTrail + ") - ?"),
         INSERT_ATTRIBUTE("INSERT INTO " + dbTableAttributes + " (geocode, updated, attribute) VALUES (?, ?, ?)"),
         ADD_TO_LIST("INSERT OR REPLACE INTO " + dbTableCachesLists + " (list_id, geocode) VALUES (?, ?)"),
         GEOCODE_OFFLINE("SELECT COUNT(list_id) FROM " + dbTableCachesLists + " WHERE geocode = ? AND list_id != " + StoredList.TEMPORARY_LIST.id),
@@ -3210,7 +3957,18 @@ public class DataStore {
         COUNT_ALL_TYPES_ALL_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.geocode = l.geocode AND l.list_id  > 0"), // See use of COUNT_TYPE_LIST for synchronization
         COUNT_TYPE_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.type = ? AND c.geocode = l.geocode AND l.list_id = ?"),
         COUNT_ALL_TYPES_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.geocode = l.geocode AND l.list_id = ?"), // See use of COUNT_TYPE_LIST for synchronization
-        CHECK_IF_PRESENT("SELECT COUNT(*) FROM " + dbTableCaches + " WHERE geocode = ?");
+        CHECK_IF_PRESENT("SELECT COUNT(*) FROM " + dbTableCaches + " WHERE geocode = ?"),
+        REMOVE_CACHE_FROM_SPATIAL_INDEX("DELETE FROM " + dbTableCachesSpatial + " WHERE id IN (SELECT _id FROM " + dbTableCaches + " WHERE geocode = ?)"),
+        INSERT_CACHE_INTO_SPATIAL_INDEX("INSERT INTO " + dbTableCachesSpatial + " SELECT _id, latitude, latitude, longitude, longitude FROM " + dbTableCaches + " WHERE geocode = ? AND latitude IS NOT NULL AND longitude IS NOT NULL"),
+        REMOVE_WAYPOINTS_FROM_SPATIAL_INDEX("DELETE FROM " + dbTableWaypointsSpatial + " WHERE id IN (SELECT _id FROM " + dbTableWaypoints + " WHERE geocode = ?)"),
+        INSERT_WAYPOINTS_INTO_SPATIAL_INDEX("INSERT INTO " + dbTableWaypointsSpatial + " SELECT _id, latitude, latitude, longitude, longitude FROM " + dbTableWaypoints + " WHERE geocode = ? AND latitude IS NOT NULL AND longitude IS NOT NULL"),
+        REMOVE_WAYPOINT_FROM_SPATIAL_INDEX("DELETE FROM " + dbTableWaypointsSpatial + " WHERE id = ?"),
+        INSERT_WAYPOINT_INTO_SPATIAL_INDEX("INSERT INTO " + dbTableWaypointsSpatial + " SELECT _id, latitude, latitude, longitude, longitude FROM " + dbTableWaypoints + " WHERE _id = ? AND latitude IS NOT NULL AND longitude IS NOT NULL"),
+        INSERT_LIVEMAP_TILE("INSERT INTO " + dbTableLiveMapTiles + " (updated, x, y, zoomlevel, filter, parsed) VALUES (?, ?, ?, ?, ?, ?)"),
+        INSERT_LIVEMAP_TILE_CACHE("INSERT INTO " + dbTableLiveMapTileCaches + " (tile_id, geocode, name, latitude, longitude, type, found, owner) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
+        REMOVE_LIVEMAP_TILE_CACHES("DELETE FROM " + dbTableLiveMapTileCaches + " WHERE tile_id IN (SELECT _id FROM " + dbTableLiveMapTiles + " WHERE zoomlevel = ? AND x = ? AND y = ?)"),
+        REMOVE_LIVEMAP_TILE("DELETE FROM " + dbTableLiveMapTiles + " WHERE zoomlevel = ? AND x = ? AND y = ?"),
+        COUNT_LIVEMAP_TILES("SELECT COUNT(_id) FROM " + dbTableLiveMapTiles);
 
         private static final List<PreparedStatement> statements = new ArrayList<>();
 
@@ -3346,6 +4104,332 @@ public class DataStore {
         return missingFromSearch;
     }
 
+    /**
+     * Load the caches of a live map tile stored by {@link #saveLiveMapTile(Tile, String, boolean, Collection, int)}.
+     *
+     * @param tile
+     *            the live map tile
+     * @param filter
+     *            the filter parameters the tile must have been requested with
+     * @param parsed
+     *            {@code true} if the cache types must have been decoded from the tile image
+     * @param minUpdated
+     *            tiles stored before this date are ignored
+     * @return the caches of the tile, or {@code null} if no matching tile is stored
+     */
+    @Nullable
+    public static List<Geocache> loadLiveMapTile(@NonNull final Tile tile, @NonNull final String filter, final boolean parsed, final long minUpdated) {
+        init();
+
+        final String[] tileArgs = { String.valueOf(tile.getZoomLevel()), String.valueOf(tile.getX()), String.valueOf(tile.getY()), filter, String.valueOf(minUpdated) };
+        final String tileWhere = "zoomlevel = ? AND x = ? AND y = ? AND filter = ? AND updated >= ?" + (parsed ? " AND parsed = 1" : "");
+        final Cursor tileCursor = database.query(dbTableLiveMapTiles, new String[] { "_id" }, tileWhere, tileArgs, null, null, "updated DESC", "1");
+        final String tileId;
+        try {
+            if (!tileCursor.moveToFirst()) {
+                return null;
+            }
+            tileId = tileCursor.getString(0);
+        } finally {
+            tileCursor.close();
+        }
+
+        final int zoomLevel = tile.getZoomLevel();
+        return queryToColl(dbTableLiveMapTileCaches,
+                new String[] { "geocode", "name", "latitude", "longitude", "type", "found", "owner" },
+                "tile_id = ?",
+                new String[] { tileId },
+                null,
+                null,
+                new ArrayList<Geocache>(),
+                new Func1<Cursor, Geocache>() {
+                    @Override
+                    public Geocache call(final Cursor cursor) {
+                        final Geocache cache = new Geocache();
+                        cache.setDetailed(false);
+                        cache.setReliableLatLon(false);
+                        cache.setGeocode(cursor.getString(0));
+                        cache.setName(cursor.getString(1));
+                        cache.setCoords(getCoords(cursor, 2, 3), zoomLevel);
+                        cache.setType(CacheType.getById(cursor.getString(4)), zoomLevel);
+                        if (cursor.getInt(5) == 1) {
+                            cache.setFound(true);
+                        }
+                        if (!cursor.isNull(6)) {
+                            cache.setOwnerUserId(cursor.getString(6));
+                        }
+                        return cache;
+                    }
+                });
+    }
+
+    /**
+     * Store the caches parsed from a live map tile, replacing any previously stored version of this tile. Expired
+     * tiles are removed, and the oldest tiles are evicted if more than {@code maxTiles} tiles are stored.
+     *
+     * @param tile
+     *            the live map tile
+     * @param filter
+     *            the filter parameters the tile has been requested with
+     * @param parsed
+     *            {@code true} if the cache types have been decoded from the tile image
+     * @param caches
+     *            the caches found in the tile
+     * @param maxTiles
+     *            the maximum number of tiles to keep
+     */
+    public static void saveLiveMapTile(@NonNull final Tile tile, @NonNull final String filter, final boolean parsed, @NonNull final Collection<Geocache> caches, final int maxTiles) {
+        init();
+
+        database.beginTransaction();
+        try {
+            removeLiveMapTile(tile);
+
+            final SQLiteStatement insertTile = PreparedStatement.INSERT_LIVEMAP_TILE.getStatement();
+            insertTile.bindLong(1, System.currentTimeMillis());
+            insertTile.bindLong(2, tile.getX());
+            insertTile.bindLong(3, tile.getY());
+            insertTile.bindLong(4, tile.getZoomLevel());
+            insertTile.bindString(5, filter);
+            insertTile.bindLong(6, parsed ? 1 : 0);
+            final long tileId = insertTile.executeInsert();
+
+            final SQLiteStatement insertCache = PreparedStatement.INSERT_LIVEMAP_TILE_CACHE.getStatement();
+            for (final Geocache cache : caches) {
+                final Geopoint coords = cache.getCoords();
+                if (coords == null) {
+                    continue;
+                }
+                insertCache.bindLong(1, tileId);
+                insertCache.bindString(2, cache.getGeocode());
+                insertCache.bindString(3, StringUtils.defaultString(cache.getName()));
+                insertCache.bindDouble(4, coords.getLatitude());
+                insertCache.bindDouble(5, coords.getLongitude());
+                insertCache.bindString(6, cache.getType().id);
+                insertCache.bindLong(7, cache.isFound() ? 1 : 0);
+                final String ownerUserId = cache.getOwnerUserId();
+                if (StringUtils.isNotBlank(ownerUserId)) {
+                    insertCache.bindString(8, ownerUserId);
+                } else {
+                    insertCache.bindNull(8);
+                }
+                insertCache.executeInsert();
+            }
+
+            if (PreparedStatement.COUNT_LIVEMAP_TILES.simpleQueryForLong() > maxTiles) {
+                final String evicted = "SELECT _id FROM " + dbTableLiveMapTiles + " ORDER BY updated DESC LIMIT -1 OFFSET " + maxTiles;
+                database.delete(dbTableLiveMapTileCaches, "tile_id IN (" + evicted + ")", null);
+                database.delete(dbTableLiveMapTiles, "_id IN (" + evicted + ")", null);
+            }
+            database.setTransactionSuccessful();
+        } catch (final Exception e) {
+            Log.e("DataStore.saveLiveMapTile", e);
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Remove all stored versions of the given live map tiles, so that they will be requested again.
+     */
+    public static void removeLiveMapTiles(@NonNull final Collection<Tile> tiles) {
+        init();
+
+        database.beginTransaction();
+        try {
+            for (final Tile tile : tiles) {
+                removeLiveMapTile(tile);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static void removeLiveMapTile(@NonNull final Tile tile) {
+        final SQLiteStatement removeCaches = PreparedStatement.REMOVE_LIVEMAP_TILE_CACHES.getStatement();
+        final SQLiteStatement removeTile = PreparedStatement.REMOVE_LIVEMAP_TILE.getStatement();
+        for (final SQLiteStatement statement : new SQLiteStatement[] { removeCaches, removeTile }) {
+            statement.bindLong(1, tile.getZoomLevel());
+            statement.bindLong(2, tile.getX());
+            statement.bindLong(3, tile.getY());
+            statement.execute();
+        }
+    }
+
+    /**
+     * Remove all live map tiles which have been stored before the given date.
+     */
+    public static void removeExpiredLiveMapTiles(final long minUpdated) {
+        init();
+
+        final String expired = "SELECT _id FROM " + dbTableLiveMapTiles + " WHERE updated < " + minUpdated;
+        database.beginTransaction();
+        try {
+            database.delete(dbTableLiveMapTileCaches, "tile_id IN (" + expired + ")", null);
+            database.delete(dbTableLiveMapTiles, "updated < ?", new String[] { String.valueOf(minUpdated) });
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Remember the caches of a bulk refresh of a list, so that the refresh can be continued after an interruption.
+     * Replaces a previous refresh of the same list.
+     *
+     * @param additionalListIds
+     *            the lists the caches are additionally stored in
+     */
+    public static void saveRefreshQueue(final int listId, @NonNull final Collection<String> geocodes, @NonNull final Set<Integer> additionalListIds) {
+        init();
+
+        final String lists = StringUtils.join(additionalListIds, ',');
+        database.beginTransaction();
+        try {
+            database.delete(dbTableRefreshQueue, "list_id = ?", new String[] { String.valueOf(listId) });
+            final SQLiteStatement insert = PreparedStatement.INSERT_REFRESH_QUEUE.getStatement();
+            for (final String geocode : geocodes) {
+                insert.bindLong(1, listId);
+                insert.bindString(2, geocode);
+                insert.bindString(3, lists);
+                insert.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Remember the next stage of the refresh of a cache. Stage {@code 0} is the first one.
+     */
+    public static void setRefreshStage(final int listId, @NonNull final String geocode, final int stage) {
+        init();
+
+        final SQLiteStatement update = PreparedStatement.UPDATE_REFRESH_STAGE.getStatement();
+        synchronized (update) {
+            update.bindLong(1, stage);
+            update.bindLong(2, listId);
+            update.bindString(3, geocode);
+            update.execute();
+        }
+    }
+
+    /**
+     * Forget a cache whose refresh is complete.
+     */
+    public static void removeFromRefreshQueue(final int listId, @NonNull final String geocode) {
+        init();
+
+        final SQLiteStatement remove = PreparedStatement.REMOVE_FROM_REFRESH_QUEUE.getStatement();
+        synchronized (remove) {
+            remove.bindLong(1, listId);
+            remove.bindString(2, geocode);
+            remove.execute();
+        }
+    }
+
+    /**
+     * @return the next stage of the caches of an interrupted refresh of a list by their geocode, empty if there is no
+     *         such refresh
+     */
+    @NonNull
+    public static Map<String, Integer> loadRefreshQueue(final int listId) {
+        init();
+
+        final Map<String, Integer> stages = new HashMap<>();
+        final Cursor cursor = database.query(dbTableRefreshQueue, new String[] { "geocode", "stage" }, "list_id = ?", new String[] { String.valueOf(listId) }, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                stages.put(cursor.getString(0), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return stages;
+    }
+
+    /**
+     * @return the lists the caches of an interrupted refresh of a list are additionally stored in
+     */
+    @NonNull
+    public static Set<Integer> loadRefreshQueueLists(final int listId) {
+        init();
+
+        final Set<Integer> listIds = new HashSet<>();
+        final Cursor cursor = database.query(dbTableRefreshQueue, new String[] { "lists" }, "list_id = ?", new String[] { String.valueOf(listId) }, null, null, null, "1");
+        try {
+            if (cursor.moveToFirst()) {
+                for (final String id : StringUtils.split(StringUtils.defaultString(cursor.getString(0)), ',')) {
+                    listIds.add(Integer.parseInt(id));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return listIds;
+    }
+
+    public static void clearRefreshQueue(final int listId) {
+        init();
+
+        database.delete(dbTableRefreshQueue, "list_id = ?", new String[] { String.valueOf(listId) });
+    }
+
+    /**
+     * Append a position to the trail shown on the map.
+     */
+    public static void saveTrailPosition(@NonNull final Geopoint coords) {
+        init();
+
+        final SQLiteStatement insert = PreparedStatement.INSERT_TRAIL_POSITION.getStatement();
+        synchronized (insert) {
+            insert.bindDouble(1, coords.getLatitude());
+            insert.bindDouble(2, coords.getLongitude());
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * Forget all but the most recent positions of the trail.
+     */
+    public static void trimTrail(final int maxPositions) {
+        init();
+
+        final SQLiteStatement trim = PreparedStatement.TRIM_TRAIL.getStatement();
+        synchronized (trim) {
+            trim.bindLong(1, maxPositions);
+            trim.execute();
+        }
+    }
+
+    /**
+     * @return the most recent positions of the trail, the oldest one first
+     */
+    @NonNull
+    public static List<Geopoint> loadTrail(final int maxPositions) {
+        init();
+
+        final List<Geopoint> trail = new ArrayList<>();
+        final Cursor cursor = database.query(dbTableTrail, new String[] { "latitude", "longitude" }, null, null, null, null, "_id DESC", String.valueOf(maxPositions));
+        try {
+            while (cursor.moveToNext()) {
+                trail.add(new Geopoint(cursor.getDouble(0), cursor.getDouble(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+        Collections.reverse(trail);
+        return trail;
+    }
+
+    public static void clearTrail() {
+        init();
+
+        database.delete(dbTableTrail, null, null);
+    }
+
     @Nullable
     public static Cursor findSuggestions(final String searchTerm) {
         // require 3 characters, otherwise there are to many results
@@ -0,0 +1,145 @@
+package cgeo.geocaching.storage;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Fixed resolution grid of geocodes by their coordinates. Used to find the caches of a viewport without looking at
+ * every cache in memory. This class is not thread safe.
+ */
+final class GeocodeGrid {
+
+    /**
+     * Size of a grid cell in degrees, about 5 km in latitude. A live map viewport covers only a few cells.
+     */
+    private static final double CELL_SIZE = 0.05;
+    private static final int LATITUDE_CELLS = (int) Math.ceil(180 / CELL_SIZE) + 1;
+    private static final int LONGITUDE_CELLS = (int) Math.ceil(360 / CELL_SIZE) + 1;
+    /**
+     * Pseudo cell for geocodes without coordinates, which is part of every lookup.
+     */
+    private static final int NO_COORDINATES = -1;
+
+    private final Map<Integer, Set<String>> cells = new HashMap<>();
+    private final Map<String, Integer> cellOfGeocode = new HashMap<>();
+
+    /**
+     * Add a geocode or update its coordinates.
+     */
+    void put(@NonNull final String geocode, final double latitude, final double longitude) {
+        putInCell(geocode, cellIndex(latitudeCell(latitude), longitudeCell(longitude)));
+    }
+
+    /**
+     * Add a geocode whose coordinates are not known (yet).
+     */
+    void putWithoutCoordinates(@NonNull final String geocode) {
+        putInCell(geocode, NO_COORDINATES);
+    }
+
+    private void putInCell(@NonNull final String geocode, final int cell) {
+        final Integer previous = cellOfGeocode.put(geocode, cell);
+        if (previous != null) {
+            if (previous == cell) {
+                return;
+            }
+            removeFromCell(geocode, previous);
+        }
+        Set<String> geocodes = cells.get(cell);
+        if (geocodes == null) {
+            geocodes = new HashSet<>();
+            cells.put(cell, geocodes);
+        }
+        geocodes.add(geocode);
+    }
+
+    void remove(@NonNull final String geocode) {
+        final Integer cell = cellOfGeocode.remove(geocode);
+        if (cell != null) {
+            removeFromCell(geocode, cell);
+        }
+    }
+
+    private void removeFromCell(@NonNull final String geocode, final int cell) {
+        final Set<String> geocodes = cells.get(cell);
+        if (geocodes != null) {
+            geocodes.remove(geocode);
+            if (geocodes.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+
+    void clear() {
+        cells.clear();
+        cellOfGeocode.clear();
+    }
+
+    int size() {
+        return cellOfGeocode.size();
+    }
+
+    /**
+     * Collect the geocodes of all cells overlapping the given area, and the geocodes without coordinates. The result
+     * may therefore contain geocodes outside the area, which must be checked by the caller.
+     */
+    void collect(final double latitudeMin, final double latitudeMax, final double longitudeMin, final double longitudeMax, @NonNull final Collection<String> result) {
+        final int latitudeCellMin = latitudeCell(latitudeMin);
+        final int latitudeCellMax = latitudeCell(latitudeMax);
+        final int longitudeCellMin = longitudeCell(longitudeMin);
+        final int longitudeCellMax = longitudeCell(longitudeMax);
+        final long areaCells = (long) (latitudeCellMax - latitudeCellMin + 1) * (longitudeCellMax - longitudeCellMin + 1);
+        if (areaCells > cells.size()) {
+            // large area with few caches, e.g. a zoomed out map: looking at the occupied cells is cheaper
+            for (final Entry<Integer, Set<String>> entry : cells.entrySet()) {
+                final int cell = entry.getKey();
+                if (cell == NO_COORDINATES) {
+                    result.addAll(entry.getValue());
+                    continue;
+                }
+                final int latitudeCell = cell / LONGITUDE_CELLS;
+                final int longitudeCell = cell % LONGITUDE_CELLS;
+                if (latitudeCell >= latitudeCellMin && latitudeCell <= latitudeCellMax && longitudeCell >= longitudeCellMin && longitudeCell <= longitudeCellMax) {
+                    result.addAll(entry.getValue());
+                }
+            }
+            return;
+        }
+        for (int latitudeCell = latitudeCellMin; latitudeCell <= latitudeCellMax; latitudeCell++) {
+            for (int longitudeCell = longitudeCellMin; longitudeCell <= longitudeCellMax; longitudeCell++) {
+                addCell(cellIndex(latitudeCell, longitudeCell), result);
+            }
+        }
+        addCell(NO_COORDINATES, result);
+    }
+
+    private void addCell(final int cell, @NonNull final Collection<String> result) {
+        final Set<String> geocodes = cells.get(cell);
+        if (geocodes != null) {
+            result.addAll(geocodes);
+        }
+    }
+
+    private static int latitudeCell(final double latitude) {
+        return clamp((int) Math.floor((latitude + 90) / CELL_SIZE), LATITUDE_CELLS);
+    }
+
+    private static int longitudeCell(final double longitude) {
+        return clamp((int) Math.floor((longitude + 180) / CELL_SIZE), LONGITUDE_CELLS);
+    }
+
+    private static int clamp(final int cell, final int cells) {
+        return Math.max(0, Math.min(cells - 1, cell));
+    }
+
+    private static int cellIndex(final int latitudeCell, final int longitudeCell) {
+        return latitudeCell * LONGITUDE_CELLS + longitudeCell;
+    }
+
+}
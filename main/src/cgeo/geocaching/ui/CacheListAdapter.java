@@ -72,7 +72,7 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
     private final CacheListType cacheListType;
     private final Resources res;
     /** Resulting list of caches */
-    private final List<Geocache> list;
+    private final WindowedCacheList list;
     private boolean eventsOnly;
     private boolean inverseSort = false;
     /**
@@ -127,7 +127,7 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
         }
     }
 
-    public CacheListAdapter(final Activity activity, final List<Geocache> list, final CacheListType cacheListType) {
+    public CacheListAdapter(final Activity activity, final WindowedCacheList list, final CacheListType cacheListType) {
         super(activity, 0, list);
         final GeoData currentGeo = Sensors.getInstance().currentGeo();
         coords = currentGeo.getCoords();
@@ -208,6 +208,8 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
      */
     public void reFilter() {
         if (currentFilter != null) {
+            // filtering needs all caches
+            list.loadAll();
             // Back up the list again
             originalList = new ArrayList<>(list);
 
@@ -219,8 +221,13 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
      * Called after a user action on the filter menu.
      */
     public void setFilter(final IFilter filter) {
+        // filtering needs all caches
+        if (filter != null) {
+            list.loadAll();
+        }
+
         // Backup current caches list if it isn't backed up yet
-        if (originalList == null) {
+        if (originalList == null && filter != null) {
             originalList = new ArrayList<>(list);
         }
 
@@ -249,22 +256,14 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
     }
 
     public int getCheckedCount() {
-        int checked = 0;
-        for (final Geocache cache : list) {
-            if (cache.isStatusChecked()) {
-                checked++;
-            }
-        }
-        return checked;
+        return list.getCheckedGeocodes().size();
     }
 
     public void setSelectMode(final boolean selectMode) {
         this.selectMode = selectMode;
 
         if (!selectMode) {
-            for (final Geocache cache : list) {
-                cache.setStatusChecked(false);
-            }
+            list.setAllChecked(false);
         }
         notifyDataSetChanged();
     }
@@ -278,9 +277,7 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
     }
 
     public void invertSelection() {
-        for (final Geocache cache : list) {
-            cache.setStatusChecked(!cache.isStatusChecked());
-        }
+        list.invertChecked();
         notifyDataSetChanged();
     }
 
@@ -289,6 +286,14 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
             return;
         }
 
+        if (list.isWindowed()) {
+            // a windowed list is ordered by distance by the database, any other order needs all caches
+            if (isSortedByDistance() && !inverseSort) {
+                return;
+            }
+            list.loadAll();
+        }
+
         if (isSortedByDistance()) {
             lastSort = 0;
             updateSortByDistance();
@@ -315,7 +320,7 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
         if (CollectionUtils.isEmpty(list)) {
             return;
         }
-        if (selectMode) {
+        if (selectMode || list.isWindowed()) {
             return;
         }
         if ((System.currentTimeMillis() - lastSort) <= PAUSE_BETWEEN_LIST_SORT) {
@@ -638,14 +643,15 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
         return list;
     }
 
+    /**
+     * @return the geocodes of the shown caches, without loading the caches of a windowed list
+     */
+    public Set<String> getFilteredGeocodes() {
+        return list.getGeocodes();
+    }
+
     public List<Geocache> getCheckedCaches() {
-        final List<Geocache> result = new ArrayList<>();
-        for (final Geocache cache : list) {
-            if (cache.isStatusChecked()) {
-                result.add(cache);
-            }
-        }
-        return result;
+        return list.getCheckedCaches();
     }
 
     public List<Geocache> getCheckedOrAllCaches() {
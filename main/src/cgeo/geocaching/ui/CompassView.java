@@ -3,29 +3,42 @@ package cgeo.geocaching.ui;
 import cgeo.geocaching.R;
 import cgeo.geocaching.utils.AngleUtils;
 
+import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.PaintFlagsDrawFilter;
+import android.os.Build;
+import android.support.annotation.DrawableRes;
 import android.util.AttributeSet;
-import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+/**
+ * Compass rose with an arrow to the cache.
+ * <p>
+ * The underlay, the rose, the arrow and the overlay are separate images, each rendered into its own hardware layer.
+ * Turning the rose and the arrow only changes the rotation of their layers, so that none of the images is drawn again
+ * and the static underlay and overlay are only composited.
+ * </p>
+ * <p>
+ * The compass is only turned when the measured directions differ noticeably from the shown ones. It then turns the rose
+ * and the arrow towards the measured directions in small steps, and stops once they are reached.
+ * </p>
+ */
+public class CompassView extends FrameLayout {
 
-import java.lang.ref.WeakReference;
-import java.util.concurrent.TimeUnit;
-
-import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.CompositeDisposable;
+    /**
+     * minimum difference between a measured and a shown direction to turn the compass, in degrees
+     */
+    private static final float REDRAW_THRESHOLD = 2;
 
-public class CompassView extends View {
+    /**
+     * delay between two steps of turning the compass
+     */
+    private static final long ANIMATION_STEP_MILLIS = 40;
 
-    private Context context = null;
-    private Bitmap compassUnderlay = null;
-    private Bitmap compassRose = null;
-    private Bitmap compassArrow = null;
-    private Bitmap compassOverlay = null;
+    private RotatedImageView compassRose;
+    private RotatedImageView compassArrow;
     /**
      * North direction currently SHOWN on compass (not measured)
      */
@@ -42,105 +55,121 @@ public class CompassView extends View {
      * North direction measured from device, or 0.0
      */
     private float northMeasured = 0;
-    private PaintFlagsDrawFilter setfil = null;
-    private PaintFlagsDrawFilter remfil = null;
-    private int compassUnderlayWidth = 0;
-    private int compassUnderlayHeight = 0;
-    private int compassRoseWidth = 0;
-    private int compassRoseHeight = 0;
-    private int compassArrowWidth = 0;
-    private int compassArrowHeight = 0;
-    private int compassOverlayWidth = 0;
-    private int compassOverlayHeight = 0;
     private boolean initialDisplay;
-    private final CompositeDisposable periodicUpdate = new CompositeDisposable();
+    /**
+     * whether the compass is turning towards the measured directions
+     */
+    private boolean animating = false;
+
+    private final Runnable animationStep = new Runnable() {
+        @Override
+        public void run() {
+            updateGraphics();
+        }
+    };
+
+    /**
+     * Image turned around its center. Before Honeycomb, the view has no rotation property and the image is drawn
+     * turned instead.
+     */
+    private static final class RotatedImageView extends ImageView {
 
-    private static final class UpdateAction implements Runnable {
+        private float angle = 0;
 
-        private final WeakReference<CompassView> compassViewRef;
+        RotatedImageView(final Context context) {
+            super(context);
+        }
+
+        void setAngle(final float newAngle) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                setViewRotation(newAngle);
+            } else {
+                angle = newAngle;
+                invalidate();
+            }
+        }
 
-        private UpdateAction(final CompassView view) {
-            this.compassViewRef = new WeakReference<>(view);
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+        private void setViewRotation(final float newAngle) {
+            setRotation(newAngle);
         }
 
         @Override
-        public void run() {
-            final CompassView compassView = compassViewRef.get();
-            if (compassView == null) {
+        protected void onDraw(final Canvas canvas) {
+            if (angle == 0) {
+                super.onDraw(canvas);
                 return;
             }
-            compassView.updateGraphics();
+            canvas.save();
+            canvas.rotate(angle, getWidth() / 2.0f, getHeight() / 2.0f);
+            super.onDraw(canvas);
+            canvas.restore();
+        }
+    }
+
+    public CompassView(final Context context) {
+        super(context);
+        init(context);
+    }
+
+    public CompassView(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    private void init(final Context context) {
+        addImage(new ImageView(context), R.drawable.compass_underlay);
+        compassRose = new RotatedImageView(context);
+        addImage(compassRose, R.drawable.compass_rose);
+        compassArrow = new RotatedImageView(context);
+        addImage(compassArrow, R.drawable.compass_arrow);
+        addImage(new ImageView(context), R.drawable.compass_overlay);
+    }
+
+    private void addImage(final ImageView image, @DrawableRes final int drawable) {
+        image.setImageResource(drawable);
+        image.setScaleType(ImageView.ScaleType.CENTER);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            setHardwareLayer(image);
         }
+        addView(image, new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
     }
 
-    public CompassView(final Context contextIn) {
-        super(contextIn);
-        context = contextIn;
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void setHardwareLayer(final ImageView image) {
+        image.setLayerType(LAYER_TYPE_HARDWARE, null);
     }
 
-    public void updateGraphics() {
+    /**
+     * Turn the shown directions one step towards the measured ones, and schedule the next step until they are reached.
+     */
+    private void updateGraphics() {
         final float newAzimuthShown = initialDisplay ? northMeasured : smoothUpdate(northMeasured, azimuthShown);
         final float newCacheHeadingShown = initialDisplay ? cacheHeadingMeasured : smoothUpdate(cacheHeadingMeasured, cacheHeadingShown);
         initialDisplay = false;
-        if (Math.abs(AngleUtils.difference(azimuthShown, newAzimuthShown)) >= 2 ||
-                Math.abs(AngleUtils.difference(cacheHeadingShown, newCacheHeadingShown)) >= 2) {
-            azimuthShown = newAzimuthShown;
-            cacheHeadingShown = newCacheHeadingShown;
-            invalidate();
+        if (newAzimuthShown == azimuthShown && newCacheHeadingShown == cacheHeadingShown) {
+            animating = false;
+            return;
         }
-    }
-
-    public CompassView(final Context contextIn, final AttributeSet attrs) {
-        super(contextIn, attrs);
-        context = contextIn;
+        azimuthShown = newAzimuthShown;
+        cacheHeadingShown = newCacheHeadingShown;
+        compassRose.setAngle(-azimuthShown);
+        compassArrow.setAngle(-AngleUtils.normalize(azimuthShown - cacheHeadingShown));
+        postDelayed(animationStep, ANIMATION_STEP_MILLIS);
     }
 
     @Override
     public void onAttachedToWindow() {
-        final Resources res = context.getResources();
-        compassUnderlay = BitmapFactory.decodeResource(res, R.drawable.compass_underlay);
-        compassRose = BitmapFactory.decodeResource(res, R.drawable.compass_rose);
-        compassArrow = BitmapFactory.decodeResource(res, R.drawable.compass_arrow);
-        compassOverlay = BitmapFactory.decodeResource(res, R.drawable.compass_overlay);
-
-        compassUnderlayWidth = compassUnderlay.getWidth();
-        compassUnderlayHeight = compassUnderlay.getWidth();
-        compassRoseWidth = compassRose.getWidth();
-        compassRoseHeight = compassRose.getWidth();
-        compassArrowWidth = compassArrow.getWidth();
-        compassArrowHeight = compassArrow.getWidth();
-        compassOverlayWidth = compassOverlay.getWidth();
-        compassOverlayHeight = compassOverlay.getWidth();
-
-        setfil = new PaintFlagsDrawFilter(0, Paint.FILTER_BITMAP_FLAG);
-        remfil = new PaintFlagsDrawFilter(Paint.FILTER_BITMAP_FLAG, 0);
-
+        super.onAttachedToWindow();
         initialDisplay = true;
-
-        periodicUpdate.add(AndroidSchedulers.mainThread().schedulePeriodicallyDirect(new UpdateAction(this), 0, 40, TimeUnit.MILLISECONDS));
     }
 
     @Override
     public void onDetachedFromWindow() {
-        periodicUpdate.clear();
+        removeCallbacks(animationStep);
+        animating = false;
 
         super.onDetachedFromWindow();
-
-        if (compassUnderlay != null) {
-            compassUnderlay.recycle();
-        }
-
-        if (compassRose != null) {
-            compassRose.recycle();
-        }
-
-        if (compassArrow != null) {
-            compassArrow.recycle();
-        }
-
-        if (compassOverlay != null) {
-            compassOverlay.recycle();
-        }
     }
 
     /**
@@ -152,6 +181,14 @@ public class CompassView extends View {
     public void updateNorth(final float northHeading, final float cacheHeading) {
         northMeasured = northHeading;
         cacheHeadingMeasured = cacheHeading;
+        if (animating) {
+            return;
+        }
+        if (initialDisplay || Math.abs(AngleUtils.difference(azimuthShown, northMeasured)) >= REDRAW_THRESHOLD ||
+                Math.abs(AngleUtils.difference(cacheHeadingShown, cacheHeadingMeasured)) >= REDRAW_THRESHOLD) {
+            animating = true;
+            post(animationStep);
+        }
     }
 
     /**
@@ -179,75 +216,4 @@ public class CompassView extends View {
         return AngleUtils.normalize((float) (actual + offset));
     }
 
-    @Override
-    protected void onDraw(final Canvas canvas) {
-
-        final float azimuthTemp = azimuthShown;
-        final float azimuthRelative = AngleUtils.normalize(azimuthTemp - cacheHeadingShown);
-
-        // compass margins
-        final int canvasCenterX = (compassRoseWidth / 2) + ((getWidth() - compassRoseWidth) / 2);
-        final int canvasCenterY = (compassRoseHeight / 2) + ((getHeight() - compassRoseHeight) / 2);
-
-        super.onDraw(canvas);
-
-        canvas.save();
-        canvas.setDrawFilter(setfil);
-
-        canvas.drawBitmap(compassUnderlay, (getWidth() - compassUnderlayWidth) / 2.0f, (getHeight() - compassUnderlayHeight) / 2.0f, null);
-
-        canvas.save();
-        canvas.rotate(-azimuthTemp, canvasCenterX, canvasCenterY);
-        canvas.drawBitmap(compassRose, (getWidth() - compassRoseWidth) / 2.0f, (getHeight() - compassRoseHeight) / 2.0f, null);
-        canvas.restore();
-
-        canvas.save();
-        canvas.rotate(-azimuthRelative, canvasCenterX, canvasCenterY);
-        canvas.drawBitmap(compassArrow, (getWidth() - compassArrowWidth) / 2.0f, (getHeight() - compassArrowHeight) / 2.0f, null);
-        canvas.restore();
-
-        canvas.drawBitmap(compassOverlay, (getWidth() - compassOverlayWidth) / 2.0f, (getHeight() - compassOverlayHeight) / 2.0f, null);
-
-        canvas.setDrawFilter(remfil);
-        canvas.restore();
-    }
-
-    @Override
-    protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
-        setMeasuredDimension(measureWidth(widthMeasureSpec), measureHeight(heightMeasureSpec));
-    }
-
-    private int measureWidth(final int measureSpec) {
-        final int specMode = MeasureSpec.getMode(measureSpec);
-        final int specSize = MeasureSpec.getSize(measureSpec);
-
-        if (specMode == MeasureSpec.EXACTLY) {
-            return specSize;
-        }
-
-        final int desired = compassArrow.getWidth() + getPaddingLeft() + getPaddingRight();
-        if (specMode == MeasureSpec.AT_MOST) {
-            return Math.min(desired, specSize);
-        }
-
-        return desired;
-    }
-
-    private int measureHeight(final int measureSpec) {
-        // The duplicated code in measureHeight and measureWidth cannot be avoided.
-        // Those methods must be efficient, therefore we cannot extract the code differences and unify the remainder.
-        final int specMode = MeasureSpec.getMode(measureSpec);
-        final int specSize = MeasureSpec.getSize(measureSpec);
-
-        if (specMode == MeasureSpec.EXACTLY) {
-            return specSize;
-        }
-
-        final int desired = compassArrow.getHeight() + getPaddingTop() + getPaddingBottom();
-        if (specMode == MeasureSpec.AT_MOST) {
-            return Math.min(desired, specSize);
-        }
-
-        return desired;
-    }
 }
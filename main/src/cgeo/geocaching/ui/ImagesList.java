@@ -16,7 +16,6 @@ import cgeo.geocaching.utils.Log;
 import android.app.Activity;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
@@ -42,7 +41,6 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.LinkedList;
 
 import butterknife.ButterKnife;
 import com.drew.imaging.ImageMetadataReader;
@@ -81,7 +79,6 @@ public class ImagesList {
     private LayoutInflater inflater = null;
     private final Activity activity;
     // We could use a Set here, but we will insert no duplicates, so there is no need to check for uniqueness.
-    private final Collection<Bitmap> bitmaps = new LinkedList<>();
     /**
      * map image view id to image
      */
@@ -156,8 +153,6 @@ public class ImagesList {
         final ImageView imageView = (ImageView) imageViewLayout.findViewById(R.id.map_image);
         // In case of a failed download happening fast, the imageView seems to not have been added to the layout yet
         if (image != null && imageView != null) {
-            bitmaps.add(image.getBitmap());
-
             final Rect bounds = image.getBounds();
 
             imageView.setImageResource(R.drawable.image_not_loaded);
@@ -235,10 +230,6 @@ public class ImagesList {
     }
 
     private void removeAllViews() {
-        for (final Bitmap b : bitmaps) {
-            b.recycle();
-        }
-        bitmaps.clear();
         images.clear();
         geoPoints.clear();
 
@@ -0,0 +1,355 @@
+package cgeo.geocaching.ui;
+
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * The caches shown by the {@link CacheListAdapter}.
+ * <p>
+ * For huge stored lists, the list can be set to a window on the geocodes in the order computed by the database. Then
+ * the caches are loaded from the database page by page when they are accessed, e.g. while scrolling. Only the most
+ * recently used pages are kept in memory. When a cache in the second half of a page is accessed, the following page is
+ * loaded in the background, otherwise the previous one. The check marks of caches not in memory are kept by geocode.
+ * </p>
+ * <p>
+ * Any modification of a windowed list, e.g. by sorting or filtering in memory, first loads all caches and turns it into
+ * a regular list.
+ * </p>
+ * <p>
+ * The list must only be accessed from the UI thread.
+ * </p>
+ */
+public class WindowedCacheList extends AbstractList<Geocache> implements RandomAccess {
+
+    static final int PAGE_SIZE = 50;
+    private static final int MAX_PAGES = 6;
+
+    @NonNull private List<Geocache> caches = new ArrayList<>();
+    /** the geocodes of the window in their order, or {@code null} if the list is not windowed, guarded by {@link #pages} */
+    @Nullable private List<String> geocodes = null;
+    /** the geocodes of the checked caches whose page is not in memory, guarded by {@link #pages} */
+    private final Set<String> checked = new HashSet<>();
+
+    /** the most recently used pages by page number, guarded by itself */
+    private final Map<Integer, List<Geocache>> pages = new LinkedHashMap<Integer, List<Geocache>>(MAX_PAGES + 1, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, List<Geocache>> eldest) {
+            if (size() <= MAX_PAGES) {
+                return false;
+            }
+            rememberChecked(eldest.getValue());
+            return true;
+        }
+    };
+    /** pages being loaded in the background, guarded by {@link #pages} */
+    private final Set<Integer> prefetching = new HashSet<>();
+
+    /**
+     * Replace the content of the list by a window on the given caches.
+     *
+     * @param orderedGeocodes
+     *            the geocodes of the caches in the order of the list
+     */
+    public void setWindow(@NonNull final Collection<String> orderedGeocodes) {
+        synchronized (pages) {
+            geocodes = new ArrayList<>(orderedGeocodes);
+            pages.clear();
+            checked.clear();
+        }
+        caches = new ArrayList<>();
+        modCount++;
+    }
+
+    public boolean isWindowed() {
+        return geocodes != null;
+    }
+
+    /**
+     * Forget the caches in memory, so that they are loaded from the database again when accessed, e.g. after they
+     * have been refreshed. The check marks are kept.
+     */
+    public void invalidate() {
+        synchronized (pages) {
+            for (final List<Geocache> page : pages.values()) {
+                rememberChecked(page);
+            }
+            pages.clear();
+        }
+    }
+
+    @Override
+    public Geocache get(final int location) {
+        final List<String> window = geocodes;
+        if (window == null) {
+            return caches.get(location);
+        }
+        if (location < 0 || location >= window.size()) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + window.size());
+        }
+        final int pageNumber = location / PAGE_SIZE;
+        final int index = location % PAGE_SIZE;
+        final List<Geocache> page = getPage(window, pageNumber);
+        prefetch(window, index >= PAGE_SIZE / 2 ? pageNumber + 1 : pageNumber - 1);
+        return page.get(index);
+    }
+
+    @Override
+    public int size() {
+        final List<String> window = geocodes;
+        return window != null ? window.size() : caches.size();
+    }
+
+    @Override
+    public Geocache set(final int location, final Geocache cache) {
+        loadAll();
+        return caches.set(location, cache);
+    }
+
+    @Override
+    public void add(final int location, final Geocache cache) {
+        loadAll();
+        caches.add(location, cache);
+        modCount++;
+    }
+
+    @Override
+    public Geocache remove(final int location) {
+        loadAll();
+        modCount++;
+        return caches.remove(location);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (pages) {
+            geocodes = null;
+            pages.clear();
+            checked.clear();
+        }
+        caches = new ArrayList<>();
+        modCount++;
+    }
+
+    /**
+     * Turn a windowed list into a regular list by loading all caches.
+     */
+    public void loadAll() {
+        final List<String> window = geocodes;
+        if (window == null) {
+            return;
+        }
+        final Set<String> checkedGeocodes = getCheckedGeocodes();
+        final List<Geocache> all = loadCaches(window);
+        for (final Geocache cache : all) {
+            cache.setStatusChecked(checkedGeocodes.contains(cache.getGeocode()));
+        }
+        synchronized (pages) {
+            geocodes = null;
+            pages.clear();
+            checked.clear();
+        }
+        caches = all;
+    }
+
+    /**
+     * @return the geocodes of the caches in the order of the list, without loading the caches of a windowed list
+     */
+    @NonNull
+    public Set<String> getGeocodes() {
+        final List<String> window = geocodes;
+        if (window != null) {
+            return new LinkedHashSet<>(window);
+        }
+        final Set<String> result = new LinkedHashSet<>(caches.size());
+        for (final Geocache cache : caches) {
+            result.add(cache.getGeocode());
+        }
+        return result;
+    }
+
+    /**
+     * @return the geocodes of the checked caches, without loading the caches of a windowed list
+     */
+    @NonNull
+    public Set<String> getCheckedGeocodes() {
+        final Set<String> result = new HashSet<>();
+        synchronized (pages) {
+            if (geocodes != null) {
+                result.addAll(checked);
+                for (final List<Geocache> page : pages.values()) {
+                    for (final Geocache cache : page) {
+                        if (cache.isStatusChecked()) {
+                            result.add(cache.getGeocode());
+                        } else {
+                            result.remove(cache.getGeocode());
+                        }
+                    }
+                }
+                return result;
+            }
+        }
+        for (final Geocache cache : caches) {
+            if (cache.isStatusChecked()) {
+                result.add(cache.getGeocode());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the checked caches, loading only those of a windowed list
+     */
+    @NonNull
+    public List<Geocache> getCheckedCaches() {
+        if (!isWindowed()) {
+            final List<Geocache> result = new ArrayList<>();
+            for (final Geocache cache : caches) {
+                if (cache.isStatusChecked()) {
+                    result.add(cache);
+                }
+            }
+            return result;
+        }
+        final List<Geocache> result = new ArrayList<>(DataStore.loadCaches(getCheckedGeocodes(), LoadFlags.LOAD_CACHE_OR_DB));
+        for (final Geocache cache : result) {
+            cache.setStatusChecked(true);
+        }
+        return result;
+    }
+
+    /**
+     * Check or uncheck all caches, without loading the caches of a windowed list.
+     */
+    public void setAllChecked(final boolean check) {
+        setChecked(check ? getGeocodes() : new HashSet<String>());
+    }
+
+    /**
+     * Invert the check marks of all caches, without loading the caches of a windowed list.
+     */
+    public void invertChecked() {
+        final Set<String> inverted = getGeocodes();
+        inverted.removeAll(getCheckedGeocodes());
+        setChecked(inverted);
+    }
+
+    private void setChecked(@NonNull final Set<String> checkedGeocodes) {
+        synchronized (pages) {
+            if (geocodes != null) {
+                checked.clear();
+                checked.addAll(checkedGeocodes);
+                for (final List<Geocache> page : pages.values()) {
+                    for (final Geocache cache : page) {
+                        cache.setStatusChecked(checkedGeocodes.contains(cache.getGeocode()));
+                    }
+                }
+                return;
+            }
+        }
+        for (final Geocache cache : caches) {
+            cache.setStatusChecked(checkedGeocodes.contains(cache.getGeocode()));
+        }
+    }
+
+    /**
+     * Keep the check marks of the caches of a page removed from memory. Must be called with {@link #pages} locked.
+     */
+    private void rememberChecked(@NonNull final List<Geocache> page) {
+        for (final Geocache cache : page) {
+            if (cache.isStatusChecked()) {
+                checked.add(cache.getGeocode());
+            } else {
+                checked.remove(cache.getGeocode());
+            }
+        }
+    }
+
+    @NonNull
+    private List<Geocache> getPage(@NonNull final List<String> window, final int pageNumber) {
+        synchronized (pages) {
+            final List<Geocache> page = pages.get(pageNumber);
+            if (page != null) {
+                return page;
+            }
+        }
+        final int start = pageNumber * PAGE_SIZE;
+        final List<Geocache> page = loadCaches(window.subList(start, Math.min(start + PAGE_SIZE, window.size())));
+        synchronized (pages) {
+            // the window may have been replaced while loading
+            if (window == geocodes && !pages.containsKey(pageNumber)) {
+                for (final Geocache cache : page) {
+                    cache.setStatusChecked(checked.contains(cache.getGeocode()));
+                }
+                pages.put(pageNumber, page);
+            }
+            final List<Geocache> current = pages.get(pageNumber);
+            return current != null ? current : page;
+        }
+    }
+
+    private void prefetch(@NonNull final List<String> window, final int pageNumber) {
+        if (pageNumber < 0 || pageNumber * PAGE_SIZE >= window.size()) {
+            return;
+        }
+        synchronized (pages) {
+            if (pages.containsKey(pageNumber) || !prefetching.add(pageNumber)) {
+                return;
+            }
+        }
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getPage(window, pageNumber);
+                } finally {
+                    synchronized (pages) {
+                        prefetching.remove(pageNumber);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the caches in the order of the geocodes, with a placeholder for caches removed from the database
+     */
+    @NonNull
+    private static List<Geocache> loadCaches(@NonNull final List<String> geocodes) {
+        final Map<String, Geocache> loaded = new HashMap<>(geocodes.size());
+        for (final Geocache cache : DataStore.loadCaches(geocodes, LoadFlags.LOAD_CACHE_OR_DB)) {
+            loaded.put(cache.getGeocode(), cache);
+        }
+        final List<Geocache> result = new ArrayList<>(geocodes.size());
+        for (final String geocode : geocodes) {
+            Geocache cache = loaded.get(geocode);
+            if (cache == null) {
+                cache = new Geocache();
+                cache.setGeocode(geocode);
+                cache.setName(geocode);
+            }
+            result.add(cache);
+        }
+        return result;
+    }
+
+}
@@ -109,12 +109,30 @@ public final class Dialogs {
      *            listener of the positive button
      */
     public static AlertDialog.Builder confirmYesNo(final Activity context, final String title, final String msg, final OnClickListener yesListener) {
+        return confirmYesNo(context, title, msg, yesListener, null);
+    }
+
+    /**
+     * Confirm using two buttons "Yes" and "No".
+     *
+     * @param context
+     *            activity hosting the dialog
+     * @param title
+     *            dialog title
+     * @param msg
+     *            dialog message
+     * @param yesListener
+     *            listener of the positive button
+     * @param noListener
+     *            listener of the negative button, or {@code null} to just close the dialog
+     */
+    public static AlertDialog.Builder confirmYesNo(final Activity context, final String title, final String msg, final OnClickListener yesListener, @Nullable final OnClickListener noListener) {
         final AlertDialog.Builder builder = new AlertDialog.Builder(context);
         final AlertDialog dialog = builder.setTitle(title)
                 .setCancelable(true)
                 .setMessage(msg)
                 .setPositiveButton(android.R.string.yes, yesListener)
-                .setNegativeButton(android.R.string.no, null)
+                .setNegativeButton(android.R.string.no, noListener)
                 .create();
         dialog.setOwnerActivity(context);
         dialog.show();
@@ -0,0 +1,96 @@
+package cgeo.geocaching.utils;
+
+import cgeo.geocaching.CgeoApplication;
+
+import android.annotation.SuppressLint;
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import java.io.File;
+
+/**
+ * Application wide memory cache of bitmaps decoded from image files, so that images shown several times (like the
+ * smileys of the logs or the images of a cache opened again) are not decoded again every time.
+ * <p>
+ * The bitmaps are identified by their file, its modification time and the maximum size they have been decoded for. The
+ * cache is limited to a part of the memory class of the device. The least recently used bitmaps are evicted when the
+ * limit is exceeded, or when the system asks to trim memory.
+ * </p>
+ * <p>
+ * The cached bitmaps are shared, so they must neither be modified nor recycled.
+ * </p>
+ */
+public final class BitmapMemoryCache {
+
+    /**
+     * Part of the memory class of the device to be used for bitmaps.
+     */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+    /**
+     * Budget if the memory class of the device is not known.
+     */
+    private static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> CACHE = new LruCache<String, Bitmap>(getMemoryBudget()) {
+        @Override
+        protected int sizeOf(final String key, final Bitmap bitmap) {
+            // Bitmap.getByteCount() is only available in API 12+
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    };
+
+    private BitmapMemoryCache() {
+        // utility class
+    }
+
+    private static int getMemoryBudget() {
+        final Application application = CgeoApplication.getInstance();
+        if (application == null) {
+            return DEFAULT_MAX_BYTES;
+        }
+        final ActivityManager activityManager = (ActivityManager) application.getSystemService(Context.ACTIVITY_SERVICE);
+        final int budget = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+        Log.d("BitmapMemoryCache: using " + budget / 1024 + " kB for bitmaps");
+        return budget;
+    }
+
+    @NonNull
+    private static String getKey(@NonNull final File file, final int maxWidth, final int maxHeight) {
+        return file.getPath() + '|' + file.lastModified() + '|' + maxWidth + 'x' + maxHeight;
+    }
+
+    /**
+     * @return the bitmap decoded from the current version of the file for the given maximum size, or {@code null} if
+     *         it is not cached
+     */
+    @Nullable
+    public static Bitmap get(@NonNull final File file, final int maxWidth, final int maxHeight) {
+        return CACHE.get(getKey(file, maxWidth, maxHeight));
+    }
+
+    public static void put(@NonNull final File file, final int maxWidth, final int maxHeight, @NonNull final Bitmap bitmap) {
+        CACHE.put(getKey(file, maxWidth, maxHeight), bitmap);
+    }
+
+    /**
+     * Release memory when asked to by the system.
+     *
+     * @param level
+     *            the level of {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    @SuppressLint("InlinedApi")
+    public static void trimMemory(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            CACHE.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            CACHE.trimToSize(CACHE.maxSize() / 2);
+        }
+    }
+
+}
@@ -72,7 +72,31 @@ public final class MapUtils {
      */
     @NonNull
     public static LayerDrawable getCacheMarker(final Resources res, final Geocache cache, @Nullable final CacheListType cacheListType) {
-        final int hashcode = new HashCodeBuilder()
+        final int hashcode = getCacheMarkerHash(cache, cacheListType);
+
+        synchronized (overlaysCache) {
+            LayerDrawable drawable = overlaysCache.get(hashcode);
+            if (drawable == null) {
+                drawable = createCacheMarker(res, cache, cacheListType);
+                overlaysCache.put(hashcode, drawable);
+            }
+            return drawable;
+        }
+    }
+
+    /**
+     * Obtain the hash code of the marker of a given cache. Caches with the same hash code are displayed with the same
+     * marker.
+     *
+     * @param cache
+     *          the cache to build the hash code for
+     * @param cacheListType
+     *          the current CacheListType or Null
+     * @return
+     *          the hash code of the current cache status
+     */
+    public static int getCacheMarkerHash(final Geocache cache, @Nullable final CacheListType cacheListType) {
+        return new HashCodeBuilder()
                 .append(cache.isReliableLatLon())
                 .append(cache.getType().id)
                 .append(cache.isDisabled() || cache.isArchived())
@@ -87,15 +111,6 @@ public final class MapUtils {
                 .append(showBackground(cacheListType))
                 .append(showFloppyOverlay(cacheListType))
                 .toHashCode();
-
-        synchronized (overlaysCache) {
-            LayerDrawable drawable = overlaysCache.get(hashcode);
-            if (drawable == null) {
-                drawable = createCacheMarker(res, cache, cacheListType);
-                overlaysCache.put(hashcode, drawable);
-            }
-            return drawable;
-        }
     }
 
     /**
@@ -111,10 +126,7 @@ public final class MapUtils {
      */
     @NonNull
     public static LayerDrawable getWaypointMarker(final Resources res, final Waypoint waypoint) {
-        final int hashcode = new HashCodeBuilder()
-        .append(waypoint.isVisited())
-        .append(waypoint.getWaypointType().id)
-        .toHashCode();
+        final int hashcode = getWaypointMarkerHash(waypoint);
 
         synchronized (overlaysCache) {
             LayerDrawable drawable = overlaysCache.get(hashcode);
@@ -126,6 +138,22 @@ public final class MapUtils {
         }
     }
 
+    /**
+     * Obtain the hash code of the marker of a given waypoint. Waypoints with the same hash code are displayed with the
+     * same marker.
+     *
+     * @param waypoint
+     *          the waypoint to build the hash code for
+     * @return
+     *          the hash code of the current waypoint status
+     */
+    public static int getWaypointMarkerHash(final Waypoint waypoint) {
+        return new HashCodeBuilder()
+        .append(waypoint.isVisited())
+        .append(waypoint.getWaypointType().id)
+        .toHashCode();
+    }
+
     /**
      * Build the drawable for a given waypoint.
      *
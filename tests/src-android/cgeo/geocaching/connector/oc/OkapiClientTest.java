@@ -11,6 +11,8 @@ import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 public class OkapiClientTest extends CGeoTestCase {
@@ -42,6 +44,18 @@ public class OkapiClientTest extends CGeoTestCase {
         assertThat(cache.getName()).isEqualTo("Wupper-Schein");
     }
 
+    public static void testGetCaches() {
+        removeCacheCompletely("OC1234");
+        removeCacheCompletely("OCDDD2");
+        final OCApiConnector connector = (OCApiConnector) ConnectorFactory.getConnector("OC1234");
+        final List<Geocache> caches = OkapiClient.getCaches(Arrays.asList("OC1234", "OCDDD2"), connector);
+        assertThat(caches).hasSize(2);
+        final Geocache cache = DataStore.loadCache("OCDDD2", LoadFlags.LOAD_ALL_DB_ONLY);
+        assert cache != null; // eclipse null analysis
+        assertThat(cache.isDetailed()).isTrue();
+        assertThat(cache.getWaypoints()).hasSize(3);
+    }
+
     public static void testOCCacheWithWaypoints() {
         final String geoCode = "OCDDD2";
         removeCacheCompletely(geoCode);
@@ -0,0 +1,56 @@
+package cgeo.geocaching.filter;
+
+import cgeo.CGeoTestCase;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
+import cgeo.geocaching.list.StoredList;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AttributeFilterTest extends CGeoTestCase {
+
+    private static final String ATTRIBUTE = "wheelchair_yes";
+
+    private static Geocache createCache(final String geocode, final boolean withAttribute) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode);
+        cache.setDetailed(true);
+        cache.setAttributes(withAttribute ? Collections.singletonList(ATTRIBUTE) : Collections.<String>emptyList());
+        return cache;
+    }
+
+    public static void testAccepts() {
+        final AttributeFilter filter = new AttributeFilter("wheelchair", ATTRIBUTE);
+        assertThat(filter.accepts(createCache("TEST1", true))).isTrue();
+        assertThat(filter.accepts(createCache("TEST2", false))).isFalse();
+    }
+
+    public static void testFilterStoredAndNotStored() {
+        final AttributeFilter filter = new AttributeFilter("wheelchair", ATTRIBUTE);
+        final Geocache storedWith = createCache("TESTATTR1", true);
+        final Geocache storedWithout = createCache("TESTATTR2", false);
+        final Geocache notStoredWith = createCache("TESTATTR3", true);
+        storedWith.setLists(new HashSet<>(Collections.singletonList(StoredList.STANDARD_LIST_ID)));
+        storedWithout.setLists(new HashSet<>(Collections.singletonList(StoredList.STANDARD_LIST_ID)));
+        try {
+            DataStore.saveCache(storedWith, EnumSet.of(SaveFlag.DB));
+            DataStore.saveCache(storedWithout, EnumSet.of(SaveFlag.DB));
+
+            final List<Geocache> list = new ArrayList<>(Arrays.asList(storedWith, storedWithout, notStoredWith));
+            filter.filter(list);
+            assertThat(list).containsExactly(storedWith, notStoredWith);
+        } finally {
+            DataStore.removeCaches(new HashSet<>(Arrays.asList("TESTATTR1", "TESTATTR2")), LoadFlags.REMOVE_ALL);
+        }
+    }
+
+}
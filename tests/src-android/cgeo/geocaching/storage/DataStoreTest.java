@@ -7,14 +7,20 @@ import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
+import cgeo.geocaching.enumerations.WaypointType;
 import cgeo.geocaching.list.StoredList;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.log.LogEntry;
+import cgeo.geocaching.log.LogType;
+import cgeo.geocaching.log.PagedLogList;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.Image;
 import cgeo.geocaching.models.Trackable;
+import cgeo.geocaching.models.Waypoint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -135,6 +141,38 @@ public class DataStoreTest extends CGeoTestCase {
         }
     }
 
+    // Check that batched loading of child tables yields the same result as loading them cache by cache
+    public static void testLoadCachesBatched() {
+        final Geocache cache1 = new Geocache();
+        cache1.setGeocode(ARTIFICIAL_GEOCODE + "1");
+        cache1.setDetailed(true);
+        cache1.setAttributes(Collections.singletonList("wheelchair_yes"));
+        cache1.addOrChangeWaypoint(new Waypoint("Parking", WaypointType.PARKING, false), false);
+        final Geocache cache2 = new Geocache();
+        cache2.setGeocode(ARTIFICIAL_GEOCODE + "2");
+        cache2.setDetailed(true);
+
+        final Set<String> geocodes = new HashSet<>();
+        geocodes.add(cache1.getGeocode());
+        geocodes.add(cache2.getGeocode());
+        try {
+            DataStore.saveCache(cache1, EnumSet.of(SaveFlag.DB));
+            DataStore.saveCache(cache2, EnumSet.of(SaveFlag.DB));
+
+            final Set<Geocache> caches = DataStore.loadCaches(geocodes, LoadFlags.LOAD_ALL_DB_ONLY_BATCHED);
+            assertThat(caches).hasSize(2);
+            for (final Geocache cache : caches) {
+                final Geocache single = DataStore.loadCache(cache.getGeocode(), LoadFlags.LOAD_ALL_DB_ONLY);
+                assertThat(single).isNotNull();
+                assertThat(cache.getAttributes()).isEqualTo(single.getAttributes());
+                assertThat(cache.getWaypoints()).hasSameSizeAs(single.getWaypoints());
+                assertThat(cache.getSpoilers()).hasSameSizeAs(single.getSpoilers());
+            }
+        } finally {
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+        }
+    }
+
     // Check that loading a cache by case insensitive geo code works correctly (see #3139)
     public static void testGeocodeCaseInsensitive() {
 
@@ -171,6 +209,68 @@ public class DataStoreTest extends CGeoTestCase {
         assertThat(logs).as("Logs for empty geocode").isEmpty();
     }
 
+    public static void testSaveLogsIncrementally() {
+        final String geocode = ARTIFICIAL_GEOCODE + "LOGS";
+        final LogEntry found = new LogEntry.Builder().setLogType(LogType.FOUND_IT).setAuthor("finder").setLog("TFTC").setDate(2000).build();
+        final LogEntry note = new LogEntry.Builder().setLogType(LogType.NOTE).setAuthor("owner").setLog("maintained").setDate(1000).build();
+        final LogEntry editedNote = note.buildUpon().setLog("maintained, new logbook").addLogImage(new Image.Builder().setUrl("http://example.com/logbook.jpg").setTitle("logbook").build()).build();
+        final LogEntry newLog = new LogEntry.Builder().setLogType(LogType.DIDNT_FIND_IT).setAuthor("seeker").setLog("no luck").setDate(3000).build();
+
+        try {
+            DataStore.saveLogs(geocode, Arrays.asList(found, note));
+            final List<LogEntry> saved = DataStore.loadLogs(geocode);
+            assertThat(saved).hasSize(2);
+
+            DataStore.saveLogs(geocode, Arrays.asList(newLog, found, editedNote));
+            final List<LogEntry> updated = DataStore.loadLogs(geocode);
+            assertThat(updated).hasSize(3);
+            assertThat(updated.get(0).author).isEqualTo(newLog.author);
+            // unchanged and edited logs keep their rows
+            assertThat(updated.get(1).id).isEqualTo(saved.get(0).id);
+            assertThat(updated.get(2).id).isEqualTo(saved.get(1).id);
+            assertThat(updated.get(2).log).isEqualTo(editedNote.log);
+            assertThat(updated.get(2).getLogImages()).hasSize(1);
+
+            DataStore.saveLogs(geocode, Collections.singletonList(newLog));
+            final List<LogEntry> removed = DataStore.loadLogs(geocode);
+            assertThat(removed).hasSize(1);
+            assertThat(removed.get(0).id).isEqualTo(updated.get(0).id);
+        } finally {
+            DataStore.removeCache(geocode, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testLoadLogPages() {
+        final String geocode = ARTIFICIAL_GEOCODE + "PAGES";
+        final List<LogEntry> logs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            // pairs of logs with the same date
+            logs.add(new LogEntry.Builder().setLogType(LogType.FOUND_IT).setAuthor("finder " + i).setLog("TFTC").setDate(100000 - (i / 2) * 1000).setFriend(i % 3 == 0).build());
+        }
+
+        try {
+            DataStore.saveLogs(geocode, logs);
+            assertThat(DataStore.getLogCount(geocode, false)).isEqualTo(30);
+            assertThat(DataStore.getLogCount(geocode, true)).isEqualTo(10);
+
+            final List<LogEntry> firstPage = DataStore.loadLogPage(geocode, false, null, 0, 7);
+            assertThat(firstPage).hasSize(7);
+            // continuing after the last log of a page must give the same logs as skipping the first page
+            final List<LogEntry> secondPage = DataStore.loadLogPage(geocode, false, firstPage.get(6), 0, 7);
+            assertThat(secondPage).isEqualTo(DataStore.loadLogPage(geocode, false, null, 7, 7));
+            assertThat(secondPage.get(0).author).isEqualTo("finder 7");
+
+            final List<LogEntry> pagedLogs = new PagedLogList(geocode, false);
+            assertThat(pagedLogs).hasSize(30);
+            for (int i = 0; i < 30; i++) {
+                assertThat(pagedLogs.get(i).author).isEqualTo("finder " + i);
+            }
+            assertThat(new PagedLogList(geocode, true)).hasSize(10);
+        } finally {
+            DataStore.removeCache(geocode, LoadFlags.REMOVE_ALL);
+        }
+    }
+
     public static void testLoadCacheHistory() {
         int sumCaches = 0;
         int allCaches = 0;
@@ -227,4 +327,38 @@ public class DataStoreTest extends CGeoTestCase {
         assertThat(filteredGeoCodes).contains(inTileLowZoom.getGeocode());
         assertThat(filteredGeoCodes).doesNotContain(inTileHighZoom.getGeocode(), otherConnector.getGeocode(), outTile.getGeocode(), main.getGeocode());
     }
+
+    public static void testLiveMapTileCache() {
+        final Tile tile = new Tile(new Geopoint("N49 44.0 E8 37.0"), 14);
+        final Geocache cache = new Geocache();
+        cache.setGeocode("GC12345");
+        cache.setName("tile cache");
+        cache.setCoords(new Geopoint("N49 44.001 E8 37.001"), tile.getZoomLevel());
+        cache.setType(CacheType.MULTI, tile.getZoomLevel());
+        cache.setFound(true);
+
+        try {
+            DataStore.saveLiveMapTile(tile, "filter", false, Collections.singletonList(cache), 10);
+
+            final List<Geocache> caches = DataStore.loadLiveMapTile(tile, "filter", false, 0);
+            assertThat(caches).hasSize(1);
+            final Geocache loaded = caches.get(0);
+            assertThat(loaded.getGeocode()).isEqualTo(cache.getGeocode());
+            assertThat(loaded.getName()).isEqualTo(cache.getName());
+            assertThat(loaded.getCoords()).isEqualTo(cache.getCoords());
+            assertThat(loaded.getType()).isEqualTo(CacheType.MULTI);
+            assertThat(loaded.isFound()).isTrue();
+            assertThat(loaded.getCoordZoomLevel()).isEqualTo(tile.getZoomLevel());
+
+            // other filter, missing icon information or expired
+            assertThat(DataStore.loadLiveMapTile(tile, "other", false, 0)).isNull();
+            assertThat(DataStore.loadLiveMapTile(tile, "filter", true, 0)).isNull();
+            assertThat(DataStore.loadLiveMapTile(tile, "filter", false, System.currentTimeMillis() + 1000)).isNull();
+
+            Tile.cache.removeFromTileCache(cache);
+            assertThat(DataStore.loadLiveMapTile(tile, "filter", false, 0)).isNull();
+        } finally {
+            DataStore.removeLiveMapTiles(Collections.singletonList(tile));
+        }
+    }
 }
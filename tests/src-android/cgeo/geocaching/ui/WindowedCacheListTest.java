@@ -0,0 +1,90 @@
+package cgeo.geocaching.ui;
+
+import cgeo.CGeoTestCase;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WindowedCacheListTest extends CGeoTestCase {
+
+    private static final int CACHES = WindowedCacheList.PAGE_SIZE + 10;
+
+    private static List<String> saveCaches() {
+        final List<String> geocodes = new ArrayList<>(CACHES);
+        // store in reverse order, so that the window order differs from the database order
+        for (int i = CACHES - 1; i >= 0; i--) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode("TESTWIN" + i);
+            cache.setName("window " + i);
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            geocodes.add(0, cache.getGeocode());
+        }
+        return geocodes;
+    }
+
+    public static void testWindowKeepsOrder() {
+        final List<String> geocodes = saveCaches();
+        try {
+            final WindowedCacheList list = new WindowedCacheList();
+            list.setWindow(geocodes);
+            assertThat(list.isWindowed()).isTrue();
+            assertThat(list).hasSize(CACHES);
+            for (int i = 0; i < CACHES; i++) {
+                assertThat(list.get(i).getGeocode()).isEqualTo(geocodes.get(i));
+            }
+            assertThat(list.getGeocodes()).containsExactly(geocodes.toArray(new String[CACHES]));
+        } finally {
+            DataStore.removeCaches(new HashSet<>(geocodes), LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testCheckMarks() {
+        final List<String> geocodes = saveCaches();
+        try {
+            final WindowedCacheList list = new WindowedCacheList();
+            list.setWindow(geocodes);
+            list.get(0).setStatusChecked(true);
+            list.get(CACHES - 1).setStatusChecked(true);
+            assertThat(list.getCheckedGeocodes()).containsOnly(geocodes.get(0), geocodes.get(CACHES - 1));
+
+            list.invalidate();
+            assertThat(list.get(0).isStatusChecked()).isTrue();
+            assertThat(list.get(1).isStatusChecked()).isFalse();
+
+            list.invertChecked();
+            assertThat(list.getCheckedGeocodes()).hasSize(CACHES - 2);
+            assertThat(list.get(0).isStatusChecked()).isFalse();
+
+            list.loadAll();
+            assertThat(list.isWindowed()).isFalse();
+            assertThat(list.get(1).getGeocode()).isEqualTo(geocodes.get(1));
+            assertThat(list.get(1).isStatusChecked()).isTrue();
+            assertThat(list.getCheckedCaches()).hasSize(CACHES - 2);
+        } finally {
+            DataStore.removeCaches(new HashSet<>(geocodes), LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testModificationLoadsAll() {
+        final List<String> geocodes = saveCaches();
+        try {
+            final WindowedCacheList list = new WindowedCacheList();
+            list.setWindow(geocodes);
+            list.remove(0);
+            assertThat(list.isWindowed()).isFalse();
+            assertThat(list).hasSize(CACHES - 1);
+            assertThat(list.get(0).getGeocode()).isEqualTo(geocodes.get(1));
+        } finally {
+            DataStore.removeCaches(new HashSet<>(geocodes), LoadFlags.REMOVE_ALL);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package cgeo.geocaching.connector.gc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class IconClassifierTest extends TestCase {
+
+    private static final int SIZE = 8;
+    private static final int TRADITIONAL_14 = 0xFF3C8C32; // r=60, g=140, b=50
+    private static final int WEBCAM_14 = 0xFF6496E6; // r=100, g=150, b=230
+    private static final int OWN_13 = 0xFF64640A; // r=100, g=100, b=10
+
+    private static int[] filledPixels(final int color) {
+        final int[] pixels = new int[SIZE * SIZE];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    public static void testClassifyZoom14() {
+        final IconClassifier classifier = new IconClassifier(filledPixels(TRADITIONAL_14), SIZE, SIZE, 14);
+        assertThat(classifier.classify(0, 0)).isEqualTo(IconClassifier.CT_TRADITIONAL);
+        assertThat(classifier.classify(4, 4)).isEqualTo(IconClassifier.CT_TRADITIONAL);
+    }
+
+    public static void testClassifyWebcamZoom14() {
+        final IconClassifier classifier = new IconClassifier(filledPixels(WEBCAM_14), SIZE, SIZE, 14);
+        assertThat(classifier.classify(0, 0)).isEqualTo(IconClassifier.CT_WEBCAM);
+    }
+
+    public static void testClassifyZoom13() {
+        final IconClassifier classifier = new IconClassifier(filledPixels(OWN_13), SIZE, SIZE, 13);
+        assertThat(classifier.classify(4, 0)).isEqualTo(IconClassifier.CT_OWN);
+    }
+
+    public static void testIgnoreTransparentPixels() {
+        final IconClassifier classifier = new IconClassifier(filledPixels(TRADITIONAL_14 & 0x80FFFFFF), SIZE, SIZE, 14);
+        assertThat(classifier.classify(0, 0)).isEqualTo(IconClassifier.CT_UNKNOWN);
+    }
+
+    public static void testSinglePixelNotEnough() {
+        final int[] pixels = new int[SIZE * SIZE];
+        pixels[SIZE + 1] = TRADITIONAL_14;
+        final IconClassifier classifier = new IconClassifier(pixels, SIZE, SIZE, 14);
+        assertThat(classifier.classify(0, 0)).isEqualTo(IconClassifier.CT_UNKNOWN);
+
+        pixels[SIZE + 2] = TRADITIONAL_14;
+        assertThat(classifier.classify(0, 0)).isEqualTo(IconClassifier.CT_TRADITIONAL);
+    }
+
+    public static void testOutOfImage() {
+        final IconClassifier classifier = new IconClassifier(filledPixels(TRADITIONAL_14), SIZE, SIZE, 14);
+        assertThat(classifier.classify(6, 0)).isEqualTo(IconClassifier.CT_UNKNOWN);
+        assertThat(classifier.classify(0, -1)).isEqualTo(IconClassifier.CT_UNKNOWN);
+    }
+
+}
@@ -0,0 +1,65 @@
+package cgeo.geocaching.connector.gc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.files.ParserException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import junit.framework.TestCase;
+
+public class UTFGridDataTest extends TestCase {
+
+    private static String grid() {
+        final String row = "\"" + StringUtils.repeat(' ', UTFGrid.GRID_MAXX + 1) + "\"";
+        return "[" + StringUtils.repeat(row, ",", UTFGrid.GRID_MAXY + 1) + "]";
+    }
+
+    public static void testParse() throws Exception {
+        final String json = "{\"grid\":" + grid() + ","
+                + "\"keys\":[\"\",\"(10, 20)\",\"(11, 20)\",\"(12, 22)\"],"
+                + "\"data\":{\"(10, 20)\":[{\"i\":\"gEaR\",\"n\":\"Spiel & Sport\"}],"
+                + "\"(11, 20)\":[{\"i\":\"gEaR\",\"n\":\"Spiel & Sport\"},{\"i\":\"Rkzt\",\"n\":\"Rathaus\"}],"
+                + "\"(12, 22)\":[{\"i\":\"gEaR\",\"n\":\"Spiel & Sport\"}]}}";
+        final UTFGridData data = UTFGridData.parse(json);
+
+        assertThat(data.size()).isEqualTo(2);
+        assertThat(data.getId(0)).isEqualTo("gEaR");
+        assertThat(data.getName(0)).isEqualTo("Spiel & Sport");
+        assertThat(data.getPositionCount(0)).isEqualTo(3);
+        assertThat(data.isSinglePosition(0, 0)).isTrue();
+        assertThat(data.isSinglePosition(0, 1)).isFalse();
+        assertThat(UTFGrid.getX(data.getPosition(0, 2))).isEqualTo(12);
+        assertThat(UTFGrid.getY(data.getPosition(0, 2))).isEqualTo(22);
+        final UTFGridPosition center = data.getPositionInGrid(0);
+        assertThat(center.getX()).isEqualTo(11);
+        assertThat(center.getY()).isEqualTo(21);
+
+        assertThat(data.getId(1)).isEqualTo("Rkzt");
+        assertThat(data.getPositionCount(1)).isEqualTo(1);
+        assertThat(data.isSinglePosition(1, 0)).isFalse();
+    }
+
+    public static void testMissingGrid() throws Exception {
+        try {
+            UTFGridData.parse("{\"keys\":[],\"data\":{}}");
+            fail("grid missing");
+        } catch (final ParserException e) {
+            assertThat(e.getMessage()).contains("grid");
+        }
+    }
+
+    public static void testPackedPositionFromKey() {
+        assertPackedPosition("(1, 2)", 1, 2);
+        assertPackedPosition("(34,56)", 34, 56);
+        assertPackedPosition("(34,  56)", 34, 56);
+        assertPackedPosition("55_55", 0, 0);
+    }
+
+    private static void assertPackedPosition(final String key, final int x, final int y) {
+        final short packed = UTFGrid.parsePackedPosition(key);
+        assertThat(UTFGrid.getX(packed)).isEqualTo(x);
+        assertThat(UTFGrid.getY(packed)).isEqualTo(y);
+    }
+
+}
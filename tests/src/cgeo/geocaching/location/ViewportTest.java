@@ -77,6 +77,11 @@ public class ViewportTest extends TestCase {
         }
     }
 
+    public static void testSqlRTreeWhere() {
+        assertThat(vpRef.sqlRTreeWhere(null).toString()).isEqualTo("minLat >= -1.0 and maxLat <= 3.0 and minLon >= -2.0 and maxLon <= 4.0");
+        assertThat(vpRef.sqlRTreeWhere("t").toString()).isEqualTo("t.minLat >= -1.0 and t.maxLat <= 3.0 and t.minLon >= -2.0 and t.maxLon <= 4.0");
+    }
+
     public static void testEquals() {
         assertThat(vpRef).isEqualTo(vpRef);
         assertThat(new Viewport(vpRef.bottomLeft, vpRef.topRight)).isEqualTo(vpRef);
@@ -0,0 +1,92 @@
+package cgeo.geocaching.maps;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TrailSimplifierTest extends TestCase {
+
+    public static void testEmpty() {
+        assertThat(new TrailSimplifier(1).size()).isEqualTo(0);
+    }
+
+    public static void testStraightLine() {
+        final TrailSimplifier simplifier = new TrailSimplifier(1);
+        for (int i = 0; i <= 100; i++) {
+            simplifier.add(i, 2 * i);
+        }
+        assertThat(simplifier.size()).isEqualTo(2);
+        assertThat(simplifier.getX(0)).isEqualTo(0);
+        assertThat(simplifier.getX(1)).isEqualTo(100);
+        assertThat(simplifier.getY(1)).isEqualTo(200);
+    }
+
+    public static void testCornersAreKept() {
+        final TrailSimplifier simplifier = new TrailSimplifier(1);
+        for (int i = 0; i <= 10; i++) {
+            simplifier.add(i, 0);
+        }
+        for (int i = 1; i <= 10; i++) {
+            simplifier.add(10, i);
+        }
+        assertThat(simplifier.size()).isEqualTo(3);
+        assertThat(simplifier.getX(1)).isEqualTo(10);
+        assertThat(simplifier.getY(1)).isEqualTo(0);
+    }
+
+    public static void testWalkingBackIsKept() {
+        final TrailSimplifier simplifier = new TrailSimplifier(1);
+        for (int i = 0; i <= 10; i++) {
+            simplifier.add(i, 0);
+        }
+        for (int i = 9; i >= 5; i--) {
+            simplifier.add(i, 0);
+        }
+        assertThat(simplifier.size()).isEqualTo(3);
+        assertThat(simplifier.getX(1)).isEqualTo(10);
+        assertThat(simplifier.getX(2)).isEqualTo(5);
+    }
+
+    public static void testDroppedPointsAreWithinTolerance() {
+        final double tolerance = 2;
+        final Random random = new Random(42);
+        final int count = 5000;
+        final double[] x = new double[count];
+        final double[] y = new double[count];
+        final TrailSimplifier simplifier = new TrailSimplifier(tolerance);
+        for (int i = 0; i < count; i++) {
+            x[i] = i == 0 ? 0 : x[i - 1] + random.nextDouble() * 3;
+            y[i] = i == 0 ? 0 : y[i - 1] + random.nextDouble() * 2 - 1;
+            simplifier.add(x[i], y[i]);
+        }
+        assertThat(simplifier.size()).isBetween(2, count / 2);
+        assertThat(simplifier.getX(simplifier.size() - 1)).isEqualTo(x[count - 1]);
+
+        // the points of the simplified trail are original points in their order, and the points in between are close
+        int original = 0;
+        for (int i = 1; i < simplifier.size(); i++) {
+            final int start = original;
+            while (x[original] != simplifier.getX(i) || y[original] != simplifier.getY(i)) {
+                original++;
+            }
+            for (int j = start + 1; j < original; j++) {
+                final double distance = TrailSimplifier.squaredDistanceToSegment(x[j], y[j], x[start], y[start], x[original], y[original]);
+                assertThat(distance).isLessThanOrEqualTo(tolerance * tolerance);
+            }
+        }
+        assertThat(original).isEqualTo(count - 1);
+    }
+
+    public static void testPendingPointsAreLimited() {
+        final TrailSimplifier simplifier = new TrailSimplifier(1);
+        for (int i = 0; i < 1000; i++) {
+            simplifier.add(i, 0);
+        }
+        // the points of a straight line are kept once too many of them are pending
+        assertThat(simplifier.size()).isGreaterThan(2).isLessThan(10);
+        assertThat(simplifier.getX(simplifier.size() - 1)).isEqualTo(999);
+    }
+
+}
@@ -0,0 +1,66 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import cgeo.geocaching.maps.mapsforge.v6.caches.GeoitemClusters.Cluster;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class GeoitemClustersTest extends TestCase {
+
+    /**
+     * Four items within a few meters in Munich, one in Berlin.
+     */
+    private static GeoitemClusters createClusters() {
+        return new GeoitemClusters(new String[] { "GC1", "GC2", "GC3", "GC4", "GC5" },
+                new double[] { 48.1001, 48.1002, 48.1003, 48.1004, 52.5 },
+                new double[] { 11.5001, 11.5002, 11.5003, 11.5004, 13.4 });
+    }
+
+    public static void testClusterDenseItems() {
+        final GeoitemClusters clusters = createClusters();
+        final List<Cluster> zoomedOut = clusters.getClusters(5);
+        assertThat(zoomedOut).hasSize(1);
+        final Cluster cluster = zoomedOut.get(0);
+        assertThat(cluster.count).isEqualTo(4);
+        assertThat(cluster.latitude).isEqualTo(48.10025, offset(1e-9));
+        assertThat(cluster.longitude).isEqualTo(11.50025, offset(1e-9));
+
+        assertThat(clusters.isClustered("GC1", 5)).isTrue();
+        assertThat(clusters.isClustered("GC5", 5)).isFalse();
+        assertThat(clusters.isClustered("unknown", 5)).isFalse();
+    }
+
+    public static void testClusterAllItemsAtLowestZoom() {
+        final GeoitemClusters clusters = createClusters();
+        assertThat(clusters.getClusters(0)).hasSize(1);
+        assertThat(clusters.getClusters(0).get(0).count).isEqualTo(5);
+        assertThat(clusters.isClustered("GC5", 0)).isTrue();
+    }
+
+    public static void testNoClustersWhenZoomedIn() {
+        final GeoitemClusters clusters = createClusters();
+        assertThat(clusters.getClusters(GeoitemClusters.MAX_CLUSTER_ZOOM + 1)).isEmpty();
+        assertThat(clusters.isClustered("GC1", GeoitemClusters.MAX_CLUSTER_ZOOM + 1)).isFalse();
+    }
+
+    public static void testSplitSparseItems() {
+        // about 1 km apart, which are separate cells at the highest cluster zoom level
+        final GeoitemClusters clusters = new GeoitemClusters(new String[] { "GC1", "GC2", "GC3", "GC4" },
+                new double[] { 48.10, 48.11, 48.12, 48.13 },
+                new double[] { 11.50, 11.51, 11.52, 11.53 });
+        assertThat(clusters.getClusters(GeoitemClusters.MAX_CLUSTER_ZOOM)).isEmpty();
+        assertThat(clusters.getClusters(8)).hasSize(1);
+    }
+
+    public static void testEmpty() {
+        final GeoitemClusters clusters = new GeoitemClusters(new String[0], new double[0], new double[0]);
+        for (int zoom = 0; zoom <= GeoitemClusters.MAX_CLUSTER_ZOOM; zoom++) {
+            assertThat(clusters.getClusters(zoom)).isEmpty();
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package cgeo.geocaching.maps.mapsforge.v6.layers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.mapsforge.core.model.Tile;
+
+public class TilePrefetcherTest extends TestCase {
+
+    private static final Viewport AROUND_NULL_ISLAND = new Viewport(new Geopoint(-1, -1), new Geopoint(1, 1));
+
+    public static void testTilesOrderedByZoom() {
+        final List<Tile> tiles = TilePrefetcher.getTiles(Collections.singletonList(AROUND_NULL_ISLAND), 0, 2);
+        // one tile at zoom level 0, and the four tiles touching the center of the world at zoom levels 1 and 2
+        assertThat(tiles).hasSize(9);
+        assertThat(tiles.get(0)).isEqualTo(new Tile(0, 0, (byte) 0, 256));
+        for (int i = 1; i < tiles.size(); i++) {
+            assertThat(tiles.get(i).zoomLevel).isGreaterThanOrEqualTo(tiles.get(i - 1).zoomLevel);
+        }
+        assertThat(tiles).contains(new Tile(1, 1, (byte) 2, 256), new Tile(2, 2, (byte) 2, 256));
+    }
+
+    public static void testNoDuplicateTiles() {
+        final List<Tile> tiles = TilePrefetcher.getTiles(Arrays.asList(AROUND_NULL_ISLAND, AROUND_NULL_ISLAND), 0, 2);
+        assertThat(tiles).hasSize(9);
+    }
+
+    public static void testTooManyTiles() {
+        final Viewport world = new Viewport(new Geopoint(-80, -179), new Geopoint(80, 179));
+        assertThat(TilePrefetcher.getTiles(Collections.singletonList(world), 0, 16)).hasSize(TilePrefetcher.MAX_TILES + 1);
+    }
+
+    public static void testCorridorCoversStraightSegments() {
+        final Geopoint start = new Geopoint(48.0, 11.0);
+        final Geopoint end = new Geopoint(48.1, 11.1);
+        final List<Viewport> corridor = TilePrefetcher.getCorridor(new Geopoint[] { start, end }, 0.5);
+        assertThat(corridor.size()).isGreaterThan(2);
+        for (int step = 0; step <= 10; step++) {
+            final Geopoint point = new Geopoint(48.0 + step * 0.01, 11.0 + step * 0.01);
+            boolean covered = false;
+            for (final Viewport area : corridor) {
+                covered |= area.contains(point);
+            }
+            assertThat(covered).isTrue();
+        }
+    }
+
+    public static void testSurroundings() {
+        final Geopoint point = new Geopoint(48.0, 11.0);
+        final List<Viewport> areas = TilePrefetcher.getSurroundings(Collections.singletonList(point), 1.0);
+        assertThat(areas).hasSize(1);
+        assertThat(areas.get(0).contains(point)).isTrue();
+        assertThat(areas.get(0).contains(point.project(0, 0.9))).isTrue();
+        assertThat(areas.get(0).contains(point.project(90, 1.1))).isFalse();
+    }
+
+}
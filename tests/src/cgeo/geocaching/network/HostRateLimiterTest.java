@@ -0,0 +1,24 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import junit.framework.TestCase;
+
+public class HostRateLimiterTest extends TestCase {
+
+    public static void testSpacesRequestsToSameHost() {
+        final HostRateLimiter limiter = new HostRateLimiter(500);
+        assertThat(limiter.reserve("www.geocaching.com", 1000)).isEqualTo(0);
+        assertThat(limiter.reserve("www.geocaching.com", 1000)).isEqualTo(500);
+        assertThat(limiter.reserve("www.geocaching.com", 1100)).isEqualTo(900);
+        assertThat(limiter.reserve("www.geocaching.com", 5000)).isEqualTo(0);
+    }
+
+    public static void testHostsAreIndependent() {
+        final HostRateLimiter limiter = new HostRateLimiter(500);
+        assertThat(limiter.reserve("www.geocaching.com", 1000)).isEqualTo(0);
+        assertThat(limiter.reserve("www.opencaching.de", 1000)).isEqualTo(0);
+        assertThat(limiter.reserve("www.geocaching.com", 1000)).isEqualTo(500);
+    }
+
+}
@@ -0,0 +1,42 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import junit.framework.TestCase;
+
+public class ThroughputEstimatorTest extends TestCase {
+
+    public static void testDefaultBeforeFirstCompletion() {
+        final ThroughputEstimator estimator = new ThroughputEstimator(0, 1000);
+        assertThat(estimator.getRemainingMilliseconds(10, 500)).isEqualTo(10000);
+    }
+
+    public static void testFirstCompletion() {
+        final ThroughputEstimator estimator = new ThroughputEstimator(0, 1000);
+        estimator.onCompleted(3000);
+        assertThat(estimator.getRemainingMilliseconds(10, 3000)).isEqualTo(30000);
+        assertThat(estimator.getRemainingMilliseconds(10, 4000)).isEqualTo(29000);
+    }
+
+    public static void testFollowsRecentSpeed() {
+        final ThroughputEstimator estimator = new ThroughputEstimator(0, 1000);
+        long now = 0;
+        for (int i = 0; i < 30; i++) {
+            now += 5000;
+            estimator.onCompleted(now);
+        }
+        // faster now, only the recent completions count
+        for (int i = 0; i < 25; i++) {
+            now += 1000;
+            estimator.onCompleted(now);
+        }
+        assertThat(estimator.getRemainingMilliseconds(10, now)).isEqualTo(10000);
+    }
+
+    public static void testNeverNegative() {
+        final ThroughputEstimator estimator = new ThroughputEstimator(0, 1000);
+        estimator.onCompleted(1000);
+        assertThat(estimator.getRemainingMilliseconds(1, 10000)).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,44 @@
+package cgeo.geocaching.sensors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import junit.framework.TestCase;
+
+public class HeadingFilterTest extends TestCase {
+
+    public static void testFirstHeadingIsEmitted() {
+        final HeadingFilter filter = new HeadingFilter(0.3, 1);
+        assertThat(filter.update(42)).isTrue();
+        assertThat(filter.getHeading()).isEqualTo(42, offset(0.001f));
+    }
+
+    public static void testSmallChangesAreNotEmitted() {
+        final HeadingFilter filter = new HeadingFilter(0.3, 1);
+        filter.update(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(filter.update(i % 2 == 0 ? 101.5f : 98.5f)).isFalse();
+        }
+        assertThat(filter.getHeading()).isEqualTo(100, offset(0.001f));
+    }
+
+    public static void testConvergesToNewHeading() {
+        final HeadingFilter filter = new HeadingFilter(0.3, 1);
+        filter.update(10);
+        assertThat(filter.update(50)).isTrue();
+        assertThat(filter.getHeading()).isBetween(10f, 50f);
+        for (int i = 0; i < 50; i++) {
+            filter.update(50);
+        }
+        assertThat(filter.getHeading()).isEqualTo(50, offset(1f));
+    }
+
+    public static void testAcrossNorth() {
+        final HeadingFilter filter = new HeadingFilter(0.5, 1);
+        filter.update(350);
+        assertThat(filter.update(10)).isTrue();
+        // the average of 350 and 10 is north, not south
+        assertThat(filter.getHeading()).isLessThan(0.001f);
+    }
+
+}
@@ -0,0 +1,62 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore.StorageLocation;
+
+import org.apache.commons.lang3.StringUtils;
+
+import junit.framework.TestCase;
+
+public class CacheCacheTest extends TestCase {
+
+    private static Geocache createCache(final String geocode, final boolean inDatabase) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode);
+        cache.setDescription(StringUtils.repeat('x', 1000));
+        if (inDatabase) {
+            cache.addStorageLocation(StorageLocation.DATABASE);
+        }
+        return cache;
+    }
+
+    private static CacheCache fillThreeCaches(final boolean inDatabase) {
+        final Geocache cache = createCache("GC1", inDatabase);
+        // room for three caches
+        final CacheCache cacheCache = new CacheCache(cache.getEstimatedSize() * 3 + 100);
+        cacheCache.putCacheInCache(cache);
+        cacheCache.putCacheInCache(createCache("GC2", inDatabase));
+        cacheCache.putCacheInCache(createCache("GC3", inDatabase));
+        return cacheCache;
+    }
+
+    public static void testEvictLeastRecentlyUsed() {
+        final CacheCache cacheCache = fillThreeCaches(true);
+        assertThat(cacheCache.getCacheFromCache("GC1")).isNotNull();
+        cacheCache.putCacheInCache(createCache("GC4", true));
+
+        assertThat(cacheCache.getCacheFromCache("GC1")).isNotNull();
+        assertThat(cacheCache.getCacheFromCache("GC2")).isNull();
+        assertThat(cacheCache.getCacheFromCache("GC4")).isNotNull();
+    }
+
+    public static void testKeepCachesNotInDatabase() {
+        final CacheCache cacheCache = fillThreeCaches(false);
+        cacheCache.putCacheInCache(createCache("GC4", false));
+
+        // evicted from the first tier, but still referenced by the second one
+        assertThat(cacheCache.toString()).doesNotContain("GC1");
+        assertThat(cacheCache.getCacheFromCache("GC1")).isNotNull();
+        assertThat(cacheCache.toString()).contains("GC1");
+    }
+
+    public static void testRemove() {
+        final CacheCache cacheCache = fillThreeCaches(false);
+        cacheCache.removeCacheFromCache("GC2");
+        assertThat(cacheCache.getCacheFromCache("GC2")).isNull();
+        cacheCache.removeAllFromCache();
+        assertThat(cacheCache.getCacheFromCache("GC1")).isNull();
+    }
+
+}
@@ -0,0 +1,52 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class GeocodeGridTest extends TestCase {
+
+    private static Set<String> collect(final GeocodeGrid grid, final double latitudeMin, final double latitudeMax, final double longitudeMin, final double longitudeMax) {
+        final Set<String> result = new HashSet<>();
+        grid.collect(latitudeMin, latitudeMax, longitudeMin, longitudeMax, result);
+        return result;
+    }
+
+    public static void testCollect() {
+        final GeocodeGrid grid = new GeocodeGrid();
+        grid.put("GC1", 48.1, 11.5);
+        grid.put("GC2", 52.5, 13.4);
+        grid.putWithoutCoordinates("GC3");
+
+        assertThat(collect(grid, 48.0, 48.2, 11.4, 11.6)).containsOnly("GC1", "GC3");
+        assertThat(collect(grid, 52.4, 52.6, 13.3, 13.5)).containsOnly("GC2", "GC3");
+        assertThat(collect(grid, -10, -9, -10, -9)).containsOnly("GC3");
+        // a large area is looked up by the occupied cells
+        assertThat(collect(grid, -90, 90, -180, 180)).containsOnly("GC1", "GC2", "GC3");
+    }
+
+    public static void testMoveAndRemove() {
+        final GeocodeGrid grid = new GeocodeGrid();
+        grid.put("GC1", 48.1, 11.5);
+        grid.put("GC1", 52.5, 13.4);
+        assertThat(grid.size()).isEqualTo(1);
+        assertThat(collect(grid, 48.0, 48.2, 11.4, 11.6)).isEmpty();
+        assertThat(collect(grid, 52.4, 52.6, 13.3, 13.5)).containsOnly("GC1");
+
+        grid.remove("GC1");
+        assertThat(grid.size()).isZero();
+        assertThat(collect(grid, -90, 90, -180, 180)).isEmpty();
+    }
+
+    public static void testBorders() {
+        final GeocodeGrid grid = new GeocodeGrid();
+        grid.put("GC1", 90, 180);
+        grid.put("GC2", -90, -180);
+        assertThat(collect(grid, 89.99, 90, 179.99, 180)).containsOnly("GC1");
+        assertThat(collect(grid, -90, -89.99, -180, -179.99)).containsOnly("GC2");
+    }
+
+}